@@ -3,6 +3,9 @@ package com.stripe.example
 import android.os.StrictMode
 import androidx.multidex.MultiDexApplication
 import com.facebook.stetho.Stetho
+import com.stripe.android.Stripe
+import com.stripe.example.module.OkHttpStripeTransport
+import com.stripe.example.module.RetrofitFactory
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
@@ -28,6 +31,8 @@ class ExampleApplication : MultiDexApplication() {
 
         super.onCreate()
 
+        Stripe.setTransport(OkHttpStripeTransport(RetrofitFactory.httpClient))
+
         CoroutineScope(Dispatchers.IO).launch {
             Stetho.initializeWithDefaults(this@ExampleApplication)
         }
@@ -0,0 +1,46 @@
+package com.stripe.example.module
+
+import com.stripe.android.StripeTransport
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+import okhttp3.MediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+
+/**
+ * A [StripeTransport] that sends the Stripe SDK's requests through the app's [OkHttpClient], so
+ * that they share its connection pool and dispatcher.
+ */
+class OkHttpStripeTransport(
+    private val client: OkHttpClient
+) : StripeTransport {
+
+    @Throws(IOException::class)
+    override fun execute(request: StripeTransport.Request): StripeTransport.Response {
+        // clients created with newBuilder() share the connection pool and dispatcher
+        val requestClient = client.newBuilder()
+            .connectTimeout(request.connectTimeoutMillis.toLong(), TimeUnit.MILLISECONDS)
+            .readTimeout(request.readTimeoutMillis.toLong(), TimeUnit.MILLISECONDS)
+            .build()
+
+        val body = request.body?.let {
+            RequestBody.create(request.contentType?.let { MediaType.parse(it) }, it)
+        }
+        val okHttpRequest = Request.Builder()
+            .url(request.url)
+            .method(request.method, body)
+            .apply {
+                request.headers.forEach { (name, value) -> header(name, value) }
+            }
+            .build()
+
+        return requestClient.newCall(okHttpRequest).execute().use { response ->
+            StripeTransport.Response(
+                code = response.code(),
+                body = response.body()?.string(),
+                headers = response.headers().toMultimap()
+            )
+        }
+    }
+}
@@ -13,6 +13,14 @@ import retrofit2.converter.gson.GsonConverterFactory
  * Factory to generate our Retrofit instance.
  */
 object RetrofitFactory {
+    /**
+     * The app's [OkHttpClient], without request logging. Also used by the Stripe SDK, through
+     * [OkHttpStripeTransport], so that its requests aren't logged.
+     */
+    val httpClient: OkHttpClient = OkHttpClient.Builder()
+        .addNetworkInterceptor(StethoInterceptor())
+        .build()
+
     val instance: Retrofit
 
     init {
@@ -22,9 +30,9 @@ object RetrofitFactory {
         val logging = HttpLoggingInterceptor()
             .setLevel(HttpLoggingInterceptor.Level.BODY)
 
-        val httpClient = OkHttpClient.Builder()
+        // shares the connection pool and dispatcher of httpClient
+        val loggingHttpClient = httpClient.newBuilder()
             .addInterceptor(logging)
-            .addNetworkInterceptor(StethoInterceptor())
             .build()
 
         val gson = GsonBuilder()
@@ -35,7 +43,7 @@ object RetrofitFactory {
             .addConverterFactory(GsonConverterFactory.create(gson))
             .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
             .baseUrl(Settings.BASE_URL)
-            .client(httpClient)
+            .client(loggingHttpClient)
             .build()
     }
 }
@@ -0,0 +1,133 @@
+package com.stripe.android
+
+import android.os.SystemClock
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import java.net.URLEncoder
+import java.util.LinkedList
+import java.util.Locale
+import java.util.concurrent.TimeUnit
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Compares how long [FormEncoder] and the encoder it replaced take to encode the params of a
+ * PaymentIntent confirmation with a new card and a few hundred metadata entries. Results are
+ * logged with the [TAG] tag.
+ */
+@RunWith(AndroidJUnit4::class)
+class FormEncoderBenchmark {
+
+    private val formEncoder = FormEncoder()
+    private val legacyFormEncoder = LegacyFormEncoder()
+
+    @Test
+    fun encode_shouldMatchLegacyEncoderAndReportTimes() {
+        val params = createParams()
+        assertEquals(legacyFormEncoder.encode(params), formEncoder.encodeToString(params))
+
+        val legacyNanos = measure { legacyFormEncoder.encode(params) }
+        val nanos = measure { formEncoder.encodeToString(params) }
+
+        Log.i(TAG, "encode of ${formEncoder.encodeToBytes(params).size} bytes: " +
+            "FormEncoder median ${TimeUnit.NANOSECONDS.toMicros(nanos)} us, " +
+            "legacy encoder median ${TimeUnit.NANOSECONDS.toMicros(legacyNanos)} us")
+    }
+
+    /**
+     * @return the median time of [ITERATIONS] calls to [block], after [WARMUP_ITERATIONS]
+     * calls that aren't measured
+     */
+    private fun measure(block: () -> Unit): Long {
+        repeat(WARMUP_ITERATIONS) { block() }
+        val times = (0 until ITERATIONS).map {
+            val start = SystemClock.elapsedRealtimeNanos()
+            block()
+            SystemClock.elapsedRealtimeNanos() - start
+        }
+        return times.sorted()[times.size / 2]
+    }
+
+    private fun createParams(): Map<String, Any> {
+        return mapOf(
+            "client_secret" to "pi_1ExkUeAWhjPjYwPiXph9ouXa_secret_nGTdfGlzL9Uop59wN55LraiC7",
+            "return_url" to "yourapp://post-authentication-return-url",
+            "payment_method_data" to mapOf(
+                "type" to "card",
+                "card" to mapOf(
+                    "number" to "4242424242424242",
+                    "exp_month" to 12,
+                    "exp_year" to 2025,
+                    "cvc" to "123"
+                ),
+                "billing_details" to mapOf(
+                    "name" to "Jenny Rosen",
+                    "email" to "jenny.rosen@example.com",
+                    "address" to mapOf(
+                        "line1" to "1234 Main Street",
+                        "city" to "São Paulo",
+                        "postal_code" to "01310-000",
+                        "country" to "BR"
+                    )
+                ),
+                "metadata" to (0 until METADATA_COUNT).associate {
+                    "key_$it" to "value $it with spaces & symbols = ü"
+                }
+            ),
+            "expand" to listOf("payment_method", "customer")
+        )
+    }
+
+    /**
+     * The encoder that [FormEncoder] replaced: params are flattened into lists of key-value
+     * pairs, nested keys are formatted with [String.format], and each key and value is encoded
+     * into its own string.
+     */
+    private class LegacyFormEncoder {
+        fun encode(params: Map<String, *>): String {
+            val query = StringBuilder()
+            for ((key, value) in flattenMap(params, null)) {
+                if (query.isNotEmpty()) {
+                    query.append("&")
+                }
+                query.append(String.format(Locale.ROOT, "%s=%s",
+                    URLEncoder.encode(key, CHARSET), URLEncoder.encode(value, CHARSET)))
+            }
+            return query.toString()
+        }
+
+        private fun flattenMap(params: Map<*, *>, keyPrefix: String?): List<Pair<String, String>> {
+            val flatParams = LinkedList<Pair<String, String>>()
+            for ((key, value) in params) {
+                val newPrefix = if (keyPrefix != null) {
+                    String.format(Locale.ROOT, "%s[%s]", keyPrefix, key)
+                } else {
+                    key.toString()
+                }
+                flatParams.addAll(flattenValue(value, newPrefix))
+            }
+            return flatParams
+        }
+
+        private fun flattenValue(value: Any?, keyPrefix: String): List<Pair<String, String>> {
+            return when (value) {
+                is Map<*, *> -> flattenMap(value, keyPrefix)
+                is List<*> -> {
+                    val newPrefix = String.format(Locale.ROOT, "%s[]", keyPrefix)
+                    value.flatMapTo(LinkedList()) { flattenValue(it, newPrefix) }
+                }
+                null -> LinkedList(listOf(keyPrefix to ""))
+                else -> LinkedList(listOf(keyPrefix to value.toString()))
+            }
+        }
+    }
+
+    companion object {
+        private const val TAG = "FormEncoderBenchmark"
+        private const val CHARSET = "UTF-8"
+        private const val METADATA_COUNT = 200
+        private const val WARMUP_ITERATIONS = 200
+        private const val ITERATIONS = 1000
+    }
+}
@@ -0,0 +1,225 @@
+package com.stripe.android.view
+
+import android.os.SystemClock
+import android.util.Log
+import android.view.Choreographer
+import android.view.ViewGroup
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import androidx.test.rule.ActivityTestRule
+import com.stripe.android.model.PaymentMethod
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Measures how many rows [PaymentMethodsAdapter] binds, and how long frames take, when a list of
+ * a few hundred payment methods is refreshed and scrolled. Results are logged with the
+ * [TAG] tag.
+ */
+@RunWith(AndroidJUnit4::class)
+class PaymentMethodsAdapterBenchmark {
+
+    @get:Rule
+    val activityRule = ActivityTestRule(AddPaymentMethodActivity::class.java)
+
+    private val instrumentation = InstrumentationRegistry.getInstrumentation()
+
+    private lateinit var adapter: PaymentMethodsAdapter
+    private lateinit var bindCountingAdapter: BindCountingAdapter
+    private lateinit var recyclerView: RecyclerView
+
+    @Before
+    fun setup() {
+        instrumentation.runOnMainSync {
+            val activity = activityRule.activity
+            adapter = PaymentMethodsAdapter(null, PaymentMethodsActivityStarter.Args.Builder()
+                .build())
+            bindCountingAdapter = BindCountingAdapter(adapter)
+            recyclerView = RecyclerView(activity).also {
+                it.layoutManager = LinearLayoutManager(activity)
+                it.adapter = bindCountingAdapter
+            }
+            activity.setContentView(recyclerView, ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT
+            ))
+        }
+    }
+
+    @Test
+    fun refresh_withOneChangedPaymentMethod_onlyRebindsChangedRow() {
+        val paymentMethods = createPaymentMethods(PAYMENT_METHOD_COUNT)
+        setPaymentMethods(paymentMethods)
+        val visibleRowCount = bindCountingAdapter.bindCount
+
+        val updatedPaymentMethods = paymentMethods.toMutableList().also {
+            it[1] = createPaymentMethod(1, "1111")
+        }
+        bindCountingAdapter.bindCount = 0
+        val elapsedMillis = setPaymentMethods(updatedPaymentMethods)
+
+        Log.i(TAG, "refresh of $PAYMENT_METHOD_COUNT payment methods: " +
+            "${bindCountingAdapter.bindCount} binds of $visibleRowCount visible rows " +
+            "in $elapsedMillis ms")
+        assertTrue(bindCountingAdapter.bindCount < visibleRowCount)
+    }
+
+    @Test
+    fun scroll_shouldReportFrameTimes() {
+        setPaymentMethods(createPaymentMethods(PAYMENT_METHOD_COUNT))
+        bindCountingAdapter.bindCount = 0
+
+        val frameTimes = mutableListOf<Long>()
+        val latch = CountDownLatch(1)
+        instrumentation.runOnMainSync {
+            Choreographer.getInstance().postFrameCallback(object : Choreographer.FrameCallback {
+                private var lastFrameTimeNanos = 0L
+
+                override fun doFrame(frameTimeNanos: Long) {
+                    if (lastFrameTimeNanos > 0) {
+                        frameTimes.add(frameTimeNanos - lastFrameTimeNanos)
+                    }
+                    lastFrameTimeNanos = frameTimeNanos
+
+                    if (recyclerView.canScrollVertically(1) && frameTimes.size < MAX_FRAMES) {
+                        recyclerView.scrollBy(0, SCROLL_PER_FRAME_PX)
+                        Choreographer.getInstance().postFrameCallback(this)
+                    } else {
+                        latch.countDown()
+                    }
+                }
+            })
+        }
+        assertTrue(latch.await(30, TimeUnit.SECONDS))
+
+        val sortedFrameTimesMillis = frameTimes.sorted().map { TimeUnit.NANOSECONDS.toMillis(it) }
+        Log.i(TAG, "scroll through $PAYMENT_METHOD_COUNT payment methods: " +
+            "${frameTimes.size} frames, ${bindCountingAdapter.bindCount} binds, " +
+            "median frame ${sortedFrameTimesMillis[sortedFrameTimesMillis.size / 2]} ms, " +
+            "p90 frame ${sortedFrameTimesMillis[sortedFrameTimesMillis.size * 9 / 10]} ms")
+        assertTrue(frameTimes.isNotEmpty())
+    }
+
+    /**
+     * @return the time until the payment methods were shown, in milliseconds
+     */
+    private fun setPaymentMethods(paymentMethods: List<PaymentMethod>): Long {
+        val start = SystemClock.elapsedRealtime()
+        instrumentation.runOnMainSync {
+            adapter.setPaymentMethods(paymentMethods)
+        }
+        while (!isShown(paymentMethods)) {
+            SystemClock.sleep(1)
+        }
+        instrumentation.waitForIdleSync()
+        return SystemClock.elapsedRealtime() - start
+    }
+
+    private fun isShown(paymentMethods: List<PaymentMethod>): Boolean {
+        var isShown = false
+        instrumentation.runOnMainSync {
+            isShown = adapter.paymentMethods == paymentMethods
+        }
+        return isShown
+    }
+
+    private fun createPaymentMethods(count: Int): List<PaymentMethod> {
+        return (0 until count).map { createPaymentMethod(it, (1000 + it).toString()) }
+    }
+
+    private fun createPaymentMethod(index: Int, last4: String): PaymentMethod {
+        return PaymentMethod.Builder()
+            .setId("pm_$index")
+            .setType(PaymentMethod.Type.Card.code)
+            .setCreated(index.toLong())
+            .setCard(PaymentMethod.Card.Builder()
+                .setBrand(PaymentMethod.Card.Brand.VISA)
+                .setLast4(last4)
+                .build())
+            .build()
+    }
+
+    /**
+     * Counts the rows bound by [delegate], forwarding its change notifications
+     */
+    private class BindCountingAdapter(
+        private val delegate: PaymentMethodsAdapter
+    ) : RecyclerView.Adapter<RecyclerView.ViewHolder>() {
+        var bindCount = 0
+
+        init {
+            setHasStableIds(true)
+            delegate.registerAdapterDataObserver(object : RecyclerView.AdapterDataObserver() {
+                override fun onChanged() {
+                    notifyDataSetChanged()
+                }
+
+                override fun onItemRangeChanged(positionStart: Int, itemCount: Int) {
+                    notifyItemRangeChanged(positionStart, itemCount)
+                }
+
+                override fun onItemRangeChanged(
+                    positionStart: Int,
+                    itemCount: Int,
+                    payload: Any?
+                ) {
+                    notifyItemRangeChanged(positionStart, itemCount, payload)
+                }
+
+                override fun onItemRangeInserted(positionStart: Int, itemCount: Int) {
+                    notifyItemRangeInserted(positionStart, itemCount)
+                }
+
+                override fun onItemRangeRemoved(positionStart: Int, itemCount: Int) {
+                    notifyItemRangeRemoved(positionStart, itemCount)
+                }
+
+                override fun onItemRangeMoved(fromPosition: Int, toPosition: Int, count: Int) {
+                    for (i in 0 until count) {
+                        notifyItemMoved(fromPosition + i, toPosition + i)
+                    }
+                }
+            })
+        }
+
+        override fun getItemCount(): Int = delegate.itemCount
+
+        override fun getItemViewType(position: Int): Int = delegate.getItemViewType(position)
+
+        override fun getItemId(position: Int): Long = delegate.getItemId(position)
+
+        override fun onCreateViewHolder(
+            parent: ViewGroup,
+            viewType: Int
+        ): RecyclerView.ViewHolder {
+            return delegate.onCreateViewHolder(parent, viewType)
+        }
+
+        override fun onBindViewHolder(holder: RecyclerView.ViewHolder, position: Int) {
+            onBindViewHolder(holder, position, emptyList())
+        }
+
+        override fun onBindViewHolder(
+            holder: RecyclerView.ViewHolder,
+            position: Int,
+            payloads: List<Any>
+        ) {
+            bindCount++
+            delegate.onBindViewHolder(holder, position, payloads)
+        }
+    }
+
+    companion object {
+        private const val TAG = "PaymentMethodsBenchmark"
+        private const val PAYMENT_METHOD_COUNT = 300
+        private const val MAX_FRAMES = 600
+        private const val SCROLL_PER_FRAME_PX = 40
+    }
+}
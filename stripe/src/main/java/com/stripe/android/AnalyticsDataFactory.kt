@@ -21,7 +21,8 @@ internal class AnalyticsDataFactory @VisibleForTesting constructor(
 ) {
     @Retention(AnnotationRetention.SOURCE)
     @StringDef(EventName.TOKEN_CREATION, EventName.CREATE_PAYMENT_METHOD,
-        EventName.ATTACH_PAYMENT_METHOD, EventName.DETACH_PAYMENT_METHOD, EventName.SOURCE_CREATION,
+        EventName.ATTACH_PAYMENT_METHOD, EventName.DETACH_PAYMENT_METHOD,
+        EventName.LIST_PAYMENT_METHODS, EventName.SOURCE_CREATION,
         EventName.ADD_SOURCE, EventName.DEFAULT_SOURCE, EventName.DELETE_SOURCE,
         EventName.SET_SHIPPING_INFO, EventName.CONFIRM_PAYMENT_INTENT,
         EventName.RETRIEVE_PAYMENT_INTENT, EventName.CONFIRM_SETUP_INTENT,
@@ -37,6 +38,7 @@ internal class AnalyticsDataFactory @VisibleForTesting constructor(
             const val CREATE_PAYMENT_METHOD = "payment_method_creation"
             const val ATTACH_PAYMENT_METHOD = "attach_payment_method"
             const val DETACH_PAYMENT_METHOD = "detach_payment_method"
+            const val LIST_PAYMENT_METHODS = "list_payment_methods"
             const val SOURCE_CREATION = "source_creation"
             const val ADD_SOURCE = "add_source"
             const val DEFAULT_SOURCE = "default_source"
@@ -227,6 +229,17 @@ internal class AnalyticsDataFactory @VisibleForTesting constructor(
         )
     }
 
+    fun getListPaymentMethodsParams(
+        productUsageTokens: List<String>?,
+        publishableKey: String
+    ): Map<String, Any> {
+        return getEventLoggingParams(
+            EventName.LIST_PAYMENT_METHODS,
+            publishableKey,
+            productUsageTokens = productUsageTokens
+        )
+    }
+
     fun getPaymentIntentConfirmationParams(
         productUsageTokens: List<String>?,
         publishableKey: String,
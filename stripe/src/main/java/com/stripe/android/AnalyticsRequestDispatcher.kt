@@ -0,0 +1,333 @@
+package com.stripe.android
+
+import android.content.ComponentCallbacks2
+import android.content.Context
+import android.content.SharedPreferences
+import android.content.res.Configuration
+import android.os.SystemClock
+import androidx.annotation.VisibleForTesting
+import com.stripe.android.exception.InvalidRequestException
+import com.stripe.android.model.StripeJsonUtils
+import java.util.ArrayDeque
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import org.json.JSONArray
+import org.json.JSONException
+import org.json.JSONObject
+
+/**
+ * A [FireAndForgetRequestExecutor] that queues analytics requests on disk and sends them in
+ * batches, instead of sending each event on its own connection as soon as it is logged.
+ *
+ * Events are flushed [flushDelayMillis] after the first event of a batch is queued, as soon as
+ * [batchSize] events are queued, or when the app's UI is hidden. A batch is sent sequentially over
+ * the SDK's shared keep-alive connections, so it costs one radio wakeup and one TLS handshake.
+ *
+ * The queue holds at most [maxQueueSize] events; when full, the oldest event is dropped. An event
+ * that fails to send is retried on the next flush, and dropped after [MAX_ATTEMPTS] attempts or
+ * once it is older than [MAX_EVENT_AGE_MILLIS].
+ *
+ * Requests that are not analytics requests are passed on to [requestExecutor] unchanged.
+ *
+ * The queue is only read and written on [scheduler]'s thread.
+ */
+internal class AnalyticsRequestDispatcher @VisibleForTesting internal constructor(
+    private val store: Store,
+    private val apiRequestExecutor: ApiRequestExecutor,
+    private val requestExecutor: FireAndForgetRequestExecutor,
+    private val scheduler: ScheduledExecutorService,
+    private val batchSize: Int = DEFAULT_BATCH_SIZE,
+    private val maxQueueSize: Int = DEFAULT_MAX_QUEUE_SIZE,
+    private val flushDelayMillis: Long = DEFAULT_FLUSH_DELAY_MILLIS,
+    private val clock: () -> Long = { System.currentTimeMillis() }
+) : FireAndForgetRequestExecutor {
+    private val queue: ArrayDeque<Event> by lazy {
+        ArrayDeque(store.load())
+    }
+    private var pendingFlush: ScheduledFuture<*>? = null
+
+    @Volatile
+    private var queueDepth = 0
+    @Volatile
+    private var sentEventCount = 0
+    @Volatile
+    private var droppedEventCount = 0
+    @Volatile
+    private var failedFlushCount = 0
+    @Volatile
+    private var lastFlushLatencyMillis = 0L
+
+    init {
+        // send any events that were queued before the process was last killed
+        scheduler.execute {
+            queueDepth = queue.size
+            if (queue.isNotEmpty()) {
+                scheduleFlush(flushDelayMillis)
+            }
+        }
+    }
+
+    override fun executeAsync(request: StripeRequest) {
+        if (request is ApiRequest && request.baseUrl == AnalyticsRequest.HOST) {
+            scheduler.execute {
+                enqueue(request)
+            }
+        } else {
+            requestExecutor.executeAsync(request)
+        }
+    }
+
+    /**
+     * Send all queued events in the background.
+     */
+    fun flushAsync() {
+        scheduler.execute {
+            flush()
+        }
+    }
+
+    fun getStats(): Stats {
+        return Stats(
+            queueDepth = queueDepth,
+            sentEvents = sentEventCount,
+            droppedEvents = droppedEventCount,
+            failedFlushes = failedFlushCount,
+            lastFlushLatencyMillis = lastFlushLatencyMillis
+        )
+    }
+
+    @VisibleForTesting
+    internal fun enqueue(request: ApiRequest) {
+        while (queue.size >= maxQueueSize) {
+            queue.pollFirst()
+            droppedEventCount++
+        }
+        queue.offerLast(Event(
+            params = request.params.orEmpty(),
+            apiKey = request.options.apiKey,
+            stripeAccount = request.options.stripeAccount,
+            appInfo = request.appInfo,
+            createdAtMillis = clock()
+        ))
+        onQueueChanged()
+
+        if (queue.size >= batchSize) {
+            flush()
+        } else if (pendingFlush == null) {
+            scheduleFlush(flushDelayMillis)
+        }
+    }
+
+    /**
+     * Send queued events in order, stopping at the first one that fails to send. The failed event
+     * and those behind it are retried on the next flush.
+     */
+    @VisibleForTesting
+    internal fun flush() {
+        pendingFlush?.cancel(false)
+        pendingFlush = null
+
+        val startTime = SystemClock.elapsedRealtime()
+        var hasFailed = false
+        while (!hasFailed && queue.isNotEmpty()) {
+            val event = queue.peekFirst() ?: break
+            if (clock() - event.createdAtMillis >= MAX_EVENT_AGE_MILLIS) {
+                queue.pollFirst()
+                droppedEventCount++
+                continue
+            }
+
+            try {
+                apiRequestExecutor.execute(event.toRequest())
+                queue.pollFirst()
+                sentEventCount++
+            } catch (e: InvalidRequestException) {
+                // the event can't be sent, so retrying it won't help
+                queue.pollFirst()
+                droppedEventCount++
+            } catch (e: Exception) {
+                // treat any other failure like a connection failure, so that the event is
+                // retried instead of the exception escaping the scheduled flush
+                hasFailed = true
+                failedFlushCount++
+                if (++event.attempts >= MAX_ATTEMPTS) {
+                    queue.pollFirst()
+                    droppedEventCount++
+                }
+            }
+        }
+        lastFlushLatencyMillis = SystemClock.elapsedRealtime() - startTime
+        onQueueChanged()
+
+        if (hasFailed && queue.isNotEmpty()) {
+            scheduleFlush(RETRY_DELAY_MILLIS)
+        }
+    }
+
+    private fun scheduleFlush(delayMillis: Long) {
+        pendingFlush = scheduler.schedule(Runnable { flush() }, delayMillis, TimeUnit.MILLISECONDS)
+    }
+
+    private fun onQueueChanged() {
+        queueDepth = queue.size
+        store.save(queue.toList())
+    }
+
+    internal class Event(
+        val params: Map<String, *>,
+        val apiKey: String,
+        val stripeAccount: String?,
+        /**
+         * The [AppInfo] of the repository that logged the event, which may differ from
+         * [Stripe.getAppInfo] by the time a persisted event is sent
+         */
+        val appInfo: AppInfo?,
+        val createdAtMillis: Long,
+        var attempts: Int = 0
+    ) {
+        fun toRequest(): ApiRequest {
+            return AnalyticsRequest.create(
+                params,
+                ApiRequest.Options.create(apiKey, stripeAccount),
+                appInfo
+            )
+        }
+
+        fun toJson(): JSONObject {
+            return JSONObject()
+                .put(FIELD_PARAMS, JSONObject(params))
+                .put(FIELD_API_KEY, apiKey)
+                .put(FIELD_STRIPE_ACCOUNT, stripeAccount)
+                .put(FIELD_APP_INFO, appInfo?.toJson())
+                .put(FIELD_CREATED, createdAtMillis)
+                .put(FIELD_ATTEMPTS, attempts)
+        }
+
+        companion object {
+            private const val FIELD_PARAMS = "params"
+            private const val FIELD_API_KEY = "api_key"
+            private const val FIELD_STRIPE_ACCOUNT = "stripe_account"
+            private const val FIELD_APP_INFO = "app_info"
+            private const val FIELD_CREATED = "created"
+            private const val FIELD_ATTEMPTS = "attempts"
+
+            fun fromJson(json: JSONObject): Event? {
+                val params = StripeJsonUtils.jsonObjectToMap(json.optJSONObject(FIELD_PARAMS))
+                val apiKey = StripeJsonUtils.optString(json, FIELD_API_KEY)
+                if (params == null || apiKey == null) {
+                    return null
+                }
+
+                return Event(
+                    params = params,
+                    apiKey = apiKey,
+                    stripeAccount = StripeJsonUtils.optString(json, FIELD_STRIPE_ACCOUNT),
+                    appInfo = AppInfo.fromJson(json.optJSONObject(FIELD_APP_INFO)),
+                    createdAtMillis = json.optLong(FIELD_CREATED),
+                    attempts = json.optInt(FIELD_ATTEMPTS)
+                )
+            }
+        }
+    }
+
+    /**
+     * Persists the queue so that events logged shortly before the process is killed are sent on
+     * the next launch.
+     */
+    internal class Store(context: Context) {
+        private val prefs: SharedPreferences =
+            context.getSharedPreferences(PREF_FILE, Context.MODE_PRIVATE)
+
+        fun load(): List<Event> {
+            val events = prefs.getString(KEY_EVENTS, null) ?: return emptyList()
+            return try {
+                val eventsJson = JSONArray(events)
+                (0 until eventsJson.length())
+                    .mapNotNull { eventsJson.optJSONObject(it) }
+                    .mapNotNull { Event.fromJson(it) }
+            } catch (e: JSONException) {
+                emptyList()
+            }
+        }
+
+        fun save(events: List<Event>) {
+            prefs.edit()
+                .putString(KEY_EVENTS, JSONArray(events.map { it.toJson() }).toString())
+                .apply()
+        }
+
+        companion object {
+            private const val PREF_FILE = "StripeAnalyticsQueue"
+            private const val KEY_EVENTS = "events"
+        }
+    }
+
+    internal data class Stats(
+        val queueDepth: Int,
+        val sentEvents: Int,
+        val droppedEvents: Int,
+        val failedFlushes: Int,
+        val lastFlushLatencyMillis: Long
+    )
+
+    /**
+     * Flushes the queue when the app's UI is hidden, since the process may be killed soon after.
+     */
+    private class BackgroundCallbacks(
+        private val dispatcher: AnalyticsRequestDispatcher
+    ) : ComponentCallbacks2 {
+        override fun onTrimMemory(level: Int) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+                dispatcher.flushAsync()
+            }
+        }
+
+        override fun onConfigurationChanged(newConfig: Configuration) {}
+
+        override fun onLowMemory() {}
+    }
+
+    companion object {
+        private const val DEFAULT_BATCH_SIZE = 10
+        private const val DEFAULT_MAX_QUEUE_SIZE = 100
+        private val DEFAULT_FLUSH_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(10)
+
+        private const val MAX_ATTEMPTS = 3
+        private val RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30)
+        private val MAX_EVENT_AGE_MILLIS = TimeUnit.DAYS.toMillis(1)
+
+        @Volatile
+        private var instance: AnalyticsRequestDispatcher? = null
+
+        /**
+         * @return the dispatcher shared by all of the SDK's analytics callers
+         */
+        @JvmStatic
+        fun getInstance(context: Context): AnalyticsRequestDispatcher {
+            return instance ?: synchronized(this) {
+                instance ?: create(context.applicationContext).also {
+                    instance = it
+                }
+            }
+        }
+
+        private fun create(context: Context): AnalyticsRequestDispatcher {
+            val scheduler = Executors.newSingleThreadScheduledExecutor { runnable ->
+                Thread(runnable, "StripeAnalytics").apply {
+                    isDaemon = true
+                }
+            }
+            return AnalyticsRequestDispatcher(
+                store = Store(context),
+                // failed events are kept in the queue and retried by the next flush
+                apiRequestExecutor = StripeApiRequestExecutor(retryPolicy = RetryPolicy.NONE),
+                requestExecutor = StripeFireAndForgetRequestExecutor(),
+                scheduler = scheduler
+            ).also {
+                context.registerComponentCallbacks(BackgroundCallbacks(it))
+            }
+        }
+    }
+}
@@ -3,7 +3,7 @@ package com.stripe.android
 internal class ApiKeyValidator {
 
     fun requireValid(apiKey: String?): String {
-        if (apiKey == null || apiKey.trim { it <= ' ' }.isEmpty()) {
+        if (apiKey == null || apiKey.all { it <= ' ' }) {
             throw IllegalArgumentException("Invalid Publishable Key: " +
                 "You must use a valid Stripe API key to make a Stripe API request. " +
                 "For more info, see https://stripe.com/docs/keys")
@@ -1,7 +1,5 @@
 package com.stripe.android;
 
-import android.os.Build;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -12,8 +10,7 @@ import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-
-import org.json.JSONObject;
+import java.util.UUID;
 
 /**
  * A class representing a Stripe API or Analytics request.
@@ -24,9 +21,19 @@ public final class ApiRequest extends StripeRequest {
 
     static final String API_HOST = "https://api.stripe.com";
 
+    static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
+
     @NonNull final Options options;
+
+    /**
+     * Sent with every attempt of a POST request, so that the API applies the request at most
+     * once when it is retried.
+     */
+    @Nullable final String idempotencyKey;
+
     @NonNull private final String mApiVersion;
     @Nullable private final AppInfo mAppInfo;
+    @NonNull private final Map<String, String> mHeaders;
 
     ApiRequest(@NonNull Method method,
                @NonNull String url,
@@ -35,8 +42,10 @@ public final class ApiRequest extends StripeRequest {
                @Nullable AppInfo appInfo) {
         super(method, url, params, MIME_TYPE);
         this.options = options;
+        this.idempotencyKey = method == Method.POST ? UUID.randomUUID().toString() : null;
         mApiVersion = ApiVersion.get().getCode();
         mAppInfo = appInfo;
+        mHeaders = ApiRequestHeaders.DEFAULT.get(options, appInfo, mApiVersion);
     }
 
     @NonNull
@@ -76,57 +85,44 @@ public final class ApiRequest extends StripeRequest {
         return new ApiRequest(Method.DELETE, url, null, options, appInfo);
     }
 
+    @Nullable
+    AppInfo getAppInfo() {
+        return mAppInfo;
+    }
+
+    /**
+     * @return the cached headers of requests with the same {@link Options} and {@link AppInfo},
+     * plus the idempotency key of a POST request
+     */
     @NonNull
     @Override
-    Map<String, String> createHeaders() {
-        final Map<String, String> headers = new HashMap<>();
-        headers.put("Accept-Charset", CHARSET);
-        headers.put("Accept", "application/json");
-        headers.put("X-Stripe-Client-User-Agent", createStripeClientUserAgent());
-        headers.put("Stripe-Version", mApiVersion);
-        headers.put("Authorization",
-                String.format(Locale.ENGLISH, "Bearer %s", options.apiKey));
-        if (options.stripeAccount != null) {
-            headers.put("Stripe-Account", options.stripeAccount);
+    Map<String, String> getHeaders() {
+        if (idempotencyKey == null) {
+            return mHeaders;
         }
-        return headers;
+        return super.getHeaders();
     }
 
     @NonNull
-    private String createStripeClientUserAgent() {
-        final Map<String, String> propertyMap = new HashMap<>();
-        final String javaVersion = System.getProperty("java.version");
-        if (javaVersion != null) {
-            propertyMap.put("java.version", javaVersion);
-        }
-        propertyMap.put("os.name", "android");
-        propertyMap.put("os.version", String.valueOf(Build.VERSION.SDK_INT));
-        propertyMap.put("bindings.version", BuildConfig.VERSION_NAME);
-        propertyMap.put("lang", "Java");
-        propertyMap.put("publisher", "Stripe");
-        if (mAppInfo != null) {
-            propertyMap.putAll(mAppInfo.createClientHeaders());
+    @Override
+    Map<String, String> createHeaders() {
+        final Map<String, String> headers = new HashMap<>(mHeaders);
+        if (idempotencyKey != null) {
+            headers.put(HEADER_IDEMPOTENCY_KEY, idempotencyKey);
         }
-
-        return new JSONObject(propertyMap).toString();
+        return headers;
     }
 
     @NonNull
     @Override
     String getUserAgent() {
-        final StringBuilder userAgent = new StringBuilder(DEFAULT_USER_AGENT);
-        if (mAppInfo != null) {
-            userAgent
-                    .append(" ")
-                    .append(mAppInfo.toUserAgent());
-        }
-        return userAgent.toString();
+        return Objects.requireNonNull(mHeaders.get(HEADER_USER_AGENT));
     }
 
     @NonNull
     @Override
     byte[] getOutputBytes() throws UnsupportedEncodingException, InvalidRequestException {
-        return createQuery().getBytes(CHARSET);
+        return FormEncoder.DEFAULT.encodeToBytes(params);
     }
 
     @NonNull
@@ -164,21 +160,37 @@ public final class ApiRequest extends StripeRequest {
         @NonNull final String apiKey;
         @Nullable final String stripeAccount;
 
+        /**
+         * The deadline of the operation that the request belongs to. It doesn't affect equality,
+         * so that requests with different deadlines are still coalesced.
+         */
+        @Nullable final Deadline deadline;
+
         @NonNull
         static Options create(@NonNull String apiKey) {
-            return new Options(apiKey, null);
+            return new Options(apiKey, null, null);
         }
 
         @NonNull
         static Options create(@NonNull String apiKey, @Nullable String stripeAccount) {
-            return new Options(apiKey, stripeAccount);
+            return new Options(apiKey, stripeAccount, null);
         }
 
         private Options(
                 @NonNull String apiKey,
-                @Nullable String stripeAccount) {
-            this.apiKey = new ApiKeyValidator().requireValid(apiKey);
+                @Nullable String stripeAccount,
+                @Nullable Deadline deadline) {
+            this.apiKey = ApiKeyValidator.get().requireValid(apiKey);
             this.stripeAccount = stripeAccount;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return a copy of these options with {@param deadline}
+         */
+        @NonNull
+        Options withDeadline(@Nullable Deadline deadline) {
+            return new Options(apiKey, stripeAccount, deadline);
         }
 
         @Override
@@ -0,0 +1,124 @@
+package com.stripe.android
+
+import android.os.Build
+import androidx.annotation.VisibleForTesting
+import java.util.Collections
+import java.util.Locale
+import org.json.JSONObject
+
+/**
+ * Creates the headers of [ApiRequest]s and caches them by publishable key, Stripe account,
+ * [AppInfo] and API version, so that the `X-Stripe-Client-User-Agent` JSON, the `Authorization`
+ * header and the `User-Agent` are built once instead of for every request.
+ *
+ * The cache is bounded because ephemeral keys, which are used as API keys by [CustomerSession],
+ * rotate over time.
+ */
+internal class ApiRequestHeaders @VisibleForTesting internal constructor(
+    private val maxEntries: Int = DEFAULT_MAX_ENTRIES
+) {
+    private val entries = object : LinkedHashMap<Key, Map<String, String>>(
+        maxEntries, 0.75f, true
+    ) {
+        override fun removeEldestEntry(
+            eldest: MutableMap.MutableEntry<Key, Map<String, String>>?
+        ): Boolean {
+            return size > maxEntries
+        }
+    }
+
+    private var createdCount = 0
+    private var cacheHitCount = 0
+
+    /**
+     * @return the unmodifiable headers, including `User-Agent`, for requests with [options],
+     * [appInfo] and [apiVersion]
+     */
+    @Synchronized
+    fun get(
+        options: ApiRequest.Options,
+        appInfo: AppInfo?,
+        apiVersion: String
+    ): Map<String, String> {
+        val key = Key(options.apiKey, options.stripeAccount, appInfo, apiVersion)
+        entries[key]?.let {
+            cacheHitCount++
+            return it
+        }
+
+        createdCount++
+        return create(options, appInfo, apiVersion).also {
+            entries[key] = it
+        }
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        return Stats(
+            created = createdCount,
+            cacheHits = cacheHitCount
+        )
+    }
+
+    private fun create(
+        options: ApiRequest.Options,
+        appInfo: AppInfo?,
+        apiVersion: String
+    ): Map<String, String> {
+        val headers = mutableMapOf(
+            "Accept-Charset" to StripeRequest.CHARSET,
+            "Accept" to "application/json",
+            "X-Stripe-Client-User-Agent" to createStripeClientUserAgent(appInfo),
+            "Stripe-Version" to apiVersion,
+            "Authorization" to String.format(Locale.ENGLISH, "Bearer %s", options.apiKey),
+            StripeRequest.HEADER_USER_AGENT to createUserAgent(appInfo)
+        )
+        options.stripeAccount?.let {
+            headers["Stripe-Account"] = it
+        }
+        return Collections.unmodifiableMap(headers)
+    }
+
+    private fun createStripeClientUserAgent(appInfo: AppInfo?): String {
+        val propertyMap = mutableMapOf<String, String>()
+        System.getProperty("java.version")?.let {
+            propertyMap["java.version"] = it
+        }
+        propertyMap["os.name"] = "android"
+        propertyMap["os.version"] = Build.VERSION.SDK_INT.toString()
+        propertyMap["bindings.version"] = BuildConfig.VERSION_NAME
+        propertyMap["lang"] = "Java"
+        propertyMap["publisher"] = "Stripe"
+        appInfo?.let {
+            propertyMap.putAll(it.createClientHeaders())
+        }
+        return JSONObject(propertyMap).toString()
+    }
+
+    private fun createUserAgent(appInfo: AppInfo?): String {
+        return listOfNotNull(StripeRequest.DEFAULT_USER_AGENT, appInfo?.toUserAgent())
+            .joinToString(" ")
+    }
+
+    internal data class Stats(
+        val created: Int,
+        val cacheHits: Int
+    )
+
+    private data class Key(
+        val apiKey: String,
+        val stripeAccount: String?,
+        val appInfo: AppInfo?,
+        val apiVersion: String
+    )
+
+    companion object {
+        private const val DEFAULT_MAX_ENTRIES = 16
+
+        /**
+         * The headers cache shared by all [ApiRequest]s.
+         */
+        @JvmField
+        val DEFAULT = ApiRequestHeaders()
+    }
+}
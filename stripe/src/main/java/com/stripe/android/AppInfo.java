@@ -3,6 +3,7 @@ package com.stripe.android;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.stripe.android.model.StripeJsonUtils;
 import com.stripe.android.utils.ObjectUtils;
 
 import java.util.AbstractMap;
@@ -19,6 +20,11 @@ import org.json.JSONObject;
  *     Building Stripe Plug-ins and Libraries - Setting the API version</a>.
  */
 public final class AppInfo {
+    private static final String FIELD_NAME = "name";
+    private static final String FIELD_VERSION = "version";
+    private static final String FIELD_URL = "url";
+    private static final String FIELD_PARTNER_ID = "partner_id";
+
     @NonNull private final String mName;
     @Nullable private final String mVersion;
     @Nullable private final String mUrl;
@@ -85,6 +91,40 @@ public final class AppInfo {
         return header;
     }
 
+    /**
+     * @return this AppInfo as JSON, so that it can be persisted with the requests it was sent with
+     */
+    @NonNull
+    JSONObject toJson() {
+        final AbstractMap<String, String> appInfo = new HashMap<>(4);
+        appInfo.put(FIELD_NAME, mName);
+        appInfo.put(FIELD_VERSION, mVersion);
+        appInfo.put(FIELD_URL, mUrl);
+        appInfo.put(FIELD_PARTNER_ID, mPartnerId);
+        return new JSONObject(appInfo);
+    }
+
+    /**
+     * @return the AppInfo in {@code json}, or {@code null} if it has no name
+     */
+    @Nullable
+    static AppInfo fromJson(@Nullable JSONObject json) {
+        if (json == null) {
+            return null;
+        }
+
+        final String name = StripeJsonUtils.optString(json, FIELD_NAME);
+        if (name == null) {
+            return null;
+        }
+        return new AppInfo(
+                name,
+                StripeJsonUtils.optString(json, FIELD_VERSION),
+                StripeJsonUtils.optString(json, FIELD_URL),
+                StripeJsonUtils.optString(json, FIELD_PARTNER_ID)
+        );
+    }
+
     @Override
     public boolean equals(@Nullable Object obj) {
         return super.equals(obj) || (obj instanceof AppInfo && typedEquals((AppInfo) obj));
@@ -0,0 +1,130 @@
+package com.stripe.android
+
+import androidx.annotation.VisibleForTesting
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.RejectedExecutionHandler
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * A small, dedicated pool of background threads for fire-and-forget requests, so that they
+ * don't occupy threads that the host app uses for its own work.
+ *
+ * At most [maxThreads] requests run at once, and at most [maxQueueSize] wait to run. When the
+ * queue is full, the oldest waiting request is dropped in favor of the new one. Idle threads exit
+ * after [KEEP_ALIVE_SECONDS], and the pool is recreated on demand after [shutdown].
+ */
+internal class BoundedRequestExecutor @VisibleForTesting internal constructor(
+    private val maxThreads: Int = DEFAULT_MAX_THREADS,
+    private val maxQueueSize: Int = DEFAULT_MAX_QUEUE_SIZE
+) {
+    private var executor: ThreadPoolExecutor? = null
+
+    private val inFlightCount = AtomicInteger()
+    private val droppedCount = AtomicInteger()
+    private val failedCount = AtomicInteger()
+
+    private val rejectedExecutionHandler = RejectedExecutionHandler { runnable, pool ->
+        if (pool.isShutdown) {
+            droppedCount.incrementAndGet()
+        } else {
+            if (pool.queue.poll() != null) {
+                droppedCount.incrementAndGet()
+            }
+            // offer directly instead of calling `execute()` again, which could recurse when
+            // producers race on a full queue
+            if (!pool.queue.offer(runnable)) {
+                droppedCount.incrementAndGet()
+            }
+        }
+    }
+
+    /**
+     * Run [request] on a background thread. An exception thrown by [request] is recorded as a
+     * failure instead of reaching the thread's uncaught exception handler.
+     */
+    fun execute(request: () -> Unit) {
+        getExecutor().execute {
+            inFlightCount.incrementAndGet()
+            try {
+                request()
+            } catch (e: Exception) {
+                failedCount.incrementAndGet()
+            } finally {
+                inFlightCount.decrementAndGet()
+            }
+        }
+    }
+
+    /**
+     * Stop accepting new requests on the current pool. Requests that were already queued still
+     * run; requests made after this call start a new pool.
+     */
+    @Synchronized
+    fun shutdown() {
+        executor?.shutdown()
+        executor = null
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        return Stats(
+            inFlight = inFlightCount.get(),
+            queued = executor?.queue?.size ?: 0,
+            dropped = droppedCount.get(),
+            failed = failedCount.get()
+        )
+    }
+
+    @Synchronized
+    private fun getExecutor(): ThreadPoolExecutor {
+        return executor ?: createExecutor().also {
+            executor = it
+        }
+    }
+
+    private fun createExecutor(): ThreadPoolExecutor {
+        return ThreadPoolExecutor(
+            maxThreads,
+            maxThreads,
+            KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            ArrayBlockingQueue(maxQueueSize),
+            THREAD_FACTORY,
+            rejectedExecutionHandler
+        ).also {
+            it.allowCoreThreadTimeOut(true)
+        }
+    }
+
+    internal data class Stats(
+        val inFlight: Int,
+        val queued: Int,
+        val dropped: Int,
+        val failed: Int
+    )
+
+    companion object {
+        private const val DEFAULT_MAX_THREADS = 2
+        private const val DEFAULT_MAX_QUEUE_SIZE = 32
+        private const val KEEP_ALIVE_SECONDS = 30L
+
+        private val THREAD_FACTORY = object : ThreadFactory {
+            private val threadCount = AtomicInteger()
+
+            override fun newThread(runnable: Runnable): Thread {
+                return Thread(runnable, "StripeRequest-${threadCount.incrementAndGet()}").apply {
+                    isDaemon = true
+                }
+            }
+        }
+
+        /**
+         * The executor shared by all of the SDK's fire-and-forget requests.
+         */
+        @JvmField
+        val DEFAULT = BoundedRequestExecutor()
+    }
+}
@@ -0,0 +1,83 @@
+package com.stripe.android
+
+import java.util.ArrayDeque
+
+/**
+ * A small pool of reusable byte arrays, used to read and write request and response bodies
+ * without allocating a new buffer for every request.
+ *
+ * Buffers larger than [maxPooledBufferSize] are not retained, so a single large response does not
+ * pin its buffer in memory.
+ */
+internal class BufferPool @JvmOverloads constructor(
+    private val maxPooledBuffers: Int = DEFAULT_MAX_POOLED_BUFFERS,
+    private val maxPooledBufferSize: Int = DEFAULT_MAX_POOLED_BUFFER_SIZE
+) {
+    private val buffers = ArrayDeque<ByteArray>()
+
+    private var allocationCount = 0
+    private var reuseCount = 0
+
+    /**
+     * @return a buffer of at least [minSize] bytes, from the pool if one is available
+     */
+    @Synchronized
+    fun acquire(minSize: Int = DEFAULT_BUFFER_SIZE): ByteArray {
+        val pooledBuffer = buffers.firstOrNull { it.size >= minSize }
+        if (pooledBuffer != null) {
+            buffers.remove(pooledBuffer)
+            reuseCount++
+            return pooledBuffer
+        }
+
+        allocationCount++
+        return ByteArray(maxOf(minSize, DEFAULT_BUFFER_SIZE))
+    }
+
+    /**
+     * @return a buffer at least twice the size of [buffer], containing the first [size] bytes of
+     * [buffer]. [buffer] is returned to the pool.
+     */
+    fun grow(buffer: ByteArray, size: Int): ByteArray {
+        val newBuffer = acquire(buffer.size * 2)
+        System.arraycopy(buffer, 0, newBuffer, 0, size)
+        release(buffer)
+        return newBuffer
+    }
+
+    @Synchronized
+    fun release(buffer: ByteArray) {
+        if (buffer.size <= maxPooledBufferSize && buffers.size < maxPooledBuffers &&
+            buffers.none { it === buffer }) {
+            buffers.push(buffer)
+        }
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        return Stats(
+            allocations = allocationCount,
+            reuses = reuseCount,
+            pooledBuffers = buffers.size
+        )
+    }
+
+    internal data class Stats(
+        val allocations: Int,
+        val reuses: Int,
+        val pooledBuffers: Int
+    )
+
+    companion object {
+        internal const val DEFAULT_BUFFER_SIZE = 8 * 1024
+
+        private const val DEFAULT_MAX_POOLED_BUFFERS = 4
+        internal const val DEFAULT_MAX_POOLED_BUFFER_SIZE = 256 * 1024
+
+        /**
+         * The pool shared by all of the SDK's request executors.
+         */
+        @JvmField
+        val DEFAULT = BufferPool()
+    }
+}
@@ -4,26 +4,47 @@ import com.stripe.android.exception.InvalidRequestException
 import java.io.IOException
 import java.io.UnsupportedEncodingException
 import java.net.HttpURLConnection
+import java.net.MalformedURLException
 import java.net.URL
 import java.nio.charset.StandardCharsets
+import java.util.TreeMap
 import javax.net.ssl.HttpsURLConnection
 
-internal class ConnectionFactory {
+internal class ConnectionFactory(
+    private val connectionReuseTracker: ConnectionReuseTracker = ConnectionReuseTracker.DEFAULT,
+    private val dnsPrefetcher: DnsPrefetcher = DnsPrefetcher.DEFAULT
+) {
 
+    /**
+     * Open a connection for [request], connect it, and write the request body.
+     *
+     * @param metrics records the durations of the TCP and TLS handshakes, and writing the
+     * request body. The platform's DNS lookup is part of the TCP handshake.
+     * @param deadline if set, the connect and read timeouts are shortened to end by it
+     */
     @Throws(IOException::class, InvalidRequestException::class)
-    fun create(request: StripeRequest): HttpURLConnection {
+    fun create(
+        request: StripeRequest,
+        metrics: RequestMetrics = RequestMetrics(),
+        deadline: Deadline? = null
+    ): HttpURLConnection {
         val stripeURL = URL(request.url)
         val conn = stripeURL.openConnection() as HttpURLConnection
-        conn.connectTimeout = 30 * 1000
-        conn.readTimeout = 80 * 1000
+        InFlightRequest.current()?.register(conn)
+        conn.connectTimeout = getConnectTimeoutMillis(request, deadline)
+        conn.readTimeout = getReadTimeoutMillis(request, deadline)
         conn.useCaches = false
 
         for ((key, value) in request.headers) {
             conn.setRequestProperty(key, value)
         }
 
+        // Setting Accept-Encoding turns off HttpURLConnection's transparent gzip support, so that
+        // the compressed size of each response can be recorded by ResponseBodyReader.
+        conn.setRequestProperty("Accept-Encoding", ResponseBodyReader.ACCEPT_ENCODING)
+
         if (conn is HttpsURLConnection) {
-            conn.sslSocketFactory = SSL_SOCKET_FACTORY
+            conn.sslSocketFactory = StripeSSLSocketFactory.DEFAULT
         }
 
         conn.requestMethod = request.method.code
@@ -31,12 +52,112 @@ internal class ConnectionFactory {
         if (StripeRequest.Method.POST == request.method) {
             conn.doOutput = true
             conn.setRequestProperty("Content-Type", request.contentType)
-            conn.outputStream.use { output -> output.write(getRequestOutputBytes(request)) }
+        }
+
+        connect(conn, metrics)
+
+        if (StripeRequest.Method.POST == request.method) {
+            val outputBytes = getRequestOutputBytes(request)
+            metrics.measure({ requestWriteNanos = it }) {
+                conn.outputStream.use { output -> output.write(outputBytes) }
+            }
+            metrics.bytesOut = outputBytes.size.toLong()
         }
 
         return conn
     }
 
+    /**
+     * Make [request] with [transport], the [StripeTransport] set by the app, instead of opening
+     * a connection.
+     *
+     * @param metrics records the time to the response and the number of bytes sent; the other
+     * durations aren't visible to the SDK
+     * @param deadline if set, the connect and read timeouts are shortened to end by it
+     */
+    @Throws(IOException::class, InvalidRequestException::class)
+    fun execute(
+        transport: StripeTransport,
+        request: StripeRequest,
+        metrics: RequestMetrics,
+        deadline: Deadline? = null
+    ): StripeResponse {
+        val body = if (StripeRequest.Method.POST == request.method) {
+            getRequestOutputBytes(request)
+        } else {
+            null
+        }
+        val transportRequest = StripeTransport.Request(
+            method = request.method.code,
+            url = request.url,
+            headers = request.headers,
+            body = body,
+            contentType = body?.let { request.contentType },
+            connectTimeoutMillis = getConnectTimeoutMillis(request, deadline),
+            readTimeoutMillis = getReadTimeoutMillis(request, deadline)
+        )
+        metrics.bytesOut = body?.size?.toLong() ?: 0L
+
+        val response = metrics.measure({ timeToFirstByteNanos = it }) {
+            transport.execute(transportRequest)
+        }
+        // header names are case-insensitive, and e.g. HTTP/2 clients lowercase them
+        val headers = TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER).apply {
+            putAll(response.headers)
+        }
+        return StripeResponse(response.code, response.body, headers)
+    }
+
+    private fun getConnectTimeoutMillis(request: StripeRequest, deadline: Deadline?): Int {
+        val timeoutMillis = request.connectTimeoutMillis
+            ?: TimeoutPolicy.get().getConnectTimeoutMillis(NetworkEvent.getRequestType(request))
+        return deadline?.clampTimeout(timeoutMillis) ?: timeoutMillis
+    }
+
+    private fun getReadTimeoutMillis(request: StripeRequest, deadline: Deadline?): Int {
+        val timeoutMillis = request.readTimeoutMillis
+            ?: TimeoutPolicy.get().getReadTimeoutMillis(NetworkEvent.getRequestType(request))
+        return deadline?.clampTimeout(timeoutMillis) ?: timeoutMillis
+    }
+
+    /**
+     * Connect [conn], splitting the time spent into the TCP handshake, which ends when
+     * [StripeSSLSocketFactory] creates the TLS socket, and the TLS handshake. A connection that
+     * reuses a pooled socket creates no socket and records neither.
+     */
+    @Throws(IOException::class)
+    private fun connect(conn: HttpURLConnection, metrics: RequestMetrics) {
+        StripeSSLSocketFactory.clearSocketCreatedAtNanos()
+        val connectStartedAtNanos = System.nanoTime()
+        conn.connect()
+        val connectedAtNanos = System.nanoTime()
+
+        val socketCreatedAtNanos = StripeSSLSocketFactory.clearSocketCreatedAtNanos()
+        if (socketCreatedAtNanos != null) {
+            metrics.connectNanos = socketCreatedAtNanos - connectStartedAtNanos
+            metrics.tlsNanos = connectedAtNanos - socketCreatedAtNanos
+        } else if (conn !is HttpsURLConnection) {
+            metrics.connectNanos = connectedAtNanos - connectStartedAtNanos
+        }
+
+        // only the sockets of HTTPS connections are created by StripeSSLSocketFactory
+        if (conn is HttpsURLConnection) {
+            connectionReuseTracker.onConnected(conn.url.host, socketCreatedAtNanos != null)
+        }
+    }
+
+    /**
+     * Called when executing [request] failed with [exception].
+     */
+    fun onConnectionFailure(request: StripeRequest, exception: IOException) {
+        val host = try {
+            URL(request.baseUrl).host
+        } catch (e: MalformedURLException) {
+            return
+        }
+        dnsPrefetcher.onConnectionFailure(host, exception)
+    }
+
     @Throws(InvalidRequestException::class)
     fun getRequestOutputBytes(request: StripeRequest): ByteArray {
         try {
@@ -49,8 +170,4 @@ internal class ConnectionFactory {
             )
         }
     }
-
-    companion object {
-        private val SSL_SOCKET_FACTORY = StripeSSLSocketFactory()
-    }
 }
@@ -0,0 +1,101 @@
+package com.stripe.android
+
+import android.os.SystemClock
+import androidx.annotation.VisibleForTesting
+import java.net.HttpURLConnection
+import java.util.concurrent.TimeUnit
+
+/**
+ * Tracks how often the platform's connection pool reuses a socket for a request to a Stripe host,
+ * instead of paying a TCP and TLS handshake per request.
+ *
+ * Sockets are pooled by [HttpURLConnection] itself. The SDK's part is to fully read and close
+ * each response body, so that the platform can keep the socket alive, and to disconnect a
+ * connection whose body wasn't read, so that its socket isn't left half-used. Whether a socket
+ * was reused is observed from [StripeSSLSocketFactory]: a connection that didn't create a socket
+ * reused one.
+ */
+internal class ConnectionReuseTracker @VisibleForTesting internal constructor(
+    private val keepAliveDurationMillis: Long = DEFAULT_KEEP_ALIVE_DURATION_MILLIS,
+    private val clock: () -> Long = { SystemClock.elapsedRealtime() }
+) {
+    /**
+     * The time at which a connection to each host was last released with its socket reusable
+     */
+    private val releasedAtMillis = mutableMapOf<String, Long>()
+
+    private var reusedConnectionCount = 0
+    private var newConnectionCount = 0
+
+    /**
+     * Called when a connection to [host] was connected.
+     *
+     * @param createdSocket `true` if a new socket was created for the connection, `false` if the
+     * platform reused a pooled one
+     */
+    @Synchronized
+    fun onConnected(host: String, createdSocket: Boolean) {
+        if (createdSocket) {
+            newConnectionCount++
+        } else {
+            reusedConnectionCount++
+        }
+    }
+
+    /**
+     * Called once the request of [connection] is complete.
+     *
+     * @param isReusable `true` if the response body was fully read and closed, so the platform
+     * can keep its socket alive. Otherwise, the connection is disconnected.
+     */
+    fun release(connection: HttpURLConnection, isReusable: Boolean) {
+        if (!isReusable) {
+            connection.disconnect()
+            return
+        }
+
+        synchronized(this) {
+            releasedAtMillis[connection.url.host] = clock()
+        }
+    }
+
+    /**
+     * @return `true` if a connection to [host] was released recently enough that the platform
+     * is likely to still keep its socket alive
+     */
+    @Synchronized
+    fun hasRecentConnection(host: String): Boolean {
+        val releasedAtMillis = releasedAtMillis[host] ?: return false
+        return clock() - releasedAtMillis < keepAliveDurationMillis
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        return Stats(
+            reusedConnections = reusedConnectionCount,
+            newConnections = newConnectionCount
+        )
+    }
+
+    /**
+     * @param reusedConnections the number of connections that reused a pooled socket
+     * @param newConnections the number of connections that created a socket
+     */
+    internal data class Stats(
+        val reusedConnections: Int,
+        val newConnections: Int
+    )
+
+    companion object {
+        /**
+         * How long the platform's connection pool keeps an idle socket alive
+         */
+        private val DEFAULT_KEEP_ALIVE_DURATION_MILLIS = TimeUnit.MINUTES.toMillis(5)
+
+        /**
+         * The tracker shared by all of the SDK's request executors.
+         */
+        @JvmField
+        val DEFAULT = ConnectionReuseTracker()
+    }
+}
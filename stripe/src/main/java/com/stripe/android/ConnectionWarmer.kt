@@ -0,0 +1,129 @@
+package com.stripe.android
+
+import android.os.SystemClock
+import androidx.annotation.VisibleForTesting
+import com.stripe.android.exception.StripeException
+import java.net.URL
+import java.util.concurrent.TimeUnit
+
+/**
+ * Opens connections to Stripe's hosts in the background before they are needed, so that the
+ * first request of a checkout doesn't pay for the DNS lookup and TCP and TLS handshakes.
+ *
+ * Each host is sent a [WarmUpRequest], whose socket the platform's connection pool keeps alive
+ * for the next request to reuse. Hosts that were connected to recently, according to
+ * [connectionReuseTracker], are skipped, so warming up never opens a socket that is likely to
+ * already exist. The TLS session negotiated by the warm-up is cached by the SDK's socket factory,
+ * so a later connection to the same host can resume it even after the idle socket was closed.
+ *
+ * All hosts are warmed up within [timeoutMillis]; hosts that can't be reached in time are left
+ * for the first real request.
+ */
+internal class ConnectionWarmer @VisibleForTesting internal constructor(
+    private val connectionReuseTracker: ConnectionReuseTracker = ConnectionReuseTracker.DEFAULT,
+    private val dnsPrefetcher: DnsPrefetcher = DnsPrefetcher.DEFAULT,
+    private val backgroundExecutor: BoundedRequestExecutor = BoundedRequestExecutor.DEFAULT,
+    private val timeoutMillis: Long = DEFAULT_TIMEOUT_MILLIS,
+    private val clock: () -> Long = { SystemClock.elapsedRealtime() },
+    private val executeRequest: (StripeRequest) -> Unit = {
+        StripeFireAndForgetRequestExecutor(connectionReuseTracker).execute(it)
+    }
+) {
+    private var lastWarmUpAtMillis: Long? = null
+
+    private var warmedHostCount = 0
+    private var skippedHostCount = 0
+    private var failedHostCount = 0
+
+    /**
+     * Warm up connections to [urls] in the background. Does nothing if a warm-up started less
+     * than [timeoutMillis] ago.
+     */
+    fun warmUp(urls: List<String> = DEFAULT_URLS) {
+        synchronized(this) {
+            val now = clock()
+            if (lastWarmUpAtMillis?.let { now - it < timeoutMillis } == true) {
+                return
+            }
+            lastWarmUpAtMillis = now
+        }
+
+        // resolve all hosts at once, instead of one after another as each connection is opened
+        urls.forEach { dnsPrefetcher.prefetch(URL(it).host) }
+
+        backgroundExecutor.execute {
+            warmUpBlocking(urls)
+        }
+    }
+
+    @VisibleForTesting
+    internal fun warmUpBlocking(urls: List<String>) {
+        val deadlineMillis = clock() + timeoutMillis
+        for (url in urls) {
+            val remainingMillis = deadlineMillis - clock()
+            if (remainingMillis <= 0) {
+                return
+            }
+
+            if (connectionReuseTracker.hasRecentConnection(URL(url).host)) {
+                onHostSkipped()
+                continue
+            }
+
+            try {
+                executeRequest(WarmUpRequest(url, remainingMillis.toInt()))
+                onHostWarmed()
+            } catch (e: StripeException) {
+                // the first real request to this host will open its own connection
+                onHostFailed()
+            }
+        }
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        return Stats(
+            warmedHosts = warmedHostCount,
+            skippedHosts = skippedHostCount,
+            failedHosts = failedHostCount
+        )
+    }
+
+    @Synchronized
+    private fun onHostWarmed() {
+        warmedHostCount++
+    }
+
+    @Synchronized
+    private fun onHostSkipped() {
+        skippedHostCount++
+    }
+
+    @Synchronized
+    private fun onHostFailed() {
+        failedHostCount++
+    }
+
+    internal data class Stats(
+        val warmedHosts: Int,
+        val skippedHosts: Int,
+        val failedHosts: Int
+    )
+
+    companion object {
+        private val DEFAULT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10)
+
+        /**
+         * The hosts of the API, and of the fingerprint and analytics requests that accompany
+         * payment operations.
+         */
+        private val DEFAULT_URLS = listOf(
+            ApiRequest.API_HOST,
+            FingerprintRequest.HOST,
+            AnalyticsRequest.HOST
+        )
+
+        @JvmField
+        val DEFAULT = ConnectionWarmer()
+    }
+}
@@ -0,0 +1,352 @@
+package com.stripe.android
+
+import androidx.annotation.VisibleForTesting
+import com.stripe.android.model.Customer
+import com.stripe.android.model.PaymentMethod
+import java.util.Calendar
+import java.util.concurrent.TimeUnit
+
+/**
+ * Caches the [Customer] and the customer's [PaymentMethod]s retrieved by [CustomerSession],
+ * keyed by customer id, so that the customers of the most recently used ephemeral keys are
+ * cached. The payment methods of each type are cached as the pages loaded so far, in order.
+ *
+ * A value younger than [ttlMillis] is fresh and is used without calling the API. A value that
+ * is older, but by no more than [maxStaleMillis], is stale: [CustomerSession] returns it
+ * immediately and revalidates it in the background. Older values are discarded.
+ *
+ * Values are invalidated or updated when an operation that changes them succeeds, e.g. an
+ * attached payment method is added to the cached payment methods. Responses to requests that
+ * were started before a value was changed are not cached.
+ */
+internal class CustomerCache @VisibleForTesting @JvmOverloads internal constructor(
+    private val overrideCalendar: Calendar? = null,
+    private val maxEntries: Int = DEFAULT_MAX_ENTRIES
+) {
+    private val entries = object : LinkedHashMap<String, Entry>(maxEntries, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Entry>?): Boolean {
+            return size > maxEntries
+        }
+    }
+
+    /**
+     * The id of the customer of the most recently used ephemeral key
+     */
+    private var currentCustomerId: String? = null
+
+    private var ttlMillis: Long = DEFAULT_TTL_MILLIS
+    private var maxStaleMillis: Long = DEFAULT_MAX_STALE_MILLIS
+
+    private var hitCount = 0
+    private var staleHitCount = 0
+    private var missCount = 0
+    private var revalidationCount = 0
+
+    private val now: Long
+        get() = (overrideCalendar ?: Calendar.getInstance()).timeInMillis
+
+    @Synchronized
+    fun setDurations(ttlMillis: Long, maxStaleMillis: Long) {
+        require(ttlMillis >= 0 && maxStaleMillis >= 0) {
+            "Cache durations must not be negative"
+        }
+        this.ttlMillis = ttlMillis
+        this.maxStaleMillis = maxStaleMillis
+    }
+
+    /**
+     * Called when an ephemeral key for [customerId] is used, which makes it the current customer
+     */
+    @Synchronized
+    fun onCustomerKeyUsed(customerId: String) {
+        currentCustomerId = customerId
+    }
+
+    /**
+     * @return the current customer, or `null` if it isn't cached, or is too old to be used
+     */
+    @Synchronized
+    fun getCustomer(): CachedValue<Customer>? {
+        return get(KIND_CUSTOMER) { it.customer }
+    }
+
+    /**
+     * @param isCompleteRequired `true` if the value is only usable if all pages have been loaded
+     * @return the current customer's payment methods of [type], or `null` if they aren't
+     * cached, or are too old to be used
+     */
+    @Synchronized
+    fun getPaymentMethods(
+        type: String,
+        isCompleteRequired: Boolean
+    ): CachedValue<PaymentMethodsPage>? {
+        return get(getPaymentMethodsKind(type)) { entry ->
+            entry.paymentMethods[type]?.takeUnless { isCompleteRequired && it.value.hasMore }
+        }
+    }
+
+    /**
+     * @return the current customer, whatever its age, without counting a hit or miss
+     */
+    @Synchronized
+    fun peekCustomer(): CachedValue<Customer>? {
+        val customerId = currentCustomerId ?: return null
+        val customer = entries[customerId]?.customer ?: return null
+        return CachedValue(customer.value, customer.cachedAtMillis,
+            now - customer.cachedAtMillis >= ttlMillis, customerId, KIND_CUSTOMER)
+    }
+
+    /**
+     * Called before a stale value is revalidated.
+     *
+     * @return `false` if the value is already being revalidated
+     */
+    @Synchronized
+    fun startRevalidation(cachedValue: CachedValue<*>): Boolean {
+        val entry = entries[cachedValue.customerId] ?: return false
+        if (!entry.revalidatingKinds.add(cachedValue.kind)) {
+            return false
+        }
+        revalidationCount++
+        return true
+    }
+
+    /**
+     * Called when the revalidation of a stale value has completed, successfully or not
+     */
+    @Synchronized
+    fun endRevalidation(cachedValue: CachedValue<*>) {
+        entries[cachedValue.customerId]?.revalidatingKinds?.remove(cachedValue.kind)
+    }
+
+    /**
+     * @return the generation of [customerId]'s values, to pass to [putCustomer] or
+     * [putPaymentMethods] when the response to a request started now is received
+     */
+    @Synchronized
+    fun getGeneration(customerId: String): Int {
+        return getOrCreateEntry(customerId).generation
+    }
+
+    /**
+     * Cache [customer] for [customerId].
+     *
+     * @param generation the generation when the request was started, or `null` if [customer]
+     * was returned by an operation that changed it, which replaces any value being retrieved
+     */
+    @Synchronized
+    fun putCustomer(customerId: String, customer: Customer, generation: Int? = null) {
+        val entry = getOrCreateEntry(customerId)
+        if (generation == null) {
+            entry.generation++
+        } else if (generation != entry.generation) {
+            return
+        }
+        entry.customer = Value(customer, now)
+        entry.revalidatingKinds.remove(KIND_CUSTOMER)
+    }
+
+    /**
+     * Cache [page] of [customerId]'s payment methods of [type].
+     *
+     * @param startingAfter the id of the payment method that [page] starts after, or `null` if
+     * it is the first page. A later page is only cached if it follows the cached pages.
+     */
+    @Synchronized
+    fun putPaymentMethods(
+        customerId: String,
+        type: String,
+        page: PaymentMethodsPage,
+        startingAfter: String?,
+        generation: Int
+    ) {
+        val entry = getOrCreateEntry(customerId)
+        if (generation != entry.generation) {
+            return
+        }
+
+        if (startingAfter == null) {
+            entry.paymentMethods[type] = Value(page, now)
+            entry.revalidatingKinds.remove(getPaymentMethodsKind(type))
+        } else {
+            val cachedPages = entry.paymentMethods[type] ?: return
+            if (cachedPages.value.paymentMethods.lastOrNull()?.id == startingAfter) {
+                entry.paymentMethods[type] = Value(
+                    PaymentMethodsPage(
+                        cachedPages.value.paymentMethods + page.paymentMethods,
+                        page.hasMore
+                    ),
+                    cachedPages.cachedAtMillis
+                )
+            }
+        }
+    }
+
+    /**
+     * Called when an operation that changed the customer, such as adding a source, succeeded
+     */
+    @Synchronized
+    fun invalidateCustomer(customerId: String) {
+        entries[customerId]?.let {
+            it.generation++
+            it.customer = null
+        }
+    }
+
+    /**
+     * Called when [paymentMethod] was attached to [customerId]. It is added to the start of the
+     * cached payment methods of its type, since the API lists the newest first.
+     */
+    @Synchronized
+    fun onPaymentMethodAttached(customerId: String, paymentMethod: PaymentMethod) {
+        val entry = entries[customerId] ?: return
+        entry.generation++
+
+        val type = paymentMethod.type
+        val cachedPages = type?.let { entry.paymentMethods[it] }
+        if (type == null || cachedPages == null) {
+            return
+        }
+        entry.paymentMethods[type] = Value(
+            cachedPages.value.copy(
+                paymentMethods = listOf(paymentMethod) +
+                    cachedPages.value.paymentMethods.filterNot { it.id == paymentMethod.id }
+            ),
+            cachedPages.cachedAtMillis
+        )
+    }
+
+    /**
+     * Called when the payment method with [paymentMethodId] was detached from [customerId]
+     */
+    @Synchronized
+    fun onPaymentMethodDetached(customerId: String, paymentMethodId: String) {
+        val entry = entries[customerId] ?: return
+        entry.generation++
+
+        entry.paymentMethods.entries.forEach { typePages ->
+            val cachedPages = typePages.value
+            typePages.setValue(Value(
+                cachedPages.value.copy(
+                    paymentMethods = cachedPages.value.paymentMethods.filterNot {
+                        it.id == paymentMethodId
+                    }
+                ),
+                cachedPages.cachedAtMillis
+            ))
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        currentCustomerId = null
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        return Stats(
+            hits = hitCount,
+            staleHits = staleHitCount,
+            misses = missCount,
+            revalidations = revalidationCount
+        )
+    }
+
+    private fun <T> get(kind: String, valueSelector: (Entry) -> Value<T>?): CachedValue<T>? {
+        val customerId = currentCustomerId
+        val entry = customerId?.let { entries[it] }
+        val value = entry?.let(valueSelector)
+        if (customerId == null || value == null) {
+            missCount++
+            return null
+        }
+
+        val ageMillis = now - value.cachedAtMillis
+        return when {
+            ageMillis < ttlMillis -> {
+                hitCount++
+                CachedValue(value.value, value.cachedAtMillis, false, customerId, kind)
+            }
+            ageMillis < ttlMillis + maxStaleMillis -> {
+                staleHitCount++
+                CachedValue(value.value, value.cachedAtMillis, true, customerId, kind)
+            }
+            else -> {
+                missCount++
+                null
+            }
+        }
+    }
+
+    private fun getOrCreateEntry(customerId: String): Entry {
+        return entries.getOrPut(customerId) { Entry() }
+    }
+
+    private fun getPaymentMethodsKind(type: String): String {
+        return "$KIND_PAYMENT_METHODS:$type"
+    }
+
+    internal data class Stats(
+        /**
+         * The number of lookups that returned a fresh value
+         */
+        val hits: Int,
+
+        /**
+         * The number of lookups that returned a stale value
+         */
+        val staleHits: Int,
+
+        /**
+         * The number of lookups that found no usable value
+         */
+        val misses: Int,
+
+        /**
+         * The number of stale values that were revalidated
+         */
+        val revalidations: Int
+    )
+
+    /**
+     * A value returned by the cache
+     */
+    internal class CachedValue<T>(
+        val value: T,
+        val cachedAtMillis: Long,
+
+        /**
+         * `true` if the value is older than the TTL and should be revalidated
+         */
+        val isStale: Boolean,
+
+        internal val customerId: String,
+        internal val kind: String
+    )
+
+    private class Value<T>(
+        val value: T,
+        val cachedAtMillis: Long
+    )
+
+    private class Entry {
+        var customer: Value<Customer>? = null
+        val paymentMethods = mutableMapOf<String, Value<PaymentMethodsPage>>()
+        val revalidatingKinds = mutableSetOf<String>()
+
+        /**
+         * Incremented when the entry's values are invalidated or replaced
+         */
+        var generation = 0
+    }
+
+    companion object {
+        private const val DEFAULT_MAX_ENTRIES = 4
+        private val DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1)
+        private val DEFAULT_MAX_STALE_MILLIS = TimeUnit.MINUTES.toMillis(30)
+
+        private const val KIND_CUSTOMER = "customer"
+        private const val KIND_PAYMENT_METHODS = "payment_methods"
+    }
+}
@@ -0,0 +1,401 @@
+package com.stripe.android
+
+import android.content.Context
+import android.content.SharedPreferences
+import androidx.annotation.VisibleForTesting
+import com.stripe.android.model.ShippingInformation
+import com.stripe.android.model.StripeJsonUtils
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import org.json.JSONArray
+import org.json.JSONException
+import org.json.JSONObject
+
+/**
+ * A persistent queue of [CustomerSession] operations that change the customer, such as attaching
+ * a payment method, and that failed because Stripe couldn't be reached.
+ *
+ * Queued operations keep their operation ids, so that when one is replayed in the same process,
+ * the listener that was passed to the original call receives the result. They are replayed one
+ * at a time, in order, by [CustomerSession].
+ *
+ * Repeats of an operation that would overwrite each other are collapsed: a queued default source
+ * or shipping information change is replaced by a later one, and a queued attach or detach of a
+ * payment method is replaced by a later repeat of the same action on the same payment method,
+ * unless the opposite action on it was queued in between. An attach and a detach of the same
+ * payment method are always replayed in order. The listeners of replaced operations are not
+ * called.
+ *
+ * Operations are dropped once they are older than [MAX_MUTATION_AGE_MILLIS], or when an
+ * ephemeral key for a different customer is used.
+ *
+ * The queue is read from and written to [store] on [executor], so that callers on the main thread
+ * don't parse or serialize it. Operations queued in the meantime are kept, behind the stored
+ * ones, and nothing is replayed until the stored operations have been loaded. [onLoaded] is
+ * called on [executor] once they have been.
+ */
+internal class CustomerMutationQueue @JvmOverloads @VisibleForTesting internal constructor(
+    private val store: Store,
+    private val onLoaded: Runnable? = null,
+    private val executor: Executor = DEFAULT_EXECUTOR,
+    private val clock: () -> Long = { System.currentTimeMillis() }
+) {
+    private val mutations = mutableListOf<Mutation>()
+    private var replayingOperationId: String? = null
+
+    private var isLoaded = false
+    /**
+     * `true` if the queue was cleared before the stored operations were loaded
+     */
+    private var isClearedBeforeLoad = false
+    /**
+     * The customer of the last ephemeral key used before the stored operations were loaded
+     */
+    private var customerIdBeforeLoad: String? = null
+
+    private var collapsedCount = 0
+    private var droppedCount = 0
+
+    /**
+     * `true` if failed operations should be queued and replayed
+     */
+    @Volatile
+    var isEnabled: Boolean = false
+
+    init {
+        executor.execute {
+            onStoredMutationsLoaded(store.load())
+        }
+    }
+
+    val pendingCount: Int
+        @Synchronized get() = mutations.size
+
+    /**
+     * @return a [Mutation] for the operation, or `null` if the operation can't be queued
+     */
+    fun createMutation(
+        operationId: String,
+        customerId: String,
+        action: String?,
+        arguments: Map<String, Any>?
+    ): Mutation? {
+        if (!isEnabled || action == null || action !in QUEUEABLE_ACTIONS || arguments == null) {
+            return null
+        }
+        return Mutation(operationId, customerId, action, arguments, clock())
+    }
+
+    /**
+     * Queue [mutation], which failed because Stripe couldn't be reached. If it was being
+     * replayed, it stays in its place in the queue.
+     *
+     * @return the operation ids of the queued mutations that [mutation] replaced
+     */
+    @Synchronized
+    fun enqueue(mutation: Mutation): List<String> {
+        val existingMutation = mutations.firstOrNull { it.operationId == mutation.operationId }
+        if (existingMutation != null) {
+            existingMutation.attempts++
+            if (replayingOperationId == mutation.operationId) {
+                replayingOperationId = null
+            }
+            save()
+            return emptyList()
+        }
+
+        // only the repeats queued after the last different change of the same object
+        val replacedMutations = mutations
+            .filter { it.customerId == mutation.customerId && it.target == mutation.target }
+            .takeLastWhile { it.action == mutation.action }
+            .filter { it.operationId != replayingOperationId }
+        mutations.removeAll(replacedMutations)
+        collapsedCount += replacedMutations.size
+        mutations.add(mutation)
+        save()
+        return replacedMutations.map { it.operationId }
+    }
+
+    /**
+     * Called when the operation with [operationId] has completed, successfully or with an error
+     * that retrying won't fix.
+     *
+     * @return `true` if the operation was queued
+     */
+    @Synchronized
+    fun remove(operationId: String): Boolean {
+        if (replayingOperationId == operationId) {
+            replayingOperationId = null
+        }
+        val isRemoved = mutations.removeAll { it.operationId == operationId }
+        if (isRemoved) {
+            save()
+        }
+        return isRemoved
+    }
+
+    /**
+     * @return the mutation at the head of the queue, which the caller should replay, or `null`
+     * if the queue is empty or a mutation is already being replayed
+     */
+    @Synchronized
+    fun nextForReplay(): Mutation? {
+        if (!isLoaded || replayingOperationId != null) {
+            return null
+        }
+
+        val now = clock()
+        val expiredMutations = mutations.filter {
+            now - it.createdAtMillis >= MAX_MUTATION_AGE_MILLIS
+        }
+        if (expiredMutations.isNotEmpty()) {
+            mutations.removeAll(expiredMutations)
+            droppedCount += expiredMutations.size
+            save()
+        }
+
+        return mutations.firstOrNull()?.also {
+            replayingOperationId = it.operationId
+        }
+    }
+
+    /**
+     * Called when the replay of the operation with [operationId] couldn't be started, e.g.
+     * because an ephemeral key couldn't be retrieved. The operation stays queued.
+     */
+    @Synchronized
+    fun cancelReplay(operationId: String): Boolean {
+        if (replayingOperationId != operationId) {
+            return false
+        }
+        replayingOperationId = null
+        return true
+    }
+
+    /**
+     * Called when an ephemeral key for [customerId] is used. Mutations of other customers are
+     * dropped, since they can no longer be replayed.
+     */
+    @Synchronized
+    fun onCustomerKeyUsed(customerId: String) {
+        if (!isLoaded) {
+            customerIdBeforeLoad = customerId
+        }
+        val otherCustomerMutations = mutations.filter { it.customerId != customerId }
+        if (otherCustomerMutations.isNotEmpty()) {
+            mutations.removeAll(otherCustomerMutations)
+            droppedCount += otherCustomerMutations.size
+            save()
+        }
+    }
+
+    /**
+     * @return how long to wait before replaying the mutation at the head of the queue again
+     */
+    @Synchronized
+    fun getRetryDelayMillis(): Long {
+        val attempts = mutations.firstOrNull()?.attempts ?: 0
+        return minOf(
+            INITIAL_RETRY_DELAY_MILLIS shl minOf(attempts, MAX_BACKOFF_SHIFT),
+            MAX_RETRY_DELAY_MILLIS
+        )
+    }
+
+    @Synchronized
+    fun clear() {
+        mutations.clear()
+        replayingOperationId = null
+        if (!isLoaded) {
+            isClearedBeforeLoad = true
+        }
+        save()
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        return Stats(
+            pending = mutations.size,
+            collapsed = collapsedCount,
+            dropped = droppedCount
+        )
+    }
+
+    private fun onStoredMutationsLoaded(storedMutations: List<Mutation>) {
+        synchronized(this) {
+            val customerId = customerIdBeforeLoad
+            val keptMutations = if (isClearedBeforeLoad) {
+                emptyList()
+            } else {
+                storedMutations.filter { storedMutation ->
+                    mutations.none { it.operationId == storedMutation.operationId }
+                }
+            }
+            val (loadedMutations, otherCustomerMutations) = keptMutations.partition {
+                customerId == null || it.customerId == customerId
+            }
+            droppedCount += otherCustomerMutations.size
+            // stored operations were queued before any operation queued by this process
+            mutations.addAll(0, loadedMutations)
+            isLoaded = true
+            save()
+        }
+        onLoaded?.run()
+    }
+
+    /**
+     * Write a snapshot of the queue on [executor]. Writes are applied in the order they are
+     * made, since [executor] runs one task at a time.
+     */
+    private fun save() {
+        val snapshot = mutations.toList()
+        executor.execute {
+            store.save(snapshot)
+        }
+    }
+
+    internal data class Stats(
+        val pending: Int,
+        val collapsed: Int,
+        val dropped: Int
+    )
+
+    internal class Mutation(
+        val operationId: String,
+        val customerId: String,
+        val action: String,
+        val arguments: Map<String, Any>,
+        val createdAtMillis: Long,
+        var attempts: Int = 0
+    ) {
+        /**
+         * Identifies what the mutation changes. Trailing queued mutations with the same target
+         * and action are collapsed into the latest one.
+         */
+        internal val target: String
+            get() {
+                return when (action) {
+                    CustomerSession.ACTION_ATTACH_PAYMENT_METHOD,
+                    CustomerSession.ACTION_DETACH_PAYMENT_METHOD ->
+                        "payment_method:${arguments[CustomerSession.KEY_PAYMENT_METHOD]}"
+                    else -> action
+                }
+            }
+
+        fun toJson(): JSONObject {
+            val argumentsJson = JSONObject()
+            arguments.forEach { (key, value) ->
+                argumentsJson.put(key,
+                    if (value is ShippingInformation) {
+                        JSONObject(value.toParamMap())
+                    } else {
+                        value
+                    }
+                )
+            }
+
+            return JSONObject()
+                .put(FIELD_OPERATION_ID, operationId)
+                .put(FIELD_CUSTOMER_ID, customerId)
+                .put(FIELD_ACTION, action)
+                .put(FIELD_ARGUMENTS, argumentsJson)
+                .put(FIELD_CREATED, createdAtMillis)
+                .put(FIELD_ATTEMPTS, attempts)
+        }
+
+        companion object {
+            private const val FIELD_OPERATION_ID = "operation_id"
+            private const val FIELD_CUSTOMER_ID = "customer_id"
+            private const val FIELD_ACTION = "action"
+            private const val FIELD_ARGUMENTS = "arguments"
+            private const val FIELD_CREATED = "created"
+            private const val FIELD_ATTEMPTS = "attempts"
+
+            fun fromJson(json: JSONObject): Mutation? {
+                val operationId = StripeJsonUtils.optString(json, FIELD_OPERATION_ID)
+                val customerId = StripeJsonUtils.optString(json, FIELD_CUSTOMER_ID)
+                val action = StripeJsonUtils.optString(json, FIELD_ACTION)
+                val argumentsJson = json.optJSONObject(FIELD_ARGUMENTS)
+                if (operationId == null || customerId == null || action == null ||
+                    argumentsJson == null) {
+                    return null
+                }
+
+                val arguments = argumentsJson.keys().asSequence()
+                    .mapNotNull { key ->
+                        val value = if (key == CustomerSession.KEY_SHIPPING_INFO) {
+                            ShippingInformation.fromJson(argumentsJson.optJSONObject(key))
+                        } else {
+                            StripeJsonUtils.optString(argumentsJson, key)
+                        }
+                        value?.let { key to it }
+                    }
+                    .toMap()
+
+                return Mutation(
+                    operationId = operationId,
+                    customerId = customerId,
+                    action = action,
+                    arguments = arguments,
+                    createdAtMillis = json.optLong(FIELD_CREATED),
+                    attempts = json.optInt(FIELD_ATTEMPTS)
+                )
+            }
+        }
+    }
+
+    /**
+     * Persists the queue so that operations are replayed after the process is restarted.
+     */
+    internal class Store(context: Context) {
+        private val prefs: SharedPreferences =
+            context.getSharedPreferences(PREF_FILE, Context.MODE_PRIVATE)
+
+        fun load(): List<Mutation> {
+            val mutations = prefs.getString(KEY_MUTATIONS, null) ?: return emptyList()
+            return try {
+                val mutationsJson = JSONArray(mutations)
+                (0 until mutationsJson.length())
+                    .mapNotNull { mutationsJson.optJSONObject(it) }
+                    .mapNotNull { Mutation.fromJson(it) }
+            } catch (e: JSONException) {
+                emptyList()
+            }
+        }
+
+        fun save(mutations: List<Mutation>) {
+            prefs.edit()
+                .putString(KEY_MUTATIONS, JSONArray(mutations.map { it.toJson() }).toString())
+                .apply()
+        }
+
+        companion object {
+            private const val PREF_FILE = "StripeCustomerMutationQueue"
+            private const val KEY_MUTATIONS = "mutations"
+        }
+    }
+
+    companion object {
+        private val QUEUEABLE_ACTIONS = setOf(
+            CustomerSession.ACTION_ATTACH_PAYMENT_METHOD,
+            CustomerSession.ACTION_DETACH_PAYMENT_METHOD,
+            CustomerSession.ACTION_SET_DEFAULT_SOURCE,
+            CustomerSession.ACTION_SET_CUSTOMER_SHIPPING_INFO
+        )
+
+        private val INITIAL_RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30)
+        private val MAX_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(10)
+        private const val MAX_BACKOFF_SHIFT = 5
+        private val MAX_MUTATION_AGE_MILLIS = TimeUnit.DAYS.toMillis(1)
+
+        /**
+         * The thread shared by all queues, so that writes to the store are applied in order
+         */
+        @JvmField
+        val DEFAULT_EXECUTOR: Executor = Executors.newSingleThreadExecutor { runnable ->
+            Thread(runnable, "StripeCustomerMutationQueue").apply {
+                isDaemon = true
+            }
+        }
+    }
+}
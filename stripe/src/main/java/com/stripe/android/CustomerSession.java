@@ -5,12 +5,14 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Handler;
 
+import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.VisibleForTesting;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
+import com.stripe.android.exception.APIConnectionException;
 import com.stripe.android.exception.StripeException;
 import com.stripe.android.model.Customer;
 import com.stripe.android.model.PaymentMethod;
@@ -23,6 +25,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -45,10 +48,13 @@ public class CustomerSession {
     static final String ACTION_ATTACH_PAYMENT_METHOD = "attach_payment_method";
     static final String ACTION_DETACH_PAYMENT_METHOD = "detach_payment_method";
     static final String ACTION_GET_PAYMENT_METHODS = "get_payment_methods";
+    static final String ACTION_GET_PAYMENT_METHODS_PAGE = "get_payment_methods_page";
     static final String ACTION_SET_DEFAULT_SOURCE = "default_source";
     static final String ACTION_SET_CUSTOMER_SHIPPING_INFO = "set_shipping_info";
     static final String KEY_PAYMENT_METHOD = "payment_method";
     static final String KEY_PAYMENT_METHOD_TYPE = "payment_method_type";
+    static final String KEY_LIMIT = "limit";
+    static final String KEY_STARTING_AFTER = "starting_after";
     static final String KEY_SOURCE = "source";
     static final String KEY_SOURCE_TYPE = "source_type";
     static final String KEY_SHIPPING_INFO = "shipping_info";
@@ -61,19 +67,27 @@ public class CustomerSession {
     private static final TimeUnit KEEP_ALIVE_TIME_UNIT = TimeUnit.SECONDS;
 
     private static final long KEY_REFRESH_BUFFER_IN_SECONDS = 30L;
-    private static final long CUSTOMER_CACHE_DURATION_MILLISECONDS = TimeUnit.MINUTES.toMillis(1);
 
     private static CustomerSession mInstance;
 
-    @Nullable private Customer mCustomer;
-    private long mCustomerCacheTime;
+    @NonNull private final CustomerCache mCustomerCache;
     @NonNull private final LocalBroadcastManager mLocalBroadcastManager;
     @NonNull private final OperationIdFactory mOperationIdFactory;
     @NonNull private final EphemeralKeyManager<CustomerEphemeralKey> mEphemeralKeyManager;
-    @Nullable private final Calendar mProxyNowCalendar;
+    @Nullable private final EphemeralKeyStore<CustomerEphemeralKey> mEphemeralKeyStore;
     @NonNull private final ThreadPoolExecutor mThreadPoolExecutor;
     @NonNull private final CustomerSessionProductUsage mProductUsage;
     @NonNull private final HashMap<String, RetrievalListener> listeners = new HashMap<>();
+    @NonNull private final HashMap<String, Deadline> mOperationDeadlines = new HashMap<>();
+    @NonNull private final CustomerMutationQueue mMutationQueue;
+    @NonNull private final Handler mHandler;
+    @NonNull private final Runnable mReplayRunnable = new Runnable() {
+        @Override
+        public void run() {
+            replayPendingMutation();
+        }
+    };
+    @Nullable private MutationQueueListener mMutationQueueListener;
 
     /**
      * Create a CustomerSession with the provided {@link EphemeralKeyProvider}.
@@ -95,9 +109,36 @@ public class CustomerSession {
                                            @NonNull EphemeralKeyProvider ephemeralKeyProvider,
                                            @Nullable String stripeAccountId,
                                            boolean shouldPrefetchEphemeralKey) {
+        initCustomerSession(context, ephemeralKeyProvider, stripeAccountId,
+                shouldPrefetchEphemeralKey, null);
+    }
+
+    /**
+     * Create a CustomerSession with the provided {@link EphemeralKeyProvider}, that stores the
+     * ephemeral keys of the customer with {@param customerId} on the device, so that they can
+     * be used again after the app is restarted instead of calling
+     * {@param ephemeralKeyProvider}.
+     *
+     * <p>The keys are encrypted with a key held by the Android Keystore, and are only stored on
+     * devices running API 23 or higher. A stored key is used until it expires, or until
+     * {@link #endCustomerSession()} is called, which should be done when the customer signs
+     * out.</p>
+     *
+     * <p>See {@link #initCustomerSession(Context, EphemeralKeyProvider, String, boolean)} for the
+     * other parameters.</p>
+     *
+     * @param customerId the id of the customer that {@param ephemeralKeyProvider} creates keys
+     *                   for. Keys of other customers are not stored. If {@code null}, no keys
+     *                   are stored.
+     */
+    public static void initCustomerSession(@NonNull Context context,
+                                           @NonNull EphemeralKeyProvider ephemeralKeyProvider,
+                                           @Nullable String stripeAccountId,
+                                           boolean shouldPrefetchEphemeralKey,
+                                           @Nullable String customerId) {
         setInstance(new CustomerSession(context, ephemeralKeyProvider, Stripe.getAppInfo(),
                 PaymentConfiguration.getInstance(context).getPublishableKey(),
-                stripeAccountId, shouldPrefetchEphemeralKey));
+                stripeAccountId, shouldPrefetchEphemeralKey, customerId));
     }
 
     /**
@@ -151,15 +192,27 @@ public class CustomerSession {
      * Calls to {@link CustomerSession#getInstance()} will throw an {@link IllegalStateException}
      * after this call, until the user calls
      * {@link CustomerSession#initCustomerSession(Context, EphemeralKeyProvider)} again.
+     *
+     * <p>Any ephemeral key stored on the device is removed.</p>
      */
     public static void endCustomerSession() {
+        if (mInstance != null) {
+            // pending operations and stored keys belong to the customer whose session is ending
+            mInstance.mMutationQueue.clear();
+            if (mInstance.mEphemeralKeyStore != null) {
+                mInstance.mEphemeralKeyStore.clearAsync();
+            }
+        }
         clearInstance();
+        BoundedRequestExecutor.DEFAULT.shutdown();
     }
 
     @VisibleForTesting
     static void clearInstance() {
         if (mInstance != null) {
             mInstance.listeners.clear();
+            mInstance.mHandler.removeCallbacks(mInstance.mReplayRunnable);
+            mInstance.mEphemeralKeyManager.cancel();
         }
         cancelCallbacks();
         setInstance(null);
@@ -183,10 +236,14 @@ public class CustomerSession {
 
     private CustomerSession(@NonNull Context context, @NonNull EphemeralKeyProvider keyProvider,
                             @Nullable AppInfo appInfo, @NonNull String publishableKey,
-                            @Nullable String stripeAccountId, boolean shouldPrefetchEphemeralKey) {
+                            @Nullable String stripeAccountId, boolean shouldPrefetchEphemeralKey,
+                            @Nullable String customerId) {
         this(context, keyProvider, null, createThreadPoolExecutor(),
                 new StripeApiRepository(context, appInfo), publishableKey, stripeAccountId,
-                shouldPrefetchEphemeralKey);
+                shouldPrefetchEphemeralKey,
+                new EphemeralKeyStore<>(context, EphemeralKeyStore.KEY_TYPE_CUSTOMER, customerId,
+                        new CustomerEphemeralKey.Factory()),
+                CustomerMutationQueue.DEFAULT_EXECUTOR);
     }
 
     @VisibleForTesting
@@ -199,22 +256,62 @@ public class CustomerSession {
             @NonNull String publishableKey,
             @Nullable String stripeAccountId,
             boolean shouldPrefetchEphemeralKey) {
+        this(context, keyProvider, proxyNowCalendar, threadPoolExecutor, stripeRepository,
+                publishableKey, stripeAccountId, shouldPrefetchEphemeralKey, null,
+                new Executor() {
+                    @Override
+                    public void execute(@NonNull Runnable runnable) {
+                        runnable.run();
+                    }
+                });
+    }
+
+    @VisibleForTesting
+    CustomerSession(
+            @NonNull Context context,
+            @NonNull EphemeralKeyProvider keyProvider,
+            @Nullable Calendar proxyNowCalendar,
+            @NonNull ThreadPoolExecutor threadPoolExecutor,
+            @NonNull StripeRepository stripeRepository,
+            @NonNull String publishableKey,
+            @Nullable String stripeAccountId,
+            boolean shouldPrefetchEphemeralKey,
+            @Nullable EphemeralKeyStore<CustomerEphemeralKey> ephemeralKeyStore,
+            @NonNull Executor mutationQueueExecutor) {
+        mEphemeralKeyStore = ephemeralKeyStore;
         mOperationIdFactory = new OperationIdFactory();
         mLocalBroadcastManager = LocalBroadcastManager.getInstance(context);
         mThreadPoolExecutor = threadPoolExecutor;
-        mProxyNowCalendar = proxyNowCalendar;
         mProductUsage = new CustomerSessionProductUsage();
+        mHandler = createHandler();
+        mMutationQueue = new CustomerMutationQueue(new CustomerMutationQueue.Store(context),
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        mHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                onMutationQueueLoaded();
+                            }
+                        });
+                    }
+                },
+                mutationQueueExecutor);
+        mCustomerCache = new CustomerCache(proxyNowCalendar);
         final CustomerSessionEphemeralKeyManagerListener keyManagerListener =
                 new CustomerSessionEphemeralKeyManagerListener(
                         new CustomerSessionRunnableFactory(
                                 stripeRepository,
-                                createHandler(),
+                                mHandler,
                                 mLocalBroadcastManager,
                                 publishableKey,
                                 stripeAccountId,
-                                mProductUsage
+                                mProductUsage,
+                                mMutationQueue,
+                                mCustomerCache
                         ),
-                        threadPoolExecutor, listeners, mProductUsage);
+                        threadPoolExecutor, listeners, mProductUsage, mMutationQueue,
+                        mOperationDeadlines);
         mEphemeralKeyManager = new EphemeralKeyManager<>(
                 keyProvider,
                 keyManagerListener,
@@ -222,7 +319,8 @@ public class CustomerSession {
                 proxyNowCalendar,
                 mOperationIdFactory,
                 new CustomerEphemeralKey.Factory(),
-                shouldPrefetchEphemeralKey
+                shouldPrefetchEphemeralKey,
+                ephemeralKeyStore
         );
     }
 
@@ -232,8 +330,7 @@ public class CustomerSession {
             @Override
             public void onCustomerRetrieved(@Nullable Customer customer,
                                             @NonNull String operationId) {
-                mCustomer = customer;
-                mCustomerCacheTime = getCalendarInstance().getTimeInMillis();
+                onOperationCompleted(operationId, true);
 
                 final CustomerRetrievalListener listener =
                         getListener(operationId);
@@ -245,6 +342,7 @@ public class CustomerSession {
             @Override
             public void onSourceRetrieved(@Nullable Source source,
                                           @NonNull String operationId) {
+                onOperationCompleted(operationId, true);
                 final SourceRetrievalListener listener = getListener(operationId);
                 if (listener != null && source != null) {
                     listener.onSourceRetrieved(source);
@@ -254,6 +352,7 @@ public class CustomerSession {
             @Override
             public void onPaymentMethodRetrieved(@Nullable PaymentMethod paymentMethod,
                                                  @NonNull String operationId) {
+                onOperationCompleted(operationId, true);
                 final PaymentMethodRetrievalListener listener =
                         getListener(operationId);
                 if (listener != null && paymentMethod != null) {
@@ -264,6 +363,7 @@ public class CustomerSession {
             @Override
             public void onPaymentMethodsRetrieved(@NonNull List<PaymentMethod> paymentMethods,
                                                   @NonNull String operationId) {
+                onOperationCompleted(operationId, true);
                 final PaymentMethodsRetrievalListener listener =
                         getListener(operationId);
                 if (listener != null) {
@@ -272,8 +372,21 @@ public class CustomerSession {
             }
 
             @Override
-            public void onCustomerShippingInfoSaved(@Nullable Customer customer) {
-                mCustomer = customer;
+            public void onPaymentMethodsPageRetrieved(@NonNull PaymentMethodsPage page,
+                                                      @NonNull String operationId) {
+                onOperationCompleted(operationId, true);
+                final PaymentMethodsPageRetrievalListener listener =
+                        getListener(operationId);
+                if (listener != null) {
+                    listener.onPaymentMethodsPageRetrieved(page.getPaymentMethods(),
+                            page.getHasMore());
+                }
+            }
+
+            @Override
+            public void onCustomerShippingInfoSaved(@Nullable Customer customer,
+                                                    @NonNull String operationId) {
+                onOperationCompleted(operationId, true);
                 mLocalBroadcastManager
                         .sendBroadcast(new Intent(EVENT_SHIPPING_INFO_SAVED));
             }
@@ -281,8 +394,19 @@ public class CustomerSession {
             @Override
             public void onError(@NonNull StripeException exception,
                                 @NonNull String operationId) {
+                onOperationCompleted(operationId,
+                        !(exception instanceof APIConnectionException));
                 handleRetrievalError(operationId, exception);
             }
+
+            @Override
+            public void onMutationQueued(@NonNull CustomerMutationQueue.Mutation mutation) {
+                for (String replacedOperationId : mMutationQueue.enqueue(mutation)) {
+                    listeners.remove(replacedOperationId);
+                }
+                onMutationQueueChanged();
+                scheduleReplay();
+            }
         });
     }
 
@@ -292,47 +416,49 @@ public class CustomerSession {
     }
 
     /**
-     * Retrieve the current {@link Customer}. If the cached value at {@link #mCustomer} is not
-     * stale, this returns immediately with the cache. If not, it fetches a new value and returns
-     * that to the listener.
+     * Retrieve the current {@link Customer}. If the cached customer is fresh, this returns
+     * immediately with the cache. If it is stale, this also returns immediately with the cache,
+     * and updates the cache in the background. If there is no usable cached customer, it fetches
+     * a new value and returns that to the listener.
+     *
+     * <p>See {@link #setCacheDuration(long, long)}.</p>
      *
      * @param listener a {@link CustomerRetrievalListener} to invoke with the result of getting the
      *                 customer, either from the cache or from the server
      */
     public void retrieveCurrentCustomer(@NonNull CustomerRetrievalListener listener) {
-        final Customer cachedCustomer = getCachedCustomer();
+        final CustomerCache.CachedValue<Customer> cachedCustomer = mCustomerCache.getCustomer();
         if (cachedCustomer != null) {
-            listener.onCustomerRetrieved(cachedCustomer);
+            listener.onCustomerRetrieved(cachedCustomer.getValue());
+            if (cachedCustomer.isStale()) {
+                revalidate(cachedCustomer, null, null);
+            }
         } else {
-            mCustomer = null;
             startOperation(null, null, listener);
         }
     }
 
     /**
-     * Force an update of the current customer, regardless of how much time has passed.
+     * Force an update of the current customer, regardless of how much time has passed. The
+     * cached customer remains available until the update has completed.
      *
      * @param listener a {@link CustomerRetrievalListener} to invoke with the result of getting
      *                 the customer from the server
      */
     public void updateCurrentCustomer(@NonNull CustomerRetrievalListener listener) {
-        mCustomer = null;
         startOperation(null, null, listener);
     }
 
     /**
-     * Gets a cached customer, or {@code null} if the current customer has expired.
+     * Gets the cached customer, or {@code null} if there is none or it is too old to be used.
+     * The returned customer may be stale.
      *
-     * @return the current value of {@link #mCustomer}, or {@code null} if the customer object is
-     *         expired.
+     * @return the cached current customer, or {@code null}
      */
     @Nullable
     public Customer getCachedCustomer() {
-        if (canUseCachedCustomer()) {
-            return mCustomer;
-        } else {
-            return null;
-        }
+        final CustomerCache.CachedValue<Customer> cachedCustomer = mCustomerCache.getCustomer();
+        return cachedCustomer != null ? cachedCustomer.getValue() : null;
     }
 
     /**
@@ -410,7 +536,56 @@ public class CustomerSession {
                                   @NonNull PaymentMethodsRetrievalListener listener) {
         final Map<String, Object> arguments = new HashMap<>();
         arguments.put(KEY_PAYMENT_METHOD_TYPE, paymentMethodType.code);
-        startOperation(ACTION_GET_PAYMENT_METHODS, arguments, listener);
+
+        final CustomerCache.CachedValue<PaymentMethodsPage> cachedPaymentMethods =
+                mCustomerCache.getPaymentMethods(paymentMethodType.code, true);
+        if (cachedPaymentMethods != null) {
+            listener.onPaymentMethodsRetrieved(cachedPaymentMethods.getValue().getPaymentMethods());
+            if (cachedPaymentMethods.isStale()) {
+                revalidate(cachedPaymentMethods, ACTION_GET_PAYMENT_METHODS, arguments);
+            }
+        } else {
+            startOperation(ACTION_GET_PAYMENT_METHODS, arguments, listener);
+        }
+    }
+
+    /**
+     * Retrieves a page of the customer's PaymentMethod objects, filtered by a
+     * {@link PaymentMethod.Type}, newest first. Load the following page by passing the ID of
+     * the last PaymentMethod received as {@code startingAfter}.
+     *
+     * <p>When the first page is requested and pages of this type are cached, all of the cached
+     * pages are returned together, and updated in the background if they are stale.</p>
+     *
+     * @param paymentMethodType the {@link PaymentMethod.Type} to filter by
+     * @param limit             the maximum number of PaymentMethod objects to retrieve
+     * @param startingAfter     the ID of the PaymentMethod to start after, or {@code null} to
+     *                          retrieve the first page
+     * @param listener          a {@link PaymentMethodsPageRetrievalListener} called when the API
+     *                          call completes with the page
+     */
+    public void getPaymentMethods(@NonNull PaymentMethod.Type paymentMethodType,
+                                  @IntRange(from = 1, to = 100) int limit,
+                                  @Nullable String startingAfter,
+                                  @NonNull PaymentMethodsPageRetrievalListener listener) {
+        final Map<String, Object> arguments = new HashMap<>();
+        arguments.put(KEY_PAYMENT_METHOD_TYPE, paymentMethodType.code);
+        arguments.put(KEY_LIMIT, limit);
+        arguments.put(KEY_STARTING_AFTER, startingAfter);
+
+        final CustomerCache.CachedValue<PaymentMethodsPage> cachedPaymentMethods =
+                startingAfter == null ?
+                        mCustomerCache.getPaymentMethods(paymentMethodType.code, false) : null;
+        if (cachedPaymentMethods != null) {
+            final PaymentMethodsPage cachedPages = cachedPaymentMethods.getValue();
+            listener.onPaymentMethodsPageRetrieved(cachedPages.getPaymentMethods(),
+                    cachedPages.getHasMore());
+            if (cachedPaymentMethods.isStale()) {
+                revalidate(cachedPaymentMethods, ACTION_GET_PAYMENT_METHODS_PAGE, arguments);
+            }
+        } else {
+            startOperation(ACTION_GET_PAYMENT_METHODS_PAGE, arguments, listener);
+        }
     }
 
     /**
@@ -442,12 +617,158 @@ public class CustomerSession {
         startOperation(ACTION_SET_DEFAULT_SOURCE, arguments, listener);
     }
 
+    /**
+     * Set how long the customer and the customer's payment methods are cached. Cached values
+     * younger than {@code ttlMillis} are returned without calling the API. Values that are older
+     * by up to {@code maxStaleMillis} are returned immediately and updated in the background, so
+     * that e.g. {@link com.stripe.android.view.PaymentMethodsActivity} doesn't wait for the API
+     * when it is opened again. Defaults to a TTL of one minute and 30 minutes of staleness.
+     *
+     * <p>Cached values are invalidated when an operation of this session that changes them
+     * succeeds, such as {@link #attachPaymentMethod(String, PaymentMethodRetrievalListener)}.</p>
+     */
+    public void setCacheDuration(@IntRange(from = 0) long ttlMillis,
+                                 @IntRange(from = 0) long maxStaleMillis) {
+        mCustomerCache.setDurations(ttlMillis, maxStaleMillis);
+    }
+
+    /**
+     * Enable or disable queueing of operations that change the customer when Stripe can't be
+     * reached. Disabled by default.
+     *
+     * <p>When enabled, {@link #attachPaymentMethod(String, PaymentMethodRetrievalListener)},
+     * {@link #detachPaymentMethod(String, PaymentMethodRetrievalListener)},
+     * {@link #setCustomerShippingInformation(ShippingInformation)} and
+     * {@link #setCustomerDefaultSource(String, String, CustomerRetrievalListener)} calls that fail
+     * because of a connection error are persisted and replayed in order, instead of calling the
+     * listener with the error. The listener is called once the operation is replayed. Queued
+     * changes that would overwrite each other, such as two default source changes, are collapsed
+     * into the latest one.</p>
+     *
+     * <p>Queued operations are replayed after any later operation succeeds, and periodically
+     * while they are pending. They are discarded by {@link #endCustomerSession()}.</p>
+     */
+    public void setMutationQueueEnabled(boolean enabled) {
+        mMutationQueue.setEnabled(enabled);
+        if (enabled) {
+            replayPendingMutation();
+        } else {
+            mHandler.removeCallbacks(mReplayRunnable);
+        }
+    }
+
+    /**
+     * @return the number of operations that are waiting to be replayed, see
+     * {@link #setMutationQueueEnabled(boolean)}
+     */
+    public int getPendingMutationCount() {
+        return mMutationQueue.getPendingCount();
+    }
+
+    /**
+     * Set a listener that is called on the main thread when the number of operations waiting to
+     * be replayed changes, see {@link #setMutationQueueEnabled(boolean)}.
+     */
+    public void setMutationQueueListener(@Nullable MutationQueueListener listener) {
+        mMutationQueueListener = listener;
+    }
+
     private void startOperation(@Nullable String action,
                                 @Nullable Map<String, Object> arguments,
                                 @Nullable RetrievalListener listener) {
         final String operationId = mOperationIdFactory.create();
         listeners.put(operationId, listener);
-        mEphemeralKeyManager.retrieveEphemeralKey(operationId, action, arguments);
+        retrieveEphemeralKey(operationId, action, arguments);
+    }
+
+    /**
+     * Update a stale cached value in the background, unless it is already being updated
+     */
+    private void revalidate(@NonNull CustomerCache.CachedValue<?> cachedValue,
+                            @Nullable String action,
+                            @Nullable Map<String, Object> arguments) {
+        if (mCustomerCache.startRevalidation(cachedValue)) {
+            startOperation(action, arguments, new RevalidationListener(cachedValue));
+        }
+    }
+
+    /**
+     * Retrieve an ephemeral key for the operation, and start the operation once it's received.
+     * The operation, including the key fetch, must finish by the deadline set by
+     * {@link TimeoutPolicy}.
+     */
+    private void retrieveEphemeralKey(@NonNull String operationId,
+                                      @Nullable String action,
+                                      @Nullable Map<String, Object> arguments) {
+        final Deadline deadline = Deadline.forOperation();
+        if (deadline != null) {
+            mOperationDeadlines.put(operationId, deadline);
+        }
+        mEphemeralKeyManager.retrieveEphemeralKey(operationId, action, arguments, deadline);
+    }
+
+    /**
+     * Called on the main thread when an operation has completed, successfully or not.
+     *
+     * @param isReachable {@code true} if the operation reached Stripe, so any queued operations
+     *                    can be replayed
+     */
+    private void onOperationCompleted(@NonNull String operationId, boolean isReachable) {
+        if (mMutationQueue.remove(operationId)) {
+            onMutationQueueChanged();
+        }
+        if (isReachable) {
+            replayPendingMutation();
+        }
+    }
+
+    /**
+     * Called on the main thread once the operations queued by a previous process have been
+     * loaded, see {@link #setMutationQueueEnabled(boolean)}.
+     */
+    private void onMutationQueueLoaded() {
+        //noinspection ConstantConditions
+        if (mMutationQueue == null) {
+            // loaded synchronously while this session was being constructed, before any listener
+            // could be set or the queue enabled
+            return;
+        }
+        if (mMutationQueue.getPendingCount() > 0) {
+            onMutationQueueChanged();
+        }
+        replayPendingMutation();
+    }
+
+    private void replayPendingMutation() {
+        mHandler.removeCallbacks(mReplayRunnable);
+        if (!mMutationQueue.isEnabled()) {
+            return;
+        }
+
+        final int pendingCount = mMutationQueue.getPendingCount();
+        final CustomerMutationQueue.Mutation mutation = mMutationQueue.nextForReplay();
+        if (mMutationQueue.getPendingCount() != pendingCount) {
+            onMutationQueueChanged();
+        }
+        if (mutation != null) {
+            retrieveEphemeralKey(mutation.getOperationId(), mutation.getAction(),
+                    mutation.getArguments());
+        }
+        scheduleReplay();
+    }
+
+    private void scheduleReplay() {
+        mHandler.removeCallbacks(mReplayRunnable);
+        if (mMutationQueue.isEnabled() && mMutationQueue.getPendingCount() > 0) {
+            mHandler.postDelayed(mReplayRunnable, mMutationQueue.getRetryDelayMillis());
+        }
+    }
+
+    private void onMutationQueueChanged() {
+        final MutationQueueListener listener = mMutationQueueListener;
+        if (listener != null) {
+            listener.onPendingMutationsChanged(mMutationQueue.getPendingCount());
+        }
     }
 
     void resetUsageTokens() {
@@ -457,23 +778,25 @@ public class CustomerSession {
     @Nullable
     @VisibleForTesting
     Customer getCustomer() {
-        return mCustomer;
+        final CustomerCache.CachedValue<Customer> cachedCustomer = mCustomerCache.peekCustomer();
+        return cachedCustomer != null ? cachedCustomer.getValue() : null;
     }
 
     @VisibleForTesting
     long getCustomerCacheTime() {
-        return mCustomerCacheTime;
+        final CustomerCache.CachedValue<Customer> cachedCustomer = mCustomerCache.peekCustomer();
+        return cachedCustomer != null ? cachedCustomer.getCachedAtMillis() : 0L;
     }
 
+    @NonNull
     @VisibleForTesting
-    Set<String> getProductUsageTokens() {
-        return mProductUsage.get();
+    CustomerCache.Stats getCacheStats() {
+        return mCustomerCache.getStats();
     }
 
-    private boolean canUseCachedCustomer() {
-        final long currentTime = getCalendarInstance().getTimeInMillis();
-        return mCustomer != null &&
-                currentTime - mCustomerCacheTime < CUSTOMER_CACHE_DURATION_MILLISECONDS;
+    @VisibleForTesting
+    Set<String> getProductUsageTokens() {
+        return mProductUsage.get();
     }
 
     private void handleRetrievalError(@NonNull String operationId,
@@ -500,11 +823,6 @@ public class CustomerSession {
                 new LinkedBlockingQueue<Runnable>());
     }
 
-    @NonNull
-    private Calendar getCalendarInstance() {
-        return mProxyNowCalendar == null ? Calendar.getInstance() : mProxyNowCalendar;
-    }
-
     @Nullable
     private <L extends RetrievalListener> L getListener(@NonNull String operationId) {
         return (L) listeners.remove(operationId);
@@ -541,11 +859,63 @@ public class CustomerSession {
         void onPaymentMethodsRetrieved(@NonNull List<PaymentMethod> paymentMethods);
     }
 
+    public interface PaymentMethodsPageRetrievalListener extends RetrievalListener {
+        /**
+         * @param hasMore {@code true} if there are more PaymentMethod objects after the ones
+         *                in {@code paymentMethods}
+         */
+        void onPaymentMethodsPageRetrieved(@NonNull List<PaymentMethod> paymentMethods,
+                                           boolean hasMore);
+    }
+
+    /**
+     * See {@link #setMutationQueueListener(MutationQueueListener)}
+     */
+    public interface MutationQueueListener {
+        void onPendingMutationsChanged(int pendingCount);
+    }
+
     interface RetrievalListener {
         void onError(int errorCode, @NonNull String errorMessage,
                      @Nullable StripeError stripeError);
     }
 
+    /**
+     * Ends the revalidation of a cached value once the operation that updates it completes.
+     * The updated value is cached by {@link CustomerSessionRunnableFactory}.
+     */
+    private final class RevalidationListener
+            implements CustomerRetrievalListener, PaymentMethodsRetrievalListener,
+            PaymentMethodsPageRetrievalListener {
+        @NonNull private final CustomerCache.CachedValue<?> mCachedValue;
+
+        private RevalidationListener(@NonNull CustomerCache.CachedValue<?> cachedValue) {
+            mCachedValue = cachedValue;
+        }
+
+        @Override
+        public void onCustomerRetrieved(@NonNull Customer customer) {
+            mCustomerCache.endRevalidation(mCachedValue);
+        }
+
+        @Override
+        public void onPaymentMethodsRetrieved(@NonNull List<PaymentMethod> paymentMethods) {
+            mCustomerCache.endRevalidation(mCachedValue);
+        }
+
+        @Override
+        public void onPaymentMethodsPageRetrieved(@NonNull List<PaymentMethod> paymentMethods,
+                                                  boolean hasMore) {
+            mCustomerCache.endRevalidation(mCachedValue);
+        }
+
+        @Override
+        public void onError(int errorCode, @NonNull String errorMessage,
+                            @Nullable StripeError stripeError) {
+            mCustomerCache.endRevalidation(mCachedValue);
+        }
+    }
+
     /**
      * Abstract implementation of {@link PaymentMethodsRetrievalListener} that holds a
      * {@link WeakReference} to an <code>Activity</code> object.
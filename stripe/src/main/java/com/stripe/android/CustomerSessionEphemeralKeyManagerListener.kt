@@ -7,7 +7,9 @@ internal class CustomerSessionEphemeralKeyManagerListener(
     private val runnableFactory: CustomerSessionRunnableFactory,
     private val executor: ThreadPoolExecutor,
     private val listeners: HashMap<String, CustomerSession.RetrievalListener>,
-    private val productUsage: CustomerSessionProductUsage
+    private val productUsage: CustomerSessionProductUsage,
+    private val mutationQueue: CustomerMutationQueue,
+    private val deadlines: HashMap<String, Deadline> = HashMap()
 ) : EphemeralKeyManager.KeyManagerListener<CustomerEphemeralKey> {
     override fun onKeyUpdate(
         ephemeralKey: CustomerEphemeralKey,
@@ -15,8 +17,8 @@ internal class CustomerSessionEphemeralKeyManagerListener(
         action: String?,
         arguments: Map<String, Any>?
     ) {
-        val runnable =
-            runnableFactory.create(ephemeralKey, operationId, action, arguments)
+        val runnable = runnableFactory.create(ephemeralKey, operationId, action, arguments,
+            deadlines.remove(operationId))
         runnable?.let {
             executor.execute(it)
 
@@ -31,6 +33,11 @@ internal class CustomerSessionEphemeralKeyManagerListener(
         errorCode: Int,
         errorMessage: String
     ) {
+        deadlines.remove(operationId)
+        if (mutationQueue.cancelReplay(operationId)) {
+            // the queued operation is replayed again later, so its listener keeps waiting
+            return
+        }
         listeners.remove(operationId)?.onError(errorCode, errorMessage, null)
     }
 }
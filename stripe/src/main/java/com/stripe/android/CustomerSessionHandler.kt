@@ -31,11 +31,17 @@ internal class CustomerSessionHandler(
                 listener.onPaymentMethodRetrieved(obj as PaymentMethod, operationId)
             }
             CustomerSessionRunnableFactory.MessageCode.CUSTOMER_SHIPPING_INFO_SAVED -> {
-                listener.onCustomerShippingInfoSaved(obj as Customer)
+                listener.onCustomerShippingInfoSaved(obj as Customer, operationId)
             }
             CustomerSessionRunnableFactory.MessageCode.PAYMENT_METHODS_RETRIEVED -> {
                 listener.onPaymentMethodsRetrieved(obj as List<PaymentMethod>, operationId)
             }
+            CustomerSessionRunnableFactory.MessageCode.PAYMENT_METHODS_PAGE_RETRIEVED -> {
+                listener.onPaymentMethodsPageRetrieved(obj as PaymentMethodsPage, operationId)
+            }
+            CustomerSessionRunnableFactory.MessageCode.MUTATION_QUEUED -> {
+                listener.onMutationQueued(obj as CustomerMutationQueue.Mutation)
+            }
             CustomerSessionRunnableFactory.MessageCode.ERROR -> {
                 if (obj is StripeException) {
                     listener.onError(obj, operationId)
@@ -55,8 +61,12 @@ internal class CustomerSessionHandler(
 
         fun onPaymentMethodsRetrieved(paymentMethods: List<PaymentMethod>, operationId: String)
 
-        fun onCustomerShippingInfoSaved(customer: Customer?)
+        fun onPaymentMethodsPageRetrieved(page: PaymentMethodsPage, operationId: String)
+
+        fun onCustomerShippingInfoSaved(customer: Customer?, operationId: String)
 
         fun onError(exception: StripeException, operationId: String)
+
+        fun onMutationQueued(mutation: CustomerMutationQueue.Mutation)
     }
 }
@@ -6,6 +6,7 @@ import android.os.Handler
 import android.util.Pair
 import androidx.annotation.IntDef
 import androidx.localbroadcastmanager.content.LocalBroadcastManager
+import com.stripe.android.exception.APIConnectionException
 import com.stripe.android.exception.StripeException
 import com.stripe.android.model.Customer
 import com.stripe.android.model.PaymentMethod
@@ -21,11 +22,14 @@ internal class CustomerSessionRunnableFactory constructor(
     private val localBroadcastManager: LocalBroadcastManager,
     private val publishableKey: String,
     private val stripeAccountId: String?,
-    private val productUsage: CustomerSessionProductUsage
+    private val productUsage: CustomerSessionProductUsage,
+    private val mutationQueue: CustomerMutationQueue,
+    private val customerCache: CustomerCache
 ) {
     @IntDef(MessageCode.ERROR, MessageCode.CUSTOMER_RETRIEVED, MessageCode.SOURCE_RETRIEVED,
         MessageCode.PAYMENT_METHOD_RETRIEVED, MessageCode.CUSTOMER_SHIPPING_INFO_SAVED,
-        MessageCode.PAYMENT_METHODS_RETRIEVED)
+        MessageCode.PAYMENT_METHODS_RETRIEVED, MessageCode.MUTATION_QUEUED,
+        MessageCode.PAYMENT_METHODS_PAGE_RETRIEVED)
     @Retention(AnnotationRetention.SOURCE)
     annotation class MessageCode {
         companion object {
@@ -35,17 +39,29 @@ internal class CustomerSessionRunnableFactory constructor(
             const val PAYMENT_METHOD_RETRIEVED = 4
             const val CUSTOMER_SHIPPING_INFO_SAVED = 5
             const val PAYMENT_METHODS_RETRIEVED = 6
+            const val MUTATION_QUEUED = 7
+            const val PAYMENT_METHODS_PAGE_RETRIEVED = 8
         }
     }
 
+    /**
+     * @param deadline the deadline of the operation, see [TimeoutPolicy]
+     */
     internal fun create(
         ephemeralKey: CustomerEphemeralKey,
         operationId: String,
         actionString: String?,
-        arguments: Map<String, Any>?
+        arguments: Map<String, Any>?,
+        deadline: Deadline? = null
     ): Runnable? {
+        mutationQueue.onCustomerKeyUsed(ephemeralKey.customerId)
+        customerCache.onCustomerKeyUsed(ephemeralKey.customerId)
+        val mutation = mutationQueue.createMutation(operationId, ephemeralKey.customerId,
+            actionString, arguments)
+        val requestOptions = ApiRequest.Options.create(ephemeralKey.secret, stripeAccountId)
+            .withDeadline(deadline)
         return if (actionString == null) {
-            createUpdateCustomerRunnable(ephemeralKey, operationId)
+            createUpdateCustomerRunnable(ephemeralKey, requestOptions, operationId)
         } else if (arguments == null) {
             return null
         } else if (CustomerSession.ACTION_ADD_SOURCE == actionString &&
@@ -53,6 +69,7 @@ internal class CustomerSessionRunnableFactory constructor(
             arguments.containsKey(CustomerSession.KEY_SOURCE_TYPE)) {
             createAddCustomerSourceRunnable(
                 ephemeralKey,
+                requestOptions,
                 arguments[CustomerSession.KEY_SOURCE] as String,
                 arguments[CustomerSession.KEY_SOURCE_TYPE] as String,
                 operationId
@@ -61,6 +78,7 @@ internal class CustomerSessionRunnableFactory constructor(
             arguments.containsKey(CustomerSession.KEY_SOURCE)) {
             createDeleteCustomerSourceRunnable(
                 ephemeralKey,
+                requestOptions,
                 arguments[CustomerSession.KEY_SOURCE] as String,
                 operationId
             )
@@ -68,20 +86,34 @@ internal class CustomerSessionRunnableFactory constructor(
             actionString && arguments.containsKey(CustomerSession.KEY_PAYMENT_METHOD)) {
             createAttachPaymentMethodRunnable(
                 ephemeralKey,
+                requestOptions,
                 arguments[CustomerSession.KEY_PAYMENT_METHOD] as String,
-                operationId
+                operationId,
+                mutation
             )
         } else if (CustomerSession.ACTION_DETACH_PAYMENT_METHOD == actionString &&
             arguments.containsKey(CustomerSession.KEY_PAYMENT_METHOD)) {
             createDetachPaymentMethodRunnable(
                 ephemeralKey,
+                requestOptions,
                 arguments[CustomerSession.KEY_PAYMENT_METHOD] as String,
-                operationId
+                operationId,
+                mutation
             )
         } else if (CustomerSession.ACTION_GET_PAYMENT_METHODS == actionString) {
             createGetPaymentMethodsRunnable(
                 ephemeralKey,
+                requestOptions,
+                arguments[CustomerSession.KEY_PAYMENT_METHOD_TYPE] as String,
+                operationId
+            )
+        } else if (CustomerSession.ACTION_GET_PAYMENT_METHODS_PAGE == actionString) {
+            createGetPaymentMethodsPageRunnable(
+                ephemeralKey,
+                requestOptions,
                 arguments[CustomerSession.KEY_PAYMENT_METHOD_TYPE] as String,
+                arguments[CustomerSession.KEY_LIMIT] as Int,
+                arguments[CustomerSession.KEY_STARTING_AFTER] as String?,
                 operationId
             )
         } else if (CustomerSession.ACTION_SET_DEFAULT_SOURCE == actionString &&
@@ -89,16 +121,20 @@ internal class CustomerSessionRunnableFactory constructor(
             arguments.containsKey(CustomerSession.KEY_SOURCE_TYPE)) {
             createSetCustomerSourceDefaultRunnable(
                 ephemeralKey,
+                requestOptions,
                 arguments[CustomerSession.KEY_SOURCE] as String,
                 arguments[CustomerSession.KEY_SOURCE_TYPE] as String,
-                operationId
+                operationId,
+                mutation
             )
         } else if (CustomerSession.ACTION_SET_CUSTOMER_SHIPPING_INFO == actionString &&
             arguments.containsKey(CustomerSession.KEY_SHIPPING_INFO)) {
             createSetCustomerShippingInformationRunnable(
                 ephemeralKey,
+                requestOptions,
                 arguments[CustomerSession.KEY_SHIPPING_INFO] as ShippingInformation,
-                operationId
+                operationId,
+                mutation
             )
         } else {
             // unsupported operation
@@ -108,6 +144,7 @@ internal class CustomerSessionRunnableFactory constructor(
 
     private fun createAddCustomerSourceRunnable(
         key: CustomerEphemeralKey,
+        requestOptions: ApiRequest.Options,
         sourceId: String,
         sourceType: String,
         operationId: String
@@ -122,14 +159,17 @@ internal class CustomerSessionRunnableFactory constructor(
                     productUsage.get(),
                     sourceId,
                     sourceType,
-                    ApiRequest.Options.create(key.secret, stripeAccountId)
-                )
+                    requestOptions
+                ).also {
+                    customerCache.invalidateCustomer(key.customerId)
+                }
             }
         }
     }
 
     private fun createDeleteCustomerSourceRunnable(
         key: CustomerEphemeralKey,
+        requestOptions: ApiRequest.Options,
         sourceId: String,
         operationId: String
     ): Runnable {
@@ -142,19 +182,23 @@ internal class CustomerSessionRunnableFactory constructor(
                     publishableKey,
                     productUsage.get(),
                     sourceId,
-                    ApiRequest.Options.create(key.secret, stripeAccountId)
-                )
+                    requestOptions
+                ).also {
+                    customerCache.invalidateCustomer(key.customerId)
+                }
             }
         }
     }
 
     private fun createAttachPaymentMethodRunnable(
         key: CustomerEphemeralKey,
+        requestOptions: ApiRequest.Options,
         paymentMethodId: String,
-        operationId: String
+        operationId: String,
+        mutation: CustomerMutationQueue.Mutation?
     ): Runnable {
         return object : CustomerSessionRunnable<PaymentMethod>(handler, localBroadcastManager,
-            MessageCode.PAYMENT_METHOD_RETRIEVED, operationId) {
+            MessageCode.PAYMENT_METHOD_RETRIEVED, operationId, mutation) {
             @Throws(StripeException::class)
             public override fun createMessageObject(): PaymentMethod? {
                 return stripeRepository.attachPaymentMethod(
@@ -162,33 +206,40 @@ internal class CustomerSessionRunnableFactory constructor(
                     publishableKey,
                     productUsage.get(),
                     paymentMethodId,
-                    ApiRequest.Options.create(key.secret, stripeAccountId)
-                )
+                    requestOptions
+                )?.also {
+                    customerCache.onPaymentMethodAttached(key.customerId, it)
+                }
             }
         }
     }
 
     private fun createDetachPaymentMethodRunnable(
         key: CustomerEphemeralKey,
+        requestOptions: ApiRequest.Options,
         paymentMethodId: String,
-        operationId: String
+        operationId: String,
+        mutation: CustomerMutationQueue.Mutation?
     ): Runnable {
         return object : CustomerSessionRunnable<PaymentMethod>(handler, localBroadcastManager,
-            MessageCode.PAYMENT_METHOD_RETRIEVED, operationId) {
+            MessageCode.PAYMENT_METHOD_RETRIEVED, operationId, mutation) {
             @Throws(StripeException::class)
             public override fun createMessageObject(): PaymentMethod? {
                 return stripeRepository.detachPaymentMethod(
                     publishableKey,
                     productUsage.get(),
                     paymentMethodId,
-                    ApiRequest.Options.create(key.secret, stripeAccountId)
-                )
+                    requestOptions
+                ).also {
+                    customerCache.onPaymentMethodDetached(key.customerId, paymentMethodId)
+                }
             }
         }
     }
 
     private fun createGetPaymentMethodsRunnable(
         key: CustomerEphemeralKey,
+        requestOptions: ApiRequest.Options,
         paymentMethodType: String,
         operationId: String
     ): Runnable {
@@ -196,25 +247,60 @@ internal class CustomerSessionRunnableFactory constructor(
             localBroadcastManager, MessageCode.PAYMENT_METHODS_RETRIEVED, operationId) {
             @Throws(StripeException::class)
             public override fun createMessageObject(): List<PaymentMethod> {
+                val generation = customerCache.getGeneration(key.customerId)
                 return stripeRepository.getPaymentMethods(
                     key.customerId,
                     paymentMethodType,
                     publishableKey,
                     productUsage.get(),
-                    ApiRequest.Options.create(key.secret, stripeAccountId)
-                )
+                    requestOptions
+                ).also {
+                    customerCache.putPaymentMethods(key.customerId, paymentMethodType,
+                        PaymentMethodsPage(it, false), null, generation)
+                }
+            }
+        }
+    }
+
+    private fun createGetPaymentMethodsPageRunnable(
+        key: CustomerEphemeralKey,
+        requestOptions: ApiRequest.Options,
+        paymentMethodType: String,
+        limit: Int,
+        startingAfter: String?,
+        operationId: String
+    ): Runnable {
+        return object : CustomerSessionRunnable<PaymentMethodsPage>(handler,
+            localBroadcastManager, MessageCode.PAYMENT_METHODS_PAGE_RETRIEVED, operationId) {
+            @Throws(StripeException::class)
+            public override fun createMessageObject(): PaymentMethodsPage {
+                val generation = customerCache.getGeneration(key.customerId)
+                return stripeRepository.getPaymentMethodsPage(
+                    key.customerId,
+                    paymentMethodType,
+                    limit,
+                    startingAfter,
+                    publishableKey,
+                    productUsage.get(),
+                    requestOptions
+                ).also {
+                    customerCache.putPaymentMethods(key.customerId, paymentMethodType, it,
+                        startingAfter, generation)
+                }
             }
         }
     }
 
     private fun createSetCustomerSourceDefaultRunnable(
         key: CustomerEphemeralKey,
+        requestOptions: ApiRequest.Options,
         sourceId: String,
         sourceType: String,
-        operationId: String
+        operationId: String,
+        mutation: CustomerMutationQueue.Mutation?
     ): Runnable {
         return object : CustomerSessionRunnable<Customer>(handler, localBroadcastManager,
-            MessageCode.CUSTOMER_RETRIEVED, operationId) {
+            MessageCode.CUSTOMER_RETRIEVED, operationId, mutation) {
             @Throws(StripeException::class)
             public override fun createMessageObject(): Customer? {
                 return stripeRepository.setDefaultCustomerSource(
@@ -223,19 +309,23 @@ internal class CustomerSessionRunnableFactory constructor(
                     productUsage.get(),
                     sourceId,
                     sourceType,
-                    ApiRequest.Options.create(key.secret, stripeAccountId)
-                )
+                    requestOptions
+                )?.also {
+                    customerCache.putCustomer(key.customerId, it)
+                }
             }
         }
     }
 
     private fun createSetCustomerShippingInformationRunnable(
         key: CustomerEphemeralKey,
+        requestOptions: ApiRequest.Options,
         shippingInformation: ShippingInformation,
-        operationId: String
+        operationId: String,
+        mutation: CustomerMutationQueue.Mutation?
     ): Runnable {
         return object : CustomerSessionRunnable<Customer>(handler, localBroadcastManager,
-            MessageCode.CUSTOMER_SHIPPING_INFO_SAVED, operationId) {
+            MessageCode.CUSTOMER_SHIPPING_INFO_SAVED, operationId, mutation) {
             @Throws(StripeException::class)
             public override fun createMessageObject(): Customer? {
                 return stripeRepository.setCustomerShippingInfo(
@@ -243,21 +333,27 @@ internal class CustomerSessionRunnableFactory constructor(
                     publishableKey,
                     productUsage.get(),
                     shippingInformation,
-                    ApiRequest.Options.create(key.secret, stripeAccountId)
-                )
+                    requestOptions
+                )?.also {
+                    customerCache.putCustomer(key.customerId, it)
+                }
             }
         }
     }
 
     private fun createUpdateCustomerRunnable(
         key: CustomerEphemeralKey,
+        requestOptions: ApiRequest.Options,
         operationId: String
     ): Runnable {
         return object : CustomerSessionRunnable<Customer>(handler, localBroadcastManager,
             MessageCode.CUSTOMER_RETRIEVED, operationId) {
             @Throws(StripeException::class)
             public override fun createMessageObject(): Customer? {
-                return retrieveCustomerWithKey(key)
+                val generation = customerCache.getGeneration(key.customerId)
+                return retrieveCustomerWithKey(key, requestOptions)?.also {
+                    customerCache.putCustomer(key.customerId, it, generation)
+                }
             }
         }
     }
@@ -267,13 +363,17 @@ internal class CustomerSessionRunnableFactory constructor(
      * Use [createUpdateCustomerRunnable] to validate the key before refreshing the customer.
      *
      * @param key the [CustomerEphemeralKey] used for this access
+     * @param requestOptions the request options created with [key]
      * @return a [Customer] if one can be found with this key, or `null` if one cannot.
      */
     @Throws(StripeException::class)
-    private fun retrieveCustomerWithKey(key: CustomerEphemeralKey): Customer? {
+    private fun retrieveCustomerWithKey(
+        key: CustomerEphemeralKey,
+        requestOptions: ApiRequest.Options
+    ): Customer? {
         return stripeRepository.retrieveCustomer(
             key.customerId,
-            ApiRequest.Options.create(key.secret, stripeAccountId)
+            requestOptions
         )
     }
 
@@ -281,7 +381,8 @@ internal class CustomerSessionRunnableFactory constructor(
         private val handler: Handler,
         private val localBroadcastManager: LocalBroadcastManager,
         @param:MessageCode @field:MessageCode private val messageCode: Int,
-        private val operationId: String
+        private val operationId: String,
+        private val mutation: CustomerMutationQueue.Mutation? = null
     ) : Runnable {
 
         /**
@@ -293,12 +394,29 @@ internal class CustomerSessionRunnableFactory constructor(
         override fun run() {
             try {
                 sendMessage(createMessageObject())
+            } catch (connectionEx: APIConnectionException) {
+                if (mutation != null) {
+                    // the operation will be replayed once Stripe can be reached
+                    sendMutationQueuedMessage(mutation)
+                } else {
+                    sendErrorMessage(connectionEx)
+                    sendErrorIntent(connectionEx)
+                }
             } catch (stripeEx: StripeException) {
                 sendErrorMessage(stripeEx)
                 sendErrorIntent(stripeEx)
             }
         }
 
+        private fun sendMutationQueuedMessage(mutation: CustomerMutationQueue.Mutation) {
+            handler.sendMessage(
+                handler.obtainMessage(
+                    MessageCode.MUTATION_QUEUED,
+                    Pair.create(operationId, mutation)
+                )
+            )
+        }
+
         private fun sendMessage(messageObject: T?) {
             handler.sendMessage(
                 handler.obtainMessage(
@@ -0,0 +1,64 @@
+package com.stripe.android
+
+import android.os.SystemClock
+import androidx.annotation.VisibleForTesting
+import com.stripe.android.exception.APIConnectionException
+import java.net.SocketTimeoutException
+
+/**
+ * The time by which an operation, such as confirming a PaymentIntent or attaching a payment
+ * method to a customer, must finish, including its retries, ephemeral key fetches and 3DS2
+ * authentication requests.
+ *
+ * A deadline is carried by [ApiRequest.Options]. Each request's connect and read timeouts are
+ * shortened so that they don't run past it, and no request or retry is started once it has
+ * passed.
+ */
+internal class Deadline @VisibleForTesting internal constructor(
+    private val expiresAtMillis: Long,
+    private val clock: () -> Long = { SystemClock.elapsedRealtime() }
+) {
+    val remainingMillis: Long
+        get() = maxOf(expiresAtMillis - clock(), 0)
+
+    val isExpired: Boolean
+        get() = remainingMillis == 0L
+
+    /**
+     * @return [timeoutMillis], shortened so that it ends by this deadline
+     */
+    fun clampTimeout(timeoutMillis: Int): Int {
+        // a timeout of 0 means no timeout, so use at least 1ms
+        return minOf(timeoutMillis.toLong(), remainingMillis).toInt().coerceAtLeast(1)
+    }
+
+    /**
+     * @throws APIConnectionException if this deadline has passed
+     */
+    @Throws(APIConnectionException::class)
+    fun checkNotExpired(url: String) {
+        if (isExpired) {
+            throw APIConnectionException.create(url, SocketTimeoutException(MESSAGE_EXPIRED))
+        }
+    }
+
+    companion object {
+        internal const val MESSAGE_EXPIRED = "The operation's deadline has passed"
+
+        fun after(
+            timeoutMillis: Long,
+            clock: () -> Long = { SystemClock.elapsedRealtime() }
+        ): Deadline {
+            return Deadline(clock() + timeoutMillis, clock)
+        }
+
+        /**
+         * @return a deadline for an operation starting now, as set by
+         * [TimeoutPolicy.operationTimeoutMillis], or `null` if operations have no deadline
+         */
+        @JvmStatic
+        fun forOperation(): Deadline? {
+            return TimeoutPolicy.get().operationTimeoutMillis?.let { after(it) }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.stripe.android
+
+import android.os.SystemClock
+import androidx.annotation.VisibleForTesting
+import java.net.ConnectException
+import java.net.InetAddress
+import java.net.NoRouteToHostException
+import java.net.UnknownHostException
+import java.util.concurrent.TimeUnit
+
+/**
+ * Resolves Stripe hosts in the background before they are needed, so that the platform's DNS
+ * cache already holds their addresses when a request connects.
+ *
+ * [HttpURLConnection][java.net.HttpURLConnection] doesn't accept a custom resolver, so requests
+ * always resolve their host through the platform, and nothing is resolved on a request's thread
+ * by the SDK. A host that was resolved less than [ttlMillis] ago isn't resolved again, and at
+ * most [maxEntries] hosts are remembered. If connecting to a host fails in a way that suggests
+ * its addresses are stale, the host is forgotten so that the next prefetch resolves it again.
+ */
+internal class DnsPrefetcher @VisibleForTesting internal constructor(
+    private val maxEntries: Int = DEFAULT_MAX_ENTRIES,
+    private val ttlMillis: Long = DEFAULT_TTL_MILLIS,
+    private val backgroundExecutor: BoundedRequestExecutor = BoundedRequestExecutor.DEFAULT,
+    private val lookup: (String) -> List<InetAddress> = { InetAddress.getAllByName(it).toList() },
+    private val clock: () -> Long = { SystemClock.elapsedRealtime() }
+) {
+    /**
+     * The time at which each host was last resolved, least recently resolved first
+     */
+    private val resolvedAtMillis = object : LinkedHashMap<String, Long>(maxEntries, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Long>?): Boolean {
+            return size > maxEntries
+        }
+    }
+    private val pendingPrefetches = mutableSetOf<String>()
+
+    private var lookupCount = 0
+    private var failedLookupCount = 0
+    private var skippedPrefetchCount = 0
+
+    /**
+     * Resolve [host] in the background, unless it was resolved recently or is being resolved.
+     */
+    fun prefetch(host: String) {
+        synchronized(this) {
+            if (isRecentlyResolved(host) || !pendingPrefetches.add(host)) {
+                skippedPrefetchCount++
+                return
+            }
+        }
+
+        backgroundExecutor.execute {
+            prefetchBlocking(host)
+        }
+    }
+
+    @VisibleForTesting
+    internal fun prefetchBlocking(host: String) {
+        try {
+            val addresses = lookup(host)
+            synchronized(this) {
+                lookupCount++
+                if (addresses.isNotEmpty()) {
+                    resolvedAtMillis[host] = clock()
+                }
+            }
+        } catch (e: UnknownHostException) {
+            // the request that needs this host will surface the error
+            synchronized(this) {
+                failedLookupCount++
+            }
+        } finally {
+            synchronized(this) {
+                pendingPrefetches.remove(host)
+            }
+        }
+    }
+
+    /**
+     * Called when a request to [host] failed with [exception]. If the failure suggests that the
+     * platform's cached addresses are stale, forget the host so that the next prefetch resolves
+     * it again.
+     */
+    fun onConnectionFailure(host: String, exception: Exception) {
+        if (exception is UnknownHostException || exception is ConnectException ||
+            exception is NoRouteToHostException) {
+            invalidate(host)
+        }
+    }
+
+    @Synchronized
+    fun invalidate(host: String) {
+        resolvedAtMillis.remove(host)
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        return Stats(
+            lookups = lookupCount,
+            failedLookups = failedLookupCount,
+            skippedPrefetches = skippedPrefetchCount
+        )
+    }
+
+    private fun isRecentlyResolved(host: String): Boolean {
+        val resolvedAtMillis = resolvedAtMillis[host] ?: return false
+        return clock() - resolvedAtMillis < ttlMillis
+    }
+
+    /**
+     * @param lookups the number of lookups made by prefetches
+     * @param failedLookups the number of lookups that failed
+     * @param skippedPrefetches the number of prefetches that weren't made because the host was
+     * resolved recently or was being resolved
+     */
+    internal data class Stats(
+        val lookups: Int,
+        val failedLookups: Int,
+        val skippedPrefetches: Int
+    )
+
+    companion object {
+        private const val DEFAULT_MAX_ENTRIES = 8
+        private val DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1)
+
+        /**
+         * The prefetcher shared by the SDK's connection warm-up and request executors.
+         */
+        @JvmField
+        val DEFAULT = DnsPrefetcher()
+    }
+}
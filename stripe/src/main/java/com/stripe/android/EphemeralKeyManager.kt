@@ -1,81 +1,294 @@
 package com.stripe.android
 
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
 import java.net.HttpURLConnection
 import java.util.Calendar
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 import org.json.JSONException
 import org.json.JSONObject
 
-internal class EphemeralKeyManager<TEphemeralKey : EphemeralKey>(
+/**
+ * Retrieves ephemeral keys from an [EphemeralKeyProvider] and caches them until they are about
+ * to expire.
+ *
+ * Operations that need a key while one is being fetched wait for that fetch, so that the
+ * provider is only called once for all of them. While a key is in use, it is refreshed in the
+ * background [PROACTIVE_REFRESH_SECONDS] before it would need to be refreshed, so that
+ * operations don't wait for the provider.
+ *
+ * If a [keyStore] is set, received keys are persisted, and a stored key that doesn't need to be
+ * refreshed is used instead of calling the provider, e.g. after the app is restarted. The stored
+ * key is loaded in the background as soon as the manager is created, and operations started
+ * before it is loaded wait for it.
+ */
+internal class EphemeralKeyManager<TEphemeralKey : EphemeralKey> @JvmOverloads constructor(
     private val ephemeralKeyProvider: EphemeralKeyProvider,
     private val listener: KeyManagerListener<TEphemeralKey>,
     private val timeBufferInSeconds: Long,
     private val overrideCalendar: Calendar?,
     operationIdFactory: OperationIdFactory,
     private val factory: EphemeralKey.Factory<TEphemeralKey>,
-    shouldPrefetchEphemeralKey: Boolean
+    shouldPrefetchEphemeralKey: Boolean,
+    private val keyStore: EphemeralKeyStore<TEphemeralKey>? = null,
+    private val handler: Handler = Handler(Looper.getMainLooper()),
+    private val clock: () -> Long = { SystemClock.elapsedRealtime() }
 ) {
     private val apiVersion: String = ApiVersion.get().code
 
+    @Volatile
     private var ephemeralKey: TEphemeralKey? = null
 
+    /**
+     * The fetch in progress, which all operations that need a new key wait for
+     */
+    private var keyFetch: KeyFetch? = null
+
+    /**
+     * The operations waiting for a key, in the order they were started
+     */
+    private val pendingOperations = mutableListOf<PendingOperation>()
+
+    /**
+     * `true` if the current key was used by an operation, so it's worth refreshing
+     */
+    @Volatile
+    private var isKeyUsed: Boolean = false
+
+    /**
+     * `true` until the [keyStore] has been read
+     */
+    private var isLoadingStoredKey: Boolean = keyStore != null
+
+    private val refreshRunnable = Runnable {
+        if (isKeyUsed) {
+            fetchKey()
+        }
+    }
+
     init {
+        keyStore?.getAsync(timeBufferInSeconds, overrideCalendar) { storedKey ->
+            handler.post { onStoredKeyLoaded(storedKey) }
+        }
         if (shouldPrefetchEphemeralKey) {
             retrieveEphemeralKey(operationIdFactory.create(), null, null)
         }
     }
 
+    /**
+     * @param deadline if set, and a new key hasn't been received by then, the operation fails
+     * with [HttpURLConnection.HTTP_CLIENT_TIMEOUT]
+     */
+    @JvmOverloads
     fun retrieveEphemeralKey(
         operationId: String,
         actionString: String?,
-        arguments: Map<String, Any>?
+        arguments: Map<String, Any>?,
+        deadline: Deadline? = null
     ) {
         val ephemeralKey = ephemeralKey
-        if (ephemeralKey == null ||
+        if (synchronized(this) { isLoadingStoredKey } || ephemeralKey == null ||
             shouldRefreshKey(ephemeralKey, timeBufferInSeconds, overrideCalendar)) {
-            ephemeralKeyProvider.createEphemeralKey(apiVersion,
-                ClientKeyUpdateListener(this, operationId, actionString, arguments))
+            val pendingOperation = PendingOperation(operationId, actionString, arguments)
+            val shouldFetchKey = synchronized(this) {
+                pendingOperations.add(pendingOperation)
+                // otherwise, the operation waits for the stored key
+                !isLoadingStoredKey
+            }
+            deadline?.let { scheduleTimeout(pendingOperation, it) }
+            if (shouldFetchKey) {
+                fetchKey()
+            }
         } else {
+            isKeyUsed = true
             listener.onKeyUpdate(ephemeralKey, operationId, actionString, arguments)
+
+            // the key will have to be refreshed soon, so refresh it while it can still be used
+            if (shouldRefreshKey(ephemeralKey, timeBufferInSeconds + PROACTIVE_REFRESH_SECONDS,
+                    overrideCalendar)) {
+                fetchKey()
+            }
         }
     }
 
-    private fun updateKey(
-        operationId: String,
-        key: String?,
-        actionString: String?,
-        arguments: Map<String, Any>?
-    ) {
+    /**
+     * Stop refreshing the key in the background, and drop the operations waiting for a key
+     */
+    fun cancel() {
+        handler.removeCallbacks(refreshRunnable)
+        synchronized(this) {
+            pendingOperations.forEach { operation ->
+                operation.timeoutRunnable?.let { handler.removeCallbacks(it) }
+            }
+            pendingOperations.clear()
+        }
+    }
+
+    /**
+     * Use [storedKey], the stored key if it doesn't need to be refreshed, for the operations that
+     * waited for it. If there is none, fetch a key for them instead.
+     */
+    private fun onStoredKeyLoaded(storedKey: TEphemeralKey?) {
+        val ephemeralKey = synchronized(this) {
+            isLoadingStoredKey = false
+            // a key received in the meantime is newer than the stored one
+            this.ephemeralKey ?: storedKey?.also { this.ephemeralKey = it }
+        }
+
+        if (ephemeralKey == null ||
+            shouldRefreshKey(ephemeralKey, timeBufferInSeconds, overrideCalendar)) {
+            if (synchronized(this) { pendingOperations.isNotEmpty() }) {
+                fetchKey()
+            }
+            return
+        }
+
+        scheduleRefresh(ephemeralKey)
+        val operations = takePendingOperations()
+        if (operations.isNotEmpty()) {
+            isKeyUsed = true
+            operations.forEach { operation ->
+                listener.onKeyUpdate(ephemeralKey, operation.operationId, operation.actionString,
+                    operation.arguments)
+            }
+            if (shouldRefreshKey(ephemeralKey, timeBufferInSeconds + PROACTIVE_REFRESH_SECONDS,
+                    overrideCalendar)) {
+                fetchKey()
+            }
+        }
+    }
+
+    /**
+     * Call the provider, unless a fetch started recently is still in progress
+     */
+    private fun fetchKey() {
+        val keyFetch = synchronized(this) {
+            val currentFetch = keyFetch
+            if (currentFetch != null &&
+                clock() - currentFetch.startedAtMillis < MAX_KEY_FETCH_MILLIS) {
+                return
+            }
+            KeyFetch(this, clock()).also { keyFetch = it }
+        }
+        handler.removeCallbacks(refreshRunnable)
+        ephemeralKeyProvider.createEphemeralKey(apiVersion, keyFetch)
+    }
+
+    private fun scheduleTimeout(pendingOperation: PendingOperation, deadline: Deadline) {
+        val timeoutRunnable = Runnable {
+            val isPending = synchronized(this) {
+                pendingOperations.remove(pendingOperation).also {
+                    // a fetch that nothing waits for may never complete, so don't wait for it
+                    if (pendingOperations.isEmpty()) {
+                        keyFetch = null
+                    }
+                }
+            }
+            if (isPending) {
+                listener.onKeyError(pendingOperation.operationId,
+                    HttpURLConnection.HTTP_CLIENT_TIMEOUT,
+                    "An ephemeral key wasn't received before the operation's deadline")
+            }
+        }
+        pendingOperation.timeoutRunnable = timeoutRunnable
+        handler.postDelayed(timeoutRunnable, deadline.remainingMillis)
+    }
+
+    /**
+     * @return the operations that were waiting for [completedFetch]
+     */
+    @Synchronized
+    private fun onKeyFetchCompleted(completedFetch: KeyFetch): List<PendingOperation> {
+        if (keyFetch === completedFetch) {
+            keyFetch = null
+        }
+        return takePendingOperations()
+    }
+
+    @Synchronized
+    private fun takePendingOperations(): List<PendingOperation> {
+        return pendingOperations.toList().also { operations ->
+            operations.forEach { operation ->
+                operation.timeoutRunnable?.let { handler.removeCallbacks(it) }
+            }
+            pendingOperations.clear()
+        }
+    }
+
+    private fun updateKey(keyFetch: KeyFetch, key: String?) {
+        val operations = onKeyFetchCompleted(keyFetch)
+
         // Key is coming from the user, so even if it's @NonNull annotated we
         // want to double check it
         if (key == null) {
-            listener.onKeyError(operationId,
+            notifyKeyError(operations,
                 HttpURLConnection.HTTP_INTERNAL_ERROR,
                 "EphemeralKeyUpdateListener.onKeyUpdate was called with a null value")
             return
         }
-        try {
-            val ephemeralKey = EphemeralKey.fromJson(JSONObject(key), factory)
-            this.ephemeralKey = ephemeralKey
-            listener.onKeyUpdate(ephemeralKey, operationId, actionString, arguments)
+        val ephemeralKey = try {
+            EphemeralKey.fromJson(JSONObject(key), factory)
         } catch (e: JSONException) {
-            listener.onKeyError(operationId,
+            notifyKeyError(operations,
                 HttpURLConnection.HTTP_INTERNAL_ERROR,
                 "EphemeralKeyUpdateListener.onKeyUpdate was passed " +
                     "a value that could not be JSON parsed: [${e.localizedMessage}]. " +
                     "The raw body from Stripe's response should be passed.")
+            return
         } catch (e: Exception) {
-            listener.onKeyError(operationId,
+            notifyKeyError(operations,
                 HttpURLConnection.HTTP_INTERNAL_ERROR,
                 "EphemeralKeyUpdateListener.onKeyUpdate was passed " +
                     "a JSON String that was invalid: [${e.localizedMessage}]. " +
                     "The raw body from Stripe's response should be passed.")
+            return
+        }
+
+        this.ephemeralKey = ephemeralKey
+        keyStore?.putAsync(ephemeralKey, key)
+        isKeyUsed = operations.isNotEmpty()
+        scheduleRefresh(ephemeralKey)
+        operations.forEach { operation ->
+            listener.onKeyUpdate(ephemeralKey, operation.operationId, operation.actionString,
+                operation.arguments)
         }
     }
 
-    private fun updateKeyError(operationId: String, errorCode: Int, errorMessage: String) {
-        ephemeralKey = null
-        listener.onKeyError(operationId, errorCode, errorMessage)
+    private fun updateKeyError(keyFetch: KeyFetch, errorCode: Int, errorMessage: String) {
+        val operations = onKeyFetchCompleted(keyFetch)
+        // a key that failed to be refreshed in the background can be used until it expires
+        if (shouldRefreshKey(ephemeralKey, timeBufferInSeconds, overrideCalendar)) {
+            ephemeralKey = null
+        }
+        notifyKeyError(operations, errorCode, errorMessage)
+    }
+
+    private fun notifyKeyError(
+        operations: List<PendingOperation>,
+        errorCode: Int,
+        errorMessage: String
+    ) {
+        operations.forEach { operation ->
+            listener.onKeyError(operation.operationId, errorCode, errorMessage)
+        }
+    }
+
+    /**
+     * Refresh [ephemeralKey] in the background [PROACTIVE_REFRESH_SECONDS] before it would have
+     * to be refreshed, if it's used by then
+     */
+    private fun scheduleRefresh(ephemeralKey: TEphemeralKey) {
+        handler.removeCallbacks(refreshRunnable)
+
+        val now = (overrideCalendar ?: Calendar.getInstance()).timeInMillis
+        val refreshAtMillis = TimeUnit.SECONDS.toMillis(
+            ephemeralKey.expires - timeBufferInSeconds - PROACTIVE_REFRESH_SECONDS
+        )
+        if (refreshAtMillis > now) {
+            handler.postDelayed(refreshRunnable, refreshAtMillis - now)
+        }
     }
 
     internal interface KeyManagerListener<TEphemeralKey : EphemeralKey> {
@@ -89,22 +302,47 @@ internal class EphemeralKeyManager<TEphemeralKey : EphemeralKey>(
         fun onKeyError(operationId: String, errorCode: Int, errorMessage: String)
     }
 
-    private class ClientKeyUpdateListener internal constructor(
+    private class PendingOperation(
+        val operationId: String,
+        val actionString: String?,
+        val arguments: Map<String, Any>?
+    ) {
+        var timeoutRunnable: Runnable? = null
+    }
+
+    /**
+     * Receives the result of a call to the [EphemeralKeyProvider]
+     */
+    private class KeyFetch(
         private val ephemeralKeyManager: EphemeralKeyManager<*>,
-        private val operationId: String,
-        private val actionString: String?,
-        private val arguments: Map<String, Any>?
+        val startedAtMillis: Long
     ) : EphemeralKeyUpdateListener {
+        private val isCompleted = AtomicBoolean(false)
+
         override fun onKeyUpdate(rawKey: String) {
-            ephemeralKeyManager.updateKey(operationId, rawKey, actionString, arguments)
+            if (isCompleted.compareAndSet(false, true)) {
+                ephemeralKeyManager.updateKey(this, rawKey)
+            }
         }
 
         override fun onKeyUpdateFailure(responseCode: Int, message: String) {
-            ephemeralKeyManager.updateKeyError(operationId, responseCode, message)
+            if (isCompleted.compareAndSet(false, true)) {
+                ephemeralKeyManager.updateKeyError(this, responseCode, message)
+            }
         }
     }
 
     companion object {
+        /**
+         * How long before a key would have to be refreshed to refresh it in the background
+         */
+        private val PROACTIVE_REFRESH_SECONDS = TimeUnit.MINUTES.toSeconds(5)
+
+        /**
+         * How long to wait for the provider before a new key fetch can be started
+         */
+        private val MAX_KEY_FETCH_MILLIS = TimeUnit.MINUTES.toMillis(1)
+
         fun shouldRefreshKey(
             key: EphemeralKey?,
             bufferInSeconds: Long,
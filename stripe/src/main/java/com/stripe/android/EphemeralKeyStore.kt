@@ -0,0 +1,267 @@
+package com.stripe.android
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.os.Build
+import android.security.keystore.KeyGenParameterSpec
+import android.security.keystore.KeyProperties
+import android.util.Base64
+import androidx.annotation.RequiresApi
+import androidx.annotation.VisibleForTesting
+import java.io.IOException
+import java.security.GeneralSecurityException
+import java.security.KeyStore
+import java.security.ProviderException
+import java.util.Calendar
+import java.util.Locale
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import javax.crypto.Cipher
+import javax.crypto.KeyGenerator
+import javax.crypto.SecretKey
+import javax.crypto.spec.GCMParameterSpec
+import org.json.JSONException
+import org.json.JSONObject
+
+/**
+ * Persists the ephemeral key of the object with [objectId], e.g. a customer, encrypted with a
+ * key held by the Android Keystore, so that the key can be used again after the app is
+ * restarted instead of calling the [EphemeralKeyProvider].
+ *
+ * Only one key of each [keyType] is stored, keyed by its object and the API version it was
+ * created for. Nothing is stored if [objectId] is `null`, or if the key can't be encrypted, e.g.
+ * on devices older than API 23.
+ *
+ * Reading or writing a key decrypts or encrypts it with the Keystore and reads all of [prefs],
+ * so callers on the main thread use the async methods, which run on [executor]. [executor] runs
+ * one task at a time, so writes are applied in the order they were made.
+ */
+internal class EphemeralKeyStore<TEphemeralKey : EphemeralKey> @VisibleForTesting
+internal constructor(
+    private val prefs: SharedPreferences,
+    private val encryptor: Encryptor,
+    private val keyType: String,
+    private val objectId: String?,
+    private val factory: EphemeralKey.Factory<TEphemeralKey>,
+    private val apiVersion: String = ApiVersion.get().code,
+    private val executor: Executor = DEFAULT_EXECUTOR
+) {
+    constructor(
+        context: Context,
+        keyType: String,
+        objectId: String?,
+        factory: EphemeralKey.Factory<TEphemeralKey>
+    ) : this(
+        context.getSharedPreferences(PREF_FILE, Context.MODE_PRIVATE),
+        KeystoreEncryptor(),
+        keyType,
+        objectId,
+        factory
+    )
+
+    /**
+     * @return the stored key, or `null` if there is none, or it would have to be refreshed
+     * according to [EphemeralKeyManager.shouldRefreshKey]
+     */
+    fun get(bufferInSeconds: Long, overrideCalendar: Calendar?): TEphemeralKey? {
+        val entryKey = getEntryKey() ?: return null
+        val encryptedKey = prefs.getString(entryKey, null) ?: return null
+
+        val ephemeralKey = encryptor.decrypt(encryptedKey)?.let { rawKey ->
+            try {
+                EphemeralKey.fromJson(JSONObject(rawKey), factory)
+            } catch (e: JSONException) {
+                null
+            }
+        }
+        if (ephemeralKey == null || ephemeralKey.objectId != objectId ||
+            EphemeralKeyManager.shouldRefreshKey(ephemeralKey, bufferInSeconds,
+                overrideCalendar)) {
+            prefs.edit().remove(entryKey).apply()
+            return null
+        }
+        return ephemeralKey
+    }
+
+    /**
+     * Call [get] on [executor], and pass its result to [callback] on that thread.
+     */
+    fun getAsync(
+        bufferInSeconds: Long,
+        overrideCalendar: Calendar?,
+        callback: (TEphemeralKey?) -> Unit
+    ) {
+        executor.execute {
+            callback(get(bufferInSeconds, overrideCalendar))
+        }
+    }
+
+    /**
+     * Call [put] on [executor]
+     */
+    fun putAsync(ephemeralKey: TEphemeralKey, rawKey: String) {
+        executor.execute {
+            put(ephemeralKey, rawKey)
+        }
+    }
+
+    /**
+     * Call [clear] on [executor]
+     */
+    fun clearAsync() {
+        executor.execute {
+            clear()
+        }
+    }
+
+    /**
+     * Store [ephemeralKey], parsed from [rawKey], replacing any stored key of this type. Keys of
+     * other objects are not stored.
+     */
+    fun put(ephemeralKey: TEphemeralKey, rawKey: String) {
+        val entryKey = getEntryKey()
+        if (entryKey == null || ephemeralKey.objectId != objectId) {
+            return
+        }
+        val encryptedKey = encryptor.encrypt(rawKey) ?: return
+        removeEntries(prefs.edit())
+            .putString(entryKey, encryptedKey)
+            .apply()
+    }
+
+    /**
+     * Remove the stored keys of this type, whatever their object
+     */
+    fun clear() {
+        removeEntries(prefs.edit()).apply()
+    }
+
+    private fun removeEntries(editor: SharedPreferences.Editor): SharedPreferences.Editor {
+        val entryKeyPrefix = "$keyType["
+        prefs.all.keys
+            .filter { it.startsWith(entryKeyPrefix) }
+            .forEach { editor.remove(it) }
+        return editor
+    }
+
+    private fun getEntryKey(): String? {
+        return objectId?.let {
+            String.format(Locale.US, "%s[%s].%s", keyType, it, apiVersion)
+        }
+    }
+
+    internal interface Encryptor {
+        /**
+         * @return [plaintext] encrypted and encoded as a String, or `null` if it can't be
+         * encrypted
+         */
+        fun encrypt(plaintext: String): String?
+
+        /**
+         * @return the plaintext of [ciphertext], or `null` if it can't be decrypted
+         */
+        fun decrypt(ciphertext: String): String?
+    }
+
+    /**
+     * Encrypts with AES/GCM using a key that is generated in, and never leaves, the Android
+     * Keystore
+     */
+    private class KeystoreEncryptor : Encryptor {
+        override fun encrypt(plaintext: String): String? {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+                return null
+            }
+            return try {
+                val cipher = Cipher.getInstance(TRANSFORMATION)
+                cipher.init(Cipher.ENCRYPT_MODE, getOrCreateSecretKey())
+                val ciphertext = cipher.doFinal(plaintext.toByteArray(Charsets.UTF_8))
+                Base64.encodeToString(cipher.iv + ciphertext, Base64.NO_WRAP)
+            } catch (e: GeneralSecurityException) {
+                null
+            } catch (e: IOException) {
+                null
+            } catch (e: ProviderException) {
+                null
+            } catch (e: IllegalStateException) {
+                null
+            }
+        }
+
+        override fun decrypt(ciphertext: String): String? {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+                return null
+            }
+            return try {
+                val bytes = Base64.decode(ciphertext, Base64.NO_WRAP)
+                val secretKey = getSecretKey() ?: return null
+                val cipher = Cipher.getInstance(TRANSFORMATION)
+                cipher.init(Cipher.DECRYPT_MODE, secretKey,
+                    GCMParameterSpec(TAG_LENGTH_BITS, bytes, 0, IV_LENGTH_BYTES))
+                String(
+                    cipher.doFinal(bytes, IV_LENGTH_BYTES, bytes.size - IV_LENGTH_BYTES),
+                    Charsets.UTF_8
+                )
+            } catch (e: GeneralSecurityException) {
+                null
+            } catch (e: IOException) {
+                null
+            } catch (e: ProviderException) {
+                null
+            } catch (e: IllegalArgumentException) {
+                null
+            } catch (e: IllegalStateException) {
+                null
+            }
+        }
+
+        @RequiresApi(Build.VERSION_CODES.M)
+        private fun getOrCreateSecretKey(): SecretKey {
+            getSecretKey()?.let { return it }
+
+            val keyGenerator =
+                KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, ANDROID_KEYSTORE)
+            keyGenerator.init(
+                KeyGenParameterSpec.Builder(
+                    SECRET_KEY_ALIAS,
+                    KeyProperties.PURPOSE_ENCRYPT or KeyProperties.PURPOSE_DECRYPT
+                )
+                    .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                    .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                    .build()
+            )
+            return keyGenerator.generateKey()
+        }
+
+        private fun getSecretKey(): SecretKey? {
+            val keyStore = KeyStore.getInstance(ANDROID_KEYSTORE).apply { load(null) }
+            return keyStore.getKey(SECRET_KEY_ALIAS, null) as? SecretKey
+        }
+
+        private companion object {
+            private const val ANDROID_KEYSTORE = "AndroidKeyStore"
+            private const val SECRET_KEY_ALIAS = "com.stripe.android.EphemeralKeyStore"
+            private const val TRANSFORMATION = "AES/GCM/NoPadding"
+            private const val IV_LENGTH_BYTES = 12
+            private const val TAG_LENGTH_BITS = 128
+        }
+    }
+
+    companion object {
+        private const val PREF_FILE = "StripeEphemeralKeyStore"
+
+        internal const val KEY_TYPE_CUSTOMER = "customer"
+        internal const val KEY_TYPE_ISSUING_CARD = "issuing_card"
+
+        /**
+         * The thread shared by all stores, so that writes to [PREF_FILE] are applied in order
+         */
+        private val DEFAULT_EXECUTOR: Executor by lazy {
+            Executors.newSingleThreadExecutor { runnable ->
+                Thread(runnable, "StripeEphemeralKeyStore").apply {
+                    isDaemon = true
+                }
+            }
+        }
+    }
+}
@@ -20,7 +20,8 @@ import org.json.JSONObject;
  */
 final class FingerprintRequest extends StripeRequest {
     private static final String MIME_TYPE = "application/json";
-    private static final String URL = "https://m.stripe.com/4";
+    static final String HOST = "https://m.stripe.com";
+    private static final String URL = HOST + "/4";
 
     @NonNull private final String guid;
 
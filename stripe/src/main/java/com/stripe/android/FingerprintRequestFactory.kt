@@ -7,7 +7,7 @@ internal class FingerprintRequestFactory @VisibleForTesting constructor(
     private val telemetryClientUtil: TelemetryClientUtil
 ) : Factory0<FingerprintRequest> {
 
-    constructor(context: Context) : this(TelemetryClientUtil(context))
+    constructor(context: Context) : this(TelemetryClientUtil.getInstance(context))
 
     override fun create(): FingerprintRequest {
         return FingerprintRequest(
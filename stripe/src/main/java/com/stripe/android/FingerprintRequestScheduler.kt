@@ -0,0 +1,93 @@
+package com.stripe.android
+
+import android.os.SystemClock
+import androidx.annotation.VisibleForTesting
+import java.util.concurrent.TimeUnit
+
+/**
+ * Decides whether a [FingerprintRequest] needs to be sent.
+ *
+ * A fingerprint is only sent if its payload differs from the last one that was sent
+ * successfully, or if [intervalMillis] has passed since then. A request only counts as sent once
+ * it received a 2xx response, so a failed fingerprint is sent again on the next trigger. While a
+ * request is in flight, triggers with the same payload (e.g. retrieving and then confirming an
+ * intent) are skipped, unless the request hasn't completed after [pendingTimeoutMillis].
+ */
+internal class FingerprintRequestScheduler @VisibleForTesting internal constructor(
+    private val intervalMillis: Long = DEFAULT_INTERVAL_MILLIS,
+    private val pendingTimeoutMillis: Long = DEFAULT_PENDING_TIMEOUT_MILLIS,
+    private val clock: () -> Long = { SystemClock.elapsedRealtime() }
+) {
+    private var lastRequest: FingerprintRequest? = null
+    private var lastSentAtMillis = 0L
+    private var pendingRequest: FingerprintRequest? = null
+    private var pendingSinceMillis = 0L
+
+    private var sentCount = 0
+    private var skippedCount = 0
+
+    /**
+     * @return `true` if [request] should be sent, in which case it is recorded as in flight until
+     * [onRequestCompleted] is called
+     */
+    @Synchronized
+    fun shouldSend(request: FingerprintRequest): Boolean {
+        val now = clock()
+        val isRecentlySent = request == lastRequest && now - lastSentAtMillis < intervalMillis
+        val isPending = request == pendingRequest && now - pendingSinceMillis < pendingTimeoutMillis
+        if (isRecentlySent || isPending) {
+            skippedCount++
+            return false
+        }
+
+        pendingRequest = request
+        pendingSinceMillis = now
+        sentCount++
+        return true
+    }
+
+    /**
+     * Called when [request] has finished, or failed if [responseCode] is `null`. Only a 2xx
+     * response records [request] as the last sent request.
+     */
+    @Synchronized
+    fun onRequestCompleted(request: FingerprintRequest, responseCode: Int?) {
+        if (request == pendingRequest) {
+            pendingRequest = null
+        }
+        if (responseCode != null && responseCode in 200..299) {
+            lastRequest = request
+            lastSentAtMillis = clock()
+        }
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        return Stats(
+            sent = sentCount,
+            skipped = skippedCount
+        )
+    }
+
+    internal data class Stats(
+        val sent: Int,
+        val skipped: Int
+    )
+
+    companion object {
+        private val DEFAULT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(30)
+
+        /**
+         * Longer than a fire-and-forget request can take, in case its completion is never
+         * reported, e.g. because the request was dropped from a full queue
+         */
+        private val DEFAULT_PENDING_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1)
+
+        /**
+         * The scheduler shared by all [StripeApiRepository] instances, so that fingerprints are
+         * deduplicated across the process.
+         */
+        @JvmField
+        val DEFAULT = FingerprintRequestScheduler()
+    }
+}
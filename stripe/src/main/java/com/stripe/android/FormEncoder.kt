@@ -0,0 +1,223 @@
+package com.stripe.android
+
+import com.stripe.android.exception.InvalidRequestException
+import java.net.URLDecoder
+
+/**
+ * Encodes request parameters as `application/x-www-form-urlencoded`, e.g.
+ * `card%5Bnumber%5D=4242424242424242&card%5Bcvc%5D=123`.
+ *
+ * Nested maps and lists are flattened into bracketed key paths in a single pass. Keys and values
+ * are percent-encoded straight into a pooled byte buffer, without building intermediate lists of
+ * key-value pairs or formatting each key path as a string. The output is identical to encoding
+ * each flattened key and value with [java.net.URLEncoder].
+ */
+internal class FormEncoder @JvmOverloads constructor(
+    private val bufferPool: BufferPool = BufferPool.DEFAULT
+) {
+    @Throws(InvalidRequestException::class)
+    fun encodeToString(params: Map<String, *>?): String {
+        return encode(params) { buffer, size ->
+            String(buffer, 0, size, Charsets.US_ASCII)
+        }
+    }
+
+    @Throws(InvalidRequestException::class)
+    fun encodeToBytes(params: Map<String, *>?): ByteArray {
+        return encode(params) { buffer, size ->
+            buffer.copyOf(size)
+        }
+    }
+
+    private inline fun <T> encode(
+        params: Map<String, *>?,
+        result: (ByteArray, Int) -> T
+    ): T {
+        val output = Output()
+        val keyPath = Output()
+        try {
+            if (params != null) {
+                writeMap(output, keyPath, params, isNested = false)
+            }
+            return result(output.buffer, output.size)
+        } finally {
+            output.release()
+            keyPath.release()
+        }
+    }
+
+    @Throws(InvalidRequestException::class)
+    private fun writeMap(
+        output: Output,
+        keyPath: Output,
+        params: Map<*, *>,
+        isNested: Boolean = true
+    ) {
+        val keyPathSize = keyPath.size
+        for ((key, value) in params) {
+            if (isNested) {
+                keyPath.writeAscii(OPEN_BRACKET)
+                keyPath.writeEncoded(key.toString())
+                keyPath.writeAscii(CLOSE_BRACKET)
+            } else {
+                keyPath.writeEncoded(key.toString())
+            }
+            writeValue(output, keyPath, value)
+            keyPath.size = keyPathSize
+        }
+    }
+
+    @Throws(InvalidRequestException::class)
+    private fun writeList(output: Output, keyPath: Output, params: List<*>) {
+        // Because application/x-www-form-urlencoded cannot represent an empty
+        // list, convention is to take the list parameter and just set it to an
+        // empty string. (e.g. A regular list might look like `a[]=1&b[]=2`.
+        // Emptying it would look like `a=`.)
+        if (params.isEmpty()) {
+            writePair(output, keyPath, "")
+            return
+        }
+
+        val keyPathSize = keyPath.size
+        keyPath.writeAscii(BRACKETS)
+        for (param in params) {
+            writeValue(output, keyPath, param)
+        }
+        keyPath.size = keyPathSize
+    }
+
+    @Throws(InvalidRequestException::class)
+    private fun writeValue(output: Output, keyPath: Output, value: Any?) {
+        when {
+            value is Map<*, *> -> writeMap(output, keyPath, value)
+            value is List<*> -> writeList(output, keyPath, value)
+            value == "" -> {
+                val key = keyPath.toDecodedKey()
+                throw InvalidRequestException("You cannot set '" + key + "' to an empty " +
+                    "string. " + "We interpret empty strings as null in requests. " +
+                    "You may set '" + key + "' to null to delete the property.",
+                    key, null, 0, null, null, null, null)
+            }
+            value == null -> writePair(output, keyPath, "")
+            else -> writePair(output, keyPath, value.toString())
+        }
+    }
+
+    private fun writePair(output: Output, keyPath: Output, value: String) {
+        if (output.size > 0) {
+            output.writeAscii("&")
+        }
+        output.write(keyPath)
+        output.writeAscii("=")
+        output.writeEncoded(value)
+    }
+
+    /**
+     * A growable byte buffer backed by [bufferPool].
+     */
+    private inner class Output {
+        var buffer: ByteArray = bufferPool.acquire()
+        var size: Int = 0
+
+        fun write(other: Output) {
+            ensureCapacity(size + other.size)
+            System.arraycopy(other.buffer, 0, buffer, size, other.size)
+            size += other.size
+        }
+
+        fun writeAscii(value: String) {
+            ensureCapacity(size + value.length)
+            for (char in value) {
+                buffer[size++] = char.toByte()
+            }
+        }
+
+        /**
+         * Write [value] percent-encoded with the same rules as [java.net.URLEncoder] with UTF-8.
+         */
+        fun writeEncoded(value: String) {
+            var index = 0
+            while (index < value.length) {
+                val char = value[index]
+                when {
+                    isUnreserved(char) -> writeByte(char.toInt())
+                    char == ' ' -> writeByte('+'.toInt())
+                    char.toInt() < 0x80 -> writePercentEncoded(char.toInt())
+                    char.toInt() < 0x800 -> {
+                        writePercentEncoded(0xC0 or (char.toInt() shr 6))
+                        writePercentEncoded(0x80 or (char.toInt() and 0x3F))
+                    }
+                    Character.isHighSurrogate(char) && index + 1 < value.length &&
+                        Character.isLowSurrogate(value[index + 1]) -> {
+                        val codePoint = Character.toCodePoint(char, value[++index])
+                        writePercentEncoded(0xF0 or (codePoint shr 18))
+                        writePercentEncoded(0x80 or ((codePoint shr 12) and 0x3F))
+                        writePercentEncoded(0x80 or ((codePoint shr 6) and 0x3F))
+                        writePercentEncoded(0x80 or (codePoint and 0x3F))
+                    }
+                    Character.isSurrogate(char) -> {
+                        // an unpaired surrogate can't be encoded; URLEncoder replaces it with '?'
+                        writePercentEncoded('?'.toInt())
+                    }
+                    else -> {
+                        writePercentEncoded(0xE0 or (char.toInt() shr 12))
+                        writePercentEncoded(0x80 or ((char.toInt() shr 6) and 0x3F))
+                        writePercentEncoded(0x80 or (char.toInt() and 0x3F))
+                    }
+                }
+                index++
+            }
+        }
+
+        /**
+         * @return the key path in this buffer, without percent-encoding, for error messages
+         */
+        fun toDecodedKey(): String {
+            return URLDecoder.decode(
+                String(buffer, 0, size, Charsets.US_ASCII),
+                StripeRequest.CHARSET
+            )
+        }
+
+        fun release() {
+            bufferPool.release(buffer)
+        }
+
+        private fun writeByte(byte: Int) {
+            ensureCapacity(size + 1)
+            buffer[size++] = byte.toByte()
+        }
+
+        private fun writePercentEncoded(byte: Int) {
+            ensureCapacity(size + 3)
+            buffer[size++] = '%'.toByte()
+            buffer[size++] = HEX_DIGITS[(byte shr 4) and 0xF]
+            buffer[size++] = HEX_DIGITS[byte and 0xF]
+        }
+
+        private fun ensureCapacity(capacity: Int) {
+            while (capacity > buffer.size) {
+                buffer = bufferPool.grow(buffer, size)
+            }
+        }
+    }
+
+    companion object {
+        private const val OPEN_BRACKET = "%5B"
+        private const val CLOSE_BRACKET = "%5D"
+        private const val BRACKETS = OPEN_BRACKET + CLOSE_BRACKET
+
+        private val HEX_DIGITS = "0123456789ABCDEF".toByteArray(Charsets.US_ASCII)
+
+        /**
+         * The characters that [java.net.URLEncoder] doesn't encode.
+         */
+        private fun isUnreserved(char: Char): Boolean {
+            return char in 'a'..'z' || char in 'A'..'Z' || char in '0'..'9' ||
+                char == '.' || char == '-' || char == '*' || char == '_'
+        }
+
+        @JvmField
+        val DEFAULT = FormEncoder()
+    }
+}
@@ -0,0 +1,98 @@
+package com.stripe.android
+
+import java.net.HttpURLConnection
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.suspendCancellableCoroutine
+
+/**
+ * Tracks the connections opened by a blocking request that runs on behalf of a coroutine, so
+ * that cancelling the coroutine disconnects them and the blocked thread is released right away,
+ * instead of waiting for the request's read timeout.
+ */
+internal class InFlightRequest private constructor() {
+    private val connections = mutableListOf<HttpURLConnection>()
+    private var isCompleted = false
+
+    /**
+     * `true` if the coroutine that this request runs on behalf of was cancelled
+     */
+    @Volatile
+    var isCancelled = false
+        private set
+
+    /**
+     * Called when [connection] is opened on behalf of this request. If the request has already
+     * been cancelled, [connection] is disconnected immediately.
+     */
+    @Synchronized
+    fun register(connection: HttpURLConnection) {
+        if (isCancelled) {
+            connection.disconnect()
+        } else if (!isCompleted) {
+            connections.add(connection)
+        }
+    }
+
+    @Synchronized
+    private fun cancel() {
+        if (!isCompleted) {
+            isCancelled = true
+            connections.forEach { it.disconnect() }
+            connections.clear()
+        }
+    }
+
+    @Synchronized
+    private fun complete() {
+        isCompleted = true
+        connections.clear()
+    }
+
+    companion object {
+        private val currentRequest = ThreadLocal<InFlightRequest>()
+
+        /**
+         * @return the request running on the current thread on behalf of a coroutine, if any
+         */
+        @JvmStatic
+        fun current(): InFlightRequest? {
+            return currentRequest.get()
+        }
+
+        /**
+         * Run the blocking [block] on [dispatcher] and suspend until it returns. If the calling
+         * coroutine is cancelled, the connections opened by [block] are disconnected and the
+         * coroutine resumes with a cancellation exception.
+         */
+        suspend fun <T> execute(
+            dispatcher: CoroutineDispatcher,
+            block: () -> T
+        ): T = suspendCancellableCoroutine { continuation ->
+            val inFlightRequest = InFlightRequest()
+            continuation.invokeOnCancellation {
+                inFlightRequest.cancel()
+            }
+
+            val task = Runnable {
+                currentRequest.set(inFlightRequest)
+                // any Throwable, so that the caller is always resumed
+                val result = try {
+                    Result.success(block())
+                } catch (e: Throwable) {
+                    Result.failure<T>(e)
+                } finally {
+                    inFlightRequest.complete()
+                    currentRequest.remove()
+                }
+                // ignored by the continuation if it was cancelled
+                continuation.resumeWith(result)
+            }
+
+            if (dispatcher.isDispatchNeeded(continuation.context)) {
+                dispatcher.dispatch(continuation.context, task)
+            } else {
+                task.run()
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.stripe.android
+
+import com.stripe.android.model.StripeIntent
+
+/**
+ * An attempt of [Stripe.pollPaymentIntent] or [Stripe.pollSetupIntent] to retrieve an intent,
+ * reported to [NetworkEventListener.onIntentPolled].
+ */
+data class IntentPollEvent internal constructor(
+    /**
+     * The id of the retrieved intent, or `null` if it couldn't be retrieved
+     */
+    val intentId: String?,
+
+    /**
+     * The number of the attempt, starting at 1
+     */
+    val attempt: Int,
+
+    /**
+     * The status of the retrieved intent
+     */
+    val status: StripeIntent.Status?,
+
+    /**
+     * The time spent retrieving the intent, in milliseconds
+     */
+    val latencyMillis: Long,
+
+    /**
+     * How long the poller waits before the next attempt, in milliseconds, or `null` if this was
+     * the last attempt
+     */
+    val nextDelayMillis: Long?
+)
@@ -58,14 +58,36 @@ public class IssuingCardPinService
     public static IssuingCardPinService create(
             @NonNull Context context,
             @NonNull EphemeralKeyProvider keyProvider) {
-        return new IssuingCardPinService(context, keyProvider, Stripe.getAppInfo());
+        return create(context, keyProvider, null);
+    }
+
+    /**
+     * Create a IssuingCardPinService with the provided {@link EphemeralKeyProvider}, that stores
+     * the ephemeral key of the card with {@param cardId} on the device, encrypted with a key held
+     * by the Android Keystore, so that it can be used again after the app is restarted. Keys are
+     * only stored on devices running API 23 or higher.
+     *
+     * @param keyProvider an {@link EphemeralKeyProvider} used to get
+     *                    {@link IssuingCardEphemeralKey EphemeralKeys} as needed
+     * @param cardId      the ID of the card that {@param keyProvider} creates keys for. Keys of
+     *                    other cards are not stored. If {@code null}, no keys are stored.
+     */
+    @NonNull
+    public static IssuingCardPinService create(
+            @NonNull Context context,
+            @NonNull EphemeralKeyProvider keyProvider,
+            @Nullable String cardId) {
+        return new IssuingCardPinService(context, keyProvider, Stripe.getAppInfo(), cardId);
     }
 
     private IssuingCardPinService(
             @NonNull Context context,
             @NonNull EphemeralKeyProvider keyProvider,
-            @Nullable AppInfo appInfo) {
-        this(keyProvider, new StripeApiRepository(context, appInfo), new OperationIdFactory());
+            @Nullable AppInfo appInfo,
+            @Nullable String cardId) {
+        this(keyProvider, new StripeApiRepository(context, appInfo), new OperationIdFactory(),
+                new EphemeralKeyStore<>(context, EphemeralKeyStore.KEY_TYPE_ISSUING_CARD, cardId,
+                        new IssuingCardEphemeralKey.Factory()));
     }
 
     @VisibleForTesting
@@ -73,6 +95,14 @@ public class IssuingCardPinService
             @NonNull EphemeralKeyProvider keyProvider,
             @NonNull StripeRepository stripeRepository,
             @NonNull OperationIdFactory operationIdFactory) {
+        this(keyProvider, stripeRepository, operationIdFactory, null);
+    }
+
+    private IssuingCardPinService(
+            @NonNull EphemeralKeyProvider keyProvider,
+            @NonNull StripeRepository stripeRepository,
+            @NonNull OperationIdFactory operationIdFactory,
+            @Nullable EphemeralKeyStore<IssuingCardEphemeralKey> ephemeralKeyStore) {
         mOperationIdFactory = operationIdFactory;
         mStripeRepository = stripeRepository;
         mEphemeralKeyManager = new EphemeralKeyManager<>(
@@ -82,7 +112,8 @@ public class IssuingCardPinService
                 null,
                 operationIdFactory,
                 new IssuingCardEphemeralKey.Factory(),
-                true
+                true,
+                ephemeralKeyStore
         );
     }
 
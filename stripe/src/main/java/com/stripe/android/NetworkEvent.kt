@@ -0,0 +1,138 @@
+package com.stripe.android
+
+import java.net.MalformedURLException
+import java.net.URL
+
+/**
+ * Timing and size information for a request made by the SDK, reported to
+ * [NetworkEventListener.onRequestCompleted] after the request and any retries have finished.
+ *
+ * Durations are in milliseconds and describe the last attempt of the request. Phases that the
+ * attempt didn't go through, such as [connectMillis] and [tlsMillis] when a pooled connection was
+ * reused, are 0.
+ */
+data class NetworkEvent internal constructor(
+    /**
+     * The type of the request
+     */
+    val requestType: RequestType,
+
+    /**
+     * The HTTP method of the request, e.g. `POST`
+     */
+    val method: String,
+
+    /**
+     * The host and path of the request, with object ids replaced by `{id}`, e.g.
+     * `api.stripe.com/v1/payment_intents/{id}/confirm`. Use this to group requests to the same
+     * endpoint.
+     */
+    val endpoint: String,
+
+    /**
+     * The HTTP status code of the response, or `null` if no response was received
+     */
+    val statusCode: Int?,
+
+    /**
+     * The value of the `Request-Id` response header, which identifies the request to Stripe
+     */
+    val requestId: String?,
+
+    /**
+     * The time spent establishing the TCP connection, including resolving the host
+     */
+    val connectMillis: Long,
+
+    /**
+     * The time spent on the TLS handshake
+     */
+    val tlsMillis: Long,
+
+    /**
+     * The time spent writing the request body
+     */
+    val requestWriteMillis: Long,
+
+    /**
+     * The time between sending the request and receiving the response headers, which is
+     * mostly time spent by the server and on the network
+     */
+    val timeToFirstByteMillis: Long,
+
+    /**
+     * The time spent reading and decoding the response body
+     */
+    val bodyReadMillis: Long,
+
+    /**
+     * The total time of the request, including retries and the delays between them
+     */
+    val totalMillis: Long,
+
+    /**
+     * The number of bytes of request body sent by the last attempt
+     */
+    val bytesOut: Long,
+
+    /**
+     * The number of bytes of response body received by the last attempt, before decompression
+     */
+    val bytesIn: Long,
+
+    /**
+     * The number of times the request was retried
+     */
+    val retryCount: Int
+) {
+    enum class RequestType {
+        /**
+         * A request to the Stripe API
+         */
+        Api,
+
+        /**
+         * An analytics request
+         */
+        Analytics,
+
+        /**
+         * A fraud detection request
+         */
+        Fingerprint,
+
+        /**
+         * A request made by [Stripe.warmUp] to open a connection ahead of time
+         */
+        WarmUp
+    }
+
+    internal companion object {
+        private val ID_SEGMENT = Regex("[a-z]+_[A-Za-z0-9_]*[0-9][A-Za-z0-9_]*")
+
+        /**
+         * @return the host and path of [url], with path segments that look like object ids,
+         * such as `pi_1FzQ4xCRMbs6FrXf`, replaced by `{id}`
+         */
+        internal fun createEndpoint(url: String): String {
+            val parsedUrl = try {
+                URL(url)
+            } catch (e: MalformedURLException) {
+                return url
+            }
+
+            return parsedUrl.host + parsedUrl.path.split("/").joinToString("/") { segment ->
+                if (ID_SEGMENT.matches(segment)) "{id}" else segment
+            }
+        }
+
+        internal fun getRequestType(request: StripeRequest): RequestType {
+            return when {
+                request is FingerprintRequest -> RequestType.Fingerprint
+                request is WarmUpRequest -> RequestType.WarmUp
+                request.baseUrl == AnalyticsRequest.HOST -> RequestType.Analytics
+                else -> RequestType.Api
+            }
+        }
+    }
+}
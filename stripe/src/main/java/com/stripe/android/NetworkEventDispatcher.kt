@@ -0,0 +1,116 @@
+package com.stripe.android
+
+import androidx.annotation.VisibleForTesting
+import com.stripe.android.model.StripeIntent
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+
+/**
+ * Reports [NetworkEvent]s, [ParseEvent]s and [IntentPollEvent]s to the registered
+ * [NetworkEventListener]s. Events are only created while at least one listener is registered.
+ * An exception thrown by a listener is logged, so that it can't fail the SDK's request.
+ */
+internal class NetworkEventDispatcher @VisibleForTesting internal constructor(
+    private val logger: Logger = Logger.real()
+) {
+    private val listeners = CopyOnWriteArrayList<NetworkEventListener>()
+
+    fun addListener(listener: NetworkEventListener) {
+        listeners.addIfAbsent(listener)
+    }
+
+    fun removeListener(listener: NetworkEventListener) {
+        listeners.remove(listener)
+    }
+
+    /**
+     * Called when [request] has finished, or failed if [statusCode] is `null`.
+     *
+     * @param metrics the metrics of the last attempt of [request]
+     */
+    fun onRequestCompleted(
+        request: StripeRequest,
+        metrics: RequestMetrics,
+        statusCode: Int?,
+        requestId: String?,
+        totalNanos: Long,
+        retryCount: Int = 0
+    ) {
+        if (listeners.isEmpty()) {
+            return
+        }
+
+        val event = NetworkEvent(
+            requestType = NetworkEvent.getRequestType(request),
+            method = request.method.code,
+            endpoint = NetworkEvent.createEndpoint(request.baseUrl),
+            statusCode = statusCode,
+            requestId = requestId,
+            connectMillis = toMillis(metrics.connectNanos),
+            tlsMillis = toMillis(metrics.tlsNanos),
+            requestWriteMillis = toMillis(metrics.requestWriteNanos),
+            timeToFirstByteMillis = toMillis(metrics.timeToFirstByteNanos),
+            bodyReadMillis = toMillis(metrics.bodyReadNanos),
+            totalMillis = toMillis(totalNanos),
+            bytesOut = metrics.bytesOut,
+            bytesIn = metrics.bytesIn,
+            retryCount = retryCount
+        )
+        notifyListeners { it.onRequestCompleted(event) }
+    }
+
+    fun onResponseParsed(request: StripeRequest, requestId: String?, parseNanos: Long) {
+        if (listeners.isEmpty()) {
+            return
+        }
+
+        val event = ParseEvent(
+            endpoint = NetworkEvent.createEndpoint(request.baseUrl),
+            requestId = requestId,
+            parseMillis = toMillis(parseNanos)
+        )
+        notifyListeners { it.onResponseParsed(event) }
+    }
+
+    fun onIntentPolled(
+        stripeIntent: StripeIntent?,
+        attempt: Int,
+        latencyMillis: Long,
+        nextDelayMillis: Long?
+    ) {
+        if (listeners.isEmpty()) {
+            return
+        }
+
+        val event = IntentPollEvent(
+            intentId = stripeIntent?.id,
+            attempt = attempt,
+            status = stripeIntent?.status,
+            latencyMillis = latencyMillis,
+            nextDelayMillis = nextDelayMillis
+        )
+        notifyListeners { it.onIntentPolled(event) }
+    }
+
+    private fun notifyListeners(callback: (NetworkEventListener) -> Unit) {
+        listeners.forEach {
+            try {
+                callback(it)
+            } catch (e: Exception) {
+                logger.error("Exception thrown by NetworkEventListener.", e)
+            }
+        }
+    }
+
+    private fun toMillis(nanos: Long): Long {
+        return TimeUnit.NANOSECONDS.toMillis(nanos)
+    }
+
+    companion object {
+        /**
+         * The dispatcher shared by all of the SDK's request executors.
+         */
+        @JvmField
+        val DEFAULT = NetworkEventDispatcher()
+    }
+}
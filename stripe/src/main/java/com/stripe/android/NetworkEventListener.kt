@@ -0,0 +1,28 @@
+package com.stripe.android
+
+/**
+ * Receives timing information for the requests made by the SDK. Register a listener with
+ * [Stripe.addNetworkEventListener].
+ *
+ * Methods are called on the thread that made the request, after the request has finished, and
+ * should return quickly. Override only the methods that you need.
+ *
+ * See [NetworkStatsAggregator] for a listener that keeps per-endpoint latency percentiles.
+ */
+abstract class NetworkEventListener {
+    /**
+     * Called when a request, including any retries, has finished or failed.
+     */
+    open fun onRequestCompleted(event: NetworkEvent) {}
+
+    /**
+     * Called when the response of a Stripe API request has been parsed into a model object.
+     */
+    open fun onResponseParsed(event: ParseEvent) {}
+
+    /**
+     * Called after each attempt of [Stripe.pollPaymentIntent] or [Stripe.pollSetupIntent] to
+     * retrieve the intent.
+     */
+    open fun onIntentPolled(event: IntentPollEvent) {}
+}
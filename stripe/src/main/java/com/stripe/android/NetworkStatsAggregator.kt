@@ -0,0 +1,163 @@
+package com.stripe.android
+
+import java.util.Locale
+import kotlin.math.ceil
+
+/**
+ * A [NetworkEventListener] that keeps latency percentiles for each endpoint in memory, e.g. to
+ * show on a debug screen.
+ *
+ * For each endpoint, the most recent [maxSamples] values of each duration are kept, so the
+ * percentiles describe recent requests and memory use is bounded.
+ *
+ * ```
+ * val aggregator = NetworkStatsAggregator()
+ * Stripe.addNetworkEventListener(aggregator)
+ * ...
+ * Log.d(TAG, aggregator.dump())
+ * ```
+ */
+class NetworkStatsAggregator @JvmOverloads constructor(
+    private val maxSamples: Int = DEFAULT_MAX_SAMPLES
+) : NetworkEventListener() {
+    private val endpoints = sortedMapOf<String, EndpointSamples>()
+
+    init {
+        require(maxSamples > 0) {
+            "maxSamples must be greater than 0"
+        }
+    }
+
+    @Synchronized
+    override fun onRequestCompleted(event: NetworkEvent) {
+        val samples = endpoints.getOrPut(event.endpoint) { EndpointSamples(maxSamples) }
+        samples.requestCount++
+        if (event.statusCode == null) {
+            samples.failureCount++
+        }
+        samples.total.add(event.totalMillis)
+        samples.timeToFirstByte.add(event.timeToFirstByteMillis)
+        samples.onDevice.add(event.totalMillis - event.timeToFirstByteMillis)
+    }
+
+    @Synchronized
+    override fun onResponseParsed(event: ParseEvent) {
+        endpoints.getOrPut(event.endpoint) { EndpointSamples(maxSamples) }
+            .parse.add(event.parseMillis)
+    }
+
+    /**
+     * @return the statistics of each endpoint that a request has been made to, ordered by
+     * endpoint
+     */
+    @Synchronized
+    fun getStats(): List<EndpointStats> {
+        return endpoints.map { (endpoint, samples) ->
+            EndpointStats(
+                endpoint = endpoint,
+                requestCount = samples.requestCount,
+                failureCount = samples.failureCount,
+                total = samples.total.getPercentiles(),
+                timeToFirstByte = samples.timeToFirstByte.getPercentiles(),
+                onDevice = samples.onDevice.getPercentiles(),
+                parse = samples.parse.getPercentiles()
+            )
+        }
+    }
+
+    /**
+     * @return a human-readable summary of [getStats]
+     */
+    fun dump(): String {
+        return getStats().joinToString("\n") { stats ->
+            String.format(Locale.ROOT,
+                "%s: %d requests, %d failed; total %s; ttfb %s; on-device %s; parse %s",
+                stats.endpoint, stats.requestCount, stats.failureCount, stats.total ?: "n/a",
+                stats.timeToFirstByte ?: "n/a", stats.onDevice ?: "n/a", stats.parse ?: "n/a")
+        }
+    }
+
+    @Synchronized
+    fun reset() {
+        endpoints.clear()
+    }
+
+    /**
+     * Latency statistics for one endpoint. Durations are in milliseconds.
+     *
+     * @param total the total duration of requests
+     * @param timeToFirstByte the time spent waiting for the response, mostly on the server and
+     * the network
+     * @param onDevice the rest of [total], spent on the DNS lookup, handshakes, writing and
+     * reading bodies, and retries
+     * @param parse the time spent parsing responses into model objects
+     */
+    data class EndpointStats internal constructor(
+        val endpoint: String,
+        val requestCount: Int,
+        val failureCount: Int,
+        val total: Percentiles?,
+        val timeToFirstByte: Percentiles?,
+        val onDevice: Percentiles?,
+        val parse: Percentiles?
+    )
+
+    data class Percentiles internal constructor(
+        val p50: Long,
+        val p95: Long,
+        val p99: Long
+    ) {
+        override fun toString(): String {
+            return "p50=${p50}ms p95=${p95}ms p99=${p99}ms"
+        }
+    }
+
+    private class EndpointSamples(maxSamples: Int) {
+        var requestCount = 0
+        var failureCount = 0
+        val total = Samples(maxSamples)
+        val timeToFirstByte = Samples(maxSamples)
+        val onDevice = Samples(maxSamples)
+        val parse = Samples(maxSamples)
+    }
+
+    /**
+     * A ring buffer of the most recent values.
+     */
+    private class Samples(maxSamples: Int) {
+        private val values = LongArray(maxSamples)
+        private var size = 0
+        private var next = 0
+
+        fun add(value: Long) {
+            values[next] = value
+            next = (next + 1) % values.size
+            size = minOf(size + 1, values.size)
+        }
+
+        /**
+         * @return the nearest-rank percentiles of the values, or `null` if there are none
+         */
+        fun getPercentiles(): Percentiles? {
+            if (size == 0) {
+                return null
+            }
+
+            val sortedValues = values.copyOf(size).apply { sort() }
+            return Percentiles(
+                p50 = getPercentile(sortedValues, 0.50),
+                p95 = getPercentile(sortedValues, 0.95),
+                p99 = getPercentile(sortedValues, 0.99)
+            )
+        }
+
+        private fun getPercentile(sortedValues: LongArray, percentile: Double): Long {
+            val rank = ceil(percentile * sortedValues.size).toInt()
+            return sortedValues[maxOf(rank, 1) - 1]
+        }
+    }
+
+    companion object {
+        private const val DEFAULT_MAX_SAMPLES = 256
+    }
+}
@@ -0,0 +1,23 @@
+package com.stripe.android
+
+/**
+ * The time spent parsing the response of a Stripe API request into a model object, such as a
+ * [com.stripe.android.model.PaymentIntent], reported to
+ * [NetworkEventListener.onResponseParsed].
+ */
+data class ParseEvent internal constructor(
+    /**
+     * The endpoint of the request, as in [NetworkEvent.endpoint]
+     */
+    val endpoint: String,
+
+    /**
+     * The value of the `Request-Id` response header, matching [NetworkEvent.requestId]
+     */
+    val requestId: String?,
+
+    /**
+     * The time spent parsing the response body, in milliseconds
+     */
+    val parseMillis: Long
+)
@@ -40,13 +40,13 @@ internal open class PaymentController @VisibleForTesting constructor(
     context: Context,
     private val stripeRepository: StripeRepository,
     private val threeDs2Service: StripeThreeDs2Service =
-        StripeThreeDs2ServiceImpl(context, StripeSSLSocketFactory()),
+        StripeThreeDs2ServiceImpl(context, StripeSSLSocketFactory.DEFAULT),
     private val messageVersionRegistry: MessageVersionRegistry =
         MessageVersionRegistry(),
     private val config: PaymentAuthConfig =
         PaymentAuthConfig.get(),
     private val analyticsRequestExecutor: FireAndForgetRequestExecutor =
-        StripeFireAndForgetRequestExecutor(),
+        AnalyticsRequestDispatcher.getInstance(context),
     private val analyticsDataFactory: AnalyticsDataFactory =
         AnalyticsDataFactory.create(context.applicationContext),
     private val challengeFlowStarter: ChallengeFlowStarter =
@@ -69,10 +69,13 @@ internal open class PaymentController @VisibleForTesting constructor(
         confirmStripeIntentParams: ConfirmStripeIntentParams,
         requestOptions: ApiRequest.Options
     ) {
-        ConfirmStripeIntentTask(stripeRepository, confirmStripeIntentParams, requestOptions,
-            ConfirmStripeIntentCallback(host, requestOptions, this,
+        // confirming the intent and starting 3DS2 authentication share one deadline
+        val operationRequestOptions = requestOptions.withDeadline(Deadline.forOperation())
+        ConfirmStripeIntentTask(stripeRepository, confirmStripeIntentParams,
+            operationRequestOptions,
+            ConfirmStripeIntentCallback(host, operationRequestOptions, this,
                 getRequestCode(confirmStripeIntentParams)))
-            .execute()
+            .executeOnExecutor(TaskExecutor.DEFAULT.getExecutor(TaskExecutor.Priority.High))
     }
 
     open fun startAuth(
@@ -80,19 +83,20 @@ internal open class PaymentController @VisibleForTesting constructor(
         clientSecret: String,
         requestOptions: ApiRequest.Options
     ) {
+        val operationRequestOptions = requestOptions.withDeadline(Deadline.forOperation())
         RetrieveIntentTask(stripeRepository,
             clientSecret,
-            requestOptions,
+            operationRequestOptions,
             object : ApiResultCallback<StripeIntent> {
                 override fun onSuccess(stripeIntent: StripeIntent) {
-                    handleNextAction(host, stripeIntent, requestOptions)
+                    handleNextAction(host, stripeIntent, operationRequestOptions)
                 }
 
                 override fun onError(e: Exception) {
                     handleError(host, PAYMENT_REQUEST_CODE, e)
                 }
             })
-            .execute()
+            .executeOnExecutor(TaskExecutor.DEFAULT.getExecutor(TaskExecutor.Priority.Normal))
     }
 
     /**
@@ -149,7 +153,7 @@ internal open class PaymentController @VisibleForTesting constructor(
                     callback.onError(e)
                 }
             })
-            .execute()
+            .executeOnExecutor(TaskExecutor.DEFAULT.getExecutor(TaskExecutor.Priority.Normal))
     }
 
     /**
@@ -191,7 +195,7 @@ internal open class PaymentController @VisibleForTesting constructor(
                     callback.onError(e)
                 }
             })
-            .execute()
+            .executeOnExecutor(TaskExecutor.DEFAULT.getExecutor(TaskExecutor.Priority.Normal))
     }
 
     @VisibleForTesting
@@ -504,8 +508,10 @@ internal open class PaymentController @VisibleForTesting constructor(
                 val activity = host.activity ?: return@Runnable
                 transaction.doChallenge(activity,
                     challengeParameters,
+                    // the challenge waits for the customer, so completing it doesn't share the
+                    // confirmation's deadline
                     PaymentAuth3ds2ChallengeStatusReceiver.create(host, stripeRepository1,
-                        stripeIntent, sourceId, requestOptions,
+                        stripeIntent, sourceId, requestOptions.withDeadline(null),
                         analyticsRequestExecutor, analyticsDataFactory,
                         transaction),
                     maxTimeout)
@@ -0,0 +1,49 @@
+package com.stripe.android
+
+import com.stripe.android.model.PaymentMethod
+import org.json.JSONException
+import org.json.JSONObject
+
+/**
+ * A page of a customer's [PaymentMethod]s, as returned by the
+ * [List PaymentMethods](https://stripe.com/docs/api/payment_methods/list) API
+ */
+internal data class PaymentMethodsPage(
+    val paymentMethods: List<PaymentMethod>,
+
+    /**
+     * `true` if there are more payment methods after this page
+     */
+    val hasMore: Boolean
+) {
+    /**
+     * The id to pass as `starting_after` to retrieve the next page, or `null` if this is the
+     * last page
+     */
+    val nextStartingAfter: String?
+        get() = if (hasMore) paymentMethods.lastOrNull()?.id else null
+
+    internal companion object {
+        /**
+         * The largest page size allowed by the API
+         */
+        const val MAX_LIMIT = 100
+
+        @JvmStatic
+        fun fromString(jsonString: String?): PaymentMethodsPage {
+            val json = try {
+                JSONObject(jsonString.orEmpty())
+            } catch (e: JSONException) {
+                return PaymentMethodsPage(emptyList(), false)
+            }
+
+            val data = json.optJSONArray("data")
+            val paymentMethods = data?.let {
+                (0 until it.length()).mapNotNull { index ->
+                    PaymentMethod.fromJson(it.optJSONObject(index))
+                }
+            }.orEmpty()
+            return PaymentMethodsPage(paymentMethods, json.optBoolean("has_more"))
+        }
+    }
+}
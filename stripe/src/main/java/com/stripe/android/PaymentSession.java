@@ -195,6 +195,7 @@ public class PaymentSession {
         }
 
         mPaymentSessionListener = listener;
+        Stripe.warmUp();
 
         if (savedInstanceState != null) {
             PaymentSessionData data =
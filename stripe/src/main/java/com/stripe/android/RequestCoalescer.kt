@@ -0,0 +1,135 @@
+package com.stripe.android
+
+import com.stripe.android.exception.APIConnectionException
+import java.io.InterruptedIOException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * Shares one network call between concurrent identical [ApiRequest]s, e.g. when a
+ * [com.stripe.android.model.PaymentIntent] is retrieved by [PaymentController] and by the app at
+ * the same time after authentication.
+ *
+ * Requests are identical if they have the same method, URL, params, [ApiRequest.Options] and
+ * [AppInfo]. The first request is made, and requests that arrive while it is in flight wait for
+ * it and receive its response or exception. A waiting request whose coroutine is cancelled
+ * stops waiting. Only use this for requests without side effects, i.e. `GET` requests.
+ */
+internal class RequestCoalescer {
+    private val calls = mutableMapOf<ApiRequest, Call>()
+
+    private var issuedCount = 0
+    private var coalescedCount = 0
+
+    /**
+     * Make [request] by calling [block], or wait for the identical request that is already in
+     * flight.
+     */
+    fun execute(request: ApiRequest, block: () -> StripeResponse): StripeResponse {
+        var isNewCall = false
+        val call = synchronized(this) {
+            calls.getOrPut(request) {
+                isNewCall = true
+                Call()
+            }.also {
+                if (isNewCall) {
+                    issuedCount++
+                } else {
+                    coalescedCount++
+                }
+            }
+        }
+
+        if (!isNewCall) {
+            // if the caller that made the call was cancelled, make the request again
+            return call.await(request) ?: execute(request, block)
+        }
+
+        var response: StripeResponse? = null
+        var throwable: Throwable? = null
+        try {
+            return block().also { response = it }
+        } catch (e: Throwable) {
+            throwable = e
+            throw e
+        } finally {
+            // complete the call even if `block` threw an Error, so that waiters never hang
+            call.complete(response, throwable,
+                throwable != null && InFlightRequest.current()?.isCancelled == true)
+            synchronized(this) {
+                calls.remove(request)
+            }
+        }
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        return Stats(
+            issued = issuedCount,
+            coalesced = coalescedCount
+        )
+    }
+
+    internal data class Stats(
+        /**
+         * The number of requests that were made
+         */
+        val issued: Int,
+
+        /**
+         * The number of requests that waited for an identical request instead of being made
+         */
+        val coalesced: Int
+    )
+
+    private class Call {
+        private val latch = CountDownLatch(1)
+        private var response: StripeResponse? = null
+        private var throwable: Throwable? = null
+        private var isCancelled = false
+
+        fun complete(response: StripeResponse?, throwable: Throwable?, isCancelled: Boolean) {
+            this.response = response
+            this.throwable = throwable
+            this.isCancelled = isCancelled
+            latch.countDown()
+        }
+
+        /**
+         * Wait in short steps, so that a waiter whose own coroutine is cancelled stops waiting
+         * even though it has no connection to disconnect.
+         *
+         * @return the response of the call, or `null` if the caller that made it was cancelled
+         */
+        fun await(request: ApiRequest): StripeResponse? {
+            try {
+                while (!latch.await(WAIT_STEP_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (InFlightRequest.current()?.isCancelled == true) {
+                        throw APIConnectionException.create(request.baseUrl,
+                            InterruptedIOException("Request was cancelled"))
+                    }
+                }
+            } catch (e: InterruptedException) {
+                Thread.currentThread().interrupt()
+                throw APIConnectionException.create(request.baseUrl, e)
+            }
+
+            if (isCancelled) {
+                return null
+            }
+            throwable?.let { throw it }
+            return response
+        }
+    }
+
+    companion object {
+        private const val WAIT_STEP_MILLIS = 50L
+
+        /**
+         * The coalescer shared by all [StripeApiRepository] instances, so that requests made by
+         * e.g. [Stripe] and [CustomerSession] are coalesced with each other.
+         */
+        @JvmField
+        val DEFAULT = RequestCoalescer()
+    }
+}
@@ -0,0 +1,33 @@
+package com.stripe.android
+
+/**
+ * The durations of the phases of a single attempt of a request, measured with
+ * [System.nanoTime], and the number of bytes that it sent and received.
+ *
+ * Phases that the attempt didn't go through, such as the TCP and TLS handshakes when a pooled
+ * connection was reused, are 0.
+ */
+internal class RequestMetrics {
+    val startedAtNanos: Long = System.nanoTime()
+
+    var connectNanos: Long = 0
+    var tlsNanos: Long = 0
+    var requestWriteNanos: Long = 0
+    var timeToFirstByteNanos: Long = 0
+    var bodyReadNanos: Long = 0
+
+    var bytesOut: Long = 0
+    var bytesIn: Long = 0
+
+    /**
+     * Run [block] and pass its duration, in nanoseconds, to [record].
+     */
+    inline fun <T> measure(record: RequestMetrics.(Long) -> Unit, block: () -> T): T {
+        val startedAtNanos = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            record(System.nanoTime() - startedAtNanos)
+        }
+    }
+}
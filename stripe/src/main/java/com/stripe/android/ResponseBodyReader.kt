@@ -0,0 +1,203 @@
+package com.stripe.android
+
+import java.io.EOFException
+import java.io.FilterInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.nio.charset.StandardCharsets
+import java.util.Locale
+import java.util.zip.GZIPInputStream
+import java.util.zip.InflaterInputStream
+
+/**
+ * Reads a response body into a pooled buffer sized from the response's `Content-Length`, and
+ * decodes it to a [String] in a single pass.
+ *
+ * Bodies with a `gzip` or `deflate` `Content-Encoding` are decompressed as they are read. The
+ * number of bytes received and decoded is recorded for each response.
+ */
+internal class ResponseBodyReader @JvmOverloads constructor(
+    private val bufferPool: BufferPool = BufferPool.DEFAULT
+) {
+    private var responseCount = 0
+    private var compressedResponseCount = 0
+    private var totalEncodedBytes = 0L
+    private var totalDecodedBytes = 0L
+
+    /**
+     * Read [stream] to the end and close it.
+     *
+     * @param contentLength the response's `Content-Length`, or -1 if unknown
+     * @return the response body, or `null` if [stream] is `null` or empty
+     */
+    @Throws(IOException::class)
+    fun read(stream: InputStream?, contentLength: Int): String? {
+        return readBody(stream, contentLength, null).text
+    }
+
+    /**
+     * Read [stream] to the end, decompressing it according to [contentEncoding], and close it.
+     *
+     * @param contentLength the response's `Content-Length`, or -1 if unknown
+     * @param contentEncoding the response's `Content-Encoding`, or `null` if it has none
+     */
+    @Throws(IOException::class)
+    fun readBody(stream: InputStream?, contentLength: Int, contentEncoding: String?): Body {
+        if (stream == null) {
+            return Body(null, 0, 0)
+        }
+
+        val countingStream = CountingInputStream(stream)
+        val isCompressed = isCompressed(contentEncoding)
+        val result = countingStream.use {
+            openDecodedStream(countingStream, contentEncoding)?.use { decodedStream ->
+                // when compressed, `Content-Length` is the size of the compressed body
+                readFully(decodedStream, if (isCompressed) -1 else contentLength)
+            }
+        }
+        val body = Body(
+            text = result?.first,
+            encodedBytes = countingStream.byteCount,
+            decodedBytes = result?.second ?: 0
+        )
+
+        onBodyRead(body, isCompressed)
+        return body
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        return Stats(
+            responses = responseCount,
+            compressedResponses = compressedResponseCount,
+            encodedBytes = totalEncodedBytes,
+            decodedBytes = totalDecodedBytes
+        )
+    }
+
+    /**
+     * @return the body decoded as UTF-8 and the number of bytes read, or `null` if [stream]
+     * is empty
+     */
+    private fun readFully(stream: InputStream, contentLength: Int): Pair<String, Int>? {
+        var buffer = bufferPool.acquire(
+            if (contentLength in 1 until BufferPool.DEFAULT_MAX_POOLED_BUFFER_SIZE) {
+                // one extra byte to detect the end of the stream without growing the buffer
+                contentLength + 1
+            } else {
+                // a large `Content-Length` isn't trusted up front; the buffer grows as it's read
+                BufferPool.DEFAULT_BUFFER_SIZE
+            }
+        )
+        try {
+            var size = 0
+            while (true) {
+                if (size == buffer.size) {
+                    buffer = bufferPool.grow(buffer, size)
+                }
+                val bytesRead = stream.read(buffer, size, buffer.size - size)
+                if (bytesRead == -1) {
+                    break
+                }
+                size += bytesRead
+            }
+
+            return if (size > 0) {
+                String(buffer, 0, size, StandardCharsets.UTF_8) to size
+            } else {
+                null
+            }
+        } finally {
+            bufferPool.release(buffer)
+        }
+    }
+
+    @Synchronized
+    private fun onBodyRead(body: Body, isCompressed: Boolean) {
+        responseCount++
+        if (isCompressed) {
+            compressedResponseCount++
+        }
+        totalEncodedBytes += body.encodedBytes
+        totalDecodedBytes += body.decodedBytes
+    }
+
+    /**
+     * @return a stream that decompresses [stream] according to [contentEncoding], or `null` if
+     * [stream] is empty
+     */
+    @Throws(IOException::class)
+    private fun openDecodedStream(stream: InputStream, contentEncoding: String?): InputStream? {
+        return try {
+            when (normalize(contentEncoding)) {
+                ENCODING_GZIP -> GZIPInputStream(stream)
+                ENCODING_DEFLATE -> InflaterInputStream(stream)
+                else -> stream
+            }
+        } catch (e: EOFException) {
+            // an empty body has no gzip header
+            null
+        }
+    }
+
+    private fun isCompressed(contentEncoding: String?): Boolean {
+        return normalize(contentEncoding) in SUPPORTED_ENCODINGS
+    }
+
+    private fun normalize(contentEncoding: String?): String? {
+        return contentEncoding?.trim()?.toLowerCase(Locale.ROOT)
+    }
+
+    /**
+     * Counts the bytes read from the underlying stream, before decompression.
+     */
+    private class CountingInputStream(stream: InputStream) : FilterInputStream(stream) {
+        var byteCount = 0
+            private set
+
+        override fun read(): Int {
+            return super.read().also {
+                if (it != -1) {
+                    byteCount++
+                }
+            }
+        }
+
+        override fun read(buffer: ByteArray, offset: Int, length: Int): Int {
+            return super.read(buffer, offset, length).also {
+                if (it > 0) {
+                    byteCount += it
+                }
+            }
+        }
+    }
+
+    /**
+     * @param text the decoded response body, or `null` if it was empty
+     * @param encodedBytes the number of bytes received
+     * @param decodedBytes the number of bytes after decompression
+     */
+    internal data class Body(
+        val text: String?,
+        val encodedBytes: Int,
+        val decodedBytes: Int
+    )
+
+    internal data class Stats(
+        val responses: Int,
+        val compressedResponses: Int,
+        val encodedBytes: Long,
+        val decodedBytes: Long
+    )
+
+    companion object {
+        private const val ENCODING_GZIP = "gzip"
+        private const val ENCODING_DEFLATE = "deflate"
+        private val SUPPORTED_ENCODINGS = setOf(ENCODING_GZIP, ENCODING_DEFLATE)
+
+        /**
+         * The value of the `Accept-Encoding` request header.
+         */
+        internal val ACCEPT_ENCODING = SUPPORTED_ENCODINGS.joinToString(", ")
+    }
+}
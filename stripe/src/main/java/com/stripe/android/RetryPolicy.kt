@@ -0,0 +1,175 @@
+package com.stripe.android
+
+import android.os.SystemClock
+import androidx.annotation.VisibleForTesting
+import com.stripe.android.exception.APIConnectionException
+import com.stripe.android.exception.InvalidRequestException
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Retries API requests that failed because of a dropped connection or rate limiting.
+ *
+ * A request is retried up to [maxRetries] times when it fails with an [APIConnectionException],
+ * when the response has status code 429, or when the API asks for a retry with the
+ * `Stripe-Should-Retry` header. Retries wait with jittered exponential backoff, or for exactly
+ * as long as the response's `Retry-After` header asks. No retry is started if it would wait
+ * longer than [maxDelayMillis], past [maxElapsedMillis] since the first attempt, or past the
+ * request's [Deadline]; the response is returned instead.
+ *
+ * POST requests are only safe to retry because each [ApiRequest] sends the same
+ * `Idempotency-Key` header on every attempt.
+ */
+internal class RetryPolicy @VisibleForTesting internal constructor(
+    private val maxRetries: Int = DEFAULT_MAX_RETRIES,
+    private val initialDelayMillis: Long = DEFAULT_INITIAL_DELAY_MILLIS,
+    private val maxDelayMillis: Long = DEFAULT_MAX_DELAY_MILLIS,
+    private val maxElapsedMillis: Long = DEFAULT_MAX_ELAPSED_MILLIS,
+    private val random: Random = Random.Default,
+    private val clock: () -> Long = { SystemClock.elapsedRealtime() },
+    private val sleeper: (Long) -> Unit = { Thread.sleep(it) }
+) {
+    private var retryCount = 0
+    private var exhaustedCount = 0
+
+    /**
+     * Run [request], retrying it as allowed by this policy.
+     *
+     * @param deadline if set, no retry is started that would wait past it
+     * @return the response of the last attempt
+     * @throws APIConnectionException if the last attempt failed to connect
+     */
+    @Throws(APIConnectionException::class, InvalidRequestException::class)
+    fun execute(deadline: Deadline? = null, request: () -> StripeResponse): StripeResponse {
+        val startedAtMillis = clock()
+        var attempt = 0
+        while (true) {
+            val response = try {
+                request()
+            } catch (e: APIConnectionException) {
+                if (waitForRetry(attempt++, startedAtMillis, deadline, null)) {
+                    continue
+                } else {
+                    throw e
+                }
+            }
+
+            if (!shouldRetry(response) ||
+                !waitForRetry(attempt++, startedAtMillis, deadline, response)) {
+                return response
+            }
+        }
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        return Stats(
+            retries = retryCount,
+            exhaustedRetries = exhaustedCount
+        )
+    }
+
+    /**
+     * @return `true` after waiting for the next attempt, or `false` if no more attempts
+     * should be made
+     */
+    private fun waitForRetry(
+        attempt: Int,
+        startedAtMillis: Long,
+        deadline: Deadline?,
+        response: StripeResponse?
+    ): Boolean {
+        // a cancelled coroutine disconnects its request, which must not trigger a retry
+        if (InFlightRequest.current()?.isCancelled == true) {
+            return false
+        }
+
+        val delayMillis = getDelayMillis(attempt, response)
+        if (attempt >= maxRetries ||
+            delayMillis > maxDelayMillis ||
+            clock() - startedAtMillis + delayMillis > maxElapsedMillis ||
+            deadline?.let { delayMillis >= it.remainingMillis } == true) {
+            onRetriesExhausted()
+            return false
+        }
+
+        try {
+            sleeper(delayMillis)
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            return false
+        }
+        onRetry()
+        return true
+    }
+
+    @VisibleForTesting
+    internal fun shouldRetry(response: StripeResponse): Boolean {
+        return when (getHeader(response, HEADER_SHOULD_RETRY)) {
+            "true" -> true
+            "false" -> false
+            else -> response.responseCode == HTTP_TOO_MANY_REQUESTS
+        }
+    }
+
+    /**
+     * @return the `Retry-After` delay of [response] if it has one, otherwise a random delay
+     * between half and all of the exponential backoff for [attempt]. The `Retry-After` delay
+     * isn't shortened, because retrying earlier than the API asked would likely fail again.
+     */
+    @VisibleForTesting
+    internal fun getDelayMillis(attempt: Int, response: StripeResponse?): Long {
+        val retryAfterSeconds = response?.let { getHeader(it, HEADER_RETRY_AFTER) }
+            ?.toLongOrNull()
+        if (retryAfterSeconds != null && retryAfterSeconds >= 0) {
+            return TimeUnit.SECONDS.toMillis(retryAfterSeconds)
+        }
+
+        val backoffMillis = minOf(initialDelayMillis shl minOf(attempt, 16), maxDelayMillis)
+        return backoffMillis / 2 + random.nextLong(backoffMillis / 2 + 1)
+    }
+
+    @Synchronized
+    private fun onRetry() {
+        retryCount++
+    }
+
+    @Synchronized
+    private fun onRetriesExhausted() {
+        exhaustedCount++
+    }
+
+    internal data class Stats(
+        val retries: Int,
+        val exhaustedRetries: Int
+    )
+
+    companion object {
+        private const val DEFAULT_MAX_RETRIES = 2
+        private const val DEFAULT_INITIAL_DELAY_MILLIS = 300L
+        private val DEFAULT_MAX_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(5)
+        private val DEFAULT_MAX_ELAPSED_MILLIS = TimeUnit.SECONDS.toMillis(20)
+
+        private const val HTTP_TOO_MANY_REQUESTS = 429
+        private const val HEADER_RETRY_AFTER = "Retry-After"
+        private const val HEADER_SHOULD_RETRY = "Stripe-Should-Retry"
+
+        private fun getHeader(response: StripeResponse, name: String): String? {
+            return response.responseHeaders?.entries
+                ?.firstOrNull { it.key.equals(name, ignoreCase = true) }
+                ?.value?.firstOrNull()
+        }
+
+        /**
+         * The policy used by the SDK's API requests.
+         */
+        @JvmField
+        val DEFAULT = RetryPolicy()
+
+        /**
+         * A policy that never retries, for callers that handle retries themselves.
+         */
+        @JvmField
+        val NONE = RetryPolicy(maxRetries = 0)
+    }
+}
@@ -30,11 +30,13 @@ import com.stripe.android.model.Token
 import com.stripe.android.view.AuthActivityStarter
 import java.util.Locale
 import java.util.concurrent.Executor
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
 
 /**
  * Entry-point to the Stripe SDK.
  *
- * Supports asynchronous and synchronous methods to access the following Stripe APIs.
+ * Supports asynchronous, suspending, and synchronous methods to access the following Stripe APIs.
  *
  *  * [Payment Intent API][PaymentIntent] - confirm and retrieve
  *  * [Setup Intents API][SetupIntent] - confirm and retrieve
@@ -52,6 +54,8 @@ class Stripe internal constructor(
     private val tokenCreator: TokenCreator
 ) {
     private val publishableKey: String = ApiKeyValidator().requireValid(publishableKey)
+    private val suspendingStripeRepository = SuspendingStripeRepository(stripeRepository)
+    private val stripeIntentPoller = StripeIntentPoller(stripeRepository)
 
     /**
      * Constructor with publishable key and Stripe Connect account id.
@@ -109,7 +113,8 @@ class Stripe internal constructor(
             ) {
                 executeTask(executor,
                     CreateTokenTask(stripeRepository, params, options,
-                        tokenType, callback))
+                        tokenType, callback),
+                    TaskExecutor.Priority.High)
             }
         }
     )
@@ -228,6 +233,57 @@ class Stripe internal constructor(
         )
     }
 
+    /**
+     * Retrieve a [PaymentIntent] object without blocking the calling thread.
+     *
+     * See [Retrieve a PaymentIntent](https://stripe.com/docs/api/payment_intents/retrieve).
+     *
+     * @param clientSecret the client_secret with which to retrieve the PaymentIntent
+     * @param dispatcher the dispatcher on which to make the request
+     * @return a [PaymentIntent] or `null` if a problem occurred
+     */
+    @Throws(APIException::class, AuthenticationException::class,
+        InvalidRequestException::class, APIConnectionException::class)
+    suspend fun retrievePaymentIntent(
+        clientSecret: String,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): PaymentIntent? {
+        return suspendingStripeRepository.retrievePaymentIntent(
+            clientSecret,
+            ApiRequest.Options.create(publishableKey, stripeAccountId),
+            dispatcher
+        )
+    }
+
+    /**
+     * Retrieve a [PaymentIntent] until its status is no longer
+     * [PaymentIntent.Status.Processing] or [PaymentIntent.Status.RequiresAction], or until
+     * [timeoutMillis] have passed. Use this after authentication, e.g. in [onPaymentResult], when
+     * the payment may not have been confirmed yet.
+     *
+     * Attempts are made with an increasing delay and are reported to
+     * [NetworkEventListener.onIntentPolled]. Cancel the calling coroutine to stop polling.
+     *
+     * @param clientSecret the client_secret with which to retrieve the PaymentIntent
+     * @param timeoutMillis how long to poll for
+     * @param dispatcher the dispatcher on which to make the requests
+     * @return the last retrieved [PaymentIntent], or `null` if a problem occurred
+     */
+    @Throws(APIException::class, AuthenticationException::class,
+        InvalidRequestException::class, APIConnectionException::class)
+    suspend fun pollPaymentIntent(
+        clientSecret: String,
+        timeoutMillis: Long = StripeIntentPoller.DEFAULT_TIMEOUT_MILLIS,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): PaymentIntent? {
+        return stripeIntentPoller.pollPaymentIntent(
+            clientSecret,
+            ApiRequest.Options.create(publishableKey, stripeAccountId),
+            timeoutMillis,
+            dispatcher
+        )
+    }
+
     /**
      * Blocking method to confirm a [PaymentIntent] object.
      * Do not call this on the UI thread or your app will crash.
@@ -250,6 +306,30 @@ class Stripe internal constructor(
         )
     }
 
+    /**
+     * Confirm a [PaymentIntent] without blocking the calling thread. Unlike [confirmPayment],
+     * this doesn't authenticate the payment; if the confirmed [PaymentIntent] requires action,
+     * call [authenticatePayment].
+     *
+     * See [Confirm a PaymentIntent](https://stripe.com/docs/api/payment_intents/confirm).
+     *
+     * @param confirmPaymentIntentParams a set of params with which to confirm the PaymentIntent
+     * @param dispatcher the dispatcher on which to make the request
+     * @return a [PaymentIntent] or `null` if a problem occurred
+     */
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class)
+    suspend fun confirmPaymentIntent(
+        confirmPaymentIntentParams: ConfirmPaymentIntentParams,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): PaymentIntent? {
+        return suspendingStripeRepository.confirmPaymentIntent(
+            confirmPaymentIntentParams,
+            ApiRequest.Options.create(publishableKey, stripeAccountId),
+            dispatcher
+        )
+    }
+
     //
     // Setup Intents API - https://stripe.com/docs/api/setup_intents
     //
@@ -356,6 +436,56 @@ class Stripe internal constructor(
         )
     }
 
+    /**
+     * Retrieve a [SetupIntent] object without blocking the calling thread.
+     *
+     * See [Retrieve a SetupIntent](https://stripe.com/docs/api/setup_intents/retrieve).
+     *
+     * @param clientSecret client_secret of the SetupIntent to retrieve
+     * @param dispatcher the dispatcher on which to make the request
+     * @return a [SetupIntent] or `null` if a problem occurred
+     */
+    @Throws(APIException::class, AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class)
+    suspend fun retrieveSetupIntent(
+        clientSecret: String,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): SetupIntent? {
+        return suspendingStripeRepository.retrieveSetupIntent(
+            clientSecret,
+            ApiRequest.Options.create(publishableKey, stripeAccountId),
+            dispatcher
+        )
+    }
+
+    /**
+     * Retrieve a [SetupIntent] until its status is no longer [SetupIntent.Status.Processing] or
+     * [SetupIntent.Status.RequiresAction], or until [timeoutMillis] have passed. Use this after
+     * authentication, e.g. in [onSetupResult], when the setup may not have been confirmed yet.
+     *
+     * Attempts are made with an increasing delay and are reported to
+     * [NetworkEventListener.onIntentPolled]. Cancel the calling coroutine to stop polling.
+     *
+     * @param clientSecret client_secret of the SetupIntent to retrieve
+     * @param timeoutMillis how long to poll for
+     * @param dispatcher the dispatcher on which to make the requests
+     * @return the last retrieved [SetupIntent], or `null` if a problem occurred
+     */
+    @Throws(APIException::class, AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class)
+    suspend fun pollSetupIntent(
+        clientSecret: String,
+        timeoutMillis: Long = StripeIntentPoller.DEFAULT_TIMEOUT_MILLIS,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): SetupIntent? {
+        return stripeIntentPoller.pollSetupIntent(
+            clientSecret,
+            ApiRequest.Options.create(publishableKey, stripeAccountId),
+            timeoutMillis,
+            dispatcher
+        )
+    }
+
     /**
      * Blocking method to confirm a [SetupIntent] object.
      * Do not call this on the UI thread or your app will crash.
@@ -379,6 +509,30 @@ class Stripe internal constructor(
         )
     }
 
+    /**
+     * Confirm a [SetupIntent] without blocking the calling thread. Unlike
+     * [confirmSetupIntent] with an `Activity`, this doesn't authenticate the setup; if the
+     * confirmed [SetupIntent] requires action, confirm it with an `Activity` instead.
+     *
+     * See [Confirm a SetupIntent](https://stripe.com/docs/api/setup_intents/confirm).
+     *
+     * @param confirmSetupIntentParams a set of params with which to confirm the Setup Intent
+     * @param dispatcher the dispatcher on which to make the request
+     * @return a [SetupIntent] or `null` if a problem occurred
+     */
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class)
+    suspend fun confirmSetupIntent(
+        confirmSetupIntentParams: ConfirmSetupIntentParams,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): SetupIntent? {
+        return suspendingStripeRepository.confirmSetupIntent(
+            confirmSetupIntentParams,
+            ApiRequest.Options.create(publishableKey, stripeAccountId),
+            dispatcher
+        )
+    }
+
     //
     // Payment Methods API - https://stripe.com/docs/api/payment_methods
     //
@@ -395,10 +549,13 @@ class Stripe internal constructor(
         paymentMethodCreateParams: PaymentMethodCreateParams,
         callback: ApiResultCallback<PaymentMethod>
     ) {
-        CreatePaymentMethodTask(
-            stripeRepository, paymentMethodCreateParams, publishableKey,
-            stripeAccountId, callback
-        ).execute()
+        executeTask(null,
+            CreatePaymentMethodTask(
+                stripeRepository, paymentMethodCreateParams, publishableKey,
+                stripeAccountId, callback
+            ),
+            TaskExecutor.Priority.High
+        )
     }
 
     /**
@@ -422,6 +579,28 @@ class Stripe internal constructor(
         )
     }
 
+    /**
+     * Create a [PaymentMethod] without blocking the calling thread.
+     *
+     * See [Create a PaymentMethod](https://stripe.com/docs/api/payment_methods/create).
+     *
+     * @param paymentMethodCreateParams params with which to create the PaymentMethod
+     * @param dispatcher the dispatcher on which to make the request
+     * @return a [PaymentMethod] or `null` if a problem occurred
+     */
+    @Throws(APIException::class, AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class)
+    suspend fun createPaymentMethod(
+        paymentMethodCreateParams: PaymentMethodCreateParams,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): PaymentMethod? {
+        return suspendingStripeRepository.createPaymentMethod(
+            paymentMethodCreateParams,
+            ApiRequest.Options.create(publishableKey, stripeAccountId),
+            dispatcher
+        )
+    }
+
     //
     // Sources API - https://stripe.com/docs/api/sources
     //
@@ -438,9 +617,12 @@ class Stripe internal constructor(
         sourceParams: SourceParams,
         callback: ApiResultCallback<Source>
     ) {
-        CreateSourceTask(
-            stripeRepository, sourceParams, publishableKey, stripeAccountId, callback
-        ).execute()
+        executeTask(null,
+            CreateSourceTask(
+                stripeRepository, sourceParams, publishableKey, stripeAccountId, callback
+            ),
+            TaskExecutor.Priority.Normal
+        )
     }
 
     /**
@@ -465,6 +647,28 @@ class Stripe internal constructor(
             ApiRequest.Options.create(publishableKey, stripeAccountId))
     }
 
+    /**
+     * Create a [Source] without blocking the calling thread.
+     *
+     * See [Create a source](https://stripe.com/docs/api/sources/create).
+     *
+     * @param params a set of [SourceParams] with which to create the source
+     * @param dispatcher the dispatcher on which to make the request
+     * @return a [Source], or `null` if a problem occurred
+     */
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class)
+    suspend fun createSource(
+        params: SourceParams,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): Source? {
+        return suspendingStripeRepository.createSource(
+            params,
+            ApiRequest.Options.create(publishableKey, stripeAccountId),
+            dispatcher
+        )
+    }
+
     /**
      * Retrieve an existing [Source] from the Stripe API. Note that this is a
      * synchronous method, and cannot be called on the main thread. Doing so will cause your app
@@ -491,6 +695,32 @@ class Stripe internal constructor(
             ApiRequest.Options.create(publishableKey, stripeAccountId))
     }
 
+    /**
+     * Retrieve an existing [Source] from the Stripe API without blocking the calling thread.
+     *
+     * See [Retrieve a source](https://stripe.com/docs/api/sources/retrieve).
+     *
+     * @param sourceId the [Source.getId] field of the desired Source object
+     * @param clientSecret the [Source.getClientSecret] field of the desired Source object
+     * @param dispatcher the dispatcher on which to make the request
+     * @return a [Source] if one could be found based on the input params, or `null` if
+     * no such Source could be found.
+     */
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class)
+    suspend fun retrieveSource(
+        @Size(min = 1) sourceId: String,
+        @Size(min = 1) clientSecret: String,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): Source? {
+        return suspendingStripeRepository.retrieveSource(
+            sourceId,
+            clientSecret,
+            ApiRequest.Options.create(publishableKey, stripeAccountId),
+            dispatcher
+        )
+    }
+
     //
     // Tokens API - https://stripe.com/docs/api/tokens
     //
@@ -544,6 +774,28 @@ class Stripe internal constructor(
         )
     }
 
+    /**
+     * Create a [Token] for a [BankAccount] without blocking the calling thread.
+     *
+     * See [Create a bank account token](https://stripe.com/docs/api/tokens/create_bank_account).
+     *
+     * @param bankAccount the [BankAccount] to use for this token
+     * @param dispatcher the dispatcher on which to make the request
+     * @return a [Token] that can be used for this [BankAccount]
+     */
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, CardException::class, APIException::class)
+    suspend fun createBankAccountToken(
+        bankAccount: BankAccount,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): Token? {
+        return createTokenFromParams(
+            bankAccount.toParamMap().plus(stripeNetworkUtils.createUidParams()),
+            Token.TokenType.BANK_ACCOUNT,
+            dispatcher
+        )
+    }
+
     /**
      * Create a PII token asynchronously.
      *
@@ -588,6 +840,28 @@ class Stripe internal constructor(
         )
     }
 
+    /**
+     * Create a [Token] for PII without blocking the calling thread.
+     *
+     * See [Create a PII account token](https://stripe.com/docs/api/tokens/create_pii).
+     *
+     * @param personalId the personal ID to use for this token
+     * @param dispatcher the dispatcher on which to make the request
+     * @return a [Token] that can be used for this card
+     */
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, CardException::class, APIException::class)
+    suspend fun createPiiToken(
+        personalId: String,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): Token? {
+        return createTokenFromParams(
+            PiiTokenParams(personalId).toParamMap(),
+            Token.TokenType.PII,
+            dispatcher
+        )
+    }
+
     /**
      * Create a Card token asynchronously.
      *
@@ -629,6 +903,28 @@ class Stripe internal constructor(
         )
     }
 
+    /**
+     * Create a [Token] for a [Card] without blocking the calling thread.
+     *
+     * See [Create a card token](https://stripe.com/docs/api/tokens/create_card).
+     *
+     * @param card the [Card] to use for this token
+     * @param dispatcher the dispatcher on which to make the request
+     * @return a [Token] that can be used for this card
+     */
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, CardException::class, APIException::class)
+    suspend fun createToken(
+        card: Card,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): Token? {
+        return createTokenFromParams(
+            stripeNetworkUtils.createCardTokenParams(card),
+            Token.TokenType.CARD,
+            dispatcher
+        )
+    }
+
     /**
      * Create a CVC update token asynchronously.
      *
@@ -668,6 +964,26 @@ class Stripe internal constructor(
         )
     }
 
+    /**
+     * Create a [Token] for CVC updating without blocking the calling thread.
+     *
+     * @param cvc the CVC to use for this token
+     * @param dispatcher the dispatcher on which to make the request
+     * @return a [Token] that can be used for this card
+     */
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, CardException::class, APIException::class)
+    suspend fun createCvcUpdateToken(
+        @Size(min = 3, max = 4) cvc: String,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): Token? {
+        return createTokenFromParams(
+            CvcTokenParams(cvc).toParamMap(),
+            Token.TokenType.CVC_UPDATE,
+            dispatcher
+        )
+    }
+
     /**
      * Blocking method to create a [Token] for a Connect Account. Do not call this on the UI
      * thread or your app will crash.
@@ -697,6 +1013,33 @@ class Stripe internal constructor(
         }
     }
 
+    /**
+     * Create a [Token] for a Connect Account without blocking the calling thread.
+     *
+     * See [Create an account token](https://stripe.com/docs/api/tokens/create_account).
+     *
+     * @param accountParams params to use for this token.
+     * @param dispatcher the dispatcher on which to make the request
+     * @return a [Token] that can be used for this account.
+     */
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class)
+    suspend fun createAccountToken(
+        accountParams: AccountParams,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): Token? {
+        return try {
+            createTokenFromParams(
+                accountParams.toParamMap(),
+                Token.TokenType.ACCOUNT,
+                dispatcher
+            )
+        } catch (exception: CardException) {
+            // Should never occur. CardException is only for card related requests.
+            null
+        }
+    }
+
     private fun createTokenFromParams(
         tokenParams: Map<String, Any>,
         @Token.TokenType tokenType: String,
@@ -710,6 +1053,19 @@ class Stripe internal constructor(
         )
     }
 
+    private suspend fun createTokenFromParams(
+        tokenParams: Map<String, Any>,
+        @Token.TokenType tokenType: String,
+        dispatcher: CoroutineDispatcher
+    ): Token? {
+        return suspendingStripeRepository.createToken(
+            tokenParams,
+            ApiRequest.Options.create(publishableKey, stripeAccountId),
+            tokenType,
+            dispatcher
+        )
+    }
+
     @VisibleForTesting
     internal interface TokenCreator {
         fun create(
@@ -792,14 +1148,72 @@ class Stripe internal constructor(
             return this.appInfo
         }
 
+        /**
+         * Set the maximum number of asynchronous API operations, such as
+         * [Stripe.createPaymentMethod] or [Stripe.confirmPayment], that run at once. Defaults to 4.
+         *
+         * Operations started while this many are already running wait for one of them to
+         * finish, with payment operations taking precedence over retrievals.
+         */
+        @JvmStatic
+        fun setMaxConcurrentRequests(maxConcurrentRequests: Int) {
+            TaskExecutor.DEFAULT.maxConcurrentTasks = maxConcurrentRequests
+        }
+
+        /**
+         * Open connections to Stripe in the background, so that the next API request doesn't
+         * wait for DNS, TCP, and TLS setup. Call this when showing a screen that is likely to
+         * make a request, such as a checkout screen.
+         *
+         * Does nothing if a warm-up is already in progress.
+         */
+        @JvmStatic
+        fun warmUp() {
+            ConnectionWarmer.DEFAULT.warmUp()
+        }
+
+        /**
+         * Register a [NetworkEventListener] to receive timing information for the requests made
+         * by the SDK, e.g. a [NetworkStatsAggregator].
+         */
+        @JvmStatic
+        fun addNetworkEventListener(listener: NetworkEventListener) {
+            NetworkEventDispatcher.DEFAULT.addListener(listener)
+        }
+
+        @JvmStatic
+        fun removeNetworkEventListener(listener: NetworkEventListener) {
+            NetworkEventDispatcher.DEFAULT.removeListener(listener)
+        }
+
+        @Volatile
+        private var transport: StripeTransport? = null
+
+        /**
+         * Send the requests of [Stripe], [CustomerSession], [PaymentSession] and
+         * [IssuingCardPinService] through [transport], e.g. an adapter for the app's own HTTP
+         * client, so that they share its connection pool and threads. Pass `null` to use the
+         * SDK's own `HttpURLConnection` stack, which is the default.
+         */
+        @JvmStatic
+        fun setTransport(transport: StripeTransport?) {
+            this.transport = transport
+        }
+
+        @JvmStatic
+        fun getTransport(): StripeTransport? {
+            return this.transport
+        }
+
         private fun executeTask(
             executor: Executor?,
-            task: AsyncTask<Void, Void, *>
+            task: AsyncTask<Void, Void, *>,
+            priority: TaskExecutor.Priority
         ) {
             if (executor != null) {
                 task.executeOnExecutor(executor)
             } else {
-                task.execute()
+                TaskExecutor.DEFAULT.execute(task, priority)
             }
         }
     }
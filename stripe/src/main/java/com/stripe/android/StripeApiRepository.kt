@@ -1,7 +1,6 @@
 package com.stripe.android
 
 import android.content.Context
-import android.util.Pair
 import androidx.annotation.VisibleForTesting
 import com.stripe.android.exception.APIConnectionException
 import com.stripe.android.exception.APIException
@@ -24,7 +23,6 @@ import com.stripe.android.model.SourceParams
 import com.stripe.android.model.Stripe3ds2AuthResult
 import com.stripe.android.model.Token
 import java.net.HttpURLConnection
-import java.security.Security
 import java.util.Locale
 import org.json.JSONArray
 import org.json.JSONException
@@ -39,12 +37,16 @@ internal class StripeApiRepository @JvmOverloads constructor(
     private val logger: Logger = Logger.noop(),
     private val stripeApiRequestExecutor: ApiRequestExecutor = StripeApiRequestExecutor(logger),
     private val fireAndForgetRequestExecutor: FireAndForgetRequestExecutor =
-        StripeFireAndForgetRequestExecutor(),
+        AnalyticsRequestDispatcher.getInstance(context),
     private val fingerprintRequestFactory: FingerprintRequestFactory =
         FingerprintRequestFactory(context),
     private val uidParamsFactory: UidParamsFactory = UidParamsFactory.create(context),
     private val analyticsDataFactory: AnalyticsDataFactory = AnalyticsDataFactory.create(context),
-    private val networkUtils: StripeNetworkUtils = StripeNetworkUtils(context)
+    private val networkUtils: StripeNetworkUtils = StripeNetworkUtils(context),
+    private val fingerprintRequestScheduler: FingerprintRequestScheduler =
+        FingerprintRequestScheduler.DEFAULT,
+    private val networkEventDispatcher: NetworkEventDispatcher = NetworkEventDispatcher.DEFAULT,
+    private val requestCoalescer: RequestCoalescer = RequestCoalescer.DEFAULT
 ) : StripeRepository {
     /**
      * Confirm a [PaymentIntent] using the provided [ConfirmPaymentIntentParams]
@@ -78,9 +80,10 @@ internal class StripeApiRepository @JvmOverloads constructor(
             )
             val paymentIntentId = PaymentIntent.parseIdFromClientSecret(
                 confirmPaymentIntentParams.clientSecret)
-            val response = makeApiRequest(ApiRequest.createPost(
-                getConfirmPaymentIntentUrl(paymentIntentId), params, options, appInfo))
-            return PaymentIntent.fromString(response.responseBody)
+            return makeApiRequest(ApiRequest.createPost(
+                getConfirmPaymentIntentUrl(paymentIntentId), params, options, appInfo)) {
+                PaymentIntent.fromString(it)
+            }
         } catch (unexpected: CardException) {
             // This particular kind of exception should not be possible from a PaymentI API endpoint
             throw APIException(unexpected.message, unexpected.requestId,
@@ -105,12 +108,13 @@ internal class StripeApiRepository @JvmOverloads constructor(
                 analyticsDataFactory.getPaymentIntentRetrieveParams(null, options.apiKey),
                 options.apiKey)
             val paymentIntentId = PaymentIntent.parseIdFromClientSecret(clientSecret)
-            val response = makeApiRequest(
+            return makeApiRequest(
                 ApiRequest.createGet(getRetrievePaymentIntentUrl(paymentIntentId),
                     createClientSecretParam(clientSecret),
                     options,
-                    appInfo))
-            return PaymentIntent.fromString(response.responseBody)
+                    appInfo)) {
+                PaymentIntent.fromString(it)
+            }
         } catch (unexpected: CardException) {
             // This particular kind of exception should not be possible from a PaymentI API endpoint
             throw APIException(unexpected.message, unexpected.requestId,
@@ -137,15 +141,16 @@ internal class StripeApiRepository @JvmOverloads constructor(
             fireFingerprintRequest()
             val setupIntentId = SetupIntent.parseIdFromClientSecret(
                 confirmSetupIntentParams.clientSecret)
-            val response = makeApiRequest(
+            val setupIntent = makeApiRequest(
                 ApiRequest.createPost(
                     getConfirmSetupIntentUrl(setupIntentId),
                     params,
                     options,
                     appInfo
                 )
-            )
-            val setupIntent = SetupIntent.fromString(response.responseBody)
+            ) {
+                SetupIntent.fromString(it)
+            }
 
             fireAnalyticsRequest(
                 analyticsDataFactory.getSetupIntentConfirmationParams(
@@ -180,15 +185,16 @@ internal class StripeApiRepository @JvmOverloads constructor(
                 options.apiKey
             )
             val setupIntentId = SetupIntent.parseIdFromClientSecret(clientSecret)
-            val response = makeApiRequest(
+            return makeApiRequest(
                 ApiRequest.createGet(
                     getRetrieveSetupIntentUrl(setupIntentId),
                     createClientSecretParam(clientSecret),
                     options,
                     appInfo
                 )
-            )
-            return SetupIntent.fromString(response.responseBody)
+            ) {
+                SetupIntent.fromString(it)
+            }
         } catch (unexpected: CardException) {
             // This particular kind of exception should not be possible from a PaymentI API endpoint
             throw APIException(unexpected.message, unexpected.requestId,
@@ -219,7 +225,7 @@ internal class StripeApiRepository @JvmOverloads constructor(
                 analyticsDataFactory.getSourceCreationParams(null, options.apiKey,
                     sourceParams.type),
                 options.apiKey)
-            val response = makeApiRequest(
+            return makeApiRequest(
                 ApiRequest.createPost(
                     sourcesUrl,
                     sourceParams.toParamMap()
@@ -227,8 +233,9 @@ internal class StripeApiRepository @JvmOverloads constructor(
                     options,
                     appInfo
                 )
-            )
-            return Source.fromString(response.responseBody)
+            ) {
+                Source.fromString(it)
+            }
         } catch (unexpected: CardException) {
             // This particular kind of exception should not be possible from a Source API endpoint.
             throw APIException(unexpected.message, unexpected.requestId,
@@ -257,15 +264,16 @@ internal class StripeApiRepository @JvmOverloads constructor(
         options: ApiRequest.Options
     ): Source? {
         try {
-            val response = makeApiRequest(
+            return makeApiRequest(
                 ApiRequest.createGet(
                     getRetrieveSourceApiUrl(sourceId),
                     SourceParams.createRetrieveSourceParams(clientSecret),
                     options,
                     appInfo
                 )
-            )
-            return Source.fromString(response.responseBody)
+            ) {
+                Source.fromString(it)
+            }
         } catch (unexpected: CardException) {
             // This particular kind of exception should not be possible from a Source API endpoint.
             throw APIException(unexpected.message, unexpected.requestId,
@@ -282,7 +290,7 @@ internal class StripeApiRepository @JvmOverloads constructor(
         fireFingerprintRequest()
 
         try {
-            val response = makeApiRequest(
+            val paymentMethod = makeApiRequest(
                 ApiRequest.createPost(
                     paymentMethodsUrl,
                     paymentMethodCreateParams.toParamMap()
@@ -290,8 +298,9 @@ internal class StripeApiRepository @JvmOverloads constructor(
                     options,
                     appInfo
                 )
-            )
-            val paymentMethod = PaymentMethod.fromString(response.responseBody)
+            ) {
+                PaymentMethod.fromString(it)
+            }
 
             fireAnalyticsRequest(
                 analyticsDataFactory.createPaymentMethodCreationParams(
@@ -459,7 +468,8 @@ internal class StripeApiRepository @JvmOverloads constructor(
     }
 
     /**
-     * Retrieve a Customer's [PaymentMethod]s
+     * Retrieve all of a Customer's [PaymentMethod]s, walking the pages of the list with the
+     * largest allowed page size
      */
     @Throws(InvalidRequestException::class, APIConnectionException::class, APIException::class,
         AuthenticationException::class, CardException::class)
@@ -470,18 +480,68 @@ internal class StripeApiRepository @JvmOverloads constructor(
         productUsageTokens: Set<String>,
         requestOptions: ApiRequest.Options
     ): List<PaymentMethod> {
-        val queryParams = mapOf(
-            "customer" to customerId,
-            "type" to paymentMethodType
-        )
-
         fireAnalyticsRequest(
             analyticsDataFactory
-                .getDetachPaymentMethodParams(productUsageTokens.toList(), publishableKey),
+                .getListPaymentMethodsParams(productUsageTokens.toList(), publishableKey),
             // We use the public key to log, so we need different Options.
             publishableKey
         )
 
+        val paymentMethods = mutableListOf<PaymentMethod>()
+        var startingAfter: String? = null
+        do {
+            val page = retrievePaymentMethodsPage(customerId, paymentMethodType,
+                PaymentMethodsPage.MAX_LIMIT, startingAfter, requestOptions)
+            paymentMethods.addAll(page.paymentMethods)
+            startingAfter = page.nextStartingAfter
+        } while (startingAfter != null)
+        return paymentMethods
+    }
+
+    /**
+     * Retrieve one page of a Customer's [PaymentMethod]s
+     */
+    @Throws(InvalidRequestException::class, APIConnectionException::class, APIException::class,
+        AuthenticationException::class, CardException::class)
+    override fun getPaymentMethodsPage(
+        customerId: String,
+        paymentMethodType: String,
+        limit: Int,
+        startingAfter: String?,
+        publishableKey: String,
+        productUsageTokens: Set<String>,
+        requestOptions: ApiRequest.Options
+    ): PaymentMethodsPage {
+        // log once per list, when its first page is retrieved
+        if (startingAfter == null) {
+            fireAnalyticsRequest(
+                analyticsDataFactory
+                    .getListPaymentMethodsParams(productUsageTokens.toList(), publishableKey),
+                // We use the public key to log, so we need different Options.
+                publishableKey
+            )
+        }
+
+        return retrievePaymentMethodsPage(customerId, paymentMethodType, limit, startingAfter,
+            requestOptions)
+    }
+
+    @Throws(InvalidRequestException::class, APIConnectionException::class, APIException::class,
+        AuthenticationException::class, CardException::class)
+    private fun retrievePaymentMethodsPage(
+        customerId: String,
+        paymentMethodType: String,
+        limit: Int,
+        startingAfter: String?,
+        requestOptions: ApiRequest.Options
+    ): PaymentMethodsPage {
+        val queryParams = mapOf(
+            "customer" to customerId,
+            "type" to paymentMethodType,
+            "limit" to limit,
+            "starting_after" to startingAfter
+        )
+
         val response = fireStripeApiRequest(
             ApiRequest.createGet(
                 paymentMethodsUrl,
@@ -490,17 +550,7 @@ internal class StripeApiRepository @JvmOverloads constructor(
         )
         // Method throws if errors are found, so no return value occurs.
         convertErrorsToExceptionsAndThrowIfNecessary(response)
-
-        val data: JSONArray
-        try {
-            data = JSONObject(response.responseBody).optJSONArray("data")
-        } catch (e: JSONException) {
-            return emptyList()
-        }
-
-        return (0 until data.length()).mapNotNull {
-            PaymentMethod.fromJson(data.optJSONObject(it))
-        }
+        return PaymentMethodsPage.fromString(response.responseBody)
     }
 
     @Throws(InvalidRequestException::class, APIConnectionException::class, APIException::class,
@@ -658,7 +708,7 @@ internal class StripeApiRepository @JvmOverloads constructor(
         callback: ApiResultCallback<Stripe3ds2AuthResult>
     ) {
         Start3ds2AuthTask(this, authParams, stripeIntentId, requestOptions, callback)
-            .execute()
+            .executeOnExecutor(TaskExecutor.DEFAULT.getExecutor(TaskExecutor.Priority.High))
     }
 
     @VisibleForTesting
@@ -683,7 +733,7 @@ internal class StripeApiRepository @JvmOverloads constructor(
         callback: ApiResultCallback<Boolean>
     ) {
         Complete3ds2AuthTask(this, sourceId, requestOptions, callback)
-            .execute()
+            .executeOnExecutor(TaskExecutor.DEFAULT.getExecutor(TaskExecutor.Priority.High))
     }
 
     /**
@@ -778,7 +828,14 @@ internal class StripeApiRepository @JvmOverloads constructor(
 
     @Throws(InvalidRequestException::class, APIConnectionException::class)
     private fun fireStripeApiRequest(apiRequest: ApiRequest): StripeResponse {
-        return stripeApiRequestExecutor.execute(apiRequest)
+        // concurrent identical reads, e.g. of the same PaymentIntent, share one network call
+        return if (apiRequest.method == StripeRequest.Method.GET) {
+            requestCoalescer.execute(apiRequest) {
+                stripeApiRequestExecutor.execute(apiRequest)
+            }
+        } else {
+            stripeApiRequestExecutor.execute(apiRequest)
+        }
     }
 
     @Throws(InvalidRequestException::class, AuthenticationException::class, CardException::class,
@@ -827,47 +884,36 @@ internal class StripeApiRepository @JvmOverloads constructor(
     @Throws(AuthenticationException::class, InvalidRequestException::class,
         APIConnectionException::class, CardException::class, APIException::class)
     fun makeApiRequest(request: ApiRequest): StripeResponse {
-        val dnsCacheData = disableDnsCache()
-
         val response = fireStripeApiRequest(request)
         if (response.hasErrorCode()) {
             handleAPIError(response.responseBody, response.responseCode,
                 response.requestId)
         }
 
-        resetDnsCacheTtl(dnsCacheData)
-
         return response
     }
 
-    private fun makeFireAndForgetRequest(request: StripeRequest) {
-        fireAndForgetRequestExecutor.executeAsync(request)
-    }
-
-    private fun disableDnsCache(): Pair<Boolean, String> {
-        return try {
-            val originalDNSCacheTtl = Security.getProperty(DNS_CACHE_TTL_PROPERTY_NAME)
-            // disable DNS cache
-            Security.setProperty(DNS_CACHE_TTL_PROPERTY_NAME, "0")
-            Pair.create(true, originalDNSCacheTtl)
-        } catch (se: SecurityException) {
-            Pair.create(false, null)
-        }
-    }
-
     /**
-     * @param dnsCacheData first object - flag to reset [.DNS_CACHE_TTL_PROPERTY_NAME]
-     * second object - the original DNS cache TTL value
+     * Make [request] and parse its response body with [parser]. The time spent parsing is
+     * reported to [networkEventDispatcher].
      */
-    private fun resetDnsCacheTtl(dnsCacheData: Pair<Boolean, String>) {
-        if (dnsCacheData.first) {
-            // value unspecified by implementation
-            // DNS_CACHE_TTL_PROPERTY_NAME of -1 = cache forever
-            Security.setProperty(DNS_CACHE_TTL_PROPERTY_NAME,
-                dnsCacheData.second ?: "-1")
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, CardException::class, APIException::class)
+    private inline fun <T> makeApiRequest(request: ApiRequest, parser: (String?) -> T): T {
+        val response = makeApiRequest(request)
+        val startedAtNanos = System.nanoTime()
+        try {
+            return parser(response.responseBody)
+        } finally {
+            networkEventDispatcher.onResponseParsed(request, response.requestId,
+                System.nanoTime() - startedAtNanos)
         }
     }
 
+    private fun makeFireAndForgetRequest(request: StripeRequest) {
+        fireAndForgetRequestExecutor.executeAsync(request)
+    }
+
     @Throws(AuthenticationException::class, InvalidRequestException::class,
         APIConnectionException::class, CardException::class, APIException::class)
     private fun requestToken(
@@ -875,14 +921,18 @@ internal class StripeApiRepository @JvmOverloads constructor(
         params: Map<String, *>,
         options: ApiRequest.Options
     ): Token? {
-        val response = makeApiRequest(
+        return makeApiRequest(
             ApiRequest.createPost(url, params, options, appInfo)
-        )
-        return Token.fromString(response.responseBody)
+        ) {
+            Token.fromString(it)
+        }
     }
 
     private fun fireFingerprintRequest() {
-        makeFireAndForgetRequest(fingerprintRequestFactory.create())
+        val fingerprintRequest = fingerprintRequestFactory.create()
+        if (fingerprintRequestScheduler.shouldSend(fingerprintRequest)) {
+            makeFireAndForgetRequest(fingerprintRequest)
+        }
     }
 
     @VisibleForTesting
@@ -929,9 +979,6 @@ internal class StripeApiRepository @JvmOverloads constructor(
     }
 
     companion object {
-
-        private const val DNS_CACHE_TTL_PROPERTY_NAME = "networkaddress.cache.ttl"
-
         private fun createVerificationParam(
             verificationId: String,
             userOneTimeCode: String
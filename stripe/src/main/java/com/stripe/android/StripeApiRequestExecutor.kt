@@ -2,62 +2,115 @@ package com.stripe.android
 
 import com.stripe.android.exception.APIConnectionException
 import com.stripe.android.exception.InvalidRequestException
+import com.stripe.android.exception.StripeException
 import java.io.IOException
-import java.io.InputStream
 import java.net.HttpURLConnection
-import java.nio.charset.StandardCharsets
-import java.util.Scanner
 
 /**
  * Used by [StripeApiRepository] to make HTTP requests
  */
 internal class StripeApiRequestExecutor internal constructor(
-    private val logger: Logger = Logger.noop()
+    private val logger: Logger = Logger.noop(),
+    private val connectionReuseTracker: ConnectionReuseTracker = ConnectionReuseTracker.DEFAULT,
+    private val responseBodyReader: ResponseBodyReader = ResponseBodyReader(),
+    private val retryPolicy: RetryPolicy = RetryPolicy.DEFAULT,
+    private val networkEventDispatcher: NetworkEventDispatcher = NetworkEventDispatcher.DEFAULT,
+    private val transportProvider: () -> StripeTransport? = { Stripe.getTransport() }
 ) : ApiRequestExecutor {
-    private val connectionFactory: ConnectionFactory = ConnectionFactory()
+    private val connectionFactory: ConnectionFactory = ConnectionFactory(connectionReuseTracker)
 
     /**
-     * Make the request and return the response as a [StripeResponse]
+     * Make the request, retrying it as allowed by [retryPolicy], and return the response as a
+     * [StripeResponse]. The request and its retries end by the [Deadline] of its
+     * [ApiRequest.Options], or by the deadline set by [TimeoutPolicy] if it has none.
      */
     @Throws(APIConnectionException::class, InvalidRequestException::class)
     override fun execute(request: ApiRequest): StripeResponse {
+        val startedAtNanos = System.nanoTime()
+        val deadline = request.options.deadline ?: Deadline.forOperation()
+        var attemptCount = 0
+        var metrics = RequestMetrics()
+        val response = try {
+            retryPolicy.execute(deadline) {
+                attemptCount++
+                metrics = RequestMetrics()
+                deadline?.checkNotExpired(request.baseUrl)
+                executeOnce(request, metrics, deadline)
+            }
+        } catch (e: StripeException) {
+            networkEventDispatcher.onRequestCompleted(request, metrics, null, null,
+                System.nanoTime() - startedAtNanos, attemptCount - 1)
+            throw e
+        }
+
+        networkEventDispatcher.onRequestCompleted(request, metrics, response.responseCode,
+            response.requestId, System.nanoTime() - startedAtNanos, attemptCount - 1)
+        return response
+    }
+
+    @Throws(APIConnectionException::class, InvalidRequestException::class)
+    private fun executeOnce(
+        request: ApiRequest,
+        metrics: RequestMetrics,
+        deadline: Deadline?
+    ): StripeResponse {
         logger.info(request.toString())
+        transportProvider()?.let {
+            return executeWithTransport(it, request, metrics, deadline)
+        }
+
         // HttpURLConnection verifies SSL cert by default
         var conn: HttpURLConnection? = null
+        var isReusable = false
         try {
-            conn = connectionFactory.create(request)
+            val connection = connectionFactory.create(request, metrics, deadline)
+            conn = connection
             // trigger the request
-            val responseCode = conn.responseCode
-            val responseBody = if (responseCode in 200..299) {
-                getResponseBody(conn.inputStream)
-            } else {
-                getResponseBody(conn.errorStream)
+            val responseCode = metrics.measure({ timeToFirstByteNanos = it }) {
+                connection.responseCode
             }
-            val stripeResponse = StripeResponse(responseCode, responseBody, conn.headerFields)
-            logger.info(stripeResponse.toString())
+            val responseBody = metrics.measure({ bodyReadNanos = it }) {
+                responseBodyReader.readBody(
+                    if (responseCode in 200..299) {
+                        connection.inputStream
+                    } else {
+                        connection.errorStream
+                    },
+                    connection.contentLength,
+                    connection.contentEncoding
+                )
+            }
+            metrics.bytesIn = responseBody.encodedBytes.toLong()
+            // the response body was fully read, so the connection can be reused
+            isReusable = true
+            val stripeResponse =
+                StripeResponse(responseCode, responseBody.text, connection.headerFields)
+            logger.info("$stripeResponse, Body: ${responseBody.encodedBytes} bytes received, " +
+                "${responseBody.decodedBytes} bytes decoded")
             return stripeResponse
         } catch (e: IOException) {
+            connectionFactory.onConnectionFailure(request, e)
             logger.error("Exception while making Stripe API request.", e)
             throw APIConnectionException.create(request.baseUrl, e)
         } finally {
-            conn?.disconnect()
+            conn?.let { connectionReuseTracker.release(it, isReusable) }
         }
     }
 
-    @Throws(IOException::class)
-    private fun getResponseBody(responseStream: InputStream?): String? {
-        if (responseStream == null) {
-            return null
+    @Throws(APIConnectionException::class, InvalidRequestException::class)
+    private fun executeWithTransport(
+        transport: StripeTransport,
+        request: ApiRequest,
+        metrics: RequestMetrics,
+        deadline: Deadline?
+    ): StripeResponse {
+        try {
+            val stripeResponse = connectionFactory.execute(transport, request, metrics, deadline)
+            logger.info(stripeResponse.toString())
+            return stripeResponse
+        } catch (e: IOException) {
+            logger.error("Exception while making Stripe API request.", e)
+            throw APIConnectionException.create(request.baseUrl, e)
         }
-
-        // \A is the beginning of the stream boundary
-        val scanner = Scanner(responseStream, CHARSET).useDelimiter("\\A")
-        val responseBody = if (scanner.hasNext()) scanner.next() else null
-        responseStream.close()
-        return responseBody
-    }
-
-    companion object {
-        private val CHARSET = StandardCharsets.UTF_8.name()
     }
 }
@@ -3,15 +3,20 @@ package com.stripe.android
 import androidx.annotation.VisibleForTesting
 import com.stripe.android.exception.APIConnectionException
 import com.stripe.android.exception.InvalidRequestException
-import java.io.Closeable
 import java.io.IOException
+import java.io.InputStream
 import java.net.HttpURLConnection
-import kotlinx.coroutines.GlobalScope
-import kotlinx.coroutines.launch
 
-internal class StripeFireAndForgetRequestExecutor : FireAndForgetRequestExecutor {
+internal class StripeFireAndForgetRequestExecutor internal constructor(
+    private val connectionReuseTracker: ConnectionReuseTracker = ConnectionReuseTracker.DEFAULT,
+    private val backgroundExecutor: BoundedRequestExecutor = BoundedRequestExecutor.DEFAULT,
+    private val networkEventDispatcher: NetworkEventDispatcher = NetworkEventDispatcher.DEFAULT,
+    private val fingerprintRequestScheduler: FingerprintRequestScheduler =
+        FingerprintRequestScheduler.DEFAULT,
+    private val transportProvider: () -> StripeTransport? = { Stripe.getTransport() }
+) : FireAndForgetRequestExecutor {
 
-    private val connectionFactory: ConnectionFactory = ConnectionFactory()
+    private val connectionFactory: ConnectionFactory = ConnectionFactory(connectionReuseTracker)
 
     /**
      * Make the request and ignore the response
@@ -23,38 +28,88 @@ internal class StripeFireAndForgetRequestExecutor : FireAndForgetRequestExecutor
     fun execute(request: StripeRequest): Int {
         // HttpURLConnection verifies SSL cert by default
         var conn: HttpURLConnection? = null
+        var isReusable = false
+        val metrics = RequestMetrics()
+        var responseCode: Int? = null
+        var requestId: String? = null
         try {
-            conn = connectionFactory.create(request)
+            val transport = transportProvider()
+            if (transport != null) {
+                val response = connectionFactory.execute(transport, request, metrics)
+                responseCode = response.responseCode
+                requestId = response.requestId
+                return response.responseCode
+            }
+
+            val connection = connectionFactory.create(request, metrics)
+            conn = connection
 
             // required to trigger the request
-            val responseCode = conn.responseCode
+            val code = metrics.measure({ timeToFirstByteNanos = it }) {
+                connection.responseCode
+            }
+            responseCode = code
+            requestId = connection.getHeaderField("Request-Id")
 
-            closeConnection(conn, responseCode)
-            return responseCode
+            metrics.bytesIn = metrics.measure({ bodyReadNanos = it }) {
+                closeConnection(connection, code)
+            }
+            // the response body was fully read, so the connection can be reused
+            isReusable = true
+            return code
         } catch (e: IOException) {
+            connectionFactory.onConnectionFailure(request, e)
             throw APIConnectionException.create(request.baseUrl, e)
         } finally {
-            conn?.disconnect()
+            conn?.let { connectionReuseTracker.release(it, isReusable) }
+            if (request is FingerprintRequest) {
+                fingerprintRequestScheduler.onRequestCompleted(request, responseCode)
+            }
+            networkEventDispatcher.onRequestCompleted(request, metrics, responseCode, requestId,
+                System.nanoTime() - metrics.startedAtNanos)
         }
     }
 
+    /**
+     * @return the number of bytes of response body that were drained
+     */
     @Throws(IOException::class)
-    private fun closeConnection(conn: HttpURLConnection, responseCode: Int) {
-        if (responseCode in 200..299) {
+    private fun closeConnection(conn: HttpURLConnection, responseCode: Int): Long {
+        return if (responseCode in 200..299) {
             closeStream(conn.inputStream)
         } else {
             closeStream(conn.errorStream)
         }
     }
 
+    /**
+     * Drain any remaining response body before closing, otherwise the socket can't be reused.
+     *
+     * @return the number of bytes drained
+     */
     @Throws(IOException::class)
-    private fun closeStream(stream: Closeable?) {
-        stream?.close()
+    private fun closeStream(stream: InputStream?): Long {
+        return stream?.use {
+            val buffer = ByteArray(DRAIN_BUFFER_SIZE)
+            var byteCount = 0L
+            while (true) {
+                val bytesRead = it.read(buffer)
+                if (bytesRead == -1) {
+                    break
+                }
+                byteCount += bytesRead
+            }
+            byteCount
+        } ?: 0L
     }
 
     override fun executeAsync(request: StripeRequest) {
-        GlobalScope.launch {
+        backgroundExecutor.execute {
             execute(request)
         }
     }
+
+    companion object {
+        private const val DRAIN_BUFFER_SIZE = 1024
+    }
 }
@@ -0,0 +1,150 @@
+package com.stripe.android
+
+import android.os.SystemClock
+import androidx.annotation.VisibleForTesting
+import com.stripe.android.exception.APIConnectionException
+import com.stripe.android.exception.APIException
+import com.stripe.android.exception.AuthenticationException
+import com.stripe.android.exception.InvalidRequestException
+import com.stripe.android.model.PaymentIntent
+import com.stripe.android.model.SetupIntent
+import com.stripe.android.model.StripeIntent
+import java.util.concurrent.TimeUnit
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.delay
+
+/**
+ * Retrieves a [com.stripe.android.model.PaymentIntent] or [com.stripe.android.model.SetupIntent]
+ * until its status is no longer [StripeIntent.Status.Processing] or
+ * [StripeIntent.Status.RequiresAction], e.g. after the customer returns from a bank redirect and
+ * the payment hasn't been confirmed yet.
+ *
+ * The first attempt is made right away. The delay between attempts starts at
+ * [initialDelayMillis] and doubles up to [maxDelayMillis], but goes back to [initialDelayMillis]
+ * when the status changes, since the intent is likely to change again soon. Polling stops at the
+ * deadline, and the last retrieved intent is returned. Each attempt carries the deadline, so that
+ * its timeouts end by it. An attempt that fails with an [APIConnectionException], e.g. because the
+ * connection dropped, is retried like an unchanged status while there is time left. Cancelling
+ * the calling coroutine stops polling and disconnects the in-flight request.
+ *
+ * Retrieves go through [StripeRepository], so they share connections with, and are coalesced
+ * with, other requests for the same intent. The latency of each attempt is reported to
+ * [NetworkEventListener.onIntentPolled].
+ */
+internal class StripeIntentPoller @VisibleForTesting internal constructor(
+    private val stripeRepository: StripeRepository,
+    private val networkEventDispatcher: NetworkEventDispatcher = NetworkEventDispatcher.DEFAULT,
+    private val initialDelayMillis: Long = DEFAULT_INITIAL_DELAY_MILLIS,
+    private val maxDelayMillis: Long = DEFAULT_MAX_DELAY_MILLIS,
+    private val clock: () -> Long = { SystemClock.elapsedRealtime() }
+) {
+    /**
+     * Poll the [PaymentIntent] with [clientSecret].
+     *
+     * @return the last retrieved PaymentIntent, or `null` if it couldn't be retrieved
+     * @throws APIConnectionException if no attempt reached the API before the deadline
+     */
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class)
+    suspend fun pollPaymentIntent(
+        clientSecret: String,
+        options: ApiRequest.Options,
+        timeoutMillis: Long,
+        dispatcher: CoroutineDispatcher
+    ): PaymentIntent? {
+        return poll(options, timeoutMillis, dispatcher) {
+            stripeRepository.retrievePaymentIntent(clientSecret, it)
+        }
+    }
+
+    /**
+     * Poll the [SetupIntent] with [clientSecret].
+     *
+     * @return the last retrieved SetupIntent, or `null` if it couldn't be retrieved
+     * @throws APIConnectionException if no attempt reached the API before the deadline
+     */
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class)
+    suspend fun pollSetupIntent(
+        clientSecret: String,
+        options: ApiRequest.Options,
+        timeoutMillis: Long,
+        dispatcher: CoroutineDispatcher
+    ): SetupIntent? {
+        return poll(options, timeoutMillis, dispatcher) {
+            stripeRepository.retrieveSetupIntent(clientSecret, it)
+        }
+    }
+
+    /**
+     * @param retrieve retrieves the intent with the given request options
+     */
+    private suspend fun <T : StripeIntent> poll(
+        options: ApiRequest.Options,
+        timeoutMillis: Long,
+        dispatcher: CoroutineDispatcher,
+        retrieve: (ApiRequest.Options) -> T?
+    ): T? {
+        val deadline = Deadline.after(timeoutMillis, clock)
+        val requestOptions = options.withDeadline(deadline)
+        var delayMillis = initialDelayMillis
+        var previousStatus: StripeIntent.Status? = null
+        var lastStripeIntent: T? = null
+        var attempt = 0
+
+        while (true) {
+            attempt++
+            val startTime = clock()
+            var connectionException: APIConnectionException? = null
+            val stripeIntent = try {
+                InFlightRequest.execute(dispatcher) {
+                    retrieve(requestOptions)
+                }
+            } catch (e: APIConnectionException) {
+                connectionException = e
+                null
+            }
+            val latencyMillis = clock() - startTime
+
+            if (connectionException == null) {
+                val status = stripeIntent?.status
+                if (previousStatus != null && status != previousStatus) {
+                    delayMillis = initialDelayMillis
+                }
+                previousStatus = status
+                lastStripeIntent = stripeIntent
+            }
+
+            val remainingMillis = deadline.remainingMillis
+            val shouldRetry = connectionException != null || shouldPoll(stripeIntent?.status)
+            val nextDelayMillis = if (shouldRetry && remainingMillis > 0) {
+                minOf(delayMillis, remainingMillis)
+            } else {
+                null
+            }
+            networkEventDispatcher.onIntentPolled(
+                stripeIntent, attempt, latencyMillis, nextDelayMillis
+            )
+
+            if (nextDelayMillis == null) {
+                if (connectionException != null && lastStripeIntent == null) {
+                    throw connectionException
+                }
+                return lastStripeIntent
+            }
+            delay(nextDelayMillis)
+            delayMillis = minOf(delayMillis * 2, maxDelayMillis)
+        }
+    }
+
+    private fun shouldPoll(status: StripeIntent.Status?): Boolean {
+        return status == StripeIntent.Status.Processing ||
+            status == StripeIntent.Status.RequiresAction
+    }
+
+    companion object {
+        private val DEFAULT_INITIAL_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(1)
+        private val DEFAULT_MAX_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(8)
+        internal val DEFAULT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30)
+    }
+}
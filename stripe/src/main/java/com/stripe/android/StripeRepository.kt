@@ -132,6 +132,18 @@ internal interface StripeRepository {
         requestOptions: ApiRequest.Options
     ): List<PaymentMethod>
 
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class, CardException::class)
+    fun getPaymentMethodsPage(
+        customerId: String,
+        paymentMethodType: String,
+        limit: Int,
+        startingAfter: String?,
+        publishableKey: String,
+        productUsageTokens: Set<String>,
+        requestOptions: ApiRequest.Options
+    ): PaymentMethodsPage
+
     @Throws(AuthenticationException::class, InvalidRequestException::class,
         APIConnectionException::class, APIException::class, CardException::class)
     fun setDefaultCustomerSource(
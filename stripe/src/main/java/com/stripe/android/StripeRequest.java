@@ -6,11 +6,8 @@ import androidx.annotation.Nullable;
 import com.stripe.android.exception.InvalidRequestException;
 
 import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
@@ -63,12 +60,30 @@ abstract class StripeRequest {
     }
 
     @NonNull
-    final Map<String, String> getHeaders() {
+    Map<String, String> getHeaders() {
         final Map<String, String> headers = createHeaders();
         headers.put(StripeRequest.HEADER_USER_AGENT, getUserAgent());
         return headers;
     }
 
+    /**
+     * @return the connect timeout of this request, or {@code null} to use the timeout set by
+     *         {@link TimeoutPolicy} for the request's type
+     */
+    @Nullable
+    Integer getConnectTimeoutMillis() {
+        return null;
+    }
+
+    /**
+     * @return the read timeout of this request, or {@code null} to use the timeout set by
+     *         {@link TimeoutPolicy} for the request's type
+     */
+    @Nullable
+    Integer getReadTimeoutMillis() {
+        return null;
+    }
+
     @NonNull
     abstract Map<String, String> createHeaders();
 
@@ -79,21 +94,12 @@ abstract class StripeRequest {
     abstract byte[] getOutputBytes() throws UnsupportedEncodingException, InvalidRequestException;
 
     @NonNull
-    String createQuery() throws InvalidRequestException, UnsupportedEncodingException {
-        final StringBuilder queryStringBuffer = new StringBuilder();
-        for (Parameter flatParam : flattenParams(params)) {
-            if (queryStringBuffer.length() > 0) {
-                queryStringBuffer.append("&");
-            }
-            queryStringBuffer.append(urlEncodePair(flatParam.key, flatParam.value));
-        }
-
-        return queryStringBuffer.toString();
+    String createQuery() throws InvalidRequestException {
+        return FormEncoder.DEFAULT.encodeToString(params);
     }
 
     @NonNull
-    private String urlWithQuery()
-            throws InvalidRequestException, UnsupportedEncodingException {
+    private String urlWithQuery() throws InvalidRequestException {
         final String query = createQuery();
         if (query.isEmpty()) {
             return mUrl;
@@ -101,87 +107,8 @@ abstract class StripeRequest {
             // In some cases, URL can already contain a question mark
             // (eg, upcoming invoice lines)
             final String separator = mUrl.contains("?") ? "&" : "?";
-            return String.format(Locale.ROOT, "%s%s%s", mUrl, separator, query);
-        }
-    }
-
-    @NonNull
-    private List<Parameter> flattenParams(@Nullable Map<String, ?> params)
-            throws InvalidRequestException {
-        return flattenParamsMap(params, null);
-    }
-
-    @NonNull
-    private List<Parameter> flattenParamsList(@NonNull List<?> params,
-                                              @NonNull String keyPrefix)
-            throws InvalidRequestException {
-        final List<Parameter> flatParams = new LinkedList<>();
-
-        // Because application/x-www-form-urlencoded cannot represent an empty
-        // list, convention is to take the list parameter and just set it to an
-        // empty string. (e.g. A regular list might look like `a[]=1&b[]=2`.
-        // Emptying it would look like `a=`.)
-        if (params.isEmpty()) {
-            flatParams.add(new Parameter(keyPrefix, ""));
-        } else {
-            final String newPrefix = String.format(Locale.ROOT, "%s[]", keyPrefix);
-            for (Object param : params) {
-                flatParams.addAll(flattenParamsValue(param, newPrefix));
-            }
-        }
-
-        return flatParams;
-    }
-
-    @NonNull
-    private List<Parameter> flattenParamsMap(@Nullable Map<String, ?> params,
-                                             @Nullable String keyPrefix)
-            throws InvalidRequestException {
-        final List<Parameter> flatParams = new LinkedList<>();
-        if (params == null) {
-            return flatParams;
+            return mUrl + separator + query;
         }
-
-        for (Map.Entry<String, ?> entry : params.entrySet()) {
-            final String key = entry.getKey();
-            final Object value = entry.getValue();
-            final String newPrefix;
-            if (keyPrefix != null) {
-                newPrefix = String.format(Locale.ROOT, "%s[%s]", keyPrefix, key);
-            } else {
-                newPrefix = key;
-            }
-
-            flatParams.addAll(flattenParamsValue(value, newPrefix));
-        }
-
-        return flatParams;
-    }
-
-    @NonNull
-    private List<Parameter> flattenParamsValue(@Nullable Object value,
-                                               @NonNull String keyPrefix)
-            throws InvalidRequestException {
-        final List<Parameter> flatParams;
-        if (value instanceof Map<?, ?>) {
-            //noinspection unchecked
-            flatParams = flattenParamsMap((Map<String, Object>) value, keyPrefix);
-        } else if (value instanceof List<?>) {
-            flatParams = flattenParamsList((List<?>) value, keyPrefix);
-        } else if ("".equals(value)) {
-            throw new InvalidRequestException("You cannot set '" + keyPrefix + "' to an empty "
-                    + "string. " + "We interpret empty strings as null in requests. "
-                    + "You may set '" + keyPrefix + "' to null to delete the property.",
-                    keyPrefix, null, 0, null, null, null, null);
-        } else if (value == null) {
-            flatParams = new LinkedList<>();
-            flatParams.add(new Parameter(keyPrefix, ""));
-        } else {
-            flatParams = new LinkedList<>();
-            flatParams.add(new Parameter(keyPrefix, value.toString()));
-        }
-
-        return flatParams;
     }
 
     /**
@@ -195,49 +122,25 @@ abstract class StripeRequest {
     private static Map<String, Object> compactParams(@NonNull final Map<String, ?> params) {
         final Map<String, Object> compactParams = new HashMap<>(params);
 
-        // Remove all null values; they cause validation errors
-        for (String key : new HashSet<>(compactParams.keySet())) {
-            if (compactParams.get(key) == null) {
-                compactParams.remove(key);
-            }
-
-            if (compactParams.get(key) instanceof CharSequence) {
-                final CharSequence sequence = (CharSequence) compactParams.get(key);
-                if (StripeTextUtils.isEmpty(sequence)) {
-                    compactParams.remove(key);
-                }
-            }
+        final Iterator<Map.Entry<String, Object>> iterator =
+                compactParams.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Object> entry = iterator.next();
+            final Object value = entry.getValue();
 
-            if (compactParams.get(key) instanceof Map) {
-                final Map<String, Object> nestedMap =
-                        (Map<String, Object>) compactParams.get(key);
-                if (nestedMap != null) {
-                    final Map<String, Object> compactNestedMap = compactParams(nestedMap);
-                    compactParams.put(key, compactNestedMap);
-                }
+            // Remove all null values; they cause validation errors
+            if (value == null ||
+                    (value instanceof CharSequence &&
+                            StripeTextUtils.isEmpty((CharSequence) value))) {
+                iterator.remove();
+            } else if (value instanceof Map) {
+                entry.setValue(compactParams((Map<String, Object>) value));
             }
         }
 
         return compactParams;
     }
 
-    @NonNull
-    private String urlEncodePair(@NonNull String k, @NonNull String v)
-            throws UnsupportedEncodingException {
-        return String.format(Locale.ROOT, "%s=%s", urlEncode(k), urlEncode(v));
-    }
-
-    @Nullable
-    private String urlEncode(@Nullable String str) throws UnsupportedEncodingException {
-        // Preserve original behavior that passing null for an object id will lead
-        // to us actually making a request to /v1/foo/null
-        if (str == null) {
-            return null;
-        } else {
-            return URLEncoder.encode(str, CHARSET);
-        }
-    }
-
     int getBaseHashCode() {
         return Objects.hash(method, mUrl, params);
     }
@@ -251,7 +154,8 @@ abstract class StripeRequest {
     enum Method {
         GET("GET"),
         POST("POST"),
-        DELETE("DELETE");
+        DELETE("DELETE"),
+        HEAD("HEAD");
 
         @NonNull final String code;
 
@@ -259,14 +163,4 @@ abstract class StripeRequest {
             this.code = code;
         }
     }
-
-    private static final class Parameter {
-        @NonNull private final String key;
-        @NonNull private final String value;
-
-        Parameter(@NonNull String key, @NonNull String value) {
-            this.key = key;
-            this.value = value;
-        }
-    }
 }
@@ -1,23 +1,37 @@
 package com.stripe.android
 
+import androidx.annotation.VisibleForTesting
 import java.io.IOException
 import java.net.InetAddress
 import java.net.Socket
+import java.security.GeneralSecurityException
 import java.security.NoSuchAlgorithmException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 import javax.net.ssl.HttpsURLConnection
 import javax.net.ssl.SSLContext
+import javax.net.ssl.SSLSessionContext
 import javax.net.ssl.SSLSocket
 import javax.net.ssl.SSLSocketFactory
 
 /**
  * Wraps a SSLSocketFactory and enables more TLS versions on older versions of Android.
  * Most of the code is taken from stripe-java.
+ *
+ * [DEFAULT] is backed by an SDK-owned [SSLContext] whose client session cache is sized for the
+ * few hosts that the SDK connects to, and enables session tickets where the platform supports
+ * them. Sharing it between API, telemetry, and 3DS2 traffic lets a new connection to any of these
+ * hosts resume a cached TLS session with an abbreviated handshake.
  */
 internal class StripeSSLSocketFactory constructor(
     private val under: SSLSocketFactory,
     private val tlsv11Supported: Boolean,
-    private val tlsv12Supported: Boolean
+    private val tlsv12Supported: Boolean,
+    private val sessionContext: SSLSessionContext? = null
 ) : SSLSocketFactory() {
+    private val handshakeCount = AtomicInteger()
+    private val resumedHandshakeCount = AtomicInteger()
+
     constructor() : this(getSupportedProtocols())
 
     constructor(supportedProtocols: Array<String>) : this(
@@ -81,12 +95,40 @@ internal class StripeSSLSocketFactory constructor(
     }
 
     private fun fixupSocket(sock: Socket): Socket {
+        socketCreatedAtNanos.set(System.nanoTime())
         if (sock is SSLSocket) {
             sock.enabledProtocols = getEnabledProtocols(sock.enabledProtocols)
+            if (sessionContext != null) {
+                enableSessionTickets(sock)
+                val createdAtMillis = System.currentTimeMillis()
+                sock.addHandshakeCompletedListener { event ->
+                    onHandshakeCompleted(event.session.creationTime, createdAtMillis)
+                }
+            }
         }
         return sock
     }
 
+    /**
+     * A resumed session keeps the creation time of the session it resumes, which is earlier
+     * than the creation of the socket that resumed it.
+     */
+    @VisibleForTesting
+    internal fun onHandshakeCompleted(sessionCreatedAtMillis: Long, socketCreatedAtMillis: Long) {
+        handshakeCount.incrementAndGet()
+        if (sessionCreatedAtMillis < socketCreatedAtMillis) {
+            resumedHandshakeCount.incrementAndGet()
+        }
+    }
+
+    fun getStats(): Stats {
+        return Stats(
+            handshakes = handshakeCount.get(),
+            resumedHandshakes = resumedHandshakeCount.get(),
+            cachedSessions = sessionContext?.ids?.toList()?.size ?: 0
+        )
+    }
+
     fun getEnabledProtocols(
         enabledProtocols: Array<String>
     ): Array<String?> {
@@ -97,10 +139,83 @@ internal class StripeSSLSocketFactory constructor(
         ).filterNotNull().toTypedArray()
     }
 
+    /**
+     * @param handshakes the number of completed TLS handshakes
+     * @param resumedHandshakes the number of handshakes that resumed a cached session
+     * @param cachedSessions the number of sessions in the client session cache
+     */
+    internal data class Stats(
+        val handshakes: Int,
+        val resumedHandshakes: Int,
+        val cachedSessions: Int
+    ) {
+        val resumptionRate: Float
+            get() = if (handshakes > 0) resumedHandshakes.toFloat() / handshakes else 0f
+    }
+
     companion object {
         private const val TLS_V11_PROTO = "TLSv1.1"
         private const val TLS_V12_PROTO = "TLSv1.2"
 
+        private val socketCreatedAtNanos = ThreadLocal<Long>()
+
+        private const val SESSION_CACHE_SIZE = 32
+        private val SESSION_TIMEOUT_SECONDS = TimeUnit.HOURS.toSeconds(12).toInt()
+
+        /**
+         * The factory shared by all of the SDK's connections.
+         */
+        @JvmField
+        val DEFAULT: StripeSSLSocketFactory = create()
+
+        private fun create(): StripeSSLSocketFactory {
+            val sslContext = try {
+                SSLContext.getInstance("TLS").also {
+                    it.init(null, null, null)
+                }
+            } catch (e: GeneralSecurityException) {
+                return StripeSSLSocketFactory()
+            }
+
+            val sessionContext = sslContext.clientSessionContext
+            sessionContext.sessionCacheSize = SESSION_CACHE_SIZE
+            sessionContext.sessionTimeout = SESSION_TIMEOUT_SECONDS
+
+            val supportedProtocols = getSupportedProtocols()
+            return StripeSSLSocketFactory(
+                under = sslContext.socketFactory,
+                tlsv11Supported = supportedProtocols.any { it == TLS_V11_PROTO },
+                tlsv12Supported = supportedProtocols.any { it == TLS_V12_PROTO },
+                sessionContext = sessionContext
+            )
+        }
+
+        /**
+         * @return the time at which the last socket was created on the current thread, after
+         * its TCP connection was established and before its TLS handshake, or `null` if no
+         * socket was created since the last call
+         */
+        @JvmStatic
+        fun clearSocketCreatedAtNanos(): Long? {
+            return socketCreatedAtNanos.get().also {
+                socketCreatedAtNanos.remove()
+            }
+        }
+
+        /**
+         * Enable TLS session tickets on platforms whose provider supports them, such as
+         * Conscrypt on Android.
+         */
+        private fun enableSessionTickets(socket: SSLSocket) {
+            try {
+                socket.javaClass
+                    .getMethod("setUseSessionTickets", Boolean::class.javaPrimitiveType)
+                    .invoke(socket, true)
+            } catch (e: ReflectiveOperationException) {
+                // session tickets aren't supported by this provider
+            }
+        }
+
         // For Android prior to 4.1, TLSv1.1 and TLSv1.2 might not be supported
         fun getSupportedProtocols(): Array<String> {
             return try {
@@ -0,0 +1,79 @@
+package com.stripe.android
+
+import java.io.IOException
+
+/**
+ * Sends the SDK's HTTP requests. Set one with [Stripe.setTransport] to send them through the
+ * app's own HTTP client, so that the SDK shares its connection pool, DNS cache, TLS sessions and
+ * threads instead of running a second networking stack next to it.
+ *
+ * If no transport is set, the SDK uses its own `HttpURLConnection` stack.
+ *
+ * The SDK still builds, retries and parses its requests; a transport only sends a [Request] and
+ * returns the [Response], and must not retry it itself. Implementations are called on the SDK's
+ * background threads, possibly concurrently, and should block until the response body has been
+ * read.
+ */
+interface StripeTransport {
+    /**
+     * Send [request] and read its response, including responses with an error status code.
+     *
+     * @throws IOException if the request couldn't be sent or the response couldn't be read
+     */
+    @Throws(IOException::class)
+    fun execute(request: Request): Response
+
+    class Request internal constructor(
+        /**
+         * The HTTP method, e.g. `POST`
+         */
+        val method: String,
+
+        /**
+         * The URL, including the query string of a `GET` request
+         */
+        val url: String,
+
+        /**
+         * The request headers, including `Authorization` and `User-Agent`
+         */
+        val headers: Map<String, String>,
+
+        /**
+         * The body of a `POST` request, or `null`
+         */
+        val body: ByteArray?,
+
+        /**
+         * The content type of [body], or `null` if there is no body
+         */
+        val contentType: String?,
+
+        /**
+         * The connect timeout of the request, as set by [TimeoutPolicy]
+         */
+        val connectTimeoutMillis: Int,
+
+        /**
+         * The read timeout of the request, as set by [TimeoutPolicy]
+         */
+        val readTimeoutMillis: Int
+    )
+
+    class Response(
+        /**
+         * The HTTP status code
+         */
+        val code: Int,
+
+        /**
+         * The response body, decoded as UTF-8, or `null` if there is none
+         */
+        val body: String?,
+
+        /**
+         * The response headers
+         */
+        val headers: Map<String, List<String>>
+    )
+}
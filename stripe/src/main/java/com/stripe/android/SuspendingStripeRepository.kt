@@ -0,0 +1,127 @@
+package com.stripe.android
+
+import com.stripe.android.exception.APIConnectionException
+import com.stripe.android.exception.APIException
+import com.stripe.android.exception.AuthenticationException
+import com.stripe.android.exception.CardException
+import com.stripe.android.exception.InvalidRequestException
+import com.stripe.android.model.ConfirmPaymentIntentParams
+import com.stripe.android.model.ConfirmSetupIntentParams
+import com.stripe.android.model.PaymentIntent
+import com.stripe.android.model.PaymentMethod
+import com.stripe.android.model.PaymentMethodCreateParams
+import com.stripe.android.model.SetupIntent
+import com.stripe.android.model.Source
+import com.stripe.android.model.SourceParams
+import com.stripe.android.model.Token
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+
+/**
+ * Suspending versions of the [StripeRepository] operations.
+ *
+ * Each operation runs the blocking [StripeRepository] call on the given dispatcher, which
+ * defaults to [Dispatchers.IO], and resumes the caller on its own dispatcher. Cancelling the
+ * calling coroutine disconnects the operation's in-flight connection; see [InFlightRequest].
+ */
+internal class SuspendingStripeRepository(
+    private val stripeRepository: StripeRepository
+) {
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class)
+    suspend fun confirmPaymentIntent(
+        confirmPaymentIntentParams: ConfirmPaymentIntentParams,
+        options: ApiRequest.Options,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): PaymentIntent? {
+        return InFlightRequest.execute(dispatcher) {
+            stripeRepository.confirmPaymentIntent(confirmPaymentIntentParams, options)
+        }
+    }
+
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class)
+    suspend fun retrievePaymentIntent(
+        clientSecret: String,
+        options: ApiRequest.Options,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): PaymentIntent? {
+        return InFlightRequest.execute(dispatcher) {
+            stripeRepository.retrievePaymentIntent(clientSecret, options)
+        }
+    }
+
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class)
+    suspend fun confirmSetupIntent(
+        confirmSetupIntentParams: ConfirmSetupIntentParams,
+        options: ApiRequest.Options,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): SetupIntent? {
+        return InFlightRequest.execute(dispatcher) {
+            stripeRepository.confirmSetupIntent(confirmSetupIntentParams, options)
+        }
+    }
+
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class)
+    suspend fun retrieveSetupIntent(
+        clientSecret: String,
+        options: ApiRequest.Options,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): SetupIntent? {
+        return InFlightRequest.execute(dispatcher) {
+            stripeRepository.retrieveSetupIntent(clientSecret, options)
+        }
+    }
+
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class)
+    suspend fun createSource(
+        sourceParams: SourceParams,
+        options: ApiRequest.Options,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): Source? {
+        return InFlightRequest.execute(dispatcher) {
+            stripeRepository.createSource(sourceParams, options)
+        }
+    }
+
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class)
+    suspend fun retrieveSource(
+        sourceId: String,
+        clientSecret: String,
+        options: ApiRequest.Options,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): Source? {
+        return InFlightRequest.execute(dispatcher) {
+            stripeRepository.retrieveSource(sourceId, clientSecret, options)
+        }
+    }
+
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class)
+    suspend fun createPaymentMethod(
+        paymentMethodCreateParams: PaymentMethodCreateParams,
+        options: ApiRequest.Options,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): PaymentMethod? {
+        return InFlightRequest.execute(dispatcher) {
+            stripeRepository.createPaymentMethod(paymentMethodCreateParams, options)
+        }
+    }
+
+    @Throws(AuthenticationException::class, InvalidRequestException::class,
+        APIConnectionException::class, APIException::class, CardException::class)
+    suspend fun createToken(
+        tokenParams: Map<String, *>,
+        options: ApiRequest.Options,
+        @Token.TokenType tokenType: String,
+        dispatcher: CoroutineDispatcher = Dispatchers.IO
+    ): Token? {
+        return InFlightRequest.execute(dispatcher) {
+            stripeRepository.createToken(tokenParams, options, tokenType)
+        }
+    }
+}
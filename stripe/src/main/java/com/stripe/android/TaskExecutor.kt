@@ -0,0 +1,156 @@
+package com.stripe.android
+
+import android.os.AsyncTask
+import android.os.SystemClock
+import androidx.annotation.VisibleForTesting
+import java.util.concurrent.Executor
+import java.util.concurrent.PriorityBlockingQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Runs the SDK's asynchronous API operations on an SDK-owned pool of threads.
+ *
+ * `AsyncTask.execute()` runs every task in the process on a single serial executor, so an API
+ * call could wait behind a slow Stripe request or any of the host app's own tasks. This
+ * executor runs up to [maxConcurrentTasks] operations at once. When all threads are busy, waiting
+ * operations run in [Priority] order, and in submission order within a priority.
+ *
+ * The time each operation spends waiting for a thread is recorded in [getStats].
+ */
+internal class TaskExecutor @VisibleForTesting internal constructor(
+    maxConcurrentTasks: Int = DEFAULT_MAX_CONCURRENT_TASKS,
+    private val clock: () -> Long = { SystemClock.elapsedRealtime() }
+) {
+    private val threadPoolExecutor = ThreadPoolExecutor(
+        maxConcurrentTasks,
+        maxConcurrentTasks,
+        KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS,
+        PriorityBlockingQueue<Runnable>(),
+        THREAD_FACTORY
+    ).also {
+        it.allowCoreThreadTimeOut(true)
+    }
+
+    private val executors = Priority.values().associate { priority ->
+        priority to Executor { execute(it, priority) }
+    }
+
+    private val sequence = AtomicLong()
+
+    private var executedTaskCount = 0
+    private var totalQueueWaitMillis = 0L
+    private var maxQueueWaitMillis = 0L
+
+    /**
+     * The maximum number of operations that run at once.
+     */
+    var maxConcurrentTasks: Int
+        get() = threadPoolExecutor.maximumPoolSize
+        @Synchronized
+        set(value) {
+            require(value > 0) {
+                "maxConcurrentTasks must be greater than 0"
+            }
+
+            if (value > threadPoolExecutor.maximumPoolSize) {
+                threadPoolExecutor.maximumPoolSize = value
+                threadPoolExecutor.corePoolSize = value
+            } else {
+                threadPoolExecutor.corePoolSize = value
+                threadPoolExecutor.maximumPoolSize = value
+            }
+        }
+
+    fun execute(task: AsyncTask<Void, Void, *>, priority: Priority) {
+        task.executeOnExecutor(getExecutor(priority))
+    }
+
+    fun execute(runnable: Runnable, priority: Priority) {
+        threadPoolExecutor.execute(
+            PrioritizedTask(runnable, priority, sequence.getAndIncrement(), clock())
+        )
+    }
+
+    /**
+     * @return an [Executor] that runs tasks on this executor with the given [priority]
+     */
+    fun getExecutor(priority: Priority): Executor {
+        return requireNotNull(executors[priority])
+    }
+
+    @Synchronized
+    fun getStats(): Stats {
+        return Stats(
+            executedTasks = executedTaskCount,
+            averageQueueWaitMillis = if (executedTaskCount > 0) {
+                totalQueueWaitMillis / executedTaskCount
+            } else {
+                0L
+            },
+            maxQueueWaitMillis = maxQueueWaitMillis
+        )
+    }
+
+    @Synchronized
+    private fun onTaskStarted(queueWaitMillis: Long) {
+        executedTaskCount++
+        totalQueueWaitMillis += queueWaitMillis
+        maxQueueWaitMillis = maxOf(maxQueueWaitMillis, queueWaitMillis)
+    }
+
+    private inner class PrioritizedTask(
+        private val runnable: Runnable,
+        private val priority: Priority,
+        private val sequence: Long,
+        private val enqueuedAtMillis: Long
+    ) : Runnable, Comparable<PrioritizedTask> {
+        override fun run() {
+            onTaskStarted(clock() - enqueuedAtMillis)
+            runnable.run()
+        }
+
+        override fun compareTo(other: PrioritizedTask): Int {
+            return compareValuesBy(this, other, { it.priority }, { it.sequence })
+        }
+    }
+
+    /**
+     * The priority of an API operation. Operations on the payment path, such as confirming an
+     * intent or creating a payment method, run before retrievals and other background work.
+     */
+    internal enum class Priority {
+        High,
+        Normal,
+        Low
+    }
+
+    internal data class Stats(
+        val executedTasks: Int,
+        val averageQueueWaitMillis: Long,
+        val maxQueueWaitMillis: Long
+    )
+
+    companion object {
+        private const val DEFAULT_MAX_CONCURRENT_TASKS = 4
+        private const val KEEP_ALIVE_SECONDS = 30L
+
+        private val THREAD_FACTORY = object : ThreadFactory {
+            private val threadCount = AtomicInteger()
+
+            override fun newThread(runnable: Runnable): Thread {
+                return Thread(runnable, "StripeTask-${threadCount.incrementAndGet()}")
+            }
+        }
+
+        /**
+         * The executor shared by all of the SDK's asynchronous API operations.
+         */
+        @JvmField
+        val DEFAULT = TaskExecutor()
+    }
+}
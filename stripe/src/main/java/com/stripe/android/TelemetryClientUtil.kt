@@ -16,23 +16,23 @@ internal class TelemetryClientUtil @VisibleForTesting constructor(
     private val displayMetrics: DisplayMetrics,
     private val packageName: String,
     private val packageManager: PackageManager,
-    private val timeZone: String
+    // `null` to report the offset of the current default time zone
+    private val timeZone: String?
 ) {
 
-    private val versionName: String?
-        get() {
-            if (packageName.isNotBlank()) {
-                try {
-                    val packageInfo = packageManager.getPackageInfo(packageName, 0)
-                    if (packageInfo?.versionName != null) {
-                        return packageInfo.versionName
-                    }
-                } catch (ignored: PackageManager.NameNotFoundException) {
-                }
+    // the version name and hashed IDs don't change during the lifetime of the process and are
+    // relatively expensive to compute, so they are computed once and reused for every map
+    private val versionName: String? by lazy {
+        if (packageName.isNotBlank()) {
+            try {
+                packageManager.getPackageInfo(packageName, 0)?.versionName
+            } catch (ignored: PackageManager.NameNotFoundException) {
+                null
             }
-
-            return null
+        } else {
+            null
         }
+    }
 
     private val screen: String
         get() =
@@ -42,18 +42,18 @@ internal class TelemetryClientUtil @VisibleForTesting constructor(
         get() =
             "Android ${Build.VERSION.RELEASE} ${Build.VERSION.CODENAME} ${Build.VERSION.SDK_INT}"
 
-    val hashedUid: String
-        get() {
-            val uid = uidSupplier.get().value
-            return if (uid.isBlank()) {
-                ""
-            } else {
-                StripeTextUtils.shaHashInput(uid) ?: ""
-            }
+    val hashedUid: String by lazy {
+        val uid = uidSupplier.get().value
+        if (uid.isBlank()) {
+            ""
+        } else {
+            StripeTextUtils.shaHashInput(uid) ?: ""
         }
+    }
 
-    private val hashedMuid: String
-        get() = StripeTextUtils.shaHashInput(packageName + hashedUid) ?: ""
+    private val hashedMuid: String by lazy {
+        StripeTextUtils.shaHashInput(packageName + hashedUid) ?: ""
+    }
 
     constructor(context: Context) : this(context.applicationContext, UidSupplier(context))
 
@@ -62,7 +62,7 @@ internal class TelemetryClientUtil @VisibleForTesting constructor(
         context.resources.displayMetrics,
         context.packageName ?: "",
         context.packageManager,
-        createTimezone()
+        null
     )
 
     fun createTelemetryMap(): Map<String, Any> {
@@ -80,7 +80,7 @@ internal class TelemetryClientUtil @VisibleForTesting constructor(
             "c" to createValueMap(Locale.getDefault().toString()),
             "d" to createValueMap(androidVersionString),
             "f" to createValueMap(screen),
-            "g" to createValueMap(timeZone)
+            "g" to createValueMap(timeZone ?: createTimezone())
         )
     }
 
@@ -106,6 +106,22 @@ internal class TelemetryClientUtil @VisibleForTesting constructor(
     }
 
     companion object {
+        @Volatile
+        private var instance: TelemetryClientUtil? = null
+
+        /**
+         * @return the instance shared by the process, so that the values it caches are computed
+         * once per process instead of once per [StripeApiRepository]
+         */
+        @JvmStatic
+        fun getInstance(context: Context): TelemetryClientUtil {
+            return instance ?: synchronized(this) {
+                instance ?: TelemetryClientUtil(context.applicationContext).also {
+                    instance = it
+                }
+            }
+        }
+
         private fun createTimezone(): String {
             val minutes = TimeUnit.MINUTES.convert(TimeZone.getDefault().rawOffset.toLong(),
                 TimeUnit.MILLISECONDS).toInt()
@@ -0,0 +1,137 @@
+package com.stripe.android;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Timeouts for the requests made by the SDK, per {@link NetworkEvent.RequestType}, and an
+ * optional deadline for each operation, such as confirming a PaymentIntent or attaching a
+ * payment method to a customer.
+ *
+ * <p>An operation's deadline covers all of its requests and their retries, the ephemeral key
+ * fetch of a {@link CustomerSession} operation, and the requests that start 3DS2 authentication.
+ * An operation that runs past its deadline fails with an
+ * {@link com.stripe.android.exception.APIConnectionException}.</p>
+ */
+public final class TimeoutPolicy {
+
+    @Nullable
+    private static volatile TimeoutPolicy sInstance;
+
+    @NonNull
+    private static final TimeoutPolicy DEFAULT = new TimeoutPolicy.Builder().build();
+
+    public static void init(@NonNull TimeoutPolicy timeoutPolicy) {
+        sInstance = timeoutPolicy;
+    }
+
+    @NonNull
+    public static TimeoutPolicy get() {
+        final TimeoutPolicy timeoutPolicy = sInstance;
+        return timeoutPolicy != null ? timeoutPolicy : DEFAULT;
+    }
+
+    @VisibleForTesting
+    static void reset() {
+        sInstance = null;
+    }
+
+    @NonNull private final Map<NetworkEvent.RequestType, Timeouts> mTimeouts;
+
+    /**
+     * How long each operation may take, or {@code null} if operations have no deadline
+     */
+    @Nullable final Long operationTimeoutMillis;
+
+    private TimeoutPolicy(@NonNull Builder builder) {
+        mTimeouts = new EnumMap<>(builder.mTimeouts);
+        operationTimeoutMillis = builder.mOperationTimeoutMillis;
+    }
+
+    int getConnectTimeoutMillis(@NonNull NetworkEvent.RequestType requestType) {
+        return Objects.requireNonNull(mTimeouts.get(requestType)).connectTimeoutMillis;
+    }
+
+    int getReadTimeoutMillis(@NonNull NetworkEvent.RequestType requestType) {
+        return Objects.requireNonNull(mTimeouts.get(requestType)).readTimeoutMillis;
+    }
+
+    public static final class Builder implements ObjectBuilder<TimeoutPolicy> {
+        @NonNull private final Map<NetworkEvent.RequestType, Timeouts> mTimeouts =
+                createDefaultTimeouts();
+        @Nullable private Long mOperationTimeoutMillis;
+
+        /**
+         * Set the connect and read timeouts of requests of {@code requestType}
+         */
+        @NonNull
+        public Builder setTimeouts(@NonNull NetworkEvent.RequestType requestType,
+                                   @IntRange(from = 1) int connectTimeoutMillis,
+                                   @IntRange(from = 1) int readTimeoutMillis) {
+            mTimeouts.put(requestType, new Timeouts(
+                    checkValidTimeout(connectTimeoutMillis),
+                    checkValidTimeout(readTimeoutMillis)
+            ));
+            return this;
+        }
+
+        /**
+         * Set how long each operation may take, or {@code null} for no deadline, which is
+         * the default
+         */
+        @NonNull
+        public Builder setOperationTimeoutMillis(@Nullable Long operationTimeoutMillis) {
+            if (operationTimeoutMillis != null) {
+                checkValidTimeout(operationTimeoutMillis);
+            }
+            mOperationTimeoutMillis = operationTimeoutMillis;
+            return this;
+        }
+
+        @NonNull
+        @Override
+        public TimeoutPolicy build() {
+            return new TimeoutPolicy(this);
+        }
+
+        private static <T extends Number> T checkValidTimeout(@NonNull T timeoutMillis) {
+            if (timeoutMillis.longValue() <= 0) {
+                throw new IllegalArgumentException("Timeout value must be greater than 0");
+            }
+            return timeoutMillis;
+        }
+
+        @NonNull
+        private static Map<NetworkEvent.RequestType, Timeouts> createDefaultTimeouts() {
+            final Map<NetworkEvent.RequestType, Timeouts> timeouts =
+                    new EnumMap<>(NetworkEvent.RequestType.class);
+            timeouts.put(NetworkEvent.RequestType.Api,
+                    new Timeouts(30 * 1000, 80 * 1000));
+            // analytics and fingerprinting requests aren't waited on, so they fail faster
+            // instead of holding a connection for as long as an API request
+            timeouts.put(NetworkEvent.RequestType.Analytics,
+                    new Timeouts(10 * 1000, 10 * 1000));
+            timeouts.put(NetworkEvent.RequestType.Fingerprint,
+                    new Timeouts(10 * 1000, 10 * 1000));
+            timeouts.put(NetworkEvent.RequestType.WarmUp,
+                    new Timeouts(10 * 1000, 10 * 1000));
+            return timeouts;
+        }
+    }
+
+    private static final class Timeouts {
+        private final int connectTimeoutMillis;
+        private final int readTimeoutMillis;
+
+        private Timeouts(int connectTimeoutMillis, int readTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            this.readTimeoutMillis = readTimeoutMillis;
+        }
+    }
+}
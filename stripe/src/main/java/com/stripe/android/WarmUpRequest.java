@@ -0,0 +1,68 @@
+package com.stripe.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A HEAD request that opens a connection to a Stripe host ahead of the first real request, so
+ * that the DNS lookup and TCP and TLS handshakes are already done when the request is made.
+ */
+final class WarmUpRequest extends StripeRequest {
+    private static final String MIME_TYPE = "text/plain";
+
+    private final int mTimeoutMillis;
+
+    WarmUpRequest(@NonNull String url, int timeoutMillis) {
+        super(Method.HEAD, url, null, MIME_TYPE);
+        mTimeoutMillis = timeoutMillis;
+    }
+
+    @NonNull
+    @Override
+    Integer getConnectTimeoutMillis() {
+        return mTimeoutMillis;
+    }
+
+    @NonNull
+    @Override
+    Integer getReadTimeoutMillis() {
+        return mTimeoutMillis;
+    }
+
+    @NonNull
+    @Override
+    Map<String, String> createHeaders() {
+        return new HashMap<>();
+    }
+
+    @NonNull
+    @Override
+    String getUserAgent() {
+        return DEFAULT_USER_AGENT;
+    }
+
+    @NonNull
+    @Override
+    byte[] getOutputBytes() {
+        return new byte[0];
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getBaseHashCode(), mTimeoutMillis);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        return super.equals(obj) || (obj instanceof WarmUpRequest &&
+                typedEquals((WarmUpRequest) obj));
+    }
+
+    private boolean typedEquals(@NonNull WarmUpRequest obj) {
+        return super.typedEquals(obj) && mTimeoutMillis == obj.mTimeoutMillis;
+    }
+}
@@ -15,9 +15,11 @@ import com.google.android.material.snackbar.Snackbar
 import com.stripe.android.CustomerSession
 import com.stripe.android.PaymentSession.TOKEN_PAYMENT_SESSION
 import com.stripe.android.R
+import com.stripe.android.Stripe
 import com.stripe.android.StripeError
 import com.stripe.android.model.PaymentMethod
 import com.stripe.android.view.i18n.TranslatorManager
+import java.lang.ref.WeakReference
 import kotlinx.android.synthetic.main.activity_payment_methods.*
 
 /**
@@ -41,8 +43,18 @@ class PaymentMethodsActivity : AppCompatActivity() {
     private lateinit var cardDisplayTextFactory: CardDisplayTextFactory
     private var tappedPaymentMethod: PaymentMethod? = null
 
+    private var hasMorePaymentMethods: Boolean = false
+    private var isFetchingPaymentMethods: Boolean = false
+
+    /**
+     * Incremented when the payment methods are fetched from the first page again, so that pages
+     * of an earlier fetch are ignored
+     */
+    private var paymentMethodsFetchId: Int = 0
+
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
+        Stripe.warmUp()
         setContentView(R.layout.activity_payment_methods)
 
         val args = PaymentMethodsActivityStarter.Args.create(intent)
@@ -85,6 +97,11 @@ class PaymentMethodsActivity : AppCompatActivity() {
         payment_methods_recycler.setHasFixedSize(false)
         payment_methods_recycler.layoutManager = LinearLayoutManager(this)
         payment_methods_recycler.adapter = adapter
+        payment_methods_recycler.addOnScrollListener(object : RecyclerView.OnScrollListener() {
+            override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+                prefetchPaymentMethodsIfNeeded()
+            }
+        })
         payment_methods_recycler.itemAnimator = object : DefaultItemAnimator() {
             override fun onAnimationFinished(viewHolder: RecyclerView.ViewHolder) {
                 super.onAnimationFinished(viewHolder)
@@ -172,12 +189,69 @@ class PaymentMethodsActivity : AppCompatActivity() {
 
     private fun fetchCustomerPaymentMethods() {
         setCommunicatingProgress(true)
-        customerSession.getPaymentMethods(PaymentMethod.Type.Card,
-            PaymentMethodsRetrievalListener(this))
+        paymentMethodsFetchId++
+        fetchPaymentMethodsPage(null)
+    }
+
+    /**
+     * Fetch the next page of payment methods when the customer has scrolled to within
+     * [PREFETCH_DISTANCE] payment methods of the last one that has been loaded
+     */
+    private fun prefetchPaymentMethodsIfNeeded() {
+        if (!hasMorePaymentMethods || isFetchingPaymentMethods) {
+            return
+        }
+
+        val layoutManager = payment_methods_recycler.layoutManager as LinearLayoutManager
+        val lastVisiblePosition = layoutManager.findLastVisibleItemPosition()
+        val lastPaymentMethodId = adapter.paymentMethods.lastOrNull()?.id
+        if (lastVisiblePosition != RecyclerView.NO_POSITION && lastPaymentMethodId != null &&
+            lastVisiblePosition >= adapter.paymentMethods.size - PREFETCH_DISTANCE) {
+            fetchPaymentMethodsPage(lastPaymentMethodId)
+        }
     }
 
-    private fun updatePaymentMethods(paymentMethods: List<PaymentMethod>) {
-        adapter.setPaymentMethods(paymentMethods)
+    private fun fetchPaymentMethodsPage(startingAfter: String?) {
+        isFetchingPaymentMethods = true
+        customerSession.getPaymentMethods(PaymentMethod.Type.Card, PAGE_SIZE, startingAfter,
+            PaymentMethodsRetrievalListener(this, paymentMethodsFetchId, startingAfter == null))
+    }
+
+    private fun onPaymentMethodsPageRetrieved(
+        fetchId: Int,
+        isFirstPage: Boolean,
+        paymentMethods: List<PaymentMethod>,
+        hasMore: Boolean
+    ) {
+        if (fetchId != paymentMethodsFetchId) {
+            return
+        }
+
+        isFetchingPaymentMethods = false
+        hasMorePaymentMethods = hasMore
+        if (isFirstPage) {
+            adapter.setPaymentMethods(paymentMethods)
+            setCommunicatingProgress(false)
+        } else {
+            adapter.addPaymentMethods(paymentMethods)
+        }
+
+        // the loaded payment methods may not fill the screen, so no scroll would be reported
+        payment_methods_recycler.post { prefetchPaymentMethodsIfNeeded() }
+    }
+
+    private fun onPaymentMethodsPageError(fetchId: Int, isFirstPage: Boolean, error: String) {
+        if (fetchId != paymentMethodsFetchId) {
+            return
+        }
+
+        isFetchingPaymentMethods = false
+        // don't retry a failed page on every scroll; the next full fetch starts over
+        hasMorePaymentMethods = false
+        showError(error)
+        if (isFirstPage) {
+            setCommunicatingProgress(false)
+        }
     }
 
     private fun initLoggingTokens() {
@@ -251,14 +325,19 @@ class PaymentMethodsActivity : AppCompatActivity() {
     }
 
     private class PaymentMethodsRetrievalListener constructor(
-        activity: PaymentMethodsActivity
-    ) : CustomerSession.ActivityPaymentMethodsRetrievalListener<PaymentMethodsActivity>(activity) {
-
-        override fun onPaymentMethodsRetrieved(paymentMethods: List<PaymentMethod>) {
-            val activity = activity ?: return
+        activity: PaymentMethodsActivity,
+        private val fetchId: Int,
+        private val isFirstPage: Boolean
+    ) : CustomerSession.PaymentMethodsPageRetrievalListener {
+        private val activityRef: WeakReference<PaymentMethodsActivity> = WeakReference(activity)
+
+        override fun onPaymentMethodsPageRetrieved(
+            paymentMethods: List<PaymentMethod>,
+            hasMore: Boolean
+        ) {
+            val activity = activityRef.get() ?: return
 
-            activity.updatePaymentMethods(paymentMethods)
-            activity.setCommunicatingProgress(false)
+            activity.onPaymentMethodsPageRetrieved(fetchId, isFirstPage, paymentMethods, hasMore)
         }
 
         override fun onError(
@@ -266,7 +345,7 @@ class PaymentMethodsActivity : AppCompatActivity() {
             errorMessage: String,
             stripeError: StripeError?
         ) {
-            val activity = activity ?: return
+            val activity = activityRef.get() ?: return
 
             // Note: if this Activity is changed to subclass StripeActivity,
             // this code will make the error message show twice, since StripeActivity
@@ -274,8 +353,7 @@ class PaymentMethodsActivity : AppCompatActivity() {
             // coming from CustomerSession
             val displayedError = TranslatorManager.getErrorMessageTranslator()
                 .translate(errorCode, errorMessage, stripeError)
-            activity.showError(displayedError)
-            activity.setCommunicatingProgress(false)
+            activity.onPaymentMethodsPageError(fetchId, isFirstPage, displayedError)
         }
     }
 
@@ -299,5 +377,13 @@ class PaymentMethodsActivity : AppCompatActivity() {
     companion object {
         private const val STATE_SELECTED_PAYMENT_METHOD_ID = "state_selected_payment_method_id"
         const val TOKEN_PAYMENT_METHODS_ACTIVITY = "PaymentMethodsActivity"
+
+        private const val PAGE_SIZE = 20
+
+        /**
+         * The number of loaded payment methods below the last visible one at which the next page
+         * is fetched
+         */
+        private const val PREFETCH_DISTANCE = 5
     }
 }
@@ -6,19 +6,29 @@ import android.os.Looper
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
+import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
 import com.stripe.android.R
 import com.stripe.android.model.PaymentMethod
 import java.util.ArrayList
+import java.util.concurrent.Executor
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
 
 /**
  * A [RecyclerView.Adapter] that holds a set of [MaskedCardView] items for a given set
  * of [PaymentMethod] objects.
+ *
+ * When the payment methods are replaced, the changes are computed with [DiffUtil] on
+ * [diffExecutor], matching payment methods by id, so that only the rows that changed are
+ * rebound and animated.
  */
 internal class PaymentMethodsAdapter @JvmOverloads constructor(
     initiallySelectedPaymentMethodId: String?,
     private val intentArgs: PaymentMethodsActivityStarter.Args,
-    private val addableTypes: List<PaymentMethod.Type> = listOf(PaymentMethod.Type.Card)
+    private val addableTypes: List<PaymentMethod.Type> = listOf(PaymentMethod.Type.Card),
+    private val diffExecutor: Executor = DIFF_EXECUTOR
 ) : RecyclerView.Adapter<RecyclerView.ViewHolder>() {
 
     val paymentMethods = ArrayList<PaymentMethod>()
@@ -35,14 +45,66 @@ internal class PaymentMethodsAdapter @JvmOverloads constructor(
     var listener: Listener? = null
     private val handler = Handler(Looper.getMainLooper())
 
+    /**
+     * The payment methods most recently set, which are shown once their diff is dispatched
+     */
+    private var latestPaymentMethods: List<PaymentMethod> = emptyList()
+
+    /**
+     * Incremented when the payment methods are set, so that outdated diffs are discarded
+     */
+    private var diffGeneration = 0
+
     init {
         setHasStableIds(true)
     }
 
     fun setPaymentMethods(paymentMethods: List<PaymentMethod>) {
-        this.paymentMethods.clear()
-        this.paymentMethods.addAll(paymentMethods)
-        notifyDataSetChanged()
+        submitPaymentMethods(paymentMethods.toList())
+    }
+
+    /**
+     * Append a page of payment methods, skipping any that are already shown
+     */
+    fun addPaymentMethods(paymentMethods: List<PaymentMethod>) {
+        val newPaymentMethods = paymentMethods.filter { paymentMethod ->
+            latestPaymentMethods.none { it.id == paymentMethod.id }
+        }
+        if (newPaymentMethods.isNotEmpty()) {
+            submitPaymentMethods(latestPaymentMethods + newPaymentMethods)
+        }
+    }
+
+    private fun submitPaymentMethods(newPaymentMethods: List<PaymentMethod>) {
+        val generation = ++diffGeneration
+        latestPaymentMethods = newPaymentMethods
+
+        val oldPaymentMethods = paymentMethods.toList()
+        if (oldPaymentMethods.isEmpty() || newPaymentMethods.isEmpty()) {
+            // nothing to diff, all rows are inserted or removed
+            paymentMethods.clear()
+            paymentMethods.addAll(newPaymentMethods)
+            if (oldPaymentMethods.isNotEmpty()) {
+                notifyItemRangeRemoved(0, oldPaymentMethods.size)
+            }
+            if (newPaymentMethods.isNotEmpty()) {
+                notifyItemRangeInserted(0, newPaymentMethods.size)
+            }
+            return
+        }
+
+        diffExecutor.execute {
+            val diffResult = DiffUtil.calculateDiff(
+                PaymentMethodsDiffCallback(oldPaymentMethods, newPaymentMethods)
+            )
+            handler.post {
+                if (generation == diffGeneration) {
+                    paymentMethods.clear()
+                    paymentMethods.addAll(newPaymentMethods)
+                    diffResult.dispatchUpdatesTo(this)
+                }
+            }
+        }
     }
 
     override fun getItemCount(): Int {
@@ -71,7 +133,8 @@ internal class PaymentMethodsAdapter @JvmOverloads constructor(
 
     override fun getItemId(position: Int): Long {
         return if (position < paymentMethods.size) {
-            paymentMethods[position].hashCode().toLong()
+            val paymentMethod = paymentMethods[position]
+            (paymentMethod.id ?: paymentMethod).hashCode().toLong()
         } else {
             addableTypes[getAddableTypesPosition(position)].hashCode().toLong()
         }
@@ -88,19 +151,33 @@ internal class PaymentMethodsAdapter @JvmOverloads constructor(
         }
     }
 
+    override fun onBindViewHolder(
+        holder: RecyclerView.ViewHolder,
+        position: Int,
+        payloads: List<Any>
+    ) {
+        if (holder is PaymentMethodViewHolder && payloads.isNotEmpty() &&
+            payloads.all { it == PAYLOAD_SELECTION }) {
+            // only the selection changed, so don't rebind the payment method
+            holder.setSelected(paymentMethods[position].id == selectedPaymentMethodId)
+        } else {
+            onBindViewHolder(holder, position)
+        }
+    }
+
     private fun onPositionClicked(position: Int) {
         val currentlySelectedPosition = paymentMethods.indexOfFirst {
             it.id == selectedPaymentMethodId
         }
         if (currentlySelectedPosition != position) {
             // selected a new Payment Method
-            notifyItemChanged(currentlySelectedPosition)
+            notifyItemChanged(currentlySelectedPosition, PAYLOAD_SELECTION)
             selectedPaymentMethodId = paymentMethods.getOrNull(position)?.id
         }
 
         // Notify the current position even if it's the currently selected position so that the
         // ItemAnimator defined in PaymentMethodActivity is triggered.
-        notifyItemChanged(position)
+        notifyItemChanged(position, PAYLOAD_SELECTION)
 
         handler.post {
             listener?.onClick(paymentMethods[position])
@@ -135,6 +212,14 @@ internal class PaymentMethodsAdapter @JvmOverloads constructor(
     }
 
     fun deletePaymentMethod(paymentMethod: PaymentMethod) {
+        val isDiffPending = paymentMethods != latestPaymentMethods
+        latestPaymentMethods = latestPaymentMethods.filterNot { it.id == paymentMethod.id }
+        if (isDiffPending) {
+            submitPaymentMethods(latestPaymentMethods)
+            return
+        }
+
+        // remove the row immediately, so that the swiped row doesn't wait for a diff
         val indexToDelete = paymentMethods.indexOfFirst { it.id == paymentMethod.id }
         if (indexToDelete >= 0) {
             paymentMethods.removeAt(indexToDelete)
@@ -165,6 +250,28 @@ internal class PaymentMethodsAdapter @JvmOverloads constructor(
         }
     }
 
+    /**
+     * Matches payment methods by id, so that a payment method whose details changed is updated
+     * in place rather than removed and inserted
+     */
+    private class PaymentMethodsDiffCallback(
+        private val oldPaymentMethods: List<PaymentMethod>,
+        private val newPaymentMethods: List<PaymentMethod>
+    ) : DiffUtil.Callback() {
+        override fun getOldListSize(): Int = oldPaymentMethods.size
+
+        override fun getNewListSize(): Int = newPaymentMethods.size
+
+        override fun areItemsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
+            val oldId = oldPaymentMethods[oldItemPosition].id
+            return oldId != null && oldId == newPaymentMethods[newItemPosition].id
+        }
+
+        override fun areContentsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
+            return oldPaymentMethods[oldItemPosition] == newPaymentMethods[newItemPosition]
+        }
+    }
+
     internal class AddCardPaymentMethodViewHolder(itemView: View) :
         RecyclerView.ViewHolder(itemView)
 
@@ -179,5 +286,16 @@ internal class PaymentMethodsAdapter @JvmOverloads constructor(
         private const val TYPE_CARD = 1
         private const val TYPE_ADD_CARD = 2
         private const val TYPE_ADD_FPX = 3
+
+        /**
+         * The payload of a change that only affects whether a payment method is selected
+         */
+        private val PAYLOAD_SELECTION = Any()
+
+        private val DIFF_EXECUTOR: Executor = ThreadPoolExecutor(
+            1, 1, 30L, TimeUnit.SECONDS, LinkedBlockingQueue<Runnable>()
+        ).also {
+            it.allowCoreThreadTimeOut(true)
+        }
     }
 }
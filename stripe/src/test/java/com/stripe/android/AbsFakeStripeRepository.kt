@@ -129,6 +129,19 @@ internal abstract class AbsFakeStripeRepository : StripeRepository {
         return emptyList()
     }
 
+    @Throws(APIException::class)
+    override fun getPaymentMethodsPage(
+        customerId: String,
+        paymentMethodType: String,
+        limit: Int,
+        startingAfter: String?,
+        publishableKey: String,
+        productUsageTokens: Set<String>,
+        requestOptions: ApiRequest.Options
+    ): PaymentMethodsPage {
+        return PaymentMethodsPage(emptyList(), false)
+    }
+
     @Throws(APIException::class)
     override fun setDefaultCustomerSource(
         customerId: String,
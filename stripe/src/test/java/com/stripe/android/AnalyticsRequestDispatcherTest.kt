@@ -0,0 +1,186 @@
+package com.stripe.android
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import com.nhaarman.mockitokotlin2.any
+import com.stripe.android.exception.APIConnectionException
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.ArgumentMatchers.anyLong
+import org.mockito.Mock
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.never
+import org.mockito.Mockito.times
+import org.mockito.Mockito.verify
+import org.mockito.MockitoAnnotations
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class AnalyticsRequestDispatcherTest {
+
+    @Mock
+    private lateinit var apiRequestExecutor: ApiRequestExecutor
+    @Mock
+    private lateinit var requestExecutor: FireAndForgetRequestExecutor
+    @Mock
+    private lateinit var scheduler: ScheduledExecutorService
+
+    private lateinit var store: AnalyticsRequestDispatcher.Store
+
+    private var now = 0L
+
+    @Before
+    fun setup() {
+        MockitoAnnotations.initMocks(this)
+        store = AnalyticsRequestDispatcher.Store(
+            ApplicationProvider.getApplicationContext<Context>()
+        )
+    }
+
+    @Test
+    fun enqueue_belowBatchSize_shouldScheduleFlush() {
+        val dispatcher = createDispatcher()
+        dispatcher.enqueue(createAnalyticsRequest())
+
+        verify(apiRequestExecutor, never()).execute(any())
+        verify(scheduler).schedule(any<Runnable>(), anyLong(), any<TimeUnit>())
+        assertEquals(1, dispatcher.getStats().queueDepth)
+    }
+
+    @Test
+    fun enqueue_atBatchSize_shouldFlush() {
+        val dispatcher = createDispatcher()
+        repeat(BATCH_SIZE) {
+            dispatcher.enqueue(createAnalyticsRequest())
+        }
+
+        verify(apiRequestExecutor, times(BATCH_SIZE)).execute(any())
+        val stats = dispatcher.getStats()
+        assertEquals(0, stats.queueDepth)
+        assertEquals(BATCH_SIZE, stats.sentEvents)
+    }
+
+    @Test
+    fun enqueue_whenFull_shouldDropOldest() {
+        val dispatcher = createDispatcher(batchSize = MAX_QUEUE_SIZE + 1)
+        repeat(MAX_QUEUE_SIZE + 2) {
+            dispatcher.enqueue(createAnalyticsRequest())
+        }
+
+        val stats = dispatcher.getStats()
+        assertEquals(MAX_QUEUE_SIZE, stats.queueDepth)
+        assertEquals(2, stats.droppedEvents)
+    }
+
+    @Test
+    fun flush_withConnectionFailure_shouldRetryThenDrop() {
+        `when`(apiRequestExecutor.execute(any()))
+            .thenThrow(APIConnectionException("Network unavailable", null))
+        val dispatcher = createDispatcher()
+        dispatcher.enqueue(createAnalyticsRequest())
+
+        dispatcher.flush()
+        dispatcher.flush()
+        assertEquals(1, dispatcher.getStats().queueDepth)
+
+        dispatcher.flush()
+        val stats = dispatcher.getStats()
+        assertEquals(0, stats.queueDepth)
+        assertEquals(3, stats.failedFlushes)
+        assertEquals(1, stats.droppedEvents)
+    }
+
+    @Test
+    fun flush_withExpiredEvent_shouldDropWithoutSending() {
+        val dispatcher = createDispatcher()
+        dispatcher.enqueue(createAnalyticsRequest())
+        now += TimeUnit.DAYS.toMillis(1)
+
+        dispatcher.flush()
+
+        verify(apiRequestExecutor, never()).execute(any())
+        assertEquals(1, dispatcher.getStats().droppedEvents)
+    }
+
+    @Test
+    fun queuedEvents_shouldBeRestoredByNewInstance() {
+        createDispatcher().enqueue(createAnalyticsRequest())
+
+        val dispatcher = createDispatcher()
+        dispatcher.flush()
+
+        verify(apiRequestExecutor).execute(
+            AnalyticsRequest.create(
+                PARAMS,
+                ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY, null),
+                APP_INFO
+            )
+        )
+        assertEquals(1, dispatcher.getStats().sentEvents)
+    }
+
+    @Test
+    fun flush_withRuntimeException_shouldRetryLater() {
+        `when`(apiRequestExecutor.execute(any()))
+            .thenThrow(IllegalStateException("Already connected"))
+        val dispatcher = createDispatcher()
+        dispatcher.enqueue(createAnalyticsRequest())
+
+        dispatcher.flush()
+
+        val stats = dispatcher.getStats()
+        assertEquals(1, stats.queueDepth)
+        assertEquals(1, stats.failedFlushes)
+        verify(scheduler, times(2)).schedule(any<Runnable>(), anyLong(), any<TimeUnit>())
+    }
+
+    @Test
+    fun executeAsync_withNonAnalyticsRequest_shouldDelegate() {
+        val request = ApiRequest.createGet(
+            StripeApiRepository.sourcesUrl,
+            ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY),
+            null
+        )
+        createDispatcher().executeAsync(request)
+
+        verify(requestExecutor).executeAsync(request)
+    }
+
+    private fun createDispatcher(
+        batchSize: Int = BATCH_SIZE
+    ): AnalyticsRequestDispatcher {
+        return AnalyticsRequestDispatcher(
+            store = store,
+            apiRequestExecutor = apiRequestExecutor,
+            requestExecutor = requestExecutor,
+            scheduler = scheduler,
+            batchSize = batchSize,
+            maxQueueSize = MAX_QUEUE_SIZE,
+            clock = { now }
+        )
+    }
+
+    private fun createAnalyticsRequest(): ApiRequest {
+        return AnalyticsRequest.create(
+            PARAMS,
+            ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY),
+            APP_INFO
+        )
+    }
+
+    companion object {
+        private const val BATCH_SIZE = 3
+        private const val MAX_QUEUE_SIZE = 5
+
+        private val APP_INFO = AppInfo.create("MyAwesomePlugin", "1.2.34")
+
+        private val PARAMS = mapOf(
+            "event" to "stripe_android.payment_method_creation",
+            "product_usage" to listOf("CardInputView")
+        )
+    }
+}
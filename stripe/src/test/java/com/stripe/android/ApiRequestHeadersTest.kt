@@ -0,0 +1,67 @@
+package com.stripe.android
+
+import kotlin.test.assertEquals
+import kotlin.test.assertNotSame
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class ApiRequestHeadersTest {
+
+    private val apiRequestHeaders = ApiRequestHeaders(maxEntries = 2)
+
+    @Test
+    fun get_withSameOptions_shouldReturnCachedHeaders() {
+        val headers = apiRequestHeaders.get(OPTIONS, null, API_VERSION)
+
+        assertSame(headers, apiRequestHeaders.get(OPTIONS, null, API_VERSION))
+        assertSame(headers, apiRequestHeaders.get(
+            ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY), null, API_VERSION))
+        assertEquals(ApiRequestHeaders.Stats(created = 1, cacheHits = 2),
+            apiRequestHeaders.getStats())
+    }
+
+    @Test
+    fun get_withDifferentAccountOrAppInfo_shouldCreateHeaders() {
+        val headers = apiRequestHeaders.get(OPTIONS, null, API_VERSION)
+        val accountHeaders = apiRequestHeaders.get(
+            ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY, "acct_123abc"),
+            null, API_VERSION)
+        val appInfoHeaders = apiRequestHeaders.get(OPTIONS, AppInfoTest.APP_INFO, API_VERSION)
+
+        assertNull(headers["Stripe-Account"])
+        assertEquals("acct_123abc", accountHeaders["Stripe-Account"])
+        assertEquals(
+            "${StripeRequest.DEFAULT_USER_AGENT} ${AppInfoTest.APP_INFO.toUserAgent()}",
+            appInfoHeaders[StripeRequest.HEADER_USER_AGENT])
+        assertEquals(ApiRequestHeaders.Stats(created = 3, cacheHits = 0),
+            apiRequestHeaders.getStats())
+    }
+
+    @Test
+    fun get_whenFull_shouldEvictLeastRecentlyUsedHeaders() {
+        val headers = apiRequestHeaders.get(OPTIONS, null, API_VERSION)
+        apiRequestHeaders.get(ApiRequest.Options.create("pk_test_1"), null, API_VERSION)
+        apiRequestHeaders.get(ApiRequest.Options.create("pk_test_2"), null, API_VERSION)
+
+        assertNotSame(headers, apiRequestHeaders.get(OPTIONS, null, API_VERSION))
+        assertEquals(headers, apiRequestHeaders.get(OPTIONS, null, API_VERSION))
+    }
+
+    @Test
+    fun get_shouldIncludeAuthorizationAndVersion() {
+        val headers = apiRequestHeaders.get(OPTIONS, null, API_VERSION)
+
+        assertEquals("Bearer ${ApiKeyFixtures.FAKE_PUBLISHABLE_KEY}", headers["Authorization"])
+        assertEquals(API_VERSION, headers["Stripe-Version"])
+        assertEquals(StripeRequest.DEFAULT_USER_AGENT, headers[StripeRequest.HEADER_USER_AGENT])
+    }
+
+    companion object {
+        private val OPTIONS = ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY)
+        private val API_VERSION = ApiVersion.get().code
+    }
+}
@@ -145,6 +145,32 @@ public class ApiRequestTest {
         assertEquals(16, output.length);
     }
 
+    @Test
+    public void getHeaders_withPost_shouldHaveStableIdempotencyKey() {
+        final ApiRequest apiRequest = ApiRequest.createPost(
+                StripeApiRepository.getPaymentMethodsUrl(),
+                ApiRequest.Options.create(ApiKeyFixtures.DEFAULT_PUBLISHABLE_KEY), null);
+        final String idempotencyKey =
+                apiRequest.getHeaders().get(ApiRequest.HEADER_IDEMPOTENCY_KEY);
+
+        assertNotNull(idempotencyKey);
+        assertEquals(idempotencyKey,
+                apiRequest.getHeaders().get(ApiRequest.HEADER_IDEMPOTENCY_KEY));
+        assertNotEquals(idempotencyKey,
+                ApiRequest.createPost(StripeApiRepository.getPaymentMethodsUrl(),
+                        ApiRequest.Options.create(ApiKeyFixtures.DEFAULT_PUBLISHABLE_KEY), null)
+                        .getHeaders().get(ApiRequest.HEADER_IDEMPOTENCY_KEY));
+    }
+
+    @Test
+    public void getHeaders_withGet_shouldNotHaveIdempotencyKey() {
+        final Map<String, String> headers =
+                ApiRequest.createGet(StripeApiRepository.getSourcesUrl(),
+                        ApiRequest.Options.create(ApiKeyFixtures.DEFAULT_PUBLISHABLE_KEY), null)
+                        .getHeaders();
+        assertFalse(headers.containsKey(ApiRequest.HEADER_IDEMPOTENCY_KEY));
+    }
+
     @Test
     public void testEquals() {
         final Map<String, String> params = new HashMap<>();
@@ -1,12 +1,17 @@
 package com.stripe.android;
 
+import org.json.JSONObject;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
 
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
+@RunWith(RobolectricTestRunner.class)
 public class AppInfoTest {
     static final AppInfo APP_INFO = AppInfo.create(
             "MyAwesomePlugin",
@@ -30,6 +35,19 @@ public class AppInfoTest {
         assertEquals(header, APP_INFO.createClientHeaders());
     }
 
+    @Test
+    public void toJson_fromJson_shouldRoundTrip() {
+        assertEquals(APP_INFO, AppInfo.fromJson(APP_INFO.toJson()));
+        assertEquals(AppInfo.create("MyAwesomePlugin"),
+                AppInfo.fromJson(AppInfo.create("MyAwesomePlugin").toJson()));
+    }
+
+    @Test
+    public void fromJson_withoutName_shouldReturnNull() {
+        assertNull(AppInfo.fromJson(new JSONObject()));
+        assertNull(AppInfo.fromJson(null));
+    }
+
     @Test
     public void equals() {
         assertEquals(APP_INFO,
@@ -0,0 +1,75 @@
+package com.stripe.android
+
+import com.stripe.android.exception.APIConnectionException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class BoundedRequestExecutorTest {
+
+    private val executor = BoundedRequestExecutor(maxThreads = 1, maxQueueSize = 1)
+
+    @Test
+    fun execute_whenQueueIsFull_shouldDropOldest() {
+        val blockingLatch = CountDownLatch(1)
+        val startedLatch = CountDownLatch(1)
+        val completedLatch = CountDownLatch(1)
+        val executedRequests = mutableListOf<String>()
+
+        executor.execute {
+            startedLatch.countDown()
+            blockingLatch.await()
+        }
+        assertTrue(startedLatch.await(1, TimeUnit.SECONDS))
+
+        executor.execute { executedRequests.add("oldest") }
+        executor.execute {
+            executedRequests.add("newest")
+            completedLatch.countDown()
+        }
+        assertEquals(
+            BoundedRequestExecutor.Stats(inFlight = 1, queued = 1, dropped = 1, failed = 0),
+            executor.getStats()
+        )
+
+        blockingLatch.countDown()
+        assertTrue(completedLatch.await(1, TimeUnit.SECONDS))
+        assertEquals(listOf("newest"), executedRequests)
+    }
+
+    @Test
+    fun execute_withFailedRequest_shouldCountFailure() {
+        val completedLatch = CountDownLatch(1)
+        executor.execute {
+            throw APIConnectionException("Network unavailable", null)
+        }
+        executor.execute { completedLatch.countDown() }
+
+        assertTrue(completedLatch.await(1, TimeUnit.SECONDS))
+        assertEquals(1, executor.getStats().failed)
+    }
+
+    @Test
+    fun execute_withRuntimeException_shouldCountFailure() {
+        val completedLatch = CountDownLatch(1)
+        executor.execute {
+            throw SecurityException("Permission denied (missing INTERNET permission?)")
+        }
+        executor.execute { completedLatch.countDown() }
+
+        assertTrue(completedLatch.await(1, TimeUnit.SECONDS))
+        assertEquals(1, executor.getStats().failed)
+    }
+
+    @Test
+    fun execute_afterShutdown_shouldStartNewPool() {
+        val completedLatch = CountDownLatch(1)
+        executor.shutdown()
+        executor.execute { completedLatch.countDown() }
+
+        assertTrue(completedLatch.await(1, TimeUnit.SECONDS))
+        assertEquals(0, executor.getStats().dropped)
+    }
+}
@@ -0,0 +1,72 @@
+package com.stripe.android
+
+import java.net.HttpURLConnection
+import java.net.URL
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.never
+import org.mockito.Mockito.verify
+
+class ConnectionReuseTrackerTest {
+
+    private var now = 0L
+    private val connectionReuseTracker = ConnectionReuseTracker(
+        keepAliveDurationMillis = 1000L,
+        clock = { now }
+    )
+
+    @Test
+    fun onConnected_shouldCountNewAndReusedConnections() {
+        connectionReuseTracker.onConnected(API_HOST, true)
+        connectionReuseTracker.onConnected(API_HOST, false)
+        connectionReuseTracker.onConnected(FINGERPRINT_HOST, true)
+
+        assertEquals(
+            ConnectionReuseTracker.Stats(reusedConnections = 1, newConnections = 2),
+            connectionReuseTracker.getStats()
+        )
+    }
+
+    @Test
+    fun release_whenNotReusable_shouldDisconnect() {
+        val connection = createConnection(API_HOST)
+        connectionReuseTracker.release(connection, false)
+
+        verify(connection).disconnect()
+        assertFalse(connectionReuseTracker.hasRecentConnection(API_HOST))
+    }
+
+    @Test
+    fun release_whenReusable_shouldNotDisconnect() {
+        val connection = createConnection(API_HOST)
+        connectionReuseTracker.release(connection, true)
+
+        verify(connection, never()).disconnect()
+        assertTrue(connectionReuseTracker.hasRecentConnection(API_HOST))
+        assertFalse(connectionReuseTracker.hasRecentConnection(FINGERPRINT_HOST))
+    }
+
+    @Test
+    fun hasRecentConnection_afterKeepAliveDuration_shouldReturnFalse() {
+        connectionReuseTracker.release(createConnection(API_HOST), true)
+
+        now += 1000L
+
+        assertFalse(connectionReuseTracker.hasRecentConnection(API_HOST))
+    }
+
+    private fun createConnection(host: String): HttpURLConnection {
+        val connection = mock(HttpURLConnection::class.java)
+        `when`(connection.url).thenReturn(URL("https://$host/v1"))
+        return connection
+    }
+
+    companion object {
+        private const val API_HOST = "api.stripe.com"
+        private const val FINGERPRINT_HOST = "m.stripe.com"
+    }
+}
@@ -0,0 +1,115 @@
+package com.stripe.android
+
+import com.stripe.android.exception.APIConnectionException
+import java.io.IOException
+import java.net.HttpURLConnection
+import java.net.InetAddress
+import java.net.URL
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.mock
+
+class ConnectionWarmerTest {
+
+    private var now = 0L
+    private val connectionReuseTracker = ConnectionReuseTracker(clock = { now })
+    private val requests = Collections.synchronizedList(mutableListOf<StripeRequest>())
+
+    @Test
+    fun warmUpBlocking_shouldSendRequestToEachHost() {
+        createConnectionWarmer().warmUpBlocking(URLS)
+
+        assertEquals(URLS, requests.map { it.baseUrl })
+        assertTrue(requests.all { it.method == StripeRequest.Method.HEAD })
+    }
+
+    @Test
+    fun warmUpBlocking_withRecentConnection_shouldSkipHost() {
+        val connection = mock(HttpURLConnection::class.java)
+        `when`(connection.url).thenReturn(URL("${ApiRequest.API_HOST}/v1"))
+        connectionReuseTracker.release(connection, true)
+
+        val connectionWarmer = createConnectionWarmer()
+        connectionWarmer.warmUpBlocking(URLS)
+
+        assertEquals(listOf(AnalyticsRequest.HOST), requests.map { it.baseUrl })
+        assertEquals(
+            ConnectionWarmer.Stats(warmedHosts = 1, skippedHosts = 1, failedHosts = 0),
+            connectionWarmer.getStats()
+        )
+    }
+
+    @Test
+    fun warmUpBlocking_shouldLimitRequestsToTimeout() {
+        val connectionWarmer = createConnectionWarmer {
+            requests.add(it)
+            now += 1000L
+        }
+        connectionWarmer.warmUpBlocking(URLS)
+
+        assertEquals(1, requests.size)
+        assertEquals(1000, requests[0].connectTimeoutMillis)
+        assertEquals(1000, requests[0].readTimeoutMillis)
+    }
+
+    @Test
+    fun warmUpBlocking_whenRequestFails_shouldContinueWithNextHost() {
+        val connectionWarmer = createConnectionWarmer {
+            requests.add(it)
+            throw APIConnectionException.create(it.baseUrl, IOException())
+        }
+        connectionWarmer.warmUpBlocking(URLS)
+
+        assertEquals(2, requests.size)
+        assertEquals(
+            ConnectionWarmer.Stats(warmedHosts = 0, skippedHosts = 0, failedHosts = 2),
+            connectionWarmer.getStats()
+        )
+    }
+
+    @Test
+    fun warmUp_calledAgainBeforeTimeout_shouldDoNothing() {
+        val latch = CountDownLatch(4)
+        val connectionWarmer = createConnectionWarmer(
+            backgroundExecutor = BoundedRequestExecutor(maxThreads = 1)
+        ) {
+            requests.add(it)
+            latch.countDown()
+        }
+
+        connectionWarmer.warmUp(URLS)
+        connectionWarmer.warmUp(listOf(FingerprintRequest.HOST))
+        now += 1000L
+        connectionWarmer.warmUp(URLS)
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS))
+        assertEquals(URLS + URLS, requests.map { it.baseUrl })
+    }
+
+    private fun createConnectionWarmer(
+        backgroundExecutor: BoundedRequestExecutor = BoundedRequestExecutor(),
+        executeRequest: (StripeRequest) -> Unit = { requests.add(it) }
+    ): ConnectionWarmer {
+        return ConnectionWarmer(
+            connectionReuseTracker = connectionReuseTracker,
+            dnsPrefetcher = DnsPrefetcher(
+                backgroundExecutor = backgroundExecutor,
+                lookup = { listOf(InetAddress.getLoopbackAddress()) },
+                clock = { now }
+            ),
+            backgroundExecutor = backgroundExecutor,
+            timeoutMillis = 1000L,
+            clock = { now },
+            executeRequest = executeRequest
+        )
+    }
+
+    companion object {
+        private val URLS = listOf(ApiRequest.API_HOST, AnalyticsRequest.HOST)
+    }
+}
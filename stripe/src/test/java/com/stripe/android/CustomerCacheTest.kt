@@ -0,0 +1,186 @@
+package com.stripe.android
+
+import com.stripe.android.model.CustomerFixtures
+import com.stripe.android.model.PaymentMethodFixtures
+import java.util.Calendar
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class CustomerCacheTest {
+
+    private val calendar = Calendar.getInstance().apply { timeInMillis = 0L }
+    private val customerCache = CustomerCache(calendar)
+
+    @Test
+    fun getCustomer_shouldReturnFreshThenStaleThenNothing() {
+        customerCache.onCustomerKeyUsed(CUSTOMER_ID)
+        putCustomer()
+
+        assertFalse(requireNotNull(customerCache.getCustomer()).isStale)
+
+        calendar.timeInMillis = TimeUnit.MINUTES.toMillis(2)
+        assertTrue(requireNotNull(customerCache.getCustomer()).isStale)
+
+        calendar.timeInMillis = TimeUnit.HOURS.toMillis(1)
+        assertNull(customerCache.getCustomer())
+
+        assertEquals(CustomerCache.Stats(hits = 1, staleHits = 1, misses = 1, revalidations = 0),
+            customerCache.getStats())
+    }
+
+    @Test
+    fun getCustomer_shouldReturnCustomerOfCurrentKey() {
+        customerCache.onCustomerKeyUsed(CUSTOMER_ID)
+        putCustomer()
+        customerCache.onCustomerKeyUsed("cus_other")
+
+        assertNull(customerCache.getCustomer())
+
+        customerCache.onCustomerKeyUsed(CUSTOMER_ID)
+        assertNotNull(customerCache.getCustomer())
+    }
+
+    @Test
+    fun putCustomer_whenInvalidatedAfterRequestStarted_shouldNotCache() {
+        customerCache.onCustomerKeyUsed(CUSTOMER_ID)
+        val generation = customerCache.getGeneration(CUSTOMER_ID)
+        customerCache.invalidateCustomer(CUSTOMER_ID)
+
+        customerCache.putCustomer(CUSTOMER_ID, CustomerFixtures.CUSTOMER, generation)
+
+        assertNull(customerCache.getCustomer())
+    }
+
+    @Test
+    fun putPaymentMethods_withFollowingPage_shouldAppendToCachedPages() {
+        customerCache.onCustomerKeyUsed(CUSTOMER_ID)
+        val generation = customerCache.getGeneration(CUSTOMER_ID)
+        customerCache.putPaymentMethods(CUSTOMER_ID, "card",
+            PaymentMethodsPage(PAYMENT_METHODS.take(2), true), null, generation)
+
+        assertNull(customerCache.getPaymentMethods("card", true))
+        assertTrue(requireNotNull(customerCache.getPaymentMethods("card", false)).value.hasMore)
+
+        // a page that doesn't follow the cached pages is ignored
+        customerCache.putPaymentMethods(CUSTOMER_ID, "card",
+            PaymentMethodsPage(PAYMENT_METHODS.drop(2), false), "pm_unknown", generation)
+        assertNull(customerCache.getPaymentMethods("card", true))
+
+        customerCache.putPaymentMethods(CUSTOMER_ID, "card",
+            PaymentMethodsPage(PAYMENT_METHODS.drop(2), false), PAYMENT_METHODS[1].id,
+            generation)
+        assertEquals(
+            PaymentMethodsPage(PAYMENT_METHODS, false),
+            requireNotNull(customerCache.getPaymentMethods("card", true)).value
+        )
+    }
+
+    @Test
+    fun onPaymentMethodAttached_shouldAddToStartOfCachedPaymentMethods() {
+        customerCache.onCustomerKeyUsed(CUSTOMER_ID)
+        putCustomer()
+        putPaymentMethods()
+
+        customerCache.onPaymentMethodAttached(CUSTOMER_ID, PaymentMethodFixtures.FPX_PAYMENT_METHOD)
+        val attachedCard = PaymentMethodFixtures.createCard()
+        customerCache.onPaymentMethodAttached(CUSTOMER_ID, attachedCard)
+
+        assertEquals(
+            listOf(attachedCard) + PAYMENT_METHODS,
+            requireNotNull(customerCache.getPaymentMethods("card", true)).value.paymentMethods
+        )
+        assertNull(customerCache.getPaymentMethods("fpx", false))
+        assertNotNull(customerCache.getCustomer())
+    }
+
+    @Test
+    fun onPaymentMethodDetached_shouldRemoveFromCachedPaymentMethods() {
+        customerCache.onCustomerKeyUsed(CUSTOMER_ID)
+        putPaymentMethods()
+
+        customerCache.onPaymentMethodDetached(CUSTOMER_ID, requireNotNull(PAYMENT_METHODS[0].id))
+
+        assertEquals(
+            PAYMENT_METHODS.drop(1),
+            requireNotNull(customerCache.getPaymentMethods("card", true)).value.paymentMethods
+        )
+    }
+
+    @Test
+    fun putPaymentMethods_whenDetachedAfterRequestStarted_shouldNotCache() {
+        customerCache.onCustomerKeyUsed(CUSTOMER_ID)
+        putPaymentMethods()
+        val generation = customerCache.getGeneration(CUSTOMER_ID)
+        customerCache.onPaymentMethodDetached(CUSTOMER_ID, requireNotNull(PAYMENT_METHODS[0].id))
+
+        customerCache.putPaymentMethods(CUSTOMER_ID, "card",
+            PaymentMethodsPage(PAYMENT_METHODS, false), null, generation)
+
+        assertEquals(
+            PAYMENT_METHODS.drop(1),
+            requireNotNull(customerCache.getPaymentMethods("card", true)).value.paymentMethods
+        )
+    }
+
+    @Test
+    fun startRevalidation_whenAlreadyRevalidating_shouldReturnFalse() {
+        customerCache.onCustomerKeyUsed(CUSTOMER_ID)
+        putCustomer()
+        calendar.timeInMillis = TimeUnit.MINUTES.toMillis(2)
+        val cachedCustomer = requireNotNull(customerCache.getCustomer())
+
+        assertTrue(customerCache.startRevalidation(cachedCustomer))
+        assertFalse(customerCache.startRevalidation(cachedCustomer))
+
+        customerCache.endRevalidation(cachedCustomer)
+        assertTrue(customerCache.startRevalidation(cachedCustomer))
+        assertEquals(2, customerCache.getStats().revalidations)
+    }
+
+    @Test
+    fun setDurations_shouldChangeFreshness() {
+        customerCache.setDurations(TimeUnit.MINUTES.toMillis(5), 0L)
+        customerCache.onCustomerKeyUsed(CUSTOMER_ID)
+        putCustomer()
+
+        calendar.timeInMillis = TimeUnit.MINUTES.toMillis(2)
+        assertFalse(requireNotNull(customerCache.getCustomer()).isStale)
+
+        calendar.timeInMillis = TimeUnit.MINUTES.toMillis(5)
+        assertNull(customerCache.getCustomer())
+    }
+
+    @Test
+    fun maxEntries_shouldEvictLeastRecentlyUsedCustomer() {
+        val customerCache = CustomerCache(calendar, maxEntries = 1)
+        customerCache.onCustomerKeyUsed(CUSTOMER_ID)
+        customerCache.putCustomer(CUSTOMER_ID, CustomerFixtures.CUSTOMER)
+        customerCache.putCustomer("cus_other", requireNotNull(CustomerFixtures.OTHER_CUSTOMER))
+
+        assertNull(customerCache.getCustomer())
+    }
+
+    private fun putPaymentMethods() {
+        customerCache.putPaymentMethods(CUSTOMER_ID, "card",
+            PaymentMethodsPage(PAYMENT_METHODS, false), null,
+            customerCache.getGeneration(CUSTOMER_ID))
+    }
+
+    private fun putCustomer() {
+        customerCache.putCustomer(CUSTOMER_ID, CustomerFixtures.CUSTOMER,
+            customerCache.getGeneration(CUSTOMER_ID))
+    }
+
+    companion object {
+        private const val CUSTOMER_ID = "cus_AQsHpvKfKwJDrF"
+        private val PAYMENT_METHODS = PaymentMethodFixtures.createCards(3)
+    }
+}
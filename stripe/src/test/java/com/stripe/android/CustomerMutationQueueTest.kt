@@ -0,0 +1,268 @@
+package com.stripe.android
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import com.stripe.android.model.CustomerFixtures
+import java.util.LinkedList
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class CustomerMutationQueueTest {
+
+    private lateinit var store: CustomerMutationQueue.Store
+    private lateinit var mutationQueue: CustomerMutationQueue
+
+    private var now = 0L
+
+    @Before
+    fun setup() {
+        store = CustomerMutationQueue.Store(ApplicationProvider.getApplicationContext<Context>())
+        mutationQueue = createMutationQueue()
+    }
+
+    @Test
+    fun createMutation_whenDisabledOrNotQueueable_shouldReturnNull() {
+        assertNull(createAttachMutation("op_1", "pm_1"))
+
+        mutationQueue.isEnabled = true
+        assertNull(mutationQueue.createMutation("op_1", CUSTOMER_ID,
+            CustomerSession.ACTION_GET_PAYMENT_METHODS,
+            mapOf(CustomerSession.KEY_PAYMENT_METHOD_TYPE to "card")))
+        assertNotNull(createAttachMutation("op_1", "pm_1"))
+    }
+
+    @Test
+    fun enqueue_shouldCollapseDefaultSourceChangesIntoLatest() {
+        mutationQueue.isEnabled = true
+        mutationQueue.enqueue(createDefaultSourceMutation("op_1", "src_1"))
+        mutationQueue.enqueue(createAttachMutation("op_2", "pm_1")!!)
+
+        assertEquals(listOf("op_1"),
+            mutationQueue.enqueue(createDefaultSourceMutation("op_3", "src_2")))
+
+        assertEquals(listOf("op_2", "op_3"), replayAll())
+        assertEquals(CustomerMutationQueue.Stats(pending = 0, collapsed = 1, dropped = 0),
+            mutationQueue.getStats())
+    }
+
+    @Test
+    fun enqueue_shouldCollapseOnlyRepeatsOfSamePaymentMethod() {
+        mutationQueue.isEnabled = true
+        mutationQueue.enqueue(createAttachMutation("op_1", "pm_1")!!)
+        mutationQueue.enqueue(createAttachMutation("op_2", "pm_2")!!)
+
+        assertEquals(listOf("op_1"),
+            mutationQueue.enqueue(createAttachMutation("op_3", "pm_1")!!))
+
+        assertEquals(listOf("op_2", "op_3"), replayAll())
+    }
+
+    @Test
+    fun enqueue_withAttachThenDetach_shouldKeepBothInOrder() {
+        mutationQueue.isEnabled = true
+        mutationQueue.enqueue(createAttachMutation("op_1", "pm_1")!!)
+
+        assertEquals(emptyList<String>(),
+            mutationQueue.enqueue(createDetachMutation("op_2", "pm_1")))
+        // collapsing this into op_1 would replay the attach after the detach
+        assertEquals(emptyList<String>(),
+            mutationQueue.enqueue(createAttachMutation("op_3", "pm_1")!!))
+
+        assertEquals(listOf("op_1", "op_2", "op_3"), replayAll())
+        assertEquals(0, mutationQueue.getStats().collapsed)
+    }
+
+    @Test
+    fun enqueue_whenReplayFails_shouldKeepPositionAndCountAttempt() {
+        mutationQueue.isEnabled = true
+        mutationQueue.enqueue(createAttachMutation("op_1", "pm_1")!!)
+        mutationQueue.enqueue(createAttachMutation("op_2", "pm_2")!!)
+
+        val mutation = mutationQueue.nextForReplay()
+        assertEquals("op_1", mutation?.operationId)
+        assertNull(mutationQueue.nextForReplay())
+        assertEquals(TimeUnit.SECONDS.toMillis(30), mutationQueue.getRetryDelayMillis())
+
+        mutationQueue.enqueue(createAttachMutation("op_1", "pm_1")!!)
+
+        assertEquals(TimeUnit.SECONDS.toMillis(60), mutationQueue.getRetryDelayMillis())
+        assertEquals(listOf("op_1", "op_2"), replayAll())
+    }
+
+    @Test
+    fun cancelReplay_shouldAllowReplayingAgain() {
+        mutationQueue.isEnabled = true
+        mutationQueue.enqueue(createAttachMutation("op_1", "pm_1")!!)
+        mutationQueue.nextForReplay()
+
+        assertTrue(mutationQueue.cancelReplay("op_1"))
+        assertEquals("op_1", mutationQueue.nextForReplay()?.operationId)
+    }
+
+    @Test
+    fun nextForReplay_shouldDropExpiredMutations() {
+        mutationQueue.isEnabled = true
+        mutationQueue.enqueue(createAttachMutation("op_1", "pm_1")!!)
+        now += TimeUnit.DAYS.toMillis(1)
+
+        assertNull(mutationQueue.nextForReplay())
+        assertEquals(CustomerMutationQueue.Stats(pending = 0, collapsed = 0, dropped = 1),
+            mutationQueue.getStats())
+    }
+
+    @Test
+    fun onCustomerKeyUsed_withOtherCustomer_shouldDropMutations() {
+        mutationQueue.isEnabled = true
+        mutationQueue.enqueue(createAttachMutation("op_1", "pm_1")!!)
+
+        mutationQueue.onCustomerKeyUsed(CUSTOMER_ID)
+        assertEquals(1, mutationQueue.pendingCount)
+
+        mutationQueue.onCustomerKeyUsed("cus_other")
+        assertEquals(0, mutationQueue.pendingCount)
+    }
+
+    @Test
+    fun store_shouldRestoreMutationsInOrder() {
+        mutationQueue.isEnabled = true
+        mutationQueue.enqueue(createAttachMutation("op_1", "pm_1")!!)
+        mutationQueue.enqueue(createShippingMutation("op_2"))
+        mutationQueue.enqueue(createDefaultSourceMutation("op_3", "src_1"))
+
+        val restoredQueue = createMutationQueue()
+        val restoredMutations = generateSequence { restoredQueue.nextForReplay() }
+            .onEach { restoredQueue.remove(it.operationId) }
+            .toList()
+
+        assertEquals(listOf("op_1", "op_2", "op_3"), restoredMutations.map { it.operationId })
+        assertEquals(
+            CustomerFixtures.CUSTOMER_WITH_SHIPPING.shippingInformation,
+            restoredMutations[1].arguments[CustomerSession.KEY_SHIPPING_INFO]
+        )
+        assertEquals(
+            mapOf(
+                CustomerSession.KEY_SOURCE to "src_1",
+                CustomerSession.KEY_SOURCE_TYPE to "card"
+            ),
+            restoredMutations[2].arguments
+        )
+    }
+
+    @Test
+    fun clear_shouldRemoveAllMutations() {
+        mutationQueue.isEnabled = true
+        mutationQueue.enqueue(createAttachMutation("op_1", "pm_1")!!)
+
+        mutationQueue.clear()
+
+        assertEquals(0, createMutationQueue().pendingCount)
+    }
+
+    private fun replayAll(): List<String> {
+        return generateSequence { mutationQueue.nextForReplay() }
+            .map { it.operationId }
+            .onEach { mutationQueue.remove(it) }
+            .toList()
+    }
+
+    @Test
+    fun nextForReplay_beforeStoredMutationsAreLoaded_shouldReturnNull() {
+        mutationQueue.isEnabled = true
+        mutationQueue.enqueue(createAttachMutation("op_1", "pm_1")!!)
+
+        val pendingTasks = LinkedList<Runnable>()
+        var loadedCount = 0
+        val restoredQueue = createMutationQueue(
+            onLoaded = Runnable { loadedCount++ },
+            executor = Executor { pendingTasks.add(it) }
+        )
+        restoredQueue.isEnabled = true
+        restoredQueue.enqueue(restoredQueue.createMutation("op_2", CUSTOMER_ID,
+            CustomerSession.ACTION_DETACH_PAYMENT_METHOD,
+            mapOf(CustomerSession.KEY_PAYMENT_METHOD to "pm_2"))!!)
+        assertNull(restoredQueue.nextForReplay())
+        assertEquals(0, loadedCount)
+
+        while (pendingTasks.isNotEmpty()) {
+            pendingTasks.poll()?.run()
+        }
+
+        // the stored mutation is replayed before the one queued in the meantime
+        assertEquals(1, loadedCount)
+        assertEquals(2, restoredQueue.pendingCount)
+        assertEquals("op_1", restoredQueue.nextForReplay()?.operationId)
+    }
+
+    @Test
+    fun clear_beforeStoredMutationsAreLoaded_shouldDiscardThem() {
+        mutationQueue.isEnabled = true
+        mutationQueue.enqueue(createAttachMutation("op_1", "pm_1")!!)
+
+        val pendingTasks = LinkedList<Runnable>()
+        val restoredQueue = createMutationQueue(executor = Executor { pendingTasks.add(it) })
+        restoredQueue.clear()
+        while (pendingTasks.isNotEmpty()) {
+            pendingTasks.poll()?.run()
+        }
+
+        assertEquals(0, restoredQueue.pendingCount)
+        assertEquals(0, createMutationQueue().pendingCount)
+    }
+
+    private fun createAttachMutation(
+        operationId: String,
+        paymentMethodId: String
+    ): CustomerMutationQueue.Mutation? {
+        return mutationQueue.createMutation(operationId, CUSTOMER_ID,
+            CustomerSession.ACTION_ATTACH_PAYMENT_METHOD,
+            mapOf(CustomerSession.KEY_PAYMENT_METHOD to paymentMethodId))
+    }
+
+    private fun createDetachMutation(
+        operationId: String,
+        paymentMethodId: String
+    ): CustomerMutationQueue.Mutation {
+        return mutationQueue.createMutation(operationId, CUSTOMER_ID,
+            CustomerSession.ACTION_DETACH_PAYMENT_METHOD,
+            mapOf(CustomerSession.KEY_PAYMENT_METHOD to paymentMethodId))!!
+    }
+
+    private fun createDefaultSourceMutation(
+        operationId: String,
+        sourceId: String
+    ): CustomerMutationQueue.Mutation {
+        return mutationQueue.createMutation(operationId, CUSTOMER_ID,
+            CustomerSession.ACTION_SET_DEFAULT_SOURCE,
+            mapOf(
+                CustomerSession.KEY_SOURCE to sourceId,
+                CustomerSession.KEY_SOURCE_TYPE to "card"
+            ))!!
+    }
+
+    private fun createShippingMutation(operationId: String): CustomerMutationQueue.Mutation {
+        return mutationQueue.createMutation(operationId, CUSTOMER_ID,
+            CustomerSession.ACTION_SET_CUSTOMER_SHIPPING_INFO,
+            mapOf(CustomerSession.KEY_SHIPPING_INFO to
+                CustomerFixtures.CUSTOMER_WITH_SHIPPING.shippingInformation!!))!!
+    }
+
+    private fun createMutationQueue(
+        onLoaded: Runnable? = null,
+        executor: Executor = Executor { it.run() }
+    ): CustomerMutationQueue {
+        return CustomerMutationQueue(store, onLoaded, executor, clock = { now })
+    }
+
+    companion object {
+        private const val CUSTOMER_ID = "cus_AQsHpvKfKwJDrF"
+    }
+}
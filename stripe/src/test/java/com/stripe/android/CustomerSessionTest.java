@@ -62,10 +62,12 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -303,7 +305,7 @@ public class CustomerSessionTest extends BaseViewTest<PaymentFlowActivity> {
 
         long firstCustomerCacheTime = customerSession.getCustomerCacheTime();
         assertEquals(firstExpiryTimeInMillis - 100L, firstCustomerCacheTime);
-        long timeForCustomerToExpire = TimeUnit.MINUTES.toMillis(2);
+        long timeForCustomerToExpire = TimeUnit.HOURS.toMillis(1);
 
         proxyCalendar.setTimeInMillis(firstCustomerCacheTime + timeForCustomerToExpire);
         assertEquals(firstCustomerCacheTime + timeForCustomerToExpire,
@@ -337,6 +339,66 @@ public class CustomerSessionTest extends BaseViewTest<PaymentFlowActivity> {
                 mRequestOptionsArgumentCaptor.getValue().apiKey);
     }
 
+    @Test
+    public void retrieveCustomer_withStaleCache_returnsCachedCustomerAndUpdatesCache()
+            throws CardException, APIException, InvalidRequestException,
+            AuthenticationException, APIConnectionException, JSONException {
+        CustomerEphemeralKey firstKey = getCustomerEphemeralKey(FIRST_SAMPLE_KEY_RAW);
+        assertNotNull(firstKey);
+
+        CustomerEphemeralKey secondKey = getCustomerEphemeralKey(SECOND_SAMPLE_KEY_RAW);
+        assertNotNull(secondKey);
+
+        Calendar proxyCalendar = Calendar.getInstance();
+        long firstExpiryTimeInMillis = TimeUnit.SECONDS.toMillis(firstKey.getExpires());
+        proxyCalendar.setTimeInMillis(firstExpiryTimeInMillis - 100L);
+
+        assertTrue(proxyCalendar.getTimeInMillis() > 0);
+
+        mEphemeralKeyProvider.setNextRawEphemeralKey(FIRST_SAMPLE_KEY_RAW);
+        final CustomerSession customerSession = createCustomerSession(proxyCalendar);
+        assertNotNull(FIRST_CUSTOMER);
+        assertEquals(firstKey.getCustomerId(), FIRST_CUSTOMER.getId());
+
+        long firstCustomerCacheTime = customerSession.getCustomerCacheTime();
+        assertEquals(firstExpiryTimeInMillis - 100L, firstCustomerCacheTime);
+        long timeForCustomerToBeStale = TimeUnit.MINUTES.toMillis(2);
+
+        proxyCalendar.setTimeInMillis(firstCustomerCacheTime + timeForCustomerToBeStale);
+        assertEquals(firstCustomerCacheTime + timeForCustomerToBeStale,
+                proxyCalendar.getTimeInMillis());
+
+        // We want to make sure that the next ephemeral key will be different.
+        mEphemeralKeyProvider.setNextRawEphemeralKey(SECOND_SAMPLE_KEY_RAW);
+
+        // The key manager should think it is necessary to update the key,
+        // because the first one was expired.
+        CustomerSession.CustomerRetrievalListener mockListener =
+                mock(CustomerSession.CustomerRetrievalListener.class);
+        customerSession.retrieveCurrentCustomer(mockListener);
+
+        // The stale customer is returned immediately, and updated in the background.
+        verify(mockListener).onCustomerRetrieved(mCustomerArgumentCaptor.capture());
+        final Customer capturedCustomer = mCustomerArgumentCaptor.getValue();
+        assertNotNull(capturedCustomer);
+        assertEquals(FIRST_CUSTOMER.getId(), capturedCustomer.getId());
+        assertNotNull(SECOND_CUSTOMER);
+        assertNotNull(customerSession.getCustomer());
+        //  Make sure the updated value is cached.
+        assertEquals(SECOND_CUSTOMER.getId(), customerSession.getCustomer().getId());
+        assertEquals(1, customerSession.getCacheStats().getStaleHits());
+        assertEquals(1, customerSession.getCacheStats().getRevalidations());
+
+        verify(mStripeRepository).retrieveCustomer(eq(firstKey.getCustomerId()),
+                mRequestOptionsArgumentCaptor.capture());
+        assertEquals(firstKey.getSecret(),
+                mRequestOptionsArgumentCaptor.getValue().apiKey);
+        verify(mStripeRepository).retrieveCustomer(eq(secondKey.getCustomerId()),
+                mRequestOptionsArgumentCaptor.capture());
+        assertEquals(secondKey.getSecret(),
+                mRequestOptionsArgumentCaptor.getValue().apiKey);
+    }
+
     @Test
     public void retrieveCustomer_withUnExpiredCache_returnsCustomerWithoutHittingApi()
             throws CardException, APIException, InvalidRequestException, AuthenticationException,
@@ -838,6 +900,43 @@ public class CustomerSessionTest extends BaseViewTest<PaymentFlowActivity> {
     }
 
 
+    @Test
+    public void attachPaymentMethod_withMutationQueue_whenConnectionFails_replaysAfterNextSuccess()
+            throws StripeException {
+        when(mStripeRepository.attachPaymentMethod(
+                anyString(),
+                eq(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY),
+                ArgumentMatchers.<String>anySet(),
+                anyString(),
+                ArgumentMatchers.<ApiRequest.Options>any()
+        ))
+                .thenThrow(new APIConnectionException("Unable to reach Stripe", null))
+                .thenReturn(mPaymentMethod);
+
+        mEphemeralKeyProvider.setNextRawEphemeralKey(FIRST_SAMPLE_KEY_RAW);
+        final CustomerSession customerSession = createCustomerSession(null);
+        customerSession.setMutationQueueEnabled(true);
+        final CustomerSession.MutationQueueListener mutationQueueListener =
+                mock(CustomerSession.MutationQueueListener.class);
+        customerSession.setMutationQueueListener(mutationQueueListener);
+        final CustomerSession.PaymentMethodRetrievalListener mockListener =
+                mock(CustomerSession.PaymentMethodRetrievalListener.class);
+
+        customerSession.attachPaymentMethod("pm_abc123", mockListener);
+
+        assertEquals(1, customerSession.getPendingMutationCount());
+        verify(mutationQueueListener).onPendingMutationsChanged(1);
+        verify(mockListener, never())
+                .onError(anyInt(), anyString(), ArgumentMatchers.<StripeError>any());
+
+        customerSession.updateCurrentCustomer(
+                mock(CustomerSession.CustomerRetrievalListener.class));
+
+        assertEquals(0, customerSession.getPendingMutationCount());
+        verify(mutationQueueListener).onPendingMutationsChanged(0);
+        verify(mockListener).onPaymentMethodRetrieved(mPaymentMethod);
+    }
+
     @Test
     public void detachPaymentMethodFromCustomer_withUnExpiredCustomer_returnsRemovedPaymentMethodAndEmptiesLogs()
             throws CardException, APIException, InvalidRequestException, AuthenticationException,
@@ -0,0 +1,111 @@
+package com.stripe.android
+
+import java.net.ConnectException
+import java.net.InetAddress
+import java.net.SocketTimeoutException
+import java.net.UnknownHostException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class DnsPrefetcherTest {
+
+    private var now = 0L
+    private val lookups = mutableListOf<String>()
+    private val dnsPrefetcher = createDnsPrefetcher { host ->
+        lookups.add(host)
+        listOf(InetAddress.getByAddress(host, byteArrayOf(127, 0, 0, 1)))
+    }
+
+    @Test
+    fun prefetch_shouldResolveInBackground() {
+        val latch = CountDownLatch(1)
+        val dnsPrefetcher = createDnsPrefetcher { host ->
+            lookups.add(host)
+            latch.countDown()
+            listOf(InetAddress.getLoopbackAddress())
+        }
+
+        dnsPrefetcher.prefetch(API_HOST)
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS))
+        assertEquals(listOf(API_HOST), lookups)
+    }
+
+    @Test
+    fun prefetch_withinTtl_shouldNotResolveAgain() {
+        dnsPrefetcher.prefetchBlocking(API_HOST)
+        now += 999L
+        dnsPrefetcher.prefetch(API_HOST)
+
+        assertEquals(listOf(API_HOST), lookups)
+        assertEquals(
+            DnsPrefetcher.Stats(lookups = 1, failedLookups = 0, skippedPrefetches = 1),
+            dnsPrefetcher.getStats()
+        )
+    }
+
+    @Test
+    fun prefetch_afterTtl_shouldResolveAgain() {
+        val latch = CountDownLatch(1)
+        val dnsPrefetcher = createDnsPrefetcher { host ->
+            lookups.add(host)
+            if (lookups.size == 2) {
+                latch.countDown()
+            }
+            listOf(InetAddress.getLoopbackAddress())
+        }
+        dnsPrefetcher.prefetchBlocking(API_HOST)
+        now += 1000L
+        dnsPrefetcher.prefetch(API_HOST)
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS))
+        assertEquals(listOf(API_HOST, API_HOST), lookups)
+    }
+
+    @Test
+    fun prefetchBlocking_whenLookupFails_shouldRecordFailure() {
+        val dnsPrefetcher = createDnsPrefetcher { throw UnknownHostException(it) }
+        dnsPrefetcher.prefetchBlocking(API_HOST)
+
+        assertEquals(
+            DnsPrefetcher.Stats(lookups = 0, failedLookups = 1, skippedPrefetches = 0),
+            dnsPrefetcher.getStats()
+        )
+    }
+
+    @Test
+    fun onConnectionFailure_withConnectException_shouldForgetHost() {
+        dnsPrefetcher.prefetchBlocking(API_HOST)
+        dnsPrefetcher.onConnectionFailure(API_HOST, ConnectException())
+        dnsPrefetcher.prefetchBlocking(API_HOST)
+
+        assertEquals(0, dnsPrefetcher.getStats().skippedPrefetches)
+        assertEquals(listOf(API_HOST, API_HOST), lookups)
+    }
+
+    @Test
+    fun onConnectionFailure_withReadTimeout_shouldKeepHost() {
+        dnsPrefetcher.prefetchBlocking(API_HOST)
+        dnsPrefetcher.onConnectionFailure(API_HOST, SocketTimeoutException())
+        dnsPrefetcher.prefetch(API_HOST)
+
+        assertEquals(listOf(API_HOST), lookups)
+    }
+
+    private fun createDnsPrefetcher(lookup: (String) -> List<InetAddress>): DnsPrefetcher {
+        return DnsPrefetcher(
+            maxEntries = 2,
+            ttlMillis = 1000L,
+            backgroundExecutor = BoundedRequestExecutor(),
+            lookup = lookup,
+            clock = { now }
+        )
+    }
+
+    companion object {
+        private const val API_HOST = "api.stripe.com"
+    }
+}
@@ -1,5 +1,7 @@
 package com.stripe.android
 
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
 import com.nhaarman.mockitokotlin2.KArgumentCaptor
 import com.nhaarman.mockitokotlin2.any
 import com.nhaarman.mockitokotlin2.argumentCaptor
@@ -8,6 +10,7 @@ import com.stripe.android.model.CustomerFixtures
 import com.stripe.android.testharness.TestEphemeralKeyProvider
 import java.net.HttpURLConnection
 import java.util.Calendar
+import java.util.concurrent.Executor
 import java.util.concurrent.TimeUnit
 import org.json.JSONException
 import org.junit.Assert.assertEquals
@@ -23,10 +26,12 @@ import org.mockito.Mock
 import org.mockito.Mockito.`when`
 import org.mockito.Mockito.mock
 import org.mockito.Mockito.never
+import org.mockito.Mockito.times
 import org.mockito.Mockito.verify
 import org.mockito.Mockito.verifyNoMoreInteractions
 import org.mockito.MockitoAnnotations
 import org.robolectric.RobolectricTestRunner
+import org.robolectric.shadows.ShadowLooper
 
 /**
  * Test class for [EphemeralKeyManager].
@@ -275,6 +280,211 @@ class EphemeralKeyManagerTest {
         )
     }
 
+    @Test
+    fun retrieveEphemeralKey_whenKeyIsNotReceivedByDeadline_shouldTriggerError() {
+        val ephemeralKeyProvider = mock(EphemeralKeyProvider::class.java)
+        val keyManager = EphemeralKeyManager(
+            ephemeralKeyProvider,
+            keyManagerListener,
+            TEST_SECONDS_BUFFER, null,
+            operationIdFactory,
+            ephemeralKeyFactory,
+            false
+        )
+
+        val operationId = operationIdFactory.create()
+        keyManager.retrieveEphemeralKey(operationId, null, null,
+            Deadline(expiresAtMillis = 1000L, clock = { 0L }))
+        val keyUpdateListenerCaptor: KArgumentCaptor<EphemeralKeyUpdateListener> =
+            argumentCaptor()
+        verify(ephemeralKeyProvider).createEphemeralKey(anyString(),
+            keyUpdateListenerCaptor.capture())
+        verifyNoMoreInteractions(keyManagerListener)
+
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks()
+        verify(keyManagerListener).onKeyError(eq(operationId),
+            eq(HttpURLConnection.HTTP_CLIENT_TIMEOUT), anyString())
+
+        // the key arrives too late
+        keyUpdateListenerCaptor.firstValue
+            .onKeyUpdate(CustomerFixtures.EPHEMERAL_KEY_FIRST.toString())
+        verifyNoMoreInteractions(keyManagerListener)
+    }
+
+    @Test
+    fun retrieveEphemeralKey_whenFetchIsInProgress_shouldCallProviderOnce() {
+        val ephemeralKeyProvider = mock(EphemeralKeyProvider::class.java)
+        val keyManager = createEphemeralKeyManager(ephemeralKeyProvider,
+            createCalendarBeforeExpiry(TimeUnit.HOURS.toMillis(1)))
+
+        val firstOperationId = operationIdFactory.create()
+        val secondOperationId = operationIdFactory.create()
+        keyManager.retrieveEphemeralKey(firstOperationId, "first", null)
+        keyManager.retrieveEphemeralKey(secondOperationId, "second", null)
+
+        val keyUpdateListenerCaptor: KArgumentCaptor<EphemeralKeyUpdateListener> =
+            argumentCaptor()
+        verify(ephemeralKeyProvider).createEphemeralKey(anyString(),
+            keyUpdateListenerCaptor.capture())
+        keyUpdateListenerCaptor.firstValue
+            .onKeyUpdate(CustomerFixtures.EPHEMERAL_KEY_FIRST.toString())
+
+        verify(keyManagerListener).onKeyUpdate(any(), eq(firstOperationId), eq("first"),
+            ArgumentMatchers.isNull<Map<String, Any>>())
+        verify(keyManagerListener).onKeyUpdate(any(), eq(secondOperationId), eq("second"),
+            ArgumentMatchers.isNull<Map<String, Any>>())
+
+        // the key is cached
+        keyManager.retrieveEphemeralKey(operationIdFactory.create(), null, null)
+        verifyNoMoreInteractions(ephemeralKeyProvider)
+    }
+
+    @Test
+    fun retrieveEphemeralKey_whenKeyIsUsed_shouldRefreshKeyBeforeExpiry() {
+        val ephemeralKeyProvider = mock(EphemeralKeyProvider::class.java)
+        val keyManager = createEphemeralKeyManager(ephemeralKeyProvider,
+            createCalendarBeforeExpiry(TimeUnit.HOURS.toMillis(1)))
+
+        keyManager.retrieveEphemeralKey(operationIdFactory.create(), null, null)
+        val keyUpdateListenerCaptor: KArgumentCaptor<EphemeralKeyUpdateListener> =
+            argumentCaptor()
+        verify(ephemeralKeyProvider).createEphemeralKey(anyString(),
+            keyUpdateListenerCaptor.capture())
+        keyUpdateListenerCaptor.firstValue
+            .onKeyUpdate(CustomerFixtures.EPHEMERAL_KEY_FIRST.toString())
+
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks()
+
+        verify(ephemeralKeyProvider, times(2)).createEphemeralKey(anyString(), any())
+        verify(keyManagerListener).onKeyUpdate(any(), anyString(),
+            ArgumentMatchers.isNull<String>(), ArgumentMatchers.isNull<Map<String, Any>>())
+    }
+
+    @Test
+    fun retrieveEphemeralKey_whenKeyExpiresSoon_shouldReturnKeyAndRefreshIt() {
+        val ephemeralKeyProvider = mock(EphemeralKeyProvider::class.java)
+        val calendar = createCalendarBeforeExpiry(TimeUnit.HOURS.toMillis(1))
+        val keyManager = createEphemeralKeyManager(ephemeralKeyProvider, calendar)
+
+        keyManager.retrieveEphemeralKey(operationIdFactory.create(), null, null)
+        val keyUpdateListenerCaptor: KArgumentCaptor<EphemeralKeyUpdateListener> =
+            argumentCaptor()
+        verify(ephemeralKeyProvider).createEphemeralKey(anyString(),
+            keyUpdateListenerCaptor.capture())
+        keyUpdateListenerCaptor.firstValue
+            .onKeyUpdate(CustomerFixtures.EPHEMERAL_KEY_FIRST.toString())
+
+        calendar.timeInMillis = TimeUnit.SECONDS.toMillis(customerEphemeralKey.expires) -
+            TimeUnit.MINUTES.toMillis(2)
+        val operationId = operationIdFactory.create()
+        keyManager.retrieveEphemeralKey(operationId, "action", null)
+
+        verify(keyManagerListener).onKeyUpdate(any(), eq(operationId), eq("action"),
+            ArgumentMatchers.isNull<Map<String, Any>>())
+        verify(ephemeralKeyProvider, times(2)).createEphemeralKey(anyString(), any())
+    }
+
+    @Test
+    fun retrieveEphemeralKey_withStoredKey_shouldUseStoredKeyWithoutFetching() {
+        val calendar = createCalendarBeforeExpiry(TimeUnit.HOURS.toMillis(1))
+        val keyStore = createEphemeralKeyStore()
+        keyStore.put(customerEphemeralKey, CustomerFixtures.EPHEMERAL_KEY_FIRST.toString())
+        val ephemeralKeyProvider = mock(EphemeralKeyProvider::class.java)
+        val keyManager = EphemeralKeyManager(
+            ephemeralKeyProvider,
+            keyManagerListener,
+            TEST_SECONDS_BUFFER,
+            calendar,
+            operationIdFactory,
+            ephemeralKeyFactory,
+            false,
+            keyStore
+        )
+
+        val operationId = operationIdFactory.create()
+        keyManager.retrieveEphemeralKey(operationId, "action", null)
+
+        verify(keyManagerListener).onKeyUpdate(eq(customerEphemeralKey), eq(operationId),
+            eq("action"), ArgumentMatchers.isNull<Map<String, Any>>())
+        verify(ephemeralKeyProvider, never()).createEphemeralKey(anyString(), any())
+    }
+
+    @Test
+    fun retrieveEphemeralKey_whileStoredKeyIsLoading_shouldWaitForStoredKey() {
+        val calendar = createCalendarBeforeExpiry(TimeUnit.HOURS.toMillis(1))
+        val storeTasks = mutableListOf<Runnable>()
+        val keyStore = createEphemeralKeyStore(Executor { storeTasks.add(it) })
+        createEphemeralKeyStore().put(customerEphemeralKey,
+            CustomerFixtures.EPHEMERAL_KEY_FIRST.toString())
+        val ephemeralKeyProvider = mock(EphemeralKeyProvider::class.java)
+        val keyManager = EphemeralKeyManager(
+            ephemeralKeyProvider,
+            keyManagerListener,
+            TEST_SECONDS_BUFFER,
+            calendar,
+            operationIdFactory,
+            ephemeralKeyFactory,
+            false,
+            keyStore
+        )
+
+        val operationId = operationIdFactory.create()
+        keyManager.retrieveEphemeralKey(operationId, "action", null)
+        verifyNoMoreInteractions(keyManagerListener)
+
+        // the store is read in the background, and the result is delivered on the handler
+        storeTasks.single().run()
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks()
+
+        verify(keyManagerListener).onKeyUpdate(eq(customerEphemeralKey), eq(operationId),
+            eq("action"), ArgumentMatchers.isNull<Map<String, Any>>())
+        verify(ephemeralKeyProvider, never()).createEphemeralKey(anyString(), any())
+    }
+
+    @Test
+    fun retrieveEphemeralKey_whenNoKeyIsStored_shouldFetchKeyAfterLoading() {
+        val storeTasks = mutableListOf<Runnable>()
+        val ephemeralKeyProvider = mock(EphemeralKeyProvider::class.java)
+        val keyManager = EphemeralKeyManager(
+            ephemeralKeyProvider,
+            keyManagerListener,
+            TEST_SECONDS_BUFFER,
+            createCalendarBeforeExpiry(TimeUnit.HOURS.toMillis(1)),
+            operationIdFactory,
+            ephemeralKeyFactory,
+            false,
+            createEphemeralKeyStore(Executor { storeTasks.add(it) })
+        )
+
+        keyManager.retrieveEphemeralKey(operationIdFactory.create(), "action", null)
+        verify(ephemeralKeyProvider, never()).createEphemeralKey(anyString(), any())
+
+        storeTasks.single().run()
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks()
+
+        verify(ephemeralKeyProvider).createEphemeralKey(anyString(), any())
+    }
+
+    @Test
+    fun retrieveEphemeralKey_whenKeyIsReceived_shouldStoreKey() {
+        val calendar = createCalendarBeforeExpiry(TimeUnit.HOURS.toMillis(1))
+        val keyStore = createEphemeralKeyStore()
+        testEphemeralKeyProvider.setNextRawEphemeralKey(
+            CustomerFixtures.EPHEMERAL_KEY_FIRST.toString())
+        EphemeralKeyManager(
+            testEphemeralKeyProvider,
+            keyManagerListener,
+            TEST_SECONDS_BUFFER,
+            calendar,
+            operationIdFactory,
+            ephemeralKeyFactory,
+            true,
+            keyStore
+        )
+
+        assertEquals(customerEphemeralKey, keyStore.get(TEST_SECONDS_BUFFER, calendar))
+    }
+
     @Test
     fun init_whenShouldPrefetchEphemeralKeyIsFalse_shouldNotFetch() {
         val operationIdFactory = mock(OperationIdFactory::class.java)
@@ -304,6 +514,46 @@ class EphemeralKeyManagerTest {
         )
     }
 
+    private fun createEphemeralKeyManager(
+        ephemeralKeyProvider: EphemeralKeyProvider,
+        calendar: Calendar
+    ): EphemeralKeyManager<CustomerEphemeralKey> {
+        return EphemeralKeyManager(
+            ephemeralKeyProvider,
+            keyManagerListener,
+            TEST_SECONDS_BUFFER,
+            calendar,
+            operationIdFactory,
+            ephemeralKeyFactory,
+            false
+        )
+    }
+
+    private fun createEphemeralKeyStore(
+        executor: Executor = Executor { it.run() }
+    ): EphemeralKeyStore<CustomerEphemeralKey> {
+        return EphemeralKeyStore(
+            ApplicationProvider.getApplicationContext<Context>()
+                .getSharedPreferences("EphemeralKeyManagerTest", Context.MODE_PRIVATE),
+            object : EphemeralKeyStore.Encryptor {
+                override fun encrypt(plaintext: String): String? = plaintext
+
+                override fun decrypt(ciphertext: String): String? = ciphertext
+            },
+            EphemeralKeyStore.KEY_TYPE_CUSTOMER,
+            customerEphemeralKey.objectId,
+            ephemeralKeyFactory,
+            executor = executor
+        )
+    }
+
+    private fun createCalendarBeforeExpiry(millisBeforeExpiry: Long): Calendar {
+        return Calendar.getInstance().apply {
+            timeInMillis = TimeUnit.SECONDS.toMillis(customerEphemeralKey.expires) -
+                millisBeforeExpiry
+        }
+    }
+
     private fun createEphemeralKey(expires: Long): CustomerEphemeralKey {
         return ephemeralKeyFactory.create(1501199335L, "cus_AQsHpvKfKwJDrF",
             expires, "ephkey_123", false, "customer", "", "")
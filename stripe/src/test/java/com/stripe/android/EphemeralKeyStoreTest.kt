@@ -0,0 +1,115 @@
+package com.stripe.android
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import com.stripe.android.model.CustomerFixtures
+import java.util.Calendar
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class EphemeralKeyStoreTest {
+
+    private val prefs = ApplicationProvider.getApplicationContext<Context>()
+        .getSharedPreferences("EphemeralKeyStoreTest", Context.MODE_PRIVATE)
+    private val ephemeralKey = CustomerEphemeralKey.fromJson(CustomerFixtures.EPHEMERAL_KEY_FIRST)
+    private val calendar = Calendar.getInstance().apply {
+        timeInMillis = TimeUnit.SECONDS.toMillis(ephemeralKey.expires) -
+            TimeUnit.HOURS.toMillis(1)
+    }
+
+    @Test
+    fun get_afterPut_shouldReturnKey() {
+        val store = createStore(CUSTOMER_ID)
+        store.put(ephemeralKey, RAW_KEY)
+
+        assertEquals(ephemeralKey, store.get(BUFFER_IN_SECONDS, calendar))
+        assertFalse(prefs.all.values.contains(RAW_KEY))
+    }
+
+    @Test
+    fun get_whenKeyShouldBeRefreshed_shouldReturnNullAndRemoveKey() {
+        val store = createStore(CUSTOMER_ID)
+        store.put(ephemeralKey, RAW_KEY)
+
+        calendar.timeInMillis = TimeUnit.SECONDS.toMillis(ephemeralKey.expires)
+
+        assertNull(store.get(BUFFER_IN_SECONDS, calendar))
+        assertTrue(prefs.all.isEmpty())
+    }
+
+    @Test
+    fun get_withOtherCustomerOrApiVersion_shouldReturnNull() {
+        createStore(CUSTOMER_ID).put(ephemeralKey, RAW_KEY)
+
+        assertNull(createStore("cus_other").get(BUFFER_IN_SECONDS, calendar))
+        assertNull(createStore(CUSTOMER_ID, "2017-06-05").get(BUFFER_IN_SECONDS, calendar))
+        assertEquals(ephemeralKey, createStore(CUSTOMER_ID).get(BUFFER_IN_SECONDS, calendar))
+    }
+
+    @Test
+    fun put_withKeyOfOtherCustomer_shouldNotStoreKey() {
+        createStore("cus_other").put(ephemeralKey, RAW_KEY)
+
+        assertTrue(prefs.all.isEmpty())
+    }
+
+    @Test
+    fun put_withNullCustomer_shouldNotStoreKey() {
+        val store = createStore(null)
+        store.put(ephemeralKey, RAW_KEY)
+
+        assertNull(store.get(BUFFER_IN_SECONDS, calendar))
+        assertTrue(prefs.all.isEmpty())
+    }
+
+    @Test
+    fun put_whenKeyCantBeEncrypted_shouldNotStoreKey() {
+        val store = EphemeralKeyStore(prefs, object : EphemeralKeyStore.Encryptor {
+            override fun encrypt(plaintext: String): String? = null
+
+            override fun decrypt(ciphertext: String): String? = null
+        }, EphemeralKeyStore.KEY_TYPE_CUSTOMER, CUSTOMER_ID, CustomerEphemeralKey.Factory())
+        store.put(ephemeralKey, RAW_KEY)
+
+        assertTrue(prefs.all.isEmpty())
+    }
+
+    @Test
+    fun clear_shouldRemoveKeysOfAllCustomers() {
+        createStore(CUSTOMER_ID).put(ephemeralKey, RAW_KEY)
+
+        createStore(null).clear()
+
+        assertNull(createStore(CUSTOMER_ID).get(BUFFER_IN_SECONDS, calendar))
+    }
+
+    private fun createStore(
+        customerId: String?,
+        apiVersion: String = ApiVersion.get().code
+    ): EphemeralKeyStore<CustomerEphemeralKey> {
+        return EphemeralKeyStore(prefs, ReversingEncryptor(), EphemeralKeyStore.KEY_TYPE_CUSTOMER,
+            customerId, CustomerEphemeralKey.Factory(), apiVersion)
+    }
+
+    /**
+     * The Android Keystore isn't available in Robolectric
+     */
+    private class ReversingEncryptor : EphemeralKeyStore.Encryptor {
+        override fun encrypt(plaintext: String): String? = plaintext.reversed()
+
+        override fun decrypt(ciphertext: String): String? = ciphertext.reversed()
+    }
+
+    companion object {
+        private const val CUSTOMER_ID = "cus_AQsHpvKfKwJDrF"
+        private const val BUFFER_IN_SECONDS = 30L
+        private val RAW_KEY = CustomerFixtures.EPHEMERAL_KEY_FIRST.toString()
+    }
+}
@@ -0,0 +1,69 @@
+package com.stripe.android
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class FingerprintRequestSchedulerTest {
+
+    private var now = 0L
+    private val scheduler = FingerprintRequestScheduler(
+        intervalMillis = 1000L,
+        pendingTimeoutMillis = 100L,
+        clock = { now }
+    )
+
+    @Test
+    fun shouldSend_withSamePayloadWithinInterval_returnsFalse() {
+        assertTrue(send("a"))
+        now += 999L
+        assertFalse(scheduler.shouldSend(createRequest("a")))
+
+        assertEquals(
+            FingerprintRequestScheduler.Stats(sent = 1, skipped = 1),
+            scheduler.getStats()
+        )
+    }
+
+    @Test
+    fun shouldSend_withSamePayloadAfterInterval_returnsTrue() {
+        assertTrue(send("a"))
+        now += 1000L
+        assertTrue(scheduler.shouldSend(createRequest("a")))
+    }
+
+    @Test
+    fun shouldSend_withChangedPayload_returnsTrue() {
+        assertTrue(send("a"))
+        assertTrue(send("b"))
+        assertFalse(scheduler.shouldSend(createRequest("b")))
+    }
+
+    @Test
+    fun shouldSend_whileSamePayloadIsInFlight_returnsFalse() {
+        assertTrue(scheduler.shouldSend(createRequest("a")))
+        assertFalse(scheduler.shouldSend(createRequest("a")))
+
+        now += 100L
+        assertTrue(scheduler.shouldSend(createRequest("a")))
+    }
+
+    @Test
+    fun shouldSend_afterFailedRequest_returnsTrue() {
+        assertTrue(send("a", responseCode = 500))
+        assertTrue(send("a", responseCode = null))
+        assertTrue(scheduler.shouldSend(createRequest("a")))
+    }
+
+    private fun send(tag: String, responseCode: Int? = 200): Boolean {
+        val request = createRequest(tag)
+        return scheduler.shouldSend(request).also {
+            scheduler.onRequestCompleted(request, responseCode)
+        }
+    }
+
+    private fun createRequest(tag: String): FingerprintRequest {
+        return FingerprintRequest(mapOf<String, Any>("tag" to tag), "guid")
+    }
+}
@@ -0,0 +1,121 @@
+package com.stripe.android
+
+import com.stripe.android.exception.InvalidRequestException
+import java.net.URLEncoder
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertThrows
+import org.junit.Test
+
+class FormEncoderTest {
+
+    private val bufferPool = BufferPool()
+    private val formEncoder = FormEncoder(bufferPool)
+
+    @Test
+    fun encodeToString_withNestedParams_shouldMatchUrlEncoder() {
+        val params = linkedMapOf(
+            "type" to "card",
+            "card" to linkedMapOf(
+                "number" to "4242424242424242",
+                "exp_month" to 12
+            ),
+            "billing_details" to linkedMapOf(
+                "name" to "Jenny Rosen",
+                "address" to linkedMapOf(
+                    "line1" to "1 Rue de l'Église",
+                    "city" to "Zürich"
+                )
+            ),
+            "metadata" to linkedMapOf(
+                "order[id]" to "#123&456",
+                "emoji" to "💳",
+                "cjk" to "支付"
+            ),
+            "expand" to listOf("payment_method", "customer"),
+            "items" to listOf(
+                linkedMapOf("plan" to "gold"),
+                linkedMapOf("plan" to "silver")
+            ),
+            "empty_list" to emptyList<String>(),
+            "list_with_null" to listOf(null)
+        )
+
+        assertEquals(encodeWithUrlEncoder(params), formEncoder.encodeToString(params))
+    }
+
+    @Test
+    fun encodeToString_withUnpairedSurrogate_shouldMatchUrlEncoder() {
+        val params = mapOf("name" to "a\uD83Db")
+        assertEquals(encodeWithUrlEncoder(params), formEncoder.encodeToString(params))
+    }
+
+    @Test
+    fun encodeToString_withNullOrEmptyParams_shouldReturnEmptyString() {
+        assertEquals("", formEncoder.encodeToString(null))
+        assertEquals("", formEncoder.encodeToString(emptyMap<String, Any>()))
+    }
+
+    @Test
+    fun encodeToString_withEmptyStringInList_shouldThrow() {
+        val exception = assertThrows(InvalidRequestException::class.java) {
+            formEncoder.encodeToString(mapOf("expand" to listOf("")))
+        }
+        assertEquals("expand[]", exception.param)
+    }
+
+    @Test
+    fun encodeToBytes_shouldMatchEncodeToString() {
+        val params = mapOf("customer" to "cus_123", "card" to mapOf("cvc" to "123"))
+        assertArrayEquals(
+            formEncoder.encodeToString(params).toByteArray(),
+            formEncoder.encodeToBytes(params)
+        )
+    }
+
+    @Test
+    fun encodeToBytes_withLargeParams_shouldGrowBuffer() {
+        val value = "x".repeat(BufferPool.DEFAULT_BUFFER_SIZE * 2)
+        assertEquals(
+            "key=$value",
+            String(formEncoder.encodeToBytes(mapOf("key" to value)))
+        )
+    }
+
+    @Test
+    fun encode_shouldReuseBuffers() {
+        val params = mapOf("customer" to "cus_123")
+        formEncoder.encodeToString(params)
+        formEncoder.encodeToString(params)
+
+        assertEquals(2, bufferPool.getStats().allocations)
+    }
+
+    /**
+     * Flattens and encodes [params] the way [StripeRequest] did before [FormEncoder].
+     */
+    private fun encodeWithUrlEncoder(params: Map<String, *>): String {
+        return flatten(params, null).joinToString("&") { (key, value) ->
+            "${URLEncoder.encode(key, "UTF-8")}=${URLEncoder.encode(value, "UTF-8")}"
+        }
+    }
+
+    private fun flatten(params: Map<*, *>, keyPrefix: String?): List<Pair<String, String>> {
+        return params.flatMap { (key, value) ->
+            flattenValue(value, keyPrefix?.let { "$it[$key]" } ?: key.toString())
+        }
+    }
+
+    private fun flattenValue(value: Any?, keyPrefix: String): List<Pair<String, String>> {
+        return when (value) {
+            is Map<*, *> -> flatten(value, keyPrefix)
+            is List<*> -> if (value.isEmpty()) {
+                listOf(keyPrefix to "")
+            } else {
+                value.flatMap { flattenValue(it, "$keyPrefix[]") }
+            }
+            null -> listOf(keyPrefix to "")
+            else -> listOf(keyPrefix to value.toString())
+        }
+    }
+}
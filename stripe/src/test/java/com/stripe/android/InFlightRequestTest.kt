@@ -0,0 +1,86 @@
+package com.stripe.android
+
+import com.stripe.android.exception.APIConnectionException
+import java.net.HttpURLConnection
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertThrows
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mockito.Mockito.doAnswer
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.verify
+
+class InFlightRequestTest {
+
+    @Test
+    fun execute_shouldReturnResultOfBlock() {
+        val result = runBlocking {
+            InFlightRequest.execute(Dispatchers.IO) {
+                assertTrue(InFlightRequest.current() != null)
+                "result"
+            }
+        }
+
+        assertEquals("result", result)
+        assertNull(InFlightRequest.current())
+    }
+
+    @Test
+    fun execute_whenBlockThrows_shouldRethrow() {
+        assertThrows(APIConnectionException::class.java) {
+            runBlocking {
+                InFlightRequest.execute(Dispatchers.IO) {
+                    throw APIConnectionException("Network unavailable", null)
+                }
+            }
+        }
+    }
+
+    @Test
+    fun execute_whenBlockThrowsError_shouldRethrow() {
+        assertThrows(StackOverflowError::class.java) {
+            runBlocking {
+                InFlightRequest.execute(Dispatchers.IO) {
+                    throw StackOverflowError()
+                }
+            }
+        }
+        assertNull(InFlightRequest.current())
+    }
+
+    @Test
+    fun execute_whenCancelled_shouldDisconnectRegisteredConnections() {
+        val connection = mock(HttpURLConnection::class.java)
+        val startedLatch = CountDownLatch(1)
+        val disconnectedLatch = CountDownLatch(1)
+        doAnswer {
+            disconnectedLatch.countDown()
+        }.`when`(connection).disconnect()
+
+        runBlocking {
+            val job = launch(start = CoroutineStart.UNDISPATCHED) {
+                InFlightRequest.execute(Dispatchers.IO) {
+                    InFlightRequest.current()?.register(connection)
+                    startedLatch.countDown()
+                    // simulates a read that is blocked until the connection is disconnected
+                    disconnectedLatch.await(1, TimeUnit.SECONDS)
+                }
+            }
+
+            assertTrue(startedLatch.await(1, TimeUnit.SECONDS))
+            job.cancelAndJoin()
+            assertTrue(job.isCancelled)
+        }
+
+        assertTrue(disconnectedLatch.await(1, TimeUnit.SECONDS))
+        verify(connection).disconnect()
+    }
+}
@@ -0,0 +1,162 @@
+package com.stripe.android
+
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+import org.junit.Test
+
+class NetworkEventDispatcherTest {
+
+    private val loggedErrors = mutableListOf<Throwable?>()
+    private val networkEventDispatcher = NetworkEventDispatcher(object : Logger {
+        override fun error(msg: String, t: Throwable?) {
+            loggedErrors.add(t)
+        }
+
+        override fun info(msg: String) {
+        }
+    })
+    private val requestEvents = mutableListOf<NetworkEvent>()
+    private val parseEvents = mutableListOf<ParseEvent>()
+
+    private val listener = object : NetworkEventListener() {
+        override fun onRequestCompleted(event: NetworkEvent) {
+            requestEvents.add(event)
+        }
+
+        override fun onResponseParsed(event: ParseEvent) {
+            parseEvents.add(event)
+        }
+    }
+
+    @Test
+    fun onRequestCompleted_shouldReportMetricsInMillis() {
+        networkEventDispatcher.addListener(listener)
+        val metrics = RequestMetrics().apply {
+            connectNanos = TimeUnit.MILLISECONDS.toNanos(20)
+            tlsNanos = TimeUnit.MILLISECONDS.toNanos(40)
+            timeToFirstByteNanos = TimeUnit.MILLISECONDS.toNanos(150)
+            bytesOut = 120
+            bytesIn = 800
+        }
+
+        networkEventDispatcher.onRequestCompleted(PAYMENT_INTENT_REQUEST, metrics, 200,
+            "req_123", TimeUnit.MILLISECONDS.toNanos(230), retryCount = 1)
+
+        assertEquals(
+            NetworkEvent(
+                requestType = NetworkEvent.RequestType.Api,
+                method = "GET",
+                endpoint = "api.stripe.com/v1/payment_intents/{id}",
+                statusCode = 200,
+                requestId = "req_123",
+                connectMillis = 20,
+                tlsMillis = 40,
+                requestWriteMillis = 0,
+                timeToFirstByteMillis = 150,
+                bodyReadMillis = 0,
+                totalMillis = 230,
+                bytesOut = 120,
+                bytesIn = 800,
+                retryCount = 1
+            ),
+            requestEvents.single()
+        )
+    }
+
+    @Test
+    fun onResponseParsed_shouldReportParseEvent() {
+        networkEventDispatcher.addListener(listener)
+
+        networkEventDispatcher.onResponseParsed(PAYMENT_INTENT_REQUEST, "req_123",
+            TimeUnit.MILLISECONDS.toNanos(3))
+
+        assertEquals(
+            ParseEvent("api.stripe.com/v1/payment_intents/{id}", "req_123", 3),
+            parseEvents.single()
+        )
+    }
+
+    @Test
+    fun removeListener_shouldStopReportingEvents() {
+        networkEventDispatcher.addListener(listener)
+        networkEventDispatcher.removeListener(listener)
+
+        networkEventDispatcher.onRequestCompleted(PAYMENT_INTENT_REQUEST, RequestMetrics(), null,
+            null, 0)
+
+        assertTrue(requestEvents.isEmpty())
+    }
+
+    @Test
+    fun onRequestCompleted_whenListenerThrows_shouldLogAndNotifyOtherListeners() {
+        val exception = IllegalStateException("listener failed")
+        networkEventDispatcher.addListener(object : NetworkEventListener() {
+            override fun onRequestCompleted(event: NetworkEvent) {
+                throw exception
+            }
+        })
+        networkEventDispatcher.addListener(listener)
+
+        networkEventDispatcher.onRequestCompleted(PAYMENT_INTENT_REQUEST, RequestMetrics(), 200,
+            "req_123", 0)
+
+        assertEquals("req_123", requestEvents.single().requestId)
+        assertEquals(listOf<Throwable?>(exception), loggedErrors)
+    }
+
+    @Test
+    fun createEndpoint_shouldReplaceObjectIds() {
+        assertEquals(
+            "api.stripe.com/v1/payment_intents/{id}/confirm",
+            NetworkEvent.createEndpoint(
+                "https://api.stripe.com/v1/payment_intents/pi_1FzQ4xCRMbs6FrXf/confirm")
+        )
+        assertEquals(
+            "api.stripe.com/v1/customers/{id}/sources/{id}",
+            NetworkEvent.createEndpoint(
+                "https://api.stripe.com/v1/customers/cus_AQsHpvKfKwJDrF/sources/src_1a2b3c")
+        )
+        assertEquals(
+            "api.stripe.com/v1/payment_methods",
+            NetworkEvent.createEndpoint("https://api.stripe.com/v1/payment_methods")
+        )
+        assertEquals("m.stripe.com/4", NetworkEvent.createEndpoint("https://m.stripe.com/4"))
+    }
+
+    @Test
+    fun getRequestType_shouldDistinguishRequests() {
+        assertEquals(
+            NetworkEvent.RequestType.Api,
+            NetworkEvent.getRequestType(PAYMENT_INTENT_REQUEST)
+        )
+        assertEquals(
+            NetworkEvent.RequestType.Fingerprint,
+            NetworkEvent.getRequestType(FingerprintRequest(emptyMap<String, Any>(), "guid"))
+        )
+        assertEquals(
+            NetworkEvent.RequestType.Analytics,
+            NetworkEvent.getRequestType(AnalyticsRequest.create(emptyMap<String, Any>(),
+                ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY)))
+        )
+    }
+
+    @Test
+    fun statusCode_whenRequestFailed_shouldBeNull() {
+        networkEventDispatcher.addListener(listener)
+
+        networkEventDispatcher.onRequestCompleted(PAYMENT_INTENT_REQUEST, RequestMetrics(), null,
+            null, 0)
+
+        assertNull(requestEvents.single().statusCode)
+    }
+
+    companion object {
+        private val PAYMENT_INTENT_REQUEST = ApiRequest.createGet(
+            "https://api.stripe.com/v1/payment_intents/pi_1FzQ4xCRMbs6FrXf",
+            ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY),
+            null
+        )
+    }
+}
@@ -0,0 +1,100 @@
+package com.stripe.android
+
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+import org.junit.Test
+
+class NetworkStatsAggregatorTest {
+
+    private val aggregator = NetworkStatsAggregator()
+
+    @Test
+    fun getStats_shouldReturnNearestRankPercentiles() {
+        (1L..100L).forEach {
+            aggregator.onRequestCompleted(createEvent(totalMillis = it * 10, ttfbMillis = it))
+        }
+
+        val stats = aggregator.getStats().single()
+        assertEquals(ENDPOINT, stats.endpoint)
+        assertEquals(100, stats.requestCount)
+        assertEquals(0, stats.failureCount)
+        assertEquals(NetworkStatsAggregator.Percentiles(500, 950, 990), stats.total)
+        assertEquals(NetworkStatsAggregator.Percentiles(50, 95, 99), stats.timeToFirstByte)
+        assertEquals(NetworkStatsAggregator.Percentiles(450, 855, 891), stats.onDevice)
+        assertNull(stats.parse)
+    }
+
+    @Test
+    fun getStats_shouldCountFailuresAndParses() {
+        aggregator.onRequestCompleted(createEvent(totalMillis = 100, ttfbMillis = 80))
+        aggregator.onRequestCompleted(
+            createEvent(totalMillis = 30_000, ttfbMillis = 0, statusCode = null))
+        aggregator.onResponseParsed(ParseEvent(ENDPOINT, "req_123", 4))
+
+        val stats = aggregator.getStats().single()
+        assertEquals(2, stats.requestCount)
+        assertEquals(1, stats.failureCount)
+        assertEquals(NetworkStatsAggregator.Percentiles(4, 4, 4), stats.parse)
+    }
+
+    @Test
+    fun getStats_shouldOnlyKeepMostRecentSamples() {
+        val aggregator = NetworkStatsAggregator(maxSamples = 2)
+        aggregator.onRequestCompleted(createEvent(totalMillis = 1000, ttfbMillis = 0))
+        aggregator.onRequestCompleted(createEvent(totalMillis = 10, ttfbMillis = 0))
+        aggregator.onRequestCompleted(createEvent(totalMillis = 20, ttfbMillis = 0))
+
+        val stats = aggregator.getStats().single()
+        assertEquals(3, stats.requestCount)
+        assertEquals(NetworkStatsAggregator.Percentiles(10, 20, 20), stats.total)
+    }
+
+    @Test
+    fun reset_shouldClearStats() {
+        aggregator.onRequestCompleted(createEvent(totalMillis = 100, ttfbMillis = 80))
+
+        aggregator.reset()
+
+        assertTrue(aggregator.getStats().isEmpty())
+    }
+
+    @Test
+    fun dump_shouldDescribeEachEndpoint() {
+        aggregator.onRequestCompleted(createEvent(totalMillis = 100, ttfbMillis = 80))
+
+        assertEquals(
+            "$ENDPOINT: 1 requests, 0 failed; total p50=100ms p95=100ms p99=100ms; " +
+                "ttfb p50=80ms p95=80ms p99=80ms; on-device p50=20ms p95=20ms p99=20ms; " +
+                "parse n/a",
+            aggregator.dump()
+        )
+    }
+
+    private fun createEvent(
+        totalMillis: Long,
+        ttfbMillis: Long,
+        statusCode: Int? = 200
+    ): NetworkEvent {
+        return NetworkEvent(
+            requestType = NetworkEvent.RequestType.Api,
+            method = "POST",
+            endpoint = ENDPOINT,
+            statusCode = statusCode,
+            requestId = "req_123",
+            connectMillis = 0,
+            tlsMillis = 0,
+            requestWriteMillis = 0,
+            timeToFirstByteMillis = ttfbMillis,
+            bodyReadMillis = 0,
+            totalMillis = totalMillis,
+            bytesOut = 0,
+            bytesIn = 0,
+            retryCount = 0
+        )
+    }
+
+    companion object {
+        private const val ENDPOINT = "api.stripe.com/v1/payment_intents/{id}/confirm"
+    }
+}
@@ -0,0 +1,220 @@
+package com.stripe.android
+
+import com.stripe.android.exception.APIConnectionException
+import java.io.IOException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertThrows
+import org.junit.Test
+
+class RequestCoalescerTest {
+
+    private val requestCoalescer = RequestCoalescer()
+    private val executor = Executors.newFixedThreadPool(3)
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+    }
+
+    @Test
+    fun execute_withConcurrentIdenticalRequests_shouldMakeOneCall() {
+        val callCount = AtomicInteger()
+        val callStarted = CountDownLatch(1)
+        val releaseCall = CountDownLatch(1)
+        val block = {
+            callCount.incrementAndGet()
+            callStarted.countDown()
+            releaseCall.await()
+            RESPONSE
+        }
+
+        val first = executor.submit<StripeResponse> {
+            requestCoalescer.execute(createRequest(), block)
+        }
+        assertTrue(callStarted.await(5, TimeUnit.SECONDS))
+        val others = (1..2).map {
+            executor.submit<StripeResponse> {
+                requestCoalescer.execute(createRequest(), block)
+            }
+        }
+        awaitCoalesced(2)
+        releaseCall.countDown()
+
+        (listOf(first) + others).forEach {
+            assertSame(RESPONSE, it.get(5, TimeUnit.SECONDS))
+        }
+        assertEquals(1, callCount.get())
+        assertEquals(RequestCoalescer.Stats(issued = 1, coalesced = 2),
+            requestCoalescer.getStats())
+    }
+
+    @Test
+    fun execute_whenCallFails_shouldThrowToAllWaiters() {
+        val callStarted = CountDownLatch(1)
+        val releaseCall = CountDownLatch(1)
+        val exception = APIConnectionException.create(ApiRequest.API_HOST, IOException())
+        val block = {
+            callStarted.countDown()
+            releaseCall.await()
+            throw exception
+        }
+
+        val first = executor.submit<StripeResponse> {
+            requestCoalescer.execute(createRequest(), block)
+        }
+        assertTrue(callStarted.await(5, TimeUnit.SECONDS))
+        val second = executor.submit<StripeResponse> {
+            requestCoalescer.execute(createRequest(), block)
+        }
+        awaitCoalesced(1)
+        releaseCall.countDown()
+
+        listOf(first, second).forEach { future: Future<StripeResponse> ->
+            val thrown = assertThrows(Exception::class.java) {
+                future.get(5, TimeUnit.SECONDS)
+            }
+            assertSame(exception, thrown.cause)
+        }
+    }
+
+    @Test
+    fun execute_whenCallThrowsError_shouldThrowToAllWaiters() {
+        val callStarted = CountDownLatch(1)
+        val releaseCall = CountDownLatch(1)
+        val error = StackOverflowError()
+        val block = {
+            callStarted.countDown()
+            releaseCall.await()
+            throw error
+        }
+
+        val first = executor.submit<StripeResponse> {
+            requestCoalescer.execute(createRequest(), block)
+        }
+        assertTrue(callStarted.await(5, TimeUnit.SECONDS))
+        val second = executor.submit<StripeResponse> {
+            requestCoalescer.execute(createRequest(), block)
+        }
+        awaitCoalesced(1)
+        releaseCall.countDown()
+
+        listOf(first, second).forEach { future: Future<StripeResponse> ->
+            val thrown = assertThrows(Exception::class.java) {
+                future.get(5, TimeUnit.SECONDS)
+            }
+            assertSame(error, thrown.cause)
+        }
+    }
+
+    @Test
+    fun execute_whenWaiterIsCancelled_shouldStopWaiting() {
+        val callStarted = CountDownLatch(1)
+        val releaseCall = CountDownLatch(1)
+        val waiterReturned = CountDownLatch(1)
+        val first = executor.submit<StripeResponse> {
+            requestCoalescer.execute(createRequest()) {
+                callStarted.countDown()
+                releaseCall.await()
+                RESPONSE
+            }
+        }
+        assertTrue(callStarted.await(5, TimeUnit.SECONDS))
+
+        runBlocking {
+            val waiter = launch(start = CoroutineStart.UNDISPATCHED) {
+                InFlightRequest.execute(Dispatchers.IO) {
+                    try {
+                        requestCoalescer.execute(createRequest()) { RESPONSE }
+                    } finally {
+                        waiterReturned.countDown()
+                    }
+                }
+            }
+            awaitCoalesced(1)
+            waiter.cancelAndJoin()
+        }
+
+        // the waiter's thread is released while the call is still in flight
+        assertTrue(waiterReturned.await(5, TimeUnit.SECONDS))
+        releaseCall.countDown()
+        assertSame(RESPONSE, first.get(5, TimeUnit.SECONDS))
+    }
+
+    @Test
+    fun execute_withSequentialRequests_shouldMakeEachCall() {
+        var callCount = 0
+        repeat(2) {
+            requestCoalescer.execute(createRequest()) {
+                callCount++
+                RESPONSE
+            }
+        }
+
+        assertEquals(2, callCount)
+        assertEquals(RequestCoalescer.Stats(issued = 2, coalesced = 0),
+            requestCoalescer.getStats())
+    }
+
+    @Test
+    fun execute_withDifferentOptions_shouldNotCoalesce() {
+        val callStarted = CountDownLatch(1)
+        val releaseCall = CountDownLatch(1)
+        val callCount = AtomicInteger()
+
+        val first = executor.submit<StripeResponse> {
+            requestCoalescer.execute(createRequest()) {
+                callCount.incrementAndGet()
+                callStarted.countDown()
+                releaseCall.await()
+                RESPONSE
+            }
+        }
+        assertTrue(callStarted.await(5, TimeUnit.SECONDS))
+        requestCoalescer.execute(createRequest(ApiKeyFixtures.DEFAULT_PUBLISHABLE_KEY)) {
+            callCount.incrementAndGet()
+            RESPONSE
+        }
+        releaseCall.countDown()
+        first.get(5, TimeUnit.SECONDS)
+
+        assertEquals(2, callCount.get())
+        assertEquals(RequestCoalescer.Stats(issued = 2, coalesced = 0),
+            requestCoalescer.getStats())
+    }
+
+    private fun awaitCoalesced(count: Int) {
+        val deadline = System.currentTimeMillis() + 5000
+        while (requestCoalescer.getStats().coalesced < count) {
+            assertTrue(System.currentTimeMillis() < deadline)
+            Thread.sleep(5)
+        }
+    }
+
+    private fun createRequest(
+        apiKey: String = ApiKeyFixtures.FAKE_PUBLISHABLE_KEY
+    ): ApiRequest {
+        return ApiRequest.createGet(
+            StripeApiRepository.getRetrievePaymentIntentUrl("pi_12345"),
+            mapOf("client_secret" to "pi_12345_secret_67890"),
+            ApiRequest.Options.create(apiKey),
+            null
+        )
+    }
+
+    companion object {
+        private val RESPONSE = StripeResponse(200, "{}", null)
+    }
+}
@@ -0,0 +1,175 @@
+package com.stripe.android
+
+import com.stripe.android.exception.APIConnectionException
+import java.io.IOException
+import kotlin.random.Random
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertThrows
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class RetryPolicyTest {
+
+    private var currentTimeMillis = 0L
+    private val sleeps = mutableListOf<Long>()
+
+    @Test
+    fun execute_whenConnectionFailsOnce_shouldRetryAndReturnResponse() {
+        val retryPolicy = createRetryPolicy()
+        var attempts = 0
+
+        val response = retryPolicy.execute {
+            attempts++
+            if (attempts == 1) {
+                throw APIConnectionException.create(ApiRequest.API_HOST, IOException())
+            }
+            createResponse(200)
+        }
+
+        assertEquals(200, response.responseCode)
+        assertEquals(2, attempts)
+        assertEquals(1, sleeps.size)
+        assertEquals(RetryPolicy.Stats(retries = 1, exhaustedRetries = 0), retryPolicy.getStats())
+    }
+
+    @Test
+    fun execute_whenConnectionKeepsFailing_shouldThrowAfterMaxRetries() {
+        val retryPolicy = createRetryPolicy(maxRetries = 2)
+        var attempts = 0
+
+        assertThrows(APIConnectionException::class.java) {
+            retryPolicy.execute {
+                attempts++
+                throw APIConnectionException.create(ApiRequest.API_HOST, IOException())
+            }
+        }
+
+        assertEquals(3, attempts)
+        assertEquals(RetryPolicy.Stats(retries = 2, exhaustedRetries = 1), retryPolicy.getStats())
+    }
+
+    @Test
+    fun execute_whenRateLimited_shouldHonorRetryAfter() {
+        val retryPolicy = createRetryPolicy()
+        val responses = mutableListOf(
+            createResponse(429, mapOf("Retry-After" to listOf("2"))),
+            createResponse(200)
+        )
+
+        val response = retryPolicy.execute { responses.removeAt(0) }
+
+        assertEquals(200, response.responseCode)
+        assertEquals(listOf(2000L), sleeps)
+    }
+
+    @Test
+    fun execute_whenRetryAfterExceedsMaxDelay_shouldReturnResponseWithoutRetrying() {
+        val retryPolicy = createRetryPolicy()
+        var attempts = 0
+
+        val response = retryPolicy.execute {
+            attempts++
+            createResponse(429, mapOf("Retry-After" to listOf("6")))
+        }
+
+        assertEquals(429, response.responseCode)
+        assertEquals(1, attempts)
+        assertTrue(sleeps.isEmpty())
+        assertEquals(RetryPolicy.Stats(retries = 0, exhaustedRetries = 1), retryPolicy.getStats())
+    }
+
+    @Test
+    fun getDelayMillis_withRetryAfter_shouldNotShortenDelay() {
+        val retryPolicy = createRetryPolicy()
+        assertEquals(60000L, retryPolicy.getDelayMillis(0,
+            createResponse(429, mapOf("Retry-After" to listOf("60")))))
+    }
+
+    @Test
+    fun execute_whenRetryWouldExceedMaxElapsedTime_shouldReturnLastResponse() {
+        val retryPolicy = createRetryPolicy(maxElapsedMillis = 1000L)
+
+        val response = retryPolicy.execute {
+            currentTimeMillis += 900L
+            createResponse(429)
+        }
+
+        assertEquals(429, response.responseCode)
+        assertTrue(sleeps.isEmpty())
+    }
+
+    @Test
+    fun execute_whenRetryWouldExceedDeadline_shouldReturnLastResponse() {
+        val retryPolicy = createRetryPolicy()
+        val deadline = Deadline(expiresAtMillis = 1000L, clock = { currentTimeMillis })
+
+        val response = retryPolicy.execute(deadline) {
+            currentTimeMillis += 900L
+            createResponse(429, mapOf("Retry-After" to listOf("1")))
+        }
+
+        assertEquals(429, response.responseCode)
+        assertTrue(sleeps.isEmpty())
+        assertEquals(RetryPolicy.Stats(retries = 0, exhaustedRetries = 1), retryPolicy.getStats())
+    }
+
+    @Test
+    fun execute_withClientError_shouldNotRetry() {
+        val retryPolicy = createRetryPolicy()
+        var attempts = 0
+
+        val response = retryPolicy.execute {
+            attempts++
+            createResponse(400)
+        }
+
+        assertEquals(400, response.responseCode)
+        assertEquals(1, attempts)
+    }
+
+    @Test
+    fun shouldRetry_shouldHonorStripeShouldRetryHeader() {
+        val retryPolicy = createRetryPolicy()
+        assertTrue(retryPolicy.shouldRetry(
+            createResponse(409, mapOf("Stripe-Should-Retry" to listOf("true")))
+        ))
+        assertFalse(retryPolicy.shouldRetry(
+            createResponse(429, mapOf("stripe-should-retry" to listOf("false")))
+        ))
+    }
+
+    @Test
+    fun getDelayMillis_shouldBackOffExponentiallyWithJitter() {
+        val retryPolicy = createRetryPolicy()
+        listOf(0 to 300L, 1 to 600L, 2 to 1200L, 10 to 5000L).forEach { (attempt, backoff) ->
+            val delayMillis = retryPolicy.getDelayMillis(attempt, null)
+            assertTrue(delayMillis in backoff / 2..backoff)
+        }
+    }
+
+    private fun createRetryPolicy(
+        maxRetries: Int = 2,
+        maxElapsedMillis: Long = 20000L
+    ): RetryPolicy {
+        return RetryPolicy(
+            maxRetries = maxRetries,
+            initialDelayMillis = 300L,
+            maxDelayMillis = 5000L,
+            maxElapsedMillis = maxElapsedMillis,
+            random = Random(0),
+            clock = { currentTimeMillis },
+            sleeper = {
+                sleeps.add(it)
+                currentTimeMillis += it
+            }
+        )
+    }
+
+    private fun createResponse(
+        responseCode: Int,
+        headers: Map<String, List<String>> = emptyMap()
+    ): StripeResponse {
+        return StripeResponse(responseCode, "{}", headers)
+    }
+}
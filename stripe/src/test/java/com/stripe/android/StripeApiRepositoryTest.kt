@@ -307,6 +307,35 @@ class StripeApiRepositoryTest {
         assertEquals(PaymentMethod.Type.Card.code, analyticsRequest.params?.get("source_type"))
     }
 
+    @Test
+    @Throws(APIException::class, AuthenticationException::class, InvalidRequestException::class, APIConnectionException::class)
+    fun confirmPaymentIntent_calledTwice_shouldSendOneFingerprintRequest() {
+        `when`(stripeApiRequestExecutor.execute(any()))
+            .thenReturn(
+                StripeResponse(200,
+                    PaymentIntentFixtures.PI_REQUIRES_MASTERCARD_3DS2_JSON.toString(),
+                    emptyMap()
+                )
+            )
+
+        val stripeApiRepository = create()
+        repeat(2) {
+            stripeApiRepository.confirmPaymentIntent(
+                ConfirmPaymentIntentParams.createWithPaymentMethodCreateParams(
+                    PaymentMethodCreateParamsFixtures.DEFAULT_CARD,
+                    "client_secret",
+                    "yourapp://post-authentication-return-url"
+                ),
+                ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY)
+            )
+        }
+
+        verify<FireAndForgetRequestExecutor>(fireAndForgetRequestExecutor, times(3))
+            .executeAsync(stripeRequestArgumentCaptor.capture())
+        assertEquals(1,
+            stripeRequestArgumentCaptor.allValues.filterIsInstance<FingerprintRequest>().size)
+    }
+
     @Ignore("requires a secret key")
     @Throws(APIException::class, AuthenticationException::class, InvalidRequestException::class, APIConnectionException::class)
     fun disabled_confirmPaymentIntent_withSourceId_canSuccessfulConfirm() {
@@ -500,7 +529,8 @@ class StripeApiRepositoryTest {
         val stripeResponse = StripeResponse(200, responseBody, null)
         val queryParams = mapOf(
             "customer" to "cus_123",
-            "type" to PaymentMethod.Type.Card.code
+            "type" to PaymentMethod.Type.Card.code,
+            "limit" to 100
         )
 
         val options = ApiRequest.Options
@@ -541,7 +571,8 @@ class StripeApiRepositoryTest {
         val stripeResponse = StripeResponse(200, responseBody, null)
         val queryParams = mapOf(
             "customer" to "cus_123",
-            "type" to PaymentMethod.Type.Card.code
+            "type" to PaymentMethod.Type.Card.code,
+            "limit" to 100
         )
 
         val options = ApiRequest.Options.create(ApiKeyFixtures.FAKE_EPHEMERAL_KEY)
@@ -565,6 +596,80 @@ class StripeApiRepositoryTest {
         assertTrue(paymentMethods.isEmpty())
     }
 
+    @Test
+    @Throws(StripeException::class, UnsupportedEncodingException::class)
+    fun getPaymentMethods_whenHasMore_returnsAllPages() {
+        val options = ApiRequest.Options.create(ApiKeyFixtures.FAKE_EPHEMERAL_KEY)
+        val firstPageParams = mapOf(
+            "customer" to "cus_123",
+            "type" to PaymentMethod.Type.Card.code,
+            "limit" to 100
+        )
+        val secondPageParams = firstPageParams.plus("starting_after" to "pm_1")
+
+        `when`(
+            stripeApiRequestExecutor.execute(argThat {
+                ApiRequestMatcher(StripeRequest.Method.GET,
+                    ApiRequest.createGet(StripeApiRepository.paymentMethodsUrl,
+                        firstPageParams, options, null).url,
+                    options, firstPageParams)
+                    .matches(this)
+            })
+        ).thenReturn(StripeResponse(200, createPaymentMethodsPageJson("pm_1", true), null))
+        `when`(
+            stripeApiRequestExecutor.execute(argThat {
+                ApiRequestMatcher(StripeRequest.Method.GET,
+                    ApiRequest.createGet(StripeApiRepository.paymentMethodsUrl,
+                        secondPageParams, options, null).url,
+                    options, secondPageParams)
+                    .matches(this)
+            })
+        ).thenReturn(StripeResponse(200, createPaymentMethodsPageJson("pm_2", false), null))
+
+        val paymentMethods = create()
+            .getPaymentMethods("cus_123", PaymentMethod.Type.Card.code,
+                ApiKeyFixtures.DEFAULT_PUBLISHABLE_KEY, emptySet(), options)
+        assertEquals(listOf("pm_1", "pm_2"), paymentMethods.map { it.id })
+    }
+
+    @Test
+    @Throws(StripeException::class)
+    fun getPaymentMethodsPage_shouldLogListEventOnlyForFirstPage() {
+        `when`(stripeApiRequestExecutor.execute(any()))
+            .thenReturn(StripeResponse(200, createPaymentMethodsPageJson("pm_1", true), null))
+        val stripeApiRepository = create()
+        listOf(null, "pm_1").forEach { startingAfter ->
+            stripeApiRepository.getPaymentMethodsPage("cus_123", PaymentMethod.Type.Card.code,
+                1, startingAfter, ApiKeyFixtures.DEFAULT_PUBLISHABLE_KEY, emptySet(),
+                ApiRequest.Options.create(ApiKeyFixtures.FAKE_EPHEMERAL_KEY))
+        }
+
+        verify(fireAndForgetRequestExecutor, times(1))
+            .executeAsync(stripeRequestArgumentCaptor.capture())
+        assertEquals(
+            AnalyticsDataFactory.getEventParamName(
+                AnalyticsDataFactory.EventName.LIST_PAYMENT_METHODS),
+            (stripeRequestArgumentCaptor.firstValue as ApiRequest).params?.get("event")
+        )
+    }
+
+    private fun createPaymentMethodsPageJson(paymentMethodId: String, hasMore: Boolean): String {
+        return """
+            {
+                "object": "list",
+                "data": [{
+                    "id": "$paymentMethodId",
+                    "object": "payment_method",
+                    "created": 1556736791,
+                    "livemode": false,
+                    "type": "card"
+                }],
+                "has_more": $hasMore,
+                "url": "/v1/payment_methods"
+            }
+            """.trimIndent()
+    }
+
     private fun create(): StripeApiRepository {
         return StripeApiRepository(
             ApplicationProvider.getApplicationContext<Context>(),
@@ -572,7 +677,8 @@ class StripeApiRepositoryTest {
             fireAndForgetRequestExecutor = fireAndForgetRequestExecutor,
             networkUtils = StripeNetworkUtils(
                 UidParamsFactory("foo", FakeUidSupplier())
-            )
+            ),
+            fingerprintRequestScheduler = FingerprintRequestScheduler()
         )
     }
 
@@ -9,10 +9,19 @@ import org.junit.function.ThrowingRunnable;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThrows;
 
 @RunWith(RobolectricTestRunner.class)
@@ -51,4 +60,124 @@ public class StripeApiRequestExecutorTest {
                     }
                 });
     }
+
+    @Test
+    public void readResponseBody_withContentLength_shouldAllocateOnceAcrossRequests()
+            throws IOException {
+        final BufferPool bufferPool = new BufferPool();
+        final ResponseBodyReader responseBodyReader = new ResponseBodyReader(bufferPool);
+        final String responseBody = "{\"id\": \"pm_123456789\", \"object\": \"payment_method\"}";
+        final byte[] bytes = responseBody.getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(responseBody,
+                responseBodyReader.read(new ByteArrayInputStream(bytes), bytes.length));
+        assertEquals(1, bufferPool.getStats().getAllocations());
+
+        // the second request reads into the pooled buffer
+        assertEquals(responseBody,
+                responseBodyReader.read(new ByteArrayInputStream(bytes), bytes.length));
+        assertEquals(1, bufferPool.getStats().getAllocations());
+        assertEquals(1, bufferPool.getStats().getReuses());
+    }
+
+    @Test
+    public void readResponseBody_withLargeBodyAndUnknownContentLength_shouldGrowBuffer()
+            throws IOException {
+        final BufferPool bufferPool = new BufferPool();
+        final ResponseBodyReader responseBodyReader = new ResponseBodyReader(bufferPool);
+        final char[] chars = new char[20000];
+        Arrays.fill(chars, 'a');
+        final String responseBody = new String(chars);
+        final byte[] bytes = responseBody.getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(responseBody,
+                responseBodyReader.read(new ByteArrayInputStream(bytes), -1));
+        // 8 KiB, grown to 16 KiB and then 32 KiB
+        assertEquals(3, bufferPool.getStats().getAllocations());
+
+        assertEquals(responseBody,
+                responseBodyReader.read(new ByteArrayInputStream(bytes), bytes.length));
+        assertEquals(3, bufferPool.getStats().getAllocations());
+    }
+
+    @Test
+    public void readResponseBody_withLargeContentLength_shouldAllocateDefaultSizedBuffer()
+            throws IOException {
+        final BufferPool bufferPool = new BufferPool();
+        final ResponseBodyReader responseBodyReader = new ResponseBodyReader(bufferPool);
+        final String responseBody = "{\"id\": \"pm_123456789\", \"object\": \"payment_method\"}";
+        final byte[] bytes = responseBody.getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(responseBody,
+                responseBodyReader.read(new ByteArrayInputStream(bytes), Integer.MAX_VALUE));
+        assertEquals(1, bufferPool.getStats().getAllocations());
+
+        // the default-sized buffer is pooled and reused for a body of known length
+        assertEquals(responseBody,
+                responseBodyReader.read(new ByteArrayInputStream(bytes), bytes.length));
+        assertEquals(1, bufferPool.getStats().getAllocations());
+        assertEquals(1, bufferPool.getStats().getReuses());
+    }
+
+    @Test
+    public void readResponseBody_withEmptyBody_shouldReturnNull() throws IOException {
+        final ResponseBodyReader responseBodyReader = new ResponseBodyReader(new BufferPool());
+        assertNull(responseBodyReader.read(new ByteArrayInputStream(new byte[0]), 0));
+        assertNull(responseBodyReader.read(null, -1));
+    }
+
+    @Test
+    public void readResponseBody_withGzipEncoding_shouldDecompressAndRecordSizes()
+            throws IOException {
+        final ResponseBodyReader responseBodyReader = new ResponseBodyReader(new BufferPool());
+        final String responseBody = createLargeResponseBody();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(responseBody.getBytes(StandardCharsets.UTF_8));
+        }
+        final byte[] bytes = outputStream.toByteArray();
+
+        final ResponseBodyReader.Body body = responseBodyReader.readBody(
+                new ByteArrayInputStream(bytes), bytes.length, "gzip");
+        assertEquals(responseBody, body.getText());
+        assertEquals(bytes.length, body.getEncodedBytes());
+        assertEquals(responseBody.length(), body.getDecodedBytes());
+
+        final ResponseBodyReader.Stats stats = responseBodyReader.getStats();
+        assertEquals(1, stats.getCompressedResponses());
+        assertEquals(bytes.length, stats.getEncodedBytes());
+        assertEquals(responseBody.length(), stats.getDecodedBytes());
+    }
+
+    @Test
+    public void readResponseBody_withDeflateEncoding_shouldDecompress() throws IOException {
+        final ResponseBodyReader responseBodyReader = new ResponseBodyReader(new BufferPool());
+        final String responseBody = createLargeResponseBody();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(outputStream)) {
+            deflaterOutputStream.write(responseBody.getBytes(StandardCharsets.UTF_8));
+        }
+        final byte[] bytes = outputStream.toByteArray();
+
+        assertEquals(responseBody,
+                responseBodyReader.readBody(
+                        new ByteArrayInputStream(bytes), bytes.length, "deflate").getText());
+    }
+
+    @Test
+    public void readResponseBody_withGzipEncodingAndEmptyBody_shouldReturnNull()
+            throws IOException {
+        final ResponseBodyReader responseBodyReader = new ResponseBodyReader(new BufferPool());
+        assertNull(responseBodyReader.readBody(
+                new ByteArrayInputStream(new byte[0]), 0, "gzip").getText());
+    }
+
+    @NonNull
+    private static String createLargeResponseBody() {
+        final StringBuilder responseBody = new StringBuilder("{\"data\": [");
+        for (int i = 0; i < 500; i++) {
+            responseBody.append("{\"id\": \"pm_").append(i).append("\"},");
+        }
+        return responseBody.append("{}]}").toString();
+    }
 }
@@ -0,0 +1,232 @@
+package com.stripe.android
+
+import com.stripe.android.exception.APIConnectionException
+import com.stripe.android.model.PaymentIntent
+import com.stripe.android.model.PaymentIntentFixtures
+import com.stripe.android.model.SetupIntent
+import com.stripe.android.model.SetupIntentFixtures
+import com.stripe.android.model.StripeIntent
+import java.io.IOException
+import java.util.LinkedList
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.runBlocking
+import org.json.JSONObject
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class StripeIntentPollerTest {
+
+    private val networkEventDispatcher = NetworkEventDispatcher()
+    private val pollEvents = mutableListOf<IntentPollEvent>()
+    private val paymentIntents = LinkedList<PaymentIntent>()
+
+    private val requestDeadlines = mutableListOf<Deadline?>()
+    private val setupIntentClientSecrets = mutableListOf<String>()
+
+    @Volatile
+    private var now = 0L
+    @Volatile
+    private var connectionFailureCount = 0
+
+    private val stripeRepository = object : AbsFakeStripeRepository() {
+        override fun retrievePaymentIntent(
+            clientSecret: String,
+            options: ApiRequest.Options
+        ): PaymentIntent? {
+            now += RETRIEVE_LATENCY_MILLIS
+            requestDeadlines.add(options.deadline)
+            if (connectionFailureCount > 0) {
+                connectionFailureCount--
+                throw APIConnectionException.create(ApiRequest.API_HOST, IOException())
+            }
+            return paymentIntents.poll()
+        }
+
+        override fun retrieveSetupIntent(
+            clientSecret: String,
+            options: ApiRequest.Options
+        ): SetupIntent? {
+            setupIntentClientSecrets.add(clientSecret)
+            return SetupIntentFixtures.CANCELLED
+        }
+    }
+
+    private val poller = StripeIntentPoller(
+        stripeRepository,
+        networkEventDispatcher,
+        initialDelayMillis = 10,
+        maxDelayMillis = 40,
+        clock = { now }
+    )
+
+    @Before
+    fun setup() {
+        networkEventDispatcher.addListener(object : NetworkEventListener() {
+            override fun onIntentPolled(event: IntentPollEvent) {
+                pollEvents.add(event)
+            }
+        })
+    }
+
+    @Test
+    fun poll_shouldRetrieveUntilStatusIsTerminal() {
+        paymentIntents.addAll(listOf(
+            PaymentIntentFixtures.PI_REQUIRES_MASTERCARD_3DS2,
+            createPaymentIntent(StripeIntent.Status.Processing),
+            createPaymentIntent(StripeIntent.Status.Succeeded)
+        ))
+
+        val stripeIntent = poll(TIMEOUT_MILLIS)
+
+        assertEquals(StripeIntent.Status.Succeeded, stripeIntent?.status)
+        assertEquals(
+            listOf(
+                IntentPollEvent(INTENT_ID, 1, StripeIntent.Status.RequiresAction,
+                    RETRIEVE_LATENCY_MILLIS, 10),
+                // the status changed, so the delay is reset
+                IntentPollEvent(INTENT_ID, 2, StripeIntent.Status.Processing,
+                    RETRIEVE_LATENCY_MILLIS, 10),
+                IntentPollEvent(INTENT_ID, 3, StripeIntent.Status.Succeeded,
+                    RETRIEVE_LATENCY_MILLIS, null)
+            ),
+            pollEvents
+        )
+    }
+
+    @Test
+    fun poll_whenStatusIsUnchanged_shouldBackOffUpToMaxDelay() {
+        repeat(4) {
+            paymentIntents.add(createPaymentIntent(StripeIntent.Status.Processing))
+        }
+        paymentIntents.add(createPaymentIntent(StripeIntent.Status.Succeeded))
+
+        poll(TIMEOUT_MILLIS)
+
+        assertEquals(listOf(10L, 20L, 40L, 40L, null), pollEvents.map { it.nextDelayMillis })
+    }
+
+    @Test
+    fun poll_whenDeadlineHasPassed_shouldReturnLastRetrievedIntent() {
+        paymentIntents.add(createPaymentIntent(StripeIntent.Status.Processing))
+        paymentIntents.add(createPaymentIntent(StripeIntent.Status.Succeeded))
+
+        val stripeIntent = poll(timeoutMillis = 0)
+
+        assertEquals(StripeIntent.Status.Processing, stripeIntent?.status)
+        assertEquals(1, pollEvents.size)
+    }
+
+    @Test
+    fun poll_shouldPassDeadlineToEachAttempt() {
+        paymentIntents.add(createPaymentIntent(StripeIntent.Status.Processing))
+        paymentIntents.add(createPaymentIntent(StripeIntent.Status.Succeeded))
+
+        poll(TIMEOUT_MILLIS)
+
+        assertEquals(2, requestDeadlines.size)
+        requestDeadlines.forEach { deadline ->
+            assertEquals(TIMEOUT_MILLIS - now, deadline?.remainingMillis)
+        }
+    }
+
+    @Test
+    fun poll_whenConnectionFails_shouldRetryWithinDeadline() {
+        connectionFailureCount = 1
+        paymentIntents.add(createPaymentIntent(StripeIntent.Status.Succeeded))
+
+        val stripeIntent = poll(TIMEOUT_MILLIS)
+
+        assertEquals(StripeIntent.Status.Succeeded, stripeIntent?.status)
+        assertEquals(listOf(10L, null), pollEvents.map { it.nextDelayMillis })
+        assertNull(pollEvents.first().intentId)
+    }
+
+    @Test
+    fun poll_whenConnectionFailsAtDeadline_shouldReturnLastRetrievedIntent() {
+        paymentIntents.add(createPaymentIntent(StripeIntent.Status.Processing))
+        val poller = StripeIntentPoller(
+            object : AbsFakeStripeRepository() {
+                override fun retrievePaymentIntent(
+                    clientSecret: String,
+                    options: ApiRequest.Options
+                ): PaymentIntent? {
+                    now += RETRIEVE_LATENCY_MILLIS
+                    return paymentIntents.poll()
+                        ?: throw APIConnectionException.create(ApiRequest.API_HOST, IOException())
+                }
+            },
+            networkEventDispatcher,
+            initialDelayMillis = 10,
+            maxDelayMillis = 40,
+            clock = { now }
+        )
+
+        val stripeIntent = runBlocking {
+            poller.pollPaymentIntent(CLIENT_SECRET, REQUEST_OPTIONS, 12L, Dispatchers.IO)
+        }
+
+        assertEquals(StripeIntent.Status.Processing, stripeIntent?.status)
+        assertEquals(listOf(7L, 2L, null), pollEvents.map { it.nextDelayMillis })
+    }
+
+    @Test
+    fun poll_whenConnectionKeepsFailing_shouldThrowAtDeadline() {
+        connectionFailureCount = Int.MAX_VALUE
+
+        assertFailsWith<APIConnectionException> {
+            poll(timeoutMillis = 12L)
+        }
+    }
+
+    @Test
+    fun poll_withInitialTerminalStatus_shouldRetrieveOnce() {
+        paymentIntents.add(PaymentIntentFixtures.CANCELLED)
+
+        val stripeIntent = poll(TIMEOUT_MILLIS)
+
+        assertEquals(StripeIntent.Status.Canceled, stripeIntent?.status)
+        assertEquals(listOf<Long?>(null), pollEvents.map { it.nextDelayMillis })
+    }
+
+    @Test
+    fun pollSetupIntent_shouldRetrieveSetupIntent() {
+        val setupIntent = runBlocking {
+            poller.pollSetupIntent(SETUP_INTENT_CLIENT_SECRET, REQUEST_OPTIONS, TIMEOUT_MILLIS,
+                Dispatchers.IO)
+        }
+
+        assertEquals(SetupIntentFixtures.CANCELLED, setupIntent)
+        assertEquals(listOf(SETUP_INTENT_CLIENT_SECRET), setupIntentClientSecrets)
+    }
+
+    private fun poll(timeoutMillis: Long): StripeIntent? {
+        return runBlocking {
+            poller.pollPaymentIntent(CLIENT_SECRET, REQUEST_OPTIONS, timeoutMillis, Dispatchers.IO)
+        }
+    }
+
+    private fun createPaymentIntent(status: StripeIntent.Status): PaymentIntent {
+        val json = JSONObject(PaymentIntentFixtures.PI_REQUIRES_MASTERCARD_3DS2_JSON.toString())
+            .put("status", status.code)
+        return requireNotNull(PaymentIntent.fromJson(json))
+    }
+
+    companion object {
+        private const val TIMEOUT_MILLIS = 10_000L
+        private const val RETRIEVE_LATENCY_MILLIS = 5L
+
+        private val INTENT_ID = PaymentIntentFixtures.PI_REQUIRES_MASTERCARD_3DS2.id
+        private val CLIENT_SECRET =
+            requireNotNull(PaymentIntentFixtures.PI_REQUIRES_MASTERCARD_3DS2.clientSecret)
+        private val SETUP_INTENT_CLIENT_SECRET =
+            requireNotNull(SetupIntentFixtures.CANCELLED.clientSecret)
+        private val REQUEST_OPTIONS =
+            ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY)
+    }
+}
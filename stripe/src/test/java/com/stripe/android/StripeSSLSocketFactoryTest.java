@@ -3,6 +3,7 @@ package com.stripe.android;
 import org.junit.Test;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 
 public class StripeSSLSocketFactoryTest {
 
@@ -20,4 +21,16 @@ public class StripeSSLSocketFactoryTest {
                 new StripeSSLSocketFactory(true, true)
                         .getEnabledProtocols(defaultProtocols));
     }
+
+    @Test
+    public void onHandshakeCompleted_shouldRecordResumedSessions() {
+        final StripeSSLSocketFactory sslSocketFactory = new StripeSSLSocketFactory(false, true);
+        sslSocketFactory.onHandshakeCompleted(1000L, 1000L);
+        sslSocketFactory.onHandshakeCompleted(500L, 2000L);
+
+        final StripeSSLSocketFactory.Stats stats = sslSocketFactory.getStats();
+        assertEquals(2, stats.getHandshakes());
+        assertEquals(1, stats.getResumedHandshakes());
+        assertEquals(0.5f, stats.getResumptionRate(), 0f);
+    }
 }
@@ -0,0 +1,216 @@
+package com.stripe.android
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import com.stripe.android.exception.APIConnectionException
+import com.stripe.android.model.CardFixtures
+import com.stripe.android.model.ConfirmPaymentIntentParams
+import com.stripe.android.model.ConfirmSetupIntentParams
+import com.stripe.android.model.PaymentIntent
+import com.stripe.android.model.PaymentIntentFixtures
+import com.stripe.android.model.PaymentMethod
+import com.stripe.android.model.PaymentMethodCreateParams
+import com.stripe.android.model.PaymentMethodCreateParamsFixtures
+import com.stripe.android.model.PaymentMethodFixtures
+import com.stripe.android.model.SetupIntent
+import com.stripe.android.model.SetupIntentFixtures
+import com.stripe.android.model.Source
+import com.stripe.android.model.SourceFixtures
+import com.stripe.android.model.SourceParams
+import com.stripe.android.model.Token
+import com.stripe.android.model.TokenFixtures
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mockito.mock
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class StripeSuspendingTest {
+
+    private val context: Context = ApplicationProvider.getApplicationContext()
+    private val stripeRepository = FakeStripeRepository()
+    private val stripe = Stripe(
+        stripeRepository,
+        StripeNetworkUtils(context),
+        mock(PaymentController::class.java),
+        ApiKeyFixtures.FAKE_PUBLISHABLE_KEY,
+        null
+    )
+
+    @Test
+    fun confirmPaymentIntent_shouldReturnPaymentIntent() {
+        val params = ConfirmPaymentIntentParams.createWithPaymentMethodId(
+            "pm_card_threeDSecure2Required", "client_secret", "yourapp://post-authentication"
+        )
+        val paymentIntent = runBlocking {
+            stripe.confirmPaymentIntent(params, Dispatchers.IO)
+        }
+
+        assertEquals(PaymentIntentFixtures.PI_REQUIRES_MASTERCARD_3DS2, paymentIntent)
+        assertEquals(listOf<Any>(params), stripeRepository.requests)
+        assertEquals(REQUEST_OPTIONS, stripeRepository.options)
+    }
+
+    @Test
+    fun confirmSetupIntent_shouldReturnSetupIntent() {
+        val params = ConfirmSetupIntentParams.create("pm_123", "client_secret")
+        val setupIntent = runBlocking {
+            stripe.confirmSetupIntent(params, Dispatchers.IO)
+        }
+
+        assertEquals(SetupIntentFixtures.SI_NEXT_ACTION_REDIRECT, setupIntent)
+        assertEquals(listOf<Any>(params), stripeRepository.requests)
+        assertEquals(REQUEST_OPTIONS, stripeRepository.options)
+    }
+
+    @Test
+    fun retrievePaymentIntentAndSetupIntent_shouldReturnIntents() {
+        runBlocking {
+            assertEquals(
+                PaymentIntentFixtures.PI_REQUIRES_MASTERCARD_3DS2,
+                stripe.retrievePaymentIntent("pi_client_secret")
+            )
+            assertEquals(
+                SetupIntentFixtures.SI_NEXT_ACTION_REDIRECT,
+                stripe.retrieveSetupIntent("seti_client_secret")
+            )
+        }
+
+        assertEquals(listOf<Any>("pi_client_secret", "seti_client_secret"),
+            stripeRepository.requests)
+    }
+
+    @Test
+    fun createPaymentMethod_shouldReturnPaymentMethod() {
+        val paymentMethod = runBlocking {
+            stripe.createPaymentMethod(PaymentMethodCreateParamsFixtures.DEFAULT_CARD)
+        }
+
+        assertEquals(PaymentMethodFixtures.CARD_PAYMENT_METHOD, paymentMethod)
+        assertEquals(listOf<Any>(PaymentMethodCreateParamsFixtures.DEFAULT_CARD),
+            stripeRepository.requests)
+    }
+
+    @Test
+    fun createAndRetrieveSource_shouldReturnSource() {
+        val sourceParams = SourceParams.createCardParams(CardFixtures.MINIMUM_CARD)
+        runBlocking {
+            assertEquals(SourceFixtures.CARD, stripe.createSource(sourceParams))
+            assertEquals(SourceFixtures.CARD, stripe.retrieveSource("src_123", "src_secret"))
+        }
+
+        assertEquals(listOf<Any>(sourceParams, "src_123"), stripeRepository.requests)
+    }
+
+    @Test
+    fun createTokens_shouldCreateTokensOfEachType() {
+        runBlocking {
+            assertEquals(TokenFixtures.CARD_TOKEN, stripe.createToken(CardFixtures.MINIMUM_CARD))
+            stripe.createCvcUpdateToken("123")
+            stripe.createPiiToken("123-45-6789")
+        }
+
+        assertEquals(
+            listOf<Any>(Token.TokenType.CARD, Token.TokenType.CVC_UPDATE, Token.TokenType.PII),
+            stripeRepository.requests
+        )
+    }
+
+    @Test
+    fun retrievePaymentIntent_whenRequestFails_shouldThrow() {
+        stripeRepository.exception = APIConnectionException("Network unavailable", null)
+
+        assertFailsWith<APIConnectionException> {
+            runBlocking {
+                stripe.retrievePaymentIntent("pi_client_secret")
+            }
+        }
+    }
+
+    private class FakeStripeRepository : AbsFakeStripeRepository() {
+        val requests = mutableListOf<Any>()
+        var options: ApiRequest.Options? = null
+        var exception: APIConnectionException? = null
+
+        override fun confirmPaymentIntent(
+            confirmPaymentIntentParams: ConfirmPaymentIntentParams,
+            options: ApiRequest.Options
+        ): PaymentIntent? {
+            onRequest(confirmPaymentIntentParams, options)
+            return PaymentIntentFixtures.PI_REQUIRES_MASTERCARD_3DS2
+        }
+
+        override fun retrievePaymentIntent(
+            clientSecret: String,
+            options: ApiRequest.Options
+        ): PaymentIntent? {
+            onRequest(clientSecret, options)
+            return PaymentIntentFixtures.PI_REQUIRES_MASTERCARD_3DS2
+        }
+
+        override fun confirmSetupIntent(
+            confirmSetupIntentParams: ConfirmSetupIntentParams,
+            options: ApiRequest.Options
+        ): SetupIntent? {
+            onRequest(confirmSetupIntentParams, options)
+            return SetupIntentFixtures.SI_NEXT_ACTION_REDIRECT
+        }
+
+        override fun retrieveSetupIntent(
+            clientSecret: String,
+            options: ApiRequest.Options
+        ): SetupIntent? {
+            onRequest(clientSecret, options)
+            return SetupIntentFixtures.SI_NEXT_ACTION_REDIRECT
+        }
+
+        override fun createPaymentMethod(
+            paymentMethodCreateParams: PaymentMethodCreateParams,
+            options: ApiRequest.Options
+        ): PaymentMethod? {
+            onRequest(paymentMethodCreateParams, options)
+            return PaymentMethodFixtures.CARD_PAYMENT_METHOD
+        }
+
+        override fun createSource(
+            sourceParams: SourceParams,
+            options: ApiRequest.Options
+        ): Source? {
+            onRequest(sourceParams, options)
+            return SourceFixtures.CARD
+        }
+
+        override fun retrieveSource(
+            sourceId: String,
+            clientSecret: String,
+            options: ApiRequest.Options
+        ): Source? {
+            onRequest(sourceId, options)
+            return SourceFixtures.CARD
+        }
+
+        override fun createToken(
+            tokenParams: Map<String, *>,
+            options: ApiRequest.Options,
+            tokenType: String
+        ): Token? {
+            onRequest(tokenType, options)
+            return TokenFixtures.CARD_TOKEN
+        }
+
+        private fun onRequest(request: Any, options: ApiRequest.Options) {
+            exception?.let { throw it }
+            requests.add(request)
+            this.options = options
+        }
+    }
+
+    companion object {
+        private val REQUEST_OPTIONS =
+            ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY)
+    }
+}
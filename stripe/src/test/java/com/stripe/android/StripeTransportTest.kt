@@ -0,0 +1,127 @@
+package com.stripe.android
+
+import com.stripe.android.exception.APIConnectionException
+import java.io.IOException
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+import org.junit.Assert.assertThrows
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class StripeTransportTest {
+
+    private val requests = mutableListOf<StripeTransport.Request>()
+
+    @Test
+    fun execute_withTransport_shouldSendRequestThroughTransport() {
+        val requestExecutor = createRequestExecutor(object : StripeTransport {
+            override fun execute(request: StripeTransport.Request): StripeTransport.Response {
+                requests.add(request)
+                return StripeTransport.Response(
+                    code = 200,
+                    body = "{}",
+                    headers = mapOf("Request-Id" to listOf("req_123"))
+                )
+            }
+        })
+
+        val response = requestExecutor.execute(ApiRequest.createPost(
+            StripeApiRepository.paymentMethodsUrl,
+            mapOf("type" to "card"),
+            ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY),
+            null
+        ))
+
+        assertEquals(200, response.responseCode)
+        assertEquals("{}", response.responseBody)
+        assertEquals("req_123", response.requestId)
+
+        val request = requests.single()
+        assertEquals("POST", request.method)
+        assertEquals(StripeApiRepository.paymentMethodsUrl, request.url)
+        assertEquals("type=card", request.body?.toString(Charsets.UTF_8))
+        assertEquals("${ApiRequest.MIME_TYPE}; charset=UTF-8", request.contentType)
+        assertEquals("Bearer ${ApiKeyFixtures.FAKE_PUBLISHABLE_KEY}",
+            request.headers["Authorization"])
+        assertEquals(
+            TimeoutPolicy.get().getConnectTimeoutMillis(NetworkEvent.RequestType.Api),
+            request.connectTimeoutMillis
+        )
+        assertEquals(
+            TimeoutPolicy.get().getReadTimeoutMillis(NetworkEvent.RequestType.Api),
+            request.readTimeoutMillis
+        )
+    }
+
+    @Test
+    fun execute_withLowercaseHeaders_shouldReturnRequestId() {
+        val requestExecutor = createRequestExecutor(object : StripeTransport {
+            override fun execute(request: StripeTransport.Request): StripeTransport.Response {
+                return StripeTransport.Response(
+                    code = 200,
+                    body = "{}",
+                    headers = mapOf("request-id" to listOf("req_123"))
+                )
+            }
+        })
+
+        val response = requestExecutor.execute(ApiRequest.createGet(
+            StripeApiRepository.getRetrievePaymentIntentUrl("pi_12345"),
+            ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY),
+            null
+        ))
+
+        assertEquals("req_123", response.requestId)
+        assertEquals(listOf("req_123"), response.responseHeaders?.get("Request-Id"))
+    }
+
+    @Test
+    fun execute_withGetRequest_shouldNotSendBody() {
+        val requestExecutor = createRequestExecutor(object : StripeTransport {
+            override fun execute(request: StripeTransport.Request): StripeTransport.Response {
+                requests.add(request)
+                return StripeTransport.Response(200, "{}", emptyMap())
+            }
+        })
+
+        requestExecutor.execute(ApiRequest.createGet(
+            StripeApiRepository.getRetrievePaymentIntentUrl("pi_12345"),
+            mapOf("client_secret" to "pi_12345_secret_67890"),
+            ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY),
+            null
+        ))
+
+        val request = requests.single()
+        assertEquals("GET", request.method)
+        assertTrue(request.url.endsWith("?client_secret=pi_12345_secret_67890"))
+        assertNull(request.body)
+        assertNull(request.contentType)
+    }
+
+    @Test
+    fun execute_whenTransportThrows_shouldThrowApiConnectionException() {
+        val requestExecutor = createRequestExecutor(object : StripeTransport {
+            override fun execute(request: StripeTransport.Request): StripeTransport.Response {
+                throw IOException("Connection reset")
+            }
+        })
+
+        assertThrows(APIConnectionException::class.java) {
+            requestExecutor.execute(ApiRequest.createGet(
+                StripeApiRepository.getRetrievePaymentIntentUrl("pi_12345"),
+                ApiRequest.Options.create(ApiKeyFixtures.FAKE_PUBLISHABLE_KEY),
+                null
+            ))
+        }
+    }
+
+    private fun createRequestExecutor(transport: StripeTransport): StripeApiRequestExecutor {
+        return StripeApiRequestExecutor(
+            retryPolicy = RetryPolicy(maxRetries = 0),
+            transportProvider = { transport }
+        )
+    }
+}
@@ -0,0 +1,74 @@
+package com.stripe.android
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class TaskExecutorTest {
+
+    private var now = 0L
+    private val taskExecutor = TaskExecutor(
+        maxConcurrentTasks = 1,
+        clock = { now }
+    )
+
+    @Test
+    fun execute_whenBusy_shouldRunHigherPriorityFirst() {
+        val blockingLatch = CountDownLatch(1)
+        val startedLatch = CountDownLatch(1)
+        val completedLatch = CountDownLatch(3)
+        val executedTasks = mutableListOf<String>()
+
+        taskExecutor.execute(Runnable {
+            startedLatch.countDown()
+            blockingLatch.await()
+        }, TaskExecutor.Priority.Normal)
+        assertTrue(startedLatch.await(1, TimeUnit.SECONDS))
+
+        listOf(
+            "low" to TaskExecutor.Priority.Low,
+            "normal" to TaskExecutor.Priority.Normal,
+            "high" to TaskExecutor.Priority.High
+        ).forEach { (name, priority) ->
+            taskExecutor.execute(Runnable {
+                executedTasks.add(name)
+                completedLatch.countDown()
+            }, priority)
+        }
+
+        blockingLatch.countDown()
+        assertTrue(completedLatch.await(1, TimeUnit.SECONDS))
+        assertEquals(listOf("high", "normal", "low"), executedTasks)
+    }
+
+    @Test
+    fun execute_shouldRecordQueueWaitTime() {
+        val blockingLatch = CountDownLatch(1)
+        val startedLatch = CountDownLatch(1)
+        val completedLatch = CountDownLatch(1)
+
+        taskExecutor.execute(Runnable {
+            startedLatch.countDown()
+            blockingLatch.await()
+        }, TaskExecutor.Priority.Normal)
+        assertTrue(startedLatch.await(1, TimeUnit.SECONDS))
+
+        taskExecutor.execute(Runnable {
+            completedLatch.countDown()
+        }, TaskExecutor.Priority.Normal)
+        now += 500L
+        blockingLatch.countDown()
+        assertTrue(completedLatch.await(1, TimeUnit.SECONDS))
+
+        assertEquals(
+            TaskExecutor.Stats(
+                executedTasks = 2,
+                averageQueueWaitMillis = 250L,
+                maxQueueWaitMillis = 500L
+            ),
+            taskExecutor.getStats()
+        )
+    }
+}
@@ -19,6 +19,7 @@ import java.util.Objects;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.when;
 
 @RunWith(RobolectricTestRunner.class)
@@ -39,6 +40,13 @@ public class TelemetryClientUtilTest {
                 .isEmpty());
     }
 
+    @Test
+    public void getInstance_shouldReturnSameInstance() {
+        final Context context = ApplicationProvider.getApplicationContext();
+        assertSame(TelemetryClientUtil.getInstance(context),
+                TelemetryClientUtil.getInstance(context));
+    }
+
     @Test
     public void createTelemetryMap_returnsHasExpectedEntries() {
         final Context context = ApplicationProvider.getApplicationContext();
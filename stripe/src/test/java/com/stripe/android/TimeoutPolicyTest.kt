@@ -0,0 +1,62 @@
+package com.stripe.android
+
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import org.junit.After
+import org.junit.Assert.assertThrows
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class TimeoutPolicyTest {
+
+    @After
+    fun tearDown() {
+        TimeoutPolicy.reset()
+    }
+
+    @Test
+    fun get_withoutInit_shouldReturnDefaultTimeouts() {
+        val timeoutPolicy = TimeoutPolicy.get()
+
+        assertEquals(30000, timeoutPolicy.getConnectTimeoutMillis(NetworkEvent.RequestType.Api))
+        assertEquals(80000, timeoutPolicy.getReadTimeoutMillis(NetworkEvent.RequestType.Api))
+        assertEquals(10000,
+            timeoutPolicy.getReadTimeoutMillis(NetworkEvent.RequestType.Analytics))
+        assertNull(timeoutPolicy.operationTimeoutMillis)
+        assertNull(Deadline.forOperation())
+    }
+
+    @Test
+    fun init_shouldOverrideTimeoutsOfRequestType() {
+        TimeoutPolicy.init(TimeoutPolicy.Builder()
+            .setTimeouts(NetworkEvent.RequestType.Api, 5000, 15000)
+            .setOperationTimeoutMillis(TimeUnit.SECONDS.toMillis(20))
+            .build())
+
+        val timeoutPolicy = TimeoutPolicy.get()
+        assertEquals(5000, timeoutPolicy.getConnectTimeoutMillis(NetworkEvent.RequestType.Api))
+        assertEquals(15000, timeoutPolicy.getReadTimeoutMillis(NetworkEvent.RequestType.Api))
+        assertEquals(10000,
+            timeoutPolicy.getConnectTimeoutMillis(NetworkEvent.RequestType.Fingerprint))
+        assertEquals(20000L, Deadline.forOperation()?.remainingMillis)
+    }
+
+    @Test
+    fun setTimeouts_withInvalidTimeout_shouldThrow() {
+        assertThrows(IllegalArgumentException::class.java) {
+            TimeoutPolicy.Builder().setTimeouts(NetworkEvent.RequestType.Api, 0, 1000)
+        }
+    }
+
+    @Test
+    fun clampTimeout_shouldEndByDeadline() {
+        val deadline = Deadline(expiresAtMillis = 1000L, clock = { 400L })
+
+        assertEquals(600, deadline.clampTimeout(30000))
+        assertEquals(200, deadline.clampTimeout(200))
+        assertEquals(1, Deadline(expiresAtMillis = 0L, clock = { 400L }).clampTimeout(30000))
+    }
+}
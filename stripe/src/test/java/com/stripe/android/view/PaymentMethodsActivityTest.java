@@ -36,7 +36,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -48,7 +50,8 @@ import static org.mockito.Mockito.verify;
 @RunWith(RobolectricTestRunner.class)
 public class PaymentMethodsActivityTest extends BaseViewTest<PaymentMethodsActivity> {
     @Mock private CustomerSession mCustomerSession;
-    @Captor private ArgumentCaptor<CustomerSession.PaymentMethodsRetrievalListener> mListenerArgumentCaptor;
+    @Captor private ArgumentCaptor<CustomerSession.PaymentMethodsPageRetrievalListener>
+            mListenerArgumentCaptor;
 
     private Context mContext;
     private PaymentMethodsActivity mPaymentMethodsActivity;
@@ -96,17 +99,17 @@ public class PaymentMethodsActivityTest extends BaseViewTest<PaymentMethodsActiv
         assertNotNull(mAddCardView);
 
         verify(mCustomerSession).getPaymentMethods(eq(PaymentMethod.Type.Card),
-                mListenerArgumentCaptor.capture());
+                anyInt(), isNull(String.class), mListenerArgumentCaptor.capture());
 
         assertEquals(View.VISIBLE, mProgressBar.getVisibility());
         assertEquals(View.VISIBLE, mAddCardView.getVisibility());
         assertEquals(View.VISIBLE, mRecyclerView.getVisibility());
 
-        final CustomerSession.PaymentMethodsRetrievalListener listener =
+        final CustomerSession.PaymentMethodsPageRetrievalListener listener =
                 mListenerArgumentCaptor.getValue();
         assertNotNull(listener);
 
-        listener.onPaymentMethodsRetrieved(PaymentMethodFixtures.CARD_PAYMENT_METHODS);
+        listener.onPaymentMethodsPageRetrieved(PaymentMethodFixtures.CARD_PAYMENT_METHODS, false);
 
         assertEquals(View.GONE, mProgressBar.getVisibility());
     }
@@ -123,13 +126,13 @@ public class PaymentMethodsActivityTest extends BaseViewTest<PaymentMethodsActiv
         mRecyclerView = mPaymentMethodsActivity.findViewById(R.id.payment_methods_recycler);
 
         verify(mCustomerSession).getPaymentMethods(eq(PaymentMethod.Type.Card),
-                mListenerArgumentCaptor.capture());
+                anyInt(), isNull(String.class), mListenerArgumentCaptor.capture());
 
-        final CustomerSession.PaymentMethodsRetrievalListener listener =
+        final CustomerSession.PaymentMethodsPageRetrievalListener listener =
                 mListenerArgumentCaptor.getValue();
         assertNotNull(listener);
 
-        listener.onPaymentMethodsRetrieved(PaymentMethodFixtures.CARD_PAYMENT_METHODS);
+        listener.onPaymentMethodsPageRetrieved(PaymentMethodFixtures.CARD_PAYMENT_METHODS, false);
 
         final PaymentMethodsAdapter paymentMethodsAdapter =
                 (PaymentMethodsAdapter) mRecyclerView.getAdapter();
@@ -182,13 +185,14 @@ public class PaymentMethodsActivityTest extends BaseViewTest<PaymentMethodsActiv
         );
         assertEquals(View.VISIBLE, mProgressBar.getVisibility());
         verify(mCustomerSession, times(2)).getPaymentMethods(
-                eq(PaymentMethod.Type.Card), mListenerArgumentCaptor.capture());
+                eq(PaymentMethod.Type.Card), anyInt(), isNull(String.class),
+                mListenerArgumentCaptor.capture());
 
-        final CustomerSession.PaymentMethodsRetrievalListener listener =
+        final CustomerSession.PaymentMethodsPageRetrievalListener listener =
                 mListenerArgumentCaptor.getValue();
         assertNotNull(listener);
 
-        listener.onPaymentMethodsRetrieved(PaymentMethodFixtures.CARD_PAYMENT_METHODS);
+        listener.onPaymentMethodsPageRetrieved(PaymentMethodFixtures.CARD_PAYMENT_METHODS, false);
         assertEquals(View.GONE, mProgressBar.getVisibility());
         assertNotNull(mRecyclerView.getAdapter());
         assertEquals(4, mRecyclerView.getAdapter().getItemCount());
@@ -203,17 +207,17 @@ public class PaymentMethodsActivityTest extends BaseViewTest<PaymentMethodsActiv
     @Test
     public void setSelectionAndFinish_finishedWithExpectedResult() {
         verify(mCustomerSession).getPaymentMethods(eq(PaymentMethod.Type.Card),
-                mListenerArgumentCaptor.capture());
+                anyInt(), isNull(String.class), mListenerArgumentCaptor.capture());
 
         assertEquals(View.VISIBLE, mProgressBar.getVisibility());
         assertEquals(View.VISIBLE, mAddCardView.getVisibility());
         assertEquals(View.VISIBLE, mRecyclerView.getVisibility());
 
-        final CustomerSession.PaymentMethodsRetrievalListener listener =
+        final CustomerSession.PaymentMethodsPageRetrievalListener listener =
                 mListenerArgumentCaptor.getValue();
         assertNotNull(listener);
 
-        listener.onPaymentMethodsRetrieved(PaymentMethodFixtures.CARD_PAYMENT_METHODS);
+        listener.onPaymentMethodsPageRetrieved(PaymentMethodFixtures.CARD_PAYMENT_METHODS, false);
         final PaymentMethodsAdapter paymentMethodsAdapter =
                 (PaymentMethodsAdapter) mRecyclerView.getAdapter();
         assertNotNull(paymentMethodsAdapter);
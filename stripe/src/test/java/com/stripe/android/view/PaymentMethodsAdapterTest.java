@@ -1,13 +1,16 @@
 package com.stripe.android.view;
 
+import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.stripe.android.model.PaymentMethod;
 import com.stripe.android.model.PaymentMethodFixtures;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -15,10 +18,11 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
-import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 /**
@@ -35,7 +39,14 @@ public class PaymentMethodsAdapterTest {
         MockitoAnnotations.initMocks(this);
         mPaymentMethodsAdapter = new PaymentMethodsAdapter(null,
                 new PaymentMethodsActivityStarter.Args.Builder()
-                        .build());
+                        .build(),
+                Collections.singletonList(PaymentMethod.Type.Card),
+                new Executor() {
+                    @Override
+                    public void execute(@NonNull Runnable command) {
+                        command.run();
+                    }
+                });
         mPaymentMethodsAdapter.registerAdapterDataObserver(mAdapterDataObserver);
     }
 
@@ -43,7 +54,7 @@ public class PaymentMethodsAdapterTest {
     public void setSelection_changesSelection() {
         mPaymentMethodsAdapter.setPaymentMethods(PaymentMethodFixtures.CARD_PAYMENT_METHODS);
         assertEquals(4, mPaymentMethodsAdapter.getItemCount());
-        verify(mAdapterDataObserver).onChanged();
+        verify(mAdapterDataObserver).onItemRangeInserted(0, 3);
 
         assertEquals(PaymentMethodFixtures.CARD_PAYMENT_METHODS.get(2).id,
                 Objects.requireNonNull(mPaymentMethodsAdapter.getSelectedPaymentMethod()).id);
@@ -67,10 +78,51 @@ public class PaymentMethodsAdapterTest {
                 mPaymentMethodsAdapter.getSelectedPaymentMethod().id);
 
         mPaymentMethodsAdapter.setPaymentMethods(PaymentMethodFixtures.CARD_PAYMENT_METHODS);
+        ShadowLooper.idleMainLooper();
         assertEquals(4, mPaymentMethodsAdapter.getItemCount());
         assertEquals(PaymentMethodFixtures.CARD_PAYMENT_METHODS.get(2).id,
                 mPaymentMethodsAdapter.getSelectedPaymentMethod().id);
-        verify(mAdapterDataObserver, times(2)).onChanged();
+        verify(mAdapterDataObserver).onItemRangeInserted(0, 1);
+        verify(mAdapterDataObserver).onItemRangeInserted(1, 2);
+        verify(mAdapterDataObserver, never()).onChanged();
+    }
+
+    @Test
+    public void setPaymentMethods_withChangedPaymentMethod_onlyNotifiesChangedRows() {
+        final List<PaymentMethod> paymentMethods = PaymentMethodFixtures.createCards(300);
+        mPaymentMethodsAdapter.setPaymentMethods(paymentMethods);
+
+        final List<PaymentMethod> updatedPaymentMethods = new ArrayList<>(paymentMethods);
+        updatedPaymentMethods.remove(10);
+        updatedPaymentMethods.set(5, new PaymentMethod.Builder()
+                .setId(paymentMethods.get(5).id)
+                .setType(PaymentMethod.Type.Card.code)
+                .setCreated(paymentMethods.get(5).created)
+                .setCard(PaymentMethodFixtures.CARD)
+                .build());
+        mPaymentMethodsAdapter.setPaymentMethods(updatedPaymentMethods);
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(updatedPaymentMethods, mPaymentMethodsAdapter.getPaymentMethods());
+        verify(mAdapterDataObserver).onItemRangeRemoved(10, 1);
+        verify(mAdapterDataObserver).onItemRangeChanged(5, 1, null);
+        verify(mAdapterDataObserver, never()).onChanged();
+    }
+
+    @Test
+    public void deletePaymentMethod_removesRow() {
+        mPaymentMethodsAdapter.setPaymentMethods(PaymentMethodFixtures.CARD_PAYMENT_METHODS);
+
+        mPaymentMethodsAdapter.deletePaymentMethod(
+                PaymentMethodFixtures.CARD_PAYMENT_METHODS.get(1));
+
+        assertEquals(3, mPaymentMethodsAdapter.getItemCount());
+        verify(mAdapterDataObserver).onItemRangeRemoved(1, 1);
+
+        mPaymentMethodsAdapter.addPaymentMethods(PaymentMethodFixtures.CARD_PAYMENT_METHODS);
+        ShadowLooper.idleMainLooper();
+        assertEquals(4, mPaymentMethodsAdapter.getItemCount());
+        verify(mAdapterDataObserver).onItemRangeInserted(2, 1);
     }
 
     @Test